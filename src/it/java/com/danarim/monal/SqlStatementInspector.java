@@ -0,0 +1,31 @@
+package com.danarim.monal;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects SQL statements prepared by Hibernate. Used to check the number and the shape of the
+ * queries. Enable with property
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}.
+ */
+public class SqlStatementInspector implements StatementInspector {
+
+    private static final List<String> statements = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        statements.add(sql);
+        return sql;
+    }
+
+    public static List<String> getStatements() {
+        return List.copyOf(statements);
+    }
+
+    public static void clear() {
+        statements.clear();
+    }
+
+}
@@ -1,9 +1,11 @@
 package com.danarim.monal;
 
+import com.danarim.monal.config.DataMigrationPopulator;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.CompositeDatabasePopulator;
 import org.springframework.jdbc.datasource.init.DataSourceInitializer;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -12,6 +14,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import javax.sql.DataSource;
 
 import static com.danarim.monal.config.WebConfig.SQL_INIT_SCRIPTS;
+import static com.danarim.monal.config.WebConfig.SQL_MIGRATION_SCRIPTS;
 
 /**
  * Configuring beans for tests that are not a SpringBootTest.
@@ -37,7 +40,8 @@ class TestBeans {
 
         DataSourceInitializer sourceInitializer = new DataSourceInitializer();
         sourceInitializer.setDataSource(dataSource);
-        sourceInitializer.setDatabasePopulator(resourceDbPopulator);
+        sourceInitializer.setDatabasePopulator(new CompositeDatabasePopulator(
+                resourceDbPopulator, new DataMigrationPopulator(SQL_MIGRATION_SCRIPTS)));
         return sourceInitializer;
     }
 
@@ -0,0 +1,58 @@
+package com.danarim.monal.config;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class})
+@ActiveProfiles("test")
+class DataMigrationPopulatorIT {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void populate_migrationAppliedOnce() {
+        DataMigrationPopulator populator =
+                new DataMigrationPopulator(List.of("data-migration-test.sql"));
+
+        DatabasePopulatorUtils.execute(populator, dataSource);
+        DatabasePopulatorUtils.execute(populator, dataSource);
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM data_migration_test", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM data_migration WHERE name = 'data-migration-test.sql'",
+                Integer.class));
+    }
+
+    @Test
+    void populate_standardMigrationsRecorded() {
+        // Applied on the start of the context, so they are not run again by a restart
+        for (String script : WebConfig.SQL_MIGRATION_SCRIPTS) {
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM data_migration WHERE name = ?", Integer.class, script));
+        }
+    }
+
+}
@@ -154,6 +154,24 @@ class RestExceptionHandlerIT {
                 .hasSize(1);
     }
 
+    @Test
+    void handleOptimisticLockingFailureException() throws Exception {
+        when(messages.getMessage(anyString(), any(), any()))
+                .thenReturn("test");
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/concurrentChangeStub"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$[0].type")
+                                   .value(ResponseErrorType.GLOBAL_ERROR.getName()))
+                .andExpect(jsonPath("$[0].message").value("test"))
+                .andExpect(jsonPath("$[0].errorCode").value("error.concurrent-change"));
+
+        assertThat(logCaptor.getWarnLogs())
+                .withFailMessage("Expected 1 warn log, but got %d",
+                                 logCaptor.getWarnLogs().size())
+                .hasSize(1);
+    }
+
     @Test
     void handleInternalException() throws Exception {
         when(messages.getMessage(anyString(), any(), any()))
@@ -0,0 +1,426 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.SqlStatementInspector;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.UserAnalyticsDbDto;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.user.persistence.model.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector = "
+        + "com.danarim.monal.SqlStatementInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class})
+@ActiveProfiles("test")
+class AnalyticsRollupDaoIT {
+
+    private static final Log logger = LogFactory.getLog(AnalyticsRollupDaoIT.class);
+
+    private static TransactionCategory category1;
+    private static TransactionCategory category2;
+
+    @Autowired
+    private AnalyticsRollupDao analyticsRollupDao;
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private TransactionCategoryDao transactionCategoryDao;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeAll
+    static void beforeAll() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    void getAnalyticsBetweenDays_Daily() {
+        long walletId = prepareWallet("Analytics daily");
+
+        List<AnalyticsDbDto> result = analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.DAILY.getTruncUnit(),
+                walletId,
+                LocalDate.of(2021, 1, 1),
+                LocalDate.of(2021, 1, 3)
+        );
+        assertEquals(3, result.size(), "Wrong number of analytics returned");
+
+        assertEquals(LocalDate.of(2021, 1, 1), result.get(0).getGroupedDate());
+        assertEquals("Rollup category 1", result.get(0).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
+        assertEquals(2.0, result.get(0).getSum());
+
+        assertEquals(LocalDate.of(2021, 1, 1), result.get(1).getGroupedDate());
+        assertEquals("Rollup category 2", result.get(1).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(1).getCategoryType());
+        assertEquals(1.0, result.get(1).getSum());
+
+        assertEquals(LocalDate.of(2021, 1, 2), result.get(2).getGroupedDate());
+        assertEquals("Rollup category 1", result.get(2).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(2).getCategoryType());
+        assertEquals(1.0, result.get(2).getSum());
+    }
+
+    @Test
+    void getAnalyticsBetweenDays_Monthly() {
+        long walletId = prepareWallet("Analytics monthly");
+
+        List<AnalyticsDbDto> result = analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.MONTHLY.getTruncUnit(),
+                walletId,
+                LocalDate.of(2021, 1, 1),
+                LocalDate.of(2021, 2, 1)
+        );
+        assertEquals(3, result.size(), "Wrong number of analytics returned");
+
+        assertEquals(LocalDate.of(2021, 1, 1), result.get(0).getGroupedDate());
+        assertEquals("Rollup category 1", result.get(0).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
+        assertEquals(3.0, result.get(0).getSum());
+
+        assertEquals(LocalDate.of(2021, 1, 1), result.get(1).getGroupedDate());
+        assertEquals("Rollup category 2", result.get(1).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(1).getCategoryType());
+        assertEquals(1.0, result.get(1).getSum());
+
+        assertEquals(LocalDate.of(2021, 2, 1), result.get(2).getGroupedDate());
+        assertEquals("Rollup category 2", result.get(2).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(2).getCategoryType());
+        assertEquals(1.0, result.get(2).getSum());
+    }
+
+    @Test
+    void getAnalyticsBetweenDays_Yearly() {
+        long walletId = prepareWallet("Analytics yearly");
+
+        List<AnalyticsDbDto> result = analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.YEARLY.getTruncUnit(),
+                walletId,
+                LocalDate.of(2021, 1, 1),
+                LocalDate.of(2022, 2, 1)
+        );
+        assertEquals(3, result.size(), "Wrong number of analytics returned");
+
+        assertEquals(LocalDate.of(2021, 1, 1), result.get(0).getGroupedDate());
+        assertEquals("Rollup category 1", result.get(0).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
+        assertEquals(3.0, result.get(0).getSum());
+
+        assertEquals(LocalDate.of(2021, 1, 1), result.get(1).getGroupedDate());
+        assertEquals("Rollup category 2", result.get(1).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(1).getCategoryType());
+        assertEquals(2.0, result.get(1).getSum());
+
+        assertEquals(LocalDate.of(2022, 1, 1), result.get(2).getGroupedDate());
+        assertEquals("Rollup category 2", result.get(2).getCategoryName());
+        assertEquals(TransactionType.OUTCOME, result.get(2).getCategoryType());
+        assertEquals(1.0, result.get(2).getSum());
+    }
+
+    @Test
+    void addDailyChanges_revertedRollupsSkipped() {
+        prepareCategories();
+        Wallet wallet = walletDao.save(
+                new Wallet("Rollups", 0.0, Currency.USD, DbUserFiller.getTestUser()));
+        long categoryId = category1.getId();
+        LocalDate day = LocalDate.of(2021, 3, 15);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> analyticsRollupDao.addDailyChanges(
+                new TreeMap<>(Map.of(
+                        new WalletDayCategory(wallet.getId(), day, categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("2.50"), 2L),
+                        new WalletDayCategory(wallet.getId(), day.plusDays(1), categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("1.00"), 1L)
+                ))));
+        // Transaction of the second day is deleted, one of the first day is moved to another day
+        transactionTemplate.executeWithoutResult(status -> analyticsRollupDao.addDailyChanges(
+                new TreeMap<>(Map.of(
+                        new WalletDayCategory(wallet.getId(), day, categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("-1.00"), -1L),
+                        new WalletDayCategory(wallet.getId(), day.plusDays(1), categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("-1.00"), -1L),
+                        new WalletDayCategory(wallet.getId(), day.plusDays(2), categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("1.00"), 1L)
+                ))));
+
+        List<AnalyticsDbDto> result = analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.DAILY.getTruncUnit(), wallet.getId(), day, day.plusDays(2)
+        );
+
+        assertEquals(2, result.size(), "Rollup without transactions must be skipped");
+        assertEquals(LocalDate.of(2021, 3, 15), result.get(0).getGroupedDate());
+        assertEquals(1.5, result.get(0).getSum());
+        assertEquals(LocalDate.of(2021, 3, 17), result.get(1).getGroupedDate());
+        assertEquals(1.0, result.get(1).getSum());
+    }
+
+    @Test
+    void getUserAnalyticsBetweenDays_allWalletsSplitByCurrency() {
+        prepareCategories();
+        // Admin, so the wallets of the test user are not in the result
+        long userId = DbUserFiller.getTestAdminId();
+        Wallet usd1 = walletDao.save(new Wallet("USD 1", 0.0, Currency.USD, new User(userId)));
+        Wallet usd2 = walletDao.save(new Wallet("USD 2", 0.0, Currency.USD, new User(userId)));
+        Wallet uah = walletDao.save(new Wallet("UAH", 0.0, Currency.UAH, new User(userId)));
+        long categoryId = category1.getId();
+        LocalDate day = LocalDate.of(2021, 3, 15);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> analyticsRollupDao.addDailyChanges(new TreeMap<>(Map.of(
+                        new WalletDayCategory(usd1.getId(), day, categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("2.50"), 1L),
+                        new WalletDayCategory(usd2.getId(), day.plusDays(1), categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("1.00"), 1L),
+                        new WalletDayCategory(uah.getId(), day, categoryId),
+                        new AnalyticsRollupChange(new BigDecimal("40.00"), 1L)
+                ))));
+
+        List<UserAnalyticsDbDto> result = analyticsRollupDao.getUserAnalyticsBetweenDays(
+                AnalyticsPeriod.MONTHLY.getTruncUnit(), userId,
+                LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31)
+        );
+
+        // Ordered by currency name, both USD wallets summed in one row
+        assertEquals(2, result.size());
+        assertEquals(Currency.UAH, result.get(0).getCurrency());
+        assertEquals(LocalDate.of(2021, 3, 1), result.get(0).getGroupedDate());
+        assertEquals("Rollup category 1", result.get(0).getCategoryName());
+        assertEquals(40.0, result.get(0).getSum());
+        assertEquals(Currency.USD, result.get(1).getCurrency());
+        assertEquals(LocalDate.of(2021, 3, 1), result.get(1).getGroupedDate());
+        assertEquals(3.5, result.get(1).getSum());
+    }
+
+    @Test
+    void backfill_rollupsOfSavedTransactions() {
+        prepareCategories();
+        Wallet wallet = walletDao.save(
+                new Wallet("Backfill", 0.0, Currency.USD, DbUserFiller.getTestUser()));
+        // Saved directly, so the rollups are created only by the backfill
+        transactionDao.save(new Transaction("Test", prepareDate(2021, 5, 1), 1.0, category1,
+                                            wallet));
+        transactionDao.save(new Transaction("Test", prepareDate(2021, 5, 1), 1.5, category1,
+                                            wallet));
+        transactionDao.save(new Transaction("Test", prepareDate(2021, 5, 2), 1.0, category2,
+                                            wallet));
+
+        new ResourceDatabasePopulator(new ClassPathResource("sql/data-analytics-rollups.sql"))
+                .execute(dataSource);
+
+        List<AnalyticsDbDto> result = analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.DAILY.getTruncUnit(), wallet.getId(),
+                LocalDate.of(2021, 5, 1), LocalDate.of(2021, 5, 31)
+        );
+
+        assertEquals(2, result.size(), "One rollup per day and category expected");
+        assertEquals(LocalDate.of(2021, 5, 1), result.get(0).getGroupedDate());
+        assertEquals(2.5, result.get(0).getSum());
+        assertEquals(LocalDate.of(2021, 5, 2), result.get(1).getGroupedDate());
+        assertEquals(1.0, result.get(1).getSum());
+    }
+
+    @Test
+    void getAnalyticsBetweenDays_millionRollups_indexOnlyScanAndSameResult() {
+        prepareCategories();
+
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            wallets.add(new Wallet("Analytics " + i, 0.0, Currency.USD,
+                                   DbUserFiller.getTestUser()));
+        }
+        List<Long> walletIds = walletDao.saveAll(wallets).stream().map(Wallet::getId).toList();
+        long walletId = walletIds.get(walletIds.size() / 2);
+        LocalDate from = LocalDate.of(2010, 1, 1);
+        LocalDate to = LocalDate.of(2012, 12, 31);
+
+        // 100 wallets, 5000 days from 2000 and 2 categories: 1 000 000 rollups
+        jdbcTemplate.update("""
+                INSERT INTO analytics_rollup
+                       (wallet_id, day, category_id, amount, transaction_count)
+                SELECT w.id, DATE '2000-01-01' + d.day, c.id, 1.25, 1
+                  FROM wallet AS w
+                       CROSS JOIN generate_series(0, 4999) AS d(day)
+                       CROSS JOIN transaction_category AS c
+                 WHERE w.id BETWEEN ? AND ?
+                   AND c.id IN (?, ?)
+                """, walletIds.get(0), walletIds.get(walletIds.size() - 1), category1.getId(),
+                            category2.getId());
+        // Marks the pages all-visible, otherwise an index-only scan still reads the table
+        jdbcTemplate.execute("VACUUM ANALYZE analytics_rollup");
+
+        // Grouping before date_trunc: every rollup formatted and joined with its category
+        String formattedSql = """
+                SELECT TO_CHAR(r.day, 'YYYY-MM') AS groupeddate,
+                       c.name AS categoryname,
+                       CAST(SUM(r.amount) AS DOUBLE PRECISION) AS sum
+                  FROM analytics_rollup AS r
+                       INNER JOIN transaction_category AS c ON c.id = r.category_id
+                 WHERE r.wallet_id = ? AND r.day BETWEEN ? AND ?
+                 GROUP BY groupeddate, categoryname, c.type
+                HAVING SUM(r.transaction_count) > 0
+                 ORDER BY groupeddate, categoryname
+                """;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int runs = 20;
+
+        List<Map<String, Object>> expected = null;
+        long formattedNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            expected = transactionTemplate.execute(status -> {
+                // Index of the unique constraint only, as before the covering index
+                jdbcTemplate.execute("SET LOCAL enable_indexonlyscan = off");
+                return jdbcTemplate.queryForList(formattedSql, walletId, from, to);
+            });
+        }
+        formattedNanos = System.nanoTime() - formattedNanos;
+
+        List<AnalyticsDbDto> result = null;
+        long truncatedNanos = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            result = analyticsRollupDao.getAnalyticsBetweenDays(
+                    AnalyticsPeriod.MONTHLY.getTruncUnit(), walletId, from, to);
+        }
+        truncatedNanos = System.nanoTime() - truncatedNanos;
+
+        logger.info(("Monthly analytics of 3 years from 1 000 000 rollups: %d ms formatted, "
+                     + "%d ms truncated with the covering index (%d runs)")
+                            .formatted(TimeUnit.NANOSECONDS.toMillis(formattedNanos),
+                                       TimeUnit.NANOSECONDS.toMillis(truncatedNanos), runs));
+
+        SqlStatementInspector.clear();
+        analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.MONTHLY.getTruncUnit(), walletId, from, to);
+        String plan = explainLastStatement(
+                List.of(AnalyticsPeriod.MONTHLY.getTruncUnit(), walletId, from, to));
+
+        jdbcTemplate.update("DELETE FROM analytics_rollup WHERE wallet_id BETWEEN ? AND ?",
+                            walletIds.get(0), walletIds.get(walletIds.size() - 1));
+
+        assertTrue(plan.contains(
+                           "Index Only Scan using analytics_rollup_wallet_id_day_covering_index"),
+                   "Index-only scan of the covering index expected:\n" + plan);
+        assertEquals(72, result.size(), "36 months of 2 categories expected");
+        assertEquals(expected.size(), result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(expected.get(i).get("groupeddate"),
+                         AnalyticsPeriod.MONTHLY.format(result.get(i).getGroupedDate()));
+            assertEquals(expected.get(i).get("categoryname"), result.get(i).getCategoryName());
+            assertEquals(expected.get(i).get("sum"), result.get(i).getSum());
+        }
+    }
+
+    /**
+     * Explains the last executed query with the default planner settings.
+     *
+     * @param params values of the query parameters in the order they appear in the SQL
+     *
+     * @return text of the plan
+     */
+    private String explainLastStatement(List<Object> params) {
+        List<String> statements = SqlStatementInspector.getStatements();
+        String sql = statements.get(statements.size() - 1);
+
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class,
+                                                           params.toArray()));
+    }
+
+    private static Date prepareDate(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTime();
+    }
+
+    private void prepareCategories() {
+        if (category1 != null) {
+            return;
+        }
+        category1 = transactionCategoryDao.save(
+                new TransactionCategory("Rollup category 1", TransactionType.OUTCOME, null));
+        category2 = transactionCategoryDao.save(
+                new TransactionCategory("Rollup category 2", TransactionType.OUTCOME, null));
+    }
+
+    /**
+     * Creates a wallet of the test user with the rollups of 6 transactions of 1.0: 3 of the first
+     * category in January 2021, then 3 of the second category in January 2021, February 2021 and
+     * February 2022.
+     *
+     * @param name unique name of the wallet
+     *
+     * @return ID of the wallet
+     */
+    private long prepareWallet(String name) {
+        prepareCategories();
+        long walletId = walletDao.save(
+                new Wallet(name, 0.0, Currency.USD, DbUserFiller.getTestUser())).getId();
+
+        analyticsRollupDao.addDailyChanges(new TreeMap<>(Map.of(
+                new WalletDayCategory(walletId, LocalDate.of(2021, 1, 1), category1.getId()),
+                new AnalyticsRollupChange(new BigDecimal("2.00"), 2L),
+                new WalletDayCategory(walletId, LocalDate.of(2021, 1, 2), category1.getId()),
+                new AnalyticsRollupChange(BigDecimal.ONE, 1L),
+                new WalletDayCategory(walletId, LocalDate.of(2021, 1, 1), category2.getId()),
+                new AnalyticsRollupChange(BigDecimal.ONE, 1L),
+                new WalletDayCategory(walletId, LocalDate.of(2021, 2, 1), category2.getId()),
+                new AnalyticsRollupChange(BigDecimal.ONE, 1L),
+                new WalletDayCategory(walletId, LocalDate.of(2022, 2, 1), category2.getId()),
+                new AnalyticsRollupChange(BigDecimal.ONE, 1L)
+        )));
+        return walletId;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.model.IdempotencyKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+
+import static com.danarim.monal.DbUserFiller.getTestUserId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class})
+@ActiveProfiles("test")
+class IdempotencyKeyDaoIT {
+
+    @Autowired
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void idempotencyKey_claimedOnceAndResponseStored() {
+        long userId = getTestUserId();
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Integer claimed = transactionTemplate.execute(
+                status -> idempotencyKeyDao.claimKey(userId, "key", "hash", new Date()));
+        Integer claimedAgain = transactionTemplate.execute(
+                status -> idempotencyKeyDao.claimKey(userId, "key", "another", new Date()));
+        Integer saved = transactionTemplate.execute(
+                status -> idempotencyKeyDao.saveResponse(userId, "key", "{\"id\":1}"));
+
+        assertEquals(1, claimed);
+        assertEquals(0, claimedAgain, "Key must be claimed only once");
+        assertEquals(1, saved);
+
+        IdempotencyKey stored =
+                idempotencyKeyDao.findByUserIdAndIdempotencyKey(userId, "key").orElseThrow();
+        assertEquals("hash", stored.getRequestHash());
+        assertEquals("{\"id\":1}", stored.getResponse());
+
+        assertEquals(1, idempotencyKeyDao.deleteAllCreatedBefore(
+                new Date(System.currentTimeMillis() + 1000)));
+    }
+
+}
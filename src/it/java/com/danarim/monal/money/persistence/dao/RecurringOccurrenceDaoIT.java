@@ -0,0 +1,135 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.dto.DueRecurringTransactionDbDto;
+import com.danarim.monal.money.persistence.dto.RecurringOccurrenceDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class, RecurringOccurrenceDao.class})
+@ActiveProfiles("test")
+class RecurringOccurrenceDaoIT {
+
+    @Autowired
+    private RecurringOccurrenceDao recurringOccurrenceDao;
+
+    @Autowired
+    private RecurringTransactionDao recurringTransactionDao;
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private TransactionCategoryDao transactionCategoryDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void beforeAll() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    void recurringOccurrences_createdOnceAndBalanceUpdatedOnce() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Recurring", 10.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory category = transactionCategoryDao.save(
+                new TransactionCategory("Recurring", TransactionType.INCOME, null));
+        RecurringTransaction recurring = recurringTransactionDao.save(new RecurringTransaction(
+                "Salary", 5.0, category, wallet, "@monthly", prepareDate(2021, 1, 1)));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            DueRecurringTransactionDbDto due = recurringOccurrenceDao
+                    .lockDueRecurringTransactions(LocalDateTime.of(2021, 1, 15, 0, 0), 1000)
+                    .stream()
+                    .filter(dto -> dto.id() == recurring.getId())
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(LocalDateTime.of(2021, 1, 1, 0, 0), due.nextOccurrence());
+
+            List<RecurringOccurrenceDbDto> occurrences = List.of(new RecurringOccurrenceDbDto(
+                    due.id(), due.description(), due.nextOccurrence(), due.amount(),
+                    due.categoryId(), due.walletId()));
+
+            assertArrayEquals(new int[]{1}, recurringOccurrenceDao.insertOccurrences(occurrences));
+            assertArrayEquals(new int[]{0}, recurringOccurrenceDao.insertOccurrences(occurrences),
+                              "Occurrence must be created only once");
+
+            recurringOccurrenceDao.addWalletBalances(
+                    new TreeMap<>(Map.of(wallet.getId(), due.amount())));
+            recurringOccurrenceDao.updateNextOccurrences(
+                    Map.of(recurring.getId(), LocalDateTime.of(2021, 2, 1, 0, 0)));
+        });
+
+        assertEquals(15.0, getWalletBalance(wallet.getId()));
+        assertEquals(prepareDate(2021, 2, 1),
+                     recurringTransactionDao.findById(recurring.getId())
+                             .orElseThrow()
+                             .getNextOccurrence());
+    }
+
+    @Test
+    void appendWalletDeltas_walletRowUnchanged() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Recurring ledger", 10.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> recurringOccurrenceDao.appendWalletDeltas(
+                        new TreeMap<>(Map.of(wallet.getId(), new BigDecimal("-2.50")))));
+
+        assertEquals(10.0, getWalletBalance(wallet.getId()),
+                     "Appended deltas must not change the wallet row");
+        BigDecimal delta = jdbcTemplate.queryForObject(
+                "DELETE FROM wallet_balance_delta WHERE wallet_id = ? RETURNING delta",
+                BigDecimal.class, wallet.getId());
+        assertEquals(0, new BigDecimal("-2.50").compareTo(delta));
+    }
+
+    private static Date prepareDate(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTime();
+    }
+
+    // findById of WalletDao locks the wallet, so it can't be used without a transaction
+    private double getWalletBalance(long walletId) {
+        return walletDao.findAllById(List.of(walletId)).get(0).getBalance();
+    }
+
+}
@@ -1,41 +1,64 @@
 package com.danarim.monal.money.persistence.dao;
 
 import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.SqlStatementInspector;
 import com.danarim.monal.TestContainersConfig;
-import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
-import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.dto.TransactionBalanceDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
+import com.danarim.monal.money.persistence.dto.UpdatedTransactionDbDto;
 import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.persistence.model.Transaction;
 import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.TransactionType;
 import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.user.persistence.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 import java.util.TimeZone;
+import javax.persistence.EntityManagerFactory;
 
 import static com.danarim.monal.DbUserFiller.getTestUserId;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@DataJpaTest
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics = true",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector = "
+                + "com.danarim.monal.SqlStatementInspector"
+})
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 @Transactional(propagation = Propagation.NOT_SUPPORTED)
 @Import({TestContainersConfig.class, DbUserFiller.class})
 @ActiveProfiles("test")
 class TransactionDaoIT {
 
+    // Fixture of fillDatabase, shared by the tests of the class
+    private static long walletId;
+    private static long transactionId;
+
     @Autowired
     private TransactionDao transactionDao;
 
@@ -45,6 +68,12 @@ class TransactionDaoIT {
     @Autowired
     private TransactionCategoryDao transactionCategoryDao;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeAll
     static void beforeAll() {
         TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
@@ -54,113 +83,289 @@ class TransactionDaoIT {
     void isUserTransactionOwner() {
         fillDatabase();
 
-        boolean result = transactionDao.isUserTransactionOwner(1L, getTestUserId());
+        boolean result = transactionDao.isUserTransactionOwner(transactionId, getTestUserId());
         assertTrue(result, "User should be the owner of the transaction");
 
-        result = transactionDao.isUserTransactionOwner(1L, getTestUserId() + 1);
+        result = transactionDao.isUserTransactionOwner(transactionId, getTestUserId() + 1);
         assertFalse(result, "User should not be the owner of the transaction");
     }
 
     @Test
-    void getTransactionAnalyticsBetweenDates_Daily() {
+    void getTransactionsBetweenDates_oneNarrowQuery() {
         fillDatabase();
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(prepareDate(2021, 1, 1));
-        calendar.set(Calendar.DAY_OF_MONTH, 1);
-
-        Date from = calendar.getTime();
-        calendar.add(Calendar.DAY_OF_MONTH, 2);
-        Date to = calendar.getTime();
+        Statistics statistics =
+                entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        SqlStatementInspector.clear();
 
-        List<AnalyticsDbDto> result = transactionDao.getTransactionAnalyticsBetweenDates(
-                AnalyticsPeriod.DAILY.getDateFormat(), 1L, from, to
+        List<TransactionDbDto> result = transactionDao.getTransactionsBetweenDates(
+                walletId, prepareDate(2021, 1, 1), prepareDate(2021, 1, 31)
         );
-        assertEquals(3, result.size(), "Wrong number of analytics returned");
 
-        assertEquals("2021-01-01", result.get(0).getGroupedDate());
-        assertEquals("Category 1", result.get(0).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(2.0, result.get(0).getSum());
+        assertEquals(4, result.size(), "Wrong number of transactions returned");
+        assertEquals(prepareDate(2021, 1, 2).getTime(), result.get(0).dateMillis());
+        assertEquals(walletId, result.get(0).walletId());
+
+        assertEquals(1, statistics.getPrepareStatementCount(), "Only one query expected");
+        assertEquals(0, statistics.getEntityLoadCount(), "No entities expected");
+
+        List<String> statements = SqlStatementInspector.getStatements();
+        assertEquals(1, statements.size(), "Only one query expected");
 
-        assertEquals("2021-01-01", result.get(1).getGroupedDate());
-        assertEquals("Category 2", result.get(1).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(1.0, result.get(1).getSum());
+        String sql = statements.get(0).toLowerCase(Locale.ROOT);
+        String selectClause = sql.substring(0, sql.indexOf(" from "));
 
-        assertEquals("2021-01-02", result.get(2).getGroupedDate());
-        assertEquals("Category 1", result.get(2).getCategoryName());
-        assertEquals(1.0, result.get(2).getSum());
+        assertEquals(6, selectClause.split(",").length, "Only 6 columns expected");
+        assertTrue(selectClause.contains("category_id"), "Category ID must be selected");
+        assertTrue(selectClause.contains("wallet_id"), "Wallet ID must be selected");
+        assertFalse(sql.contains(" join "), "No joins expected");
+        assertFalse(sql.contains("users"), "Wallet owner must not be loaded");
     }
 
     @Test
-    void getTransactionAnalyticsBetweenDates_Monthly() {
+    void getTransactionsPage_keysetOrderedByDateAndIdDesc() {
         fillDatabase();
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(prepareDate(2021, 1, 1));
-        calendar.set(Calendar.MONTH, Calendar.JANUARY);
-        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        Date from = prepareDate(2021, 1, 1);
+        Date to = prepareDate(2021, 1, 31);
+
+        List<TransactionDbDto> firstPage =
+                transactionDao.getTransactionsPage(walletId, from, to, PageRequest.of(0, 2));
 
-        Date from = calendar.getTime();
-        calendar.add(Calendar.MONTH, 1);
-        Date to = calendar.getTime();
+        assertEquals(2, firstPage.size(), "Wrong number of transactions on the first page");
+        assertEquals(prepareDate(2021, 1, 2).getTime(), firstPage.get(0).dateMillis());
+        assertEquals(prepareDate(2021, 1, 1).getTime(), firstPage.get(1).dateMillis());
 
-        List<AnalyticsDbDto> result = transactionDao.getTransactionAnalyticsBetweenDates(
-                AnalyticsPeriod.MONTHLY.getDateFormat(), 1L, from, to
+        TransactionDbDto last = firstPage.get(1);
+        List<TransactionDbDto> nextPage = transactionDao.getTransactionsPageAfter(
+                walletId, from, to, new Date(last.dateMillis()), last.id(), PageRequest.of(0, 10)
         );
-        assertEquals(3, result.size(), "Wrong number of analytics returned");
-
-        assertEquals("2021-01", result.get(0).getGroupedDate());
-        assertEquals("Category 1", result.get(0).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(3.0, result.get(0).getSum());
-
-        assertEquals("2021-01", result.get(1).getGroupedDate());
-        assertEquals("Category 2", result.get(1).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(1.0, result.get(1).getSum());
-
-        assertEquals("2021-02", result.get(2).getGroupedDate());
-        assertEquals("Category 2", result.get(2).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(1.0, result.get(2).getSum());
+
+        assertEquals(2, nextPage.size(), "Wrong number of transactions on the next page");
+        assertTrue(nextPage.get(0).id() < last.id(), "Transactions must be ordered by id");
+        assertTrue(nextPage.get(1).id() < nextPage.get(0).id(),
+                   "Transactions must be ordered by id");
+        assertEquals(prepareDate(2021, 1, 1).getTime(), nextPage.get(1).dateMillis());
+    }
+
+    @Test
+    void filterTransactions_allConditions() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Filter", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory food = transactionCategoryDao.save(
+                new TransactionCategory("Filter food", TransactionType.OUTCOME, null));
+        TransactionCategory taxi = transactionCategoryDao.save(
+                new TransactionCategory("Filter taxi", TransactionType.OUTCOME, null));
+        final Transaction matching = transactionDao.save(
+                new Transaction("Coffee 50%", prepareDate(2021, 1, 2), 3.0, food, wallet));
+        transactionDao.save(
+                new Transaction("Coffee 50%", prepareDate(2021, 1, 3), 30.0, food, wallet));
+        transactionDao.save(
+                new Transaction("Coffee 50%", prepareDate(2021, 1, 4), 3.0, taxi, wallet));
+        transactionDao.save(
+                new Transaction("Coffee 500", prepareDate(2021, 1, 5), 3.0, food, wallet));
+        transactionDao.save(
+                new Transaction("Coffee 50%", prepareDate(2021, 2, 5), 3.0, food, wallet));
+
+        TransactionFilter filter = new TransactionFilter(wallet.getId(),
+                                                         prepareDate(2021, 1, 1),
+                                                         prepareDate(2021, 1, 31),
+                                                         Set.of(food.getId()),
+                                                         2.0,
+                                                         10.0,
+                                                         "COFFEE 50%");
+
+        List<TransactionDbDto> result = transactionDao.filterTransactions(filter, 10);
+
+        assertEquals(1, result.size(), "Only one transaction matches all conditions");
+        assertEquals(matching.getId(), result.get(0).id());
+
+        List<TransactionDbDto> nextPage = transactionDao.filterTransactionsAfter(
+                filter, new Date(result.get(0).dateMillis()), result.get(0).id(), 10);
+
+        assertTrue(nextPage.isEmpty(), "Next page must be empty");
+    }
+
+    @Test
+    void filterTransactions_everyFilterShapeUsesItsIndex() {
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            wallets.add(new Wallet("Filter shape " + i, 0.0, Currency.USD,
+                                   DbUserFiller.getTestUser()));
+        }
+        List<Long> walletIds = walletDao.saveAll(wallets).stream().map(Wallet::getId).toList();
+        long firstWalletId = walletIds.get(0);
+        long lastWalletId = walletIds.get(walletIds.size() - 1);
+        jdbcTemplate.update("""
+                INSERT INTO transaction_category (name, type, parent_category_id)
+                SELECT 'Filter shape ' || i, 'OUTCOME', NULL
+                  FROM generate_series(0, 99) AS i
+                """);
+        // 40 wallets with 2500 transactions: 3 years of days, 100 categories, md5 descriptions
+        jdbcTemplate.update("""
+                INSERT INTO transaction (description, date, amount, category_id, wallet_id)
+                SELECT md5(CAST(g.n AS TEXT)),
+                       TIMESTAMP '2019-01-01' + g.n % 1095 * INTERVAL '1 day',
+                       g.n % 1000 / 10.0,
+                       c.id,
+                       w.id
+                  FROM wallet AS w
+                       CROSS JOIN generate_series(1, 2500) AS g(n)
+                       INNER JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS k
+                                     FROM transaction_category
+                                    WHERE name LIKE 'Filter shape %') AS c ON c.k = g.n % 100
+                 WHERE w.id BETWEEN ? AND ?
+                """, firstWalletId, lastWalletId);
+        // Real statistics, so the planner chooses as in production and no scan is disabled
+        jdbcTemplate.execute("ANALYZE transaction");
+
+        long walletId = walletIds.get(walletIds.size() / 2);
+        long categoryId = transactionCategoryDao.findAll().stream()
+                .filter(category -> category.getName().equals("Filter shape 7"))
+                .findFirst()
+                .orElseThrow()
+                .getId();
+        Date from = prepareDate(2019, 1, 1);
+        Date to = prepareDate(2021, 12, 31);
+        Date monthFrom = prepareDate(2020, 1, 1);
+        Date monthTo = prepareDate(2020, 1, 31);
+        final String dateIndex = "transaction_wallet_id_date_covering_index";
+        final String categoryIndex = "transaction_wallet_id_category_id_date_index";
+        final String prefixIndex = "transaction_wallet_id_description_prefix_index";
+
+        // One month of all transactions
+        assertIndexScan(new TransactionFilter(walletId, monthFrom, monthTo, null, null, null, null),
+                        List.of(walletId, monthFrom, monthTo, 10), dateIndex);
+        // One category of 100 in 3 years
+        assertIndexScan(new TransactionFilter(walletId, from, to, Set.of(categoryId), null, null,
+                                              null),
+                        List.of(walletId, from, to, categoryId, 10), categoryIndex);
+        // Amount has no index, so the month is read by the date index
+        assertIndexScan(new TransactionFilter(walletId, monthFrom, monthTo, null, 1.0, 2.0, null),
+                        List.of(walletId, monthFrom, monthTo, 1.0, 2.0, 10), dateIndex);
+        // One description of 256 in 3 years
+        assertIndexScan(new TransactionFilter(walletId, from, to, null, null, null, "ab"),
+                        List.of(walletId, from, to, "ab%", 10), prefixIndex);
+
+        TransactionFilter all = new TransactionFilter(walletId, from, to, Set.of(categoryId),
+                                                      1.0, 2.0, "ab");
+        Date cursorDate = prepareDate(2021, 1, 15);
+        SqlStatementInspector.clear();
+        transactionDao.filterTransactionsAfter(all, cursorDate, 5L, 10);
+        String plan = explainLastStatement(List.of(walletId, from, to, categoryId, 1.0, 2.0,
+                                                   "ab%", cursorDate, cursorDate, 5L, 10));
+
+        jdbcTemplate.update("DELETE FROM transaction WHERE wallet_id BETWEEN ? AND ?",
+                            firstWalletId, lastWalletId);
+
+        assertFalse(plan.contains("Seq Scan"), "Index scan expected:\n" + plan);
+        assertTrue(plan.contains(categoryIndex) || plan.contains(prefixIndex),
+                   "Category or description index expected:\n" + plan);
+    }
+
+    @Test
+    void deleteUserTransaction_returnsDeletedState() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Delete", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory category = transactionCategoryDao.save(
+                new TransactionCategory("Delete", TransactionType.INCOME, null));
+        Transaction transaction = transactionDao.save(
+                new Transaction("Test", prepareDate(2021, 1, 1), 2.5, category, wallet));
+
+        assertTrue(transactionDao.deleteUserTransaction(transaction.getId(), getTestUserId() + 1)
+                           .isEmpty(),
+                   "Transaction of another user must not be deleted");
+
+        Optional<TransactionBalanceDbDto> result =
+                transactionDao.deleteUserTransaction(transaction.getId(), getTestUserId());
+
+        assertTrue(result.isPresent(), "Transaction must be deleted");
+        assertEquals(2.5, result.get().getAmount());
+        assertEquals(TransactionType.INCOME, result.get().getCategoryType());
+        assertEquals(wallet.getId(), result.get().getWalletId());
+        assertEquals(wallet.getCurrency(), result.get().getCurrency());
+        assertFalse(transactionDao.existsById(transaction.getId()));
     }
 
     @Test
-    void getTransactionAnalyticsBetweenDates_Yearly() {
+    void lockTransactions_existingTransactionsLocked() {
         fillDatabase();
 
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(prepareDate(2021, 1, 1));
-        calendar.set(Calendar.YEAR, 2021);
-        calendar.set(Calendar.MONTH, Calendar.JANUARY);
-        calendar.set(Calendar.DAY_OF_MONTH, 1);
-
-        Date from = calendar.getTime();
-        calendar.add(Calendar.YEAR, 1);
-        calendar.add(Calendar.MONTH, 1);
-        Date to = calendar.getTime();
-
-        List<AnalyticsDbDto> result = transactionDao.getTransactionAnalyticsBetweenDates(
-                AnalyticsPeriod.YEARLY.getDateFormat(), 1L, from, to
+        assertEquals(1L, transactionDao.lockTransactions(List.of(transactionId, -1L)));
+    }
+
+    @Test
+    void updateUserTransaction_returnsOldStateAndNewAmount() {
+        Wallet oldWallet = walletDao.save(
+                new Wallet("Update 1", 1.0, Currency.BTC, DbUserFiller.getTestUser()));
+        Wallet newWallet = walletDao.save(
+                new Wallet("Update 2", 1.0, Currency.BTC, DbUserFiller.getTestUser()));
+        Wallet otherCurrencyWallet = walletDao.save(
+                new Wallet("Update 3", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory income = transactionCategoryDao.save(
+                new TransactionCategory("Update 1", TransactionType.INCOME, null));
+        TransactionCategory outcome = transactionCategoryDao.save(
+                new TransactionCategory("Update 2", TransactionType.OUTCOME, null));
+        Transaction transaction = transactionDao.save(
+                new Transaction("Test", prepareDate(2021, 1, 1), 2.5, income, oldWallet));
+
+        assertTrue(transactionDao.updateUserTransaction(
+                transaction.getId(), getTestUserId(), null, prepareDate(2021, 1, 2),
+                BigDecimal.valueOf(1.12), BigDecimal.valueOf(1.12345678),
+                outcome.getId(), otherCurrencyWallet.getId(), List.of("BTC")
+        ).isEmpty(), "Wallet with another currency must not be accepted");
+
+        Optional<UpdatedTransactionDbDto> result = transactionDao.updateUserTransaction(
+                transaction.getId(), getTestUserId(), null, prepareDate(2021, 1, 2),
+                BigDecimal.valueOf(1.12), BigDecimal.valueOf(1.12345678),
+                outcome.getId(), newWallet.getId(), List.of("BTC")
         );
-        assertEquals(3, result.size(), "Wrong number of analytics returned");
-
-        assertEquals("2021", result.get(0).getGroupedDate());
-        assertEquals("Category 1", result.get(0).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(3.0, result.get(0).getSum());
-
-        assertEquals("2021", result.get(1).getGroupedDate());
-        assertEquals("Category 2", result.get(1).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(2.0, result.get(1).getSum());
-
-        assertEquals("2022", result.get(2).getGroupedDate());
-        assertEquals("Category 2", result.get(2).getCategoryName());
-        assertEquals(TransactionType.OUTCOME, result.get(0).getCategoryType());
-        assertEquals(1.0, result.get(2).getSum());
+
+        assertTrue(result.isPresent(), "Transaction must be updated");
+        assertEquals(2.5, result.get().getAmount());
+        assertEquals(TransactionType.INCOME, result.get().getCategoryType());
+        assertEquals(oldWallet.getId(), result.get().getWalletId());
+        assertEquals(Currency.BTC, result.get().getCurrency());
+        assertEquals(1.12345678, result.get().getNewAmount());
+
+        Transaction updated = transactionDao.findById(transaction.getId()).orElseThrow();
+
+        assertNull(updated.getDescription());
+        assertEquals(prepareDate(2021, 1, 2), updated.getDate());
+        assertEquals(outcome.getId(), updated.getCategory().getId());
+        assertEquals(newWallet.getId(), updated.getWallet().getId());
+    }
+
+    /**
+     * Runs the filter and checks that its query is executed with the index.
+     *
+     * @param filter filter to check
+     * @param params values of the query parameters in the order they appear in the SQL
+     * @param index  name of the index expected in the plan
+     */
+    private void assertIndexScan(TransactionFilter filter, List<Object> params, String index) {
+        SqlStatementInspector.clear();
+        transactionDao.filterTransactions(filter, 10);
+
+        String plan = explainLastStatement(params);
+        assertFalse(plan.contains("Seq Scan"), "Index scan expected:\n" + plan);
+        assertTrue(plan.contains(index), index + " expected:\n" + plan);
+    }
+
+    /**
+     * Explains the last executed query with the default planner settings.
+     *
+     * @param params values of the query parameters in the order they appear in the SQL
+     *
+     * @return text of the plan
+     */
+    private String explainLastStatement(List<Object> params) {
+        List<String> statements = SqlStatementInspector.getStatements();
+        String sql = statements.get(statements.size() - 1);
+
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class,
+                                                           params.toArray()));
     }
 
     private static Date prepareDate(int year, int month, int day) {
@@ -171,7 +376,7 @@ class TransactionDaoIT {
     }
 
     private void fillDatabase() {
-        if (walletDao.existsById(1L)) {
+        if (walletId != 0) {
             return;
         }
 
@@ -205,6 +410,9 @@ class TransactionDaoIT {
         transactionDao.save(transaction4);
         transactionDao.save(transaction5);
         transactionDao.save(transaction6);
+
+        walletId = wallet.getId();
+        transactionId = transaction1.getId();
     }
 
 }
@@ -0,0 +1,128 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static com.danarim.monal.DbUserFiller.getTestUserId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class, TransactionSearchDao.class})
+@ActiveProfiles("test")
+class TransactionSearchDaoIT {
+
+    @Autowired
+    private TransactionSearchDao transactionSearchDao;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private TransactionCategoryDao transactionCategoryDao;
+
+    @BeforeAll
+    static void beforeAll() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    void searchUserTransactions_byDate_keysetPages() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Search date", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory category = transactionCategoryDao.save(
+                new TransactionCategory("Search date", TransactionType.OUTCOME, null));
+        final Transaction older = transactionDao.save(
+                new Transaction("Bakery bread", prepareDate(2021, 1, 1), 1.0, category, wallet));
+        Transaction newer = transactionDao.save(
+                new Transaction("Bread and milk", prepareDate(2021, 1, 2), 1.0, category, wallet));
+        transactionDao.save(
+                new Transaction("Taxi", prepareDate(2021, 1, 3), 1.0, category, wallet));
+
+        List<TransactionSearchDbDto> firstPage = transactionSearchDao.searchUserTransactions(
+                getTestUserId(), "BREAD", TransactionSearchOrder.DATE, 1);
+
+        assertEquals(1, firstPage.size(), "Wrong number of transactions on the first page");
+        assertEquals(newer.getId(), firstPage.get(0).transaction().id());
+
+        TransactionSearchDbDto last = firstPage.get(0);
+        List<TransactionSearchDbDto> nextPage = transactionSearchDao.searchUserTransactionsAfter(
+                getTestUserId(), "BREAD", TransactionSearchOrder.DATE, last.rank(),
+                new Date(last.transaction().dateMillis()), last.transaction().id(), 10);
+
+        assertEquals(1, nextPage.size(), "Wrong number of transactions on the next page");
+        assertEquals(older.getId(), nextPage.get(0).transaction().id());
+
+        assertTrue(transactionSearchDao.searchUserTransactions(
+                           getTestUserId() + 1, "bread", TransactionSearchOrder.DATE, 10)
+                           .isEmpty(),
+                   "Transactions of another user must not be found");
+    }
+
+    @Test
+    void searchUserTransactions_byRelevance_keysetPages() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Search rank", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory category = transactionCategoryDao.save(
+                new TransactionCategory("Search rank", TransactionType.OUTCOME, null));
+        final Transaction weak = transactionDao.save(new Transaction(
+                "Coffee beans for the office kitchen", prepareDate(2021, 1, 2), 1.0, category,
+                wallet));
+        Transaction strong = transactionDao.save(new Transaction(
+                "Espresso espresso", prepareDate(2021, 1, 1), 1.0, category, wallet));
+        transactionDao.save(new Transaction(
+                "Espresso machine", prepareDate(2021, 1, 3), 1.0, category, wallet));
+
+        List<TransactionSearchDbDto> firstPage = transactionSearchDao.searchUserTransactions(
+                getTestUserId(), "espresso or coffee", TransactionSearchOrder.RELEVANCE, 1);
+
+        assertEquals(1, firstPage.size(), "Wrong number of transactions on the first page");
+        assertEquals(strong.getId(), firstPage.get(0).transaction().id());
+
+        TransactionSearchDbDto last = firstPage.get(0);
+        List<TransactionSearchDbDto> nextPage = transactionSearchDao.searchUserTransactionsAfter(
+                getTestUserId(), "espresso or coffee", TransactionSearchOrder.RELEVANCE,
+                last.rank(), new Date(last.transaction().dateMillis()), last.transaction().id(),
+                10);
+
+        assertEquals(2, nextPage.size(), "Wrong number of transactions on the next page");
+        assertTrue(nextPage.get(0).rank() <= last.rank(), "Results must be ordered by rank");
+        assertTrue(nextPage.get(1).rank() <= nextPage.get(0).rank(),
+                   "Results must be ordered by rank");
+        assertEquals(weak.getId(), nextPage.get(1).transaction().id());
+    }
+
+    private static Date prepareDate(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTime();
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.dto.BalanceHistoryDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static com.danarim.monal.DbUserFiller.getTestUserId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class})
+@ActiveProfiles("test")
+class WalletBalanceCheckpointDaoIT {
+
+    @Autowired
+    private WalletBalanceCheckpointDao walletBalanceCheckpointDao;
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private TransactionCategoryDao transactionCategoryDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void beforeAll() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @Test
+    void getOwnedWalletBalanceAtAndHistory_checkpointsAndOneMonthOfTransactions() {
+        // Initial balance 100. Balance after every transaction: 120, 90, 100
+        Wallet wallet = walletDao.saveAndFlush(
+                new Wallet("Checkpoints", 100.0, Currency.USD, DbUserFiller.getTestUser()));
+        TransactionCategory income = transactionCategoryDao.save(
+                new TransactionCategory("Checkpoint income", TransactionType.INCOME, null));
+        TransactionCategory outcome = transactionCategoryDao.save(
+                new TransactionCategory("Checkpoint outcome", TransactionType.OUTCOME, null));
+
+        transactionDao.save(new Transaction("Test", prepareDate(2021, 1, 10), 20.0, income,
+                                            wallet));
+        transactionDao.save(new Transaction("Test", prepareDate(2021, 3, 5), 30.0, outcome,
+                                            wallet));
+        transactionDao.save(new Transaction("Test", prepareDate(2021, 3, 20), 10.0, income,
+                                            wallet));
+        walletBalanceCheckpointDao.addMonthlyChange(wallet.getId(), LocalDate.of(2021, 1, 1),
+                                                    new BigDecimal("20.00"));
+        walletBalanceCheckpointDao.addMonthlyChange(wallet.getId(), LocalDate.of(2021, 3, 1),
+                                                    new BigDecimal("-30.00"));
+        walletBalanceCheckpointDao.addMonthlyChange(wallet.getId(), LocalDate.of(2021, 3, 1),
+                                                    new BigDecimal("10.00"));
+
+        // Other tests can add checkpoints of other wallets to the shared database
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_balance_checkpoint WHERE wallet_id = ?",
+                Integer.class, wallet.getId()), "One checkpoint per month expected");
+        assertBalanceAt(wallet.getId(), prepareDate(2020, 12, 31), "100");
+        assertBalanceAt(wallet.getId(), prepareDate(2021, 1, 10), "120");
+        assertBalanceAt(wallet.getId(), prepareDate(2021, 2, 1), "120");
+        assertBalanceAt(wallet.getId(), prepareDate(2021, 3, 10), "90");
+        assertBalanceAt(wallet.getId(), prepareDate(2021, 4, 1), "100");
+
+        assertTrue(walletBalanceCheckpointDao.getOwnedWalletBalanceAt(wallet.getId(),
+                                                                      getTestUserId() + 1,
+                                                                      new Date()).isEmpty());
+
+        // End-of-day balances from the same checkpoints
+        List<BalanceHistoryDbDto> history = walletBalanceCheckpointDao
+                .getOwnedWalletBalanceHistory(wallet.getId(), getTestUserId(),
+                                              LocalDate.of(2021, 2, 27), LocalDate.of(2021, 3, 21));
+
+        assertEquals(23, history.size());
+        assertEquals(Currency.USD, history.get(0).getCurrency());
+        assertEquals(0, new BigDecimal("120").compareTo(history.get(0).getBalance()));
+        assertEquals(0, new BigDecimal("120").compareTo(history.get(5).getBalance())); // Mar 4
+        assertEquals(0, new BigDecimal("90").compareTo(history.get(6).getBalance())); // Mar 5
+        assertEquals(0, new BigDecimal("90").compareTo(history.get(20).getBalance())); // Mar 19
+        assertEquals(0, new BigDecimal("100").compareTo(history.get(21).getBalance())); // Mar 20
+        assertEquals(0, new BigDecimal("100").compareTo(history.get(22).getBalance()));
+
+        assertTrue(walletBalanceCheckpointDao.getOwnedWalletBalanceHistory(
+                wallet.getId(), getTestUserId() + 1, LocalDate.of(2021, 3, 1),
+                LocalDate.of(2021, 3, 2)).isEmpty());
+    }
+
+    private static Date prepareDate(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTime();
+    }
+
+    private void assertBalanceAt(long walletId, Date date, String expected) {
+        BigDecimal balance = walletBalanceCheckpointDao
+                .getOwnedWalletBalanceAt(walletId, getTestUserId(), date)
+                .orElseThrow();
+
+        assertEquals(0, new BigDecimal(expected).compareTo(balance),
+                     "Expected %s at %s, but was %s".formatted(expected, date, balance));
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.dto.WalletBalanceDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static com.danarim.monal.DbUserFiller.getTestUserId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class})
+@ActiveProfiles("test")
+class WalletBalanceDeltaDaoIT {
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private WalletBalanceDeltaDao walletBalanceDeltaDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void walletBalanceDelta_appendedReadAndCompacted() {
+        Wallet wallet = walletDao.saveAndFlush(
+                new Wallet("Ledger", 10.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        assertEquals(Optional.of("USD"), walletBalanceDeltaDao.appendOwnedWalletDelta(
+                wallet.getId(),
+                getTestUserId(),
+                new BigDecimal("1.50"),
+                new BigDecimal("1.50000000"),
+                Currency.getNames(CurrencyType.CRYPTO)));
+        assertEquals(1, walletBalanceDeltaDao.appendWalletDelta(wallet.getId(),
+                                                                new BigDecimal("-0.25")));
+        assertEquals(0, walletBalanceDeltaDao.appendWalletDelta(-1L, BigDecimal.ONE),
+                     "Delta of a missing wallet must not be appended");
+
+        BigDecimal storedBalance = jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, wallet.getId());
+        assertEquals(0, BigDecimal.TEN.compareTo(storedBalance),
+                     "Appended deltas must not change the wallet row");
+        assertEquals(0, new BigDecimal("11.25").compareTo(getPendingBalance(wallet.getId())));
+
+        assertEquals(1, walletBalanceDeltaDao.compactDeltas(1000));
+        assertEquals(0, walletBalanceDeltaDao.compactDeltas(1000));
+
+        storedBalance = jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, wallet.getId());
+        assertEquals(0, new BigDecimal("11.25").compareTo(storedBalance));
+        assertEquals(0, new BigDecimal("11.25").compareTo(getPendingBalance(wallet.getId())));
+        assertEquals(0, walletBalanceDeltaDao.count());
+    }
+
+    @Test
+    void appendOwnedWalletDelta_notOwner_notAppended() {
+        Wallet wallet = walletDao.saveAndFlush(
+                new Wallet("Ledger not owned", 10.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        assertTrue(walletBalanceDeltaDao.appendOwnedWalletDelta(
+                wallet.getId(),
+                getTestUserId() + 1,
+                BigDecimal.ONE,
+                BigDecimal.ONE,
+                Currency.getNames(CurrencyType.CRYPTO)).isEmpty());
+        assertEquals(0, walletBalanceDeltaDao.count());
+    }
+
+    private BigDecimal getPendingBalance(long walletId) {
+        return walletBalanceDeltaDao.getOwnerWalletBalances(getTestUserId()).stream()
+                .filter(balance -> balance.getWalletId() == walletId)
+                .map(WalletBalanceDbDto::getBalance)
+                .findFirst()
+                .orElseThrow();
+    }
+
+}
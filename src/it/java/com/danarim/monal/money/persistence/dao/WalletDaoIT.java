@@ -0,0 +1,233 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static com.danarim.monal.DbUserFiller.getTestUserId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class})
+@ActiveProfiles("test")
+class WalletDaoIT {
+
+    private static final Log logger = LogFactory.getLog(WalletDaoIT.class);
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void addWalletBalance_parallelWriters_exactBalance() throws Exception {
+        long walletId = walletDao.saveAndFlush(
+                new Wallet("Parallel", 0.0, Currency.USD, DbUserFiller.getTestUser())).getId();
+        int writers = 8;
+        int writesPerWriter = 50;
+        BigDecimal delta = new BigDecimal("0.01");
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < writesPerWriter; j++) {
+                    walletDao.addWalletBalance(walletId, delta).orElseThrow();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        for (Future<?> result : results) {
+            result.get(); // Rethrows the failure of a writer
+        }
+
+        BigDecimal balance = jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, walletId);
+
+        // 400 writes of 0.01. Any lost update or rounding error changes the balance.
+        assertEquals(0, new BigDecimal("4.00").compareTo(balance),
+                     "Expected 4.00, but was " + balance);
+    }
+
+    @Test
+    void findAllByIdInOrderByIdAsc_crossTransfers_noDeadlockAndTotalKept() throws Exception {
+        long firstId = walletDao.saveAndFlush(
+                new Wallet("Transfer 1", 100.0, Currency.USD, DbUserFiller.getTestUser())).getId();
+        long secondId = walletDao.saveAndFlush(
+                new Wallet("Transfer 2", 100.0, Currency.USD, DbUserFiller.getTestUser())).getId();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        BigDecimal amount = new BigDecimal("0.01");
+
+        // Transfer: both wallets are locked in the order of ID, then both balances are changed
+        long transferNanos = runCrossTransfers(firstId, secondId, (from, to) ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    walletDao.findAllByIdInOrderByIdAsc(Set.of(from, to));
+                    walletDao.addWalletBalance(from, amount.negate()).orElseThrow();
+                    walletDao.addWalletBalance(to, amount).orElseThrow();
+                }));
+        // Two separate calls: one transaction per wallet, a failure between them loses money
+        long twoCallsNanos = runCrossTransfers(firstId, secondId, (from, to) -> {
+            walletDao.addWalletBalance(from, amount.negate()).orElseThrow();
+            walletDao.addWalletBalance(to, amount).orElseThrow();
+        });
+        logger.info("Cross transfers: %d ms in one transaction, %d ms in two calls"
+                            .formatted(TimeUnit.NANOSECONDS.toMillis(transferNanos),
+                                       TimeUnit.NANOSECONDS.toMillis(twoCallsNanos)));
+
+        BigDecimal total = jdbcTemplate.queryForObject(
+                "SELECT SUM(balance) FROM wallet WHERE id IN (?, ?)",
+                BigDecimal.class, firstId, secondId);
+
+        assertEquals(0, new BigDecimal("200.00").compareTo(total),
+                     "Expected 200.00, but was " + total);
+    }
+
+    @Test
+    void addWalletBalanceIfVersion_walletChangedConcurrently_notUpdated() {
+        Wallet wallet = walletDao.saveAndFlush(
+                new Wallet("Versioned", 10.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        // Concurrent single transaction change
+        walletDao.addOwnedWalletBalance(wallet.getId(),
+                                        getTestUserId(),
+                                        BigDecimal.ONE,
+                                        BigDecimal.ONE,
+                                        Currency.getNames(CurrencyType.CRYPTO));
+
+        assertTrue(walletDao.addWalletBalanceIfVersion(wallet.getId(),
+                                                       wallet.getVersion(),
+                                                       BigDecimal.TEN).isEmpty(),
+                   "Balance change must not overwrite the concurrent change");
+        BigDecimal balance = walletDao.addWalletBalanceIfVersion(wallet.getId(),
+                                                                 wallet.getVersion() + 1,
+                                                                 BigDecimal.TEN).orElseThrow();
+        assertEquals(0, new BigDecimal("21").compareTo(balance));
+    }
+
+    @Test
+    void addOwnedWalletBalance_basicCurrency() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Basic", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        Optional<String> result = walletDao.addOwnedWalletBalance(wallet.getId(),
+                                                                  getTestUserId(),
+                                                                  BigDecimal.valueOf(-0.12),
+                                                                  BigDecimal.valueOf(-0.1234),
+                                                                  List.of("BTC"));
+
+        assertEquals(Optional.of("USD"), result);
+        assertEquals(0.88, getWalletBalance(wallet.getId()));
+    }
+
+    @Test
+    void addOwnedWalletBalance_cryptoCurrency() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Crypto", 1.0, Currency.BTC, DbUserFiller.getTestUser()));
+
+        Optional<String> result = walletDao.addOwnedWalletBalance(wallet.getId(),
+                                                                  getTestUserId(),
+                                                                  BigDecimal.valueOf(0.12),
+                                                                  BigDecimal.valueOf(0.1234),
+                                                                  List.of("BTC"));
+
+        assertEquals(Optional.of("BTC"), result);
+        assertEquals(1.1234, getWalletBalance(wallet.getId()));
+    }
+
+    @Test
+    void addOwnedWalletBalance_notOwner_notUpdated() {
+        Wallet wallet = walletDao.save(
+                new Wallet("Not owned", 1.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        Optional<String> result = walletDao.addOwnedWalletBalance(wallet.getId(),
+                                                                  getTestUserId() + 1,
+                                                                  BigDecimal.ONE,
+                                                                  BigDecimal.ONE,
+                                                                  List.of("BTC"));
+
+        assertTrue(result.isEmpty(), "Wallet of another user must not be updated");
+        assertEquals(1.0, getWalletBalance(wallet.getId()));
+    }
+
+    // findById of WalletDao locks the wallet, so it can't be used without a transaction
+    private double getWalletBalance(long walletId) {
+        return walletDao.findAllById(List.of(walletId)).get(0).getBalance();
+    }
+
+    /**
+     * Runs 400 transfers between two wallets in 8 threads, half of the threads in each direction.
+     * Fails if any transfer fails, for example on a deadlock.
+     *
+     * @return elapsed time in nanoseconds
+     */
+    private static long runCrossTransfers(long firstId,
+                                          long secondId,
+                                          BiConsumer<Long, Long> transfer
+    ) throws Exception {
+        int writers = 8;
+        int transfersPerWriter = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            boolean forward = i % 2 == 0;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < transfersPerWriter; j++) {
+                    transfer.accept(forward ? firstId : secondId, forward ? secondId : firstId);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown(); // The submitted transfers still run
+        long startNanos = System.nanoTime();
+        start.countDown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        long elapsedNanos = System.nanoTime() - startNanos;
+        for (Future<?> result : results) {
+            result.get(); // Rethrows the failure of a writer
+        }
+        return elapsedNanos;
+    }
+
+}
@@ -0,0 +1,247 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.DbUserFiller;
+import com.danarim.monal.TestContainersConfig;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.AnalyticsRollupDao;
+import com.danarim.monal.money.persistence.dao.TransactionCategoryDao;
+import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.WalletDao;
+import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
+import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.CreateTransactionDto;
+import com.danarim.monal.money.web.dto.CreateTransferDto;
+import com.danarim.monal.money.web.dto.TransactionBatchOperationDto;
+import com.danarim.monal.money.web.dto.UpdateTransactionDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.danarim.monal.DbUserFiller.getTestUserId;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the transaction services against a real database, including stress tests of concurrent
+ * changes of the same wallets.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({TestContainersConfig.class, DbUserFiller.class, SimpleMeterRegistry.class,
+        WalletWriteTemplate.class, BalanceHistoryCache.class, AnalyticsCache.class,
+        WalletServiceImpl.class, TransactionCategoryServiceImpl.class,
+        TransactionServiceImpl.class, TransferServiceImpl.class})
+@ActiveProfiles("test")
+class TransactionServiceIT {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransactionDao transactionDao;
+
+    @Autowired
+    private WalletDao walletDao;
+
+    @Autowired
+    private TransactionCategoryDao transactionCategoryDao;
+
+    @Autowired
+    private AnalyticsRollupDao analyticsRollupDao;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * A single update moves the transaction between two wallets while batches change the same
+     * transaction. Without a common lock order the single update locks the transaction before the
+     * wallets and the batch locks the wallets before the transaction, so they deadlock.
+     */
+    @Test
+    void updateTransactionAndBatch_sameTransactionAndWallets_noDeadlock() throws Exception {
+        TransactionCategory category = transactionCategoryDao.save(
+                new TransactionCategory("Stress outcome", TransactionType.OUTCOME, null));
+        // The balance includes the transaction
+        Wallet first = walletDao.saveAndFlush(
+                new Wallet("Stress 1", -1.0, Currency.USD, DbUserFiller.getTestUser()));
+        Wallet second = walletDao.saveAndFlush(
+                new Wallet("Stress 2", 0.0, Currency.USD, DbUserFiller.getTestUser()));
+        long transactionId = transactionDao.saveAndFlush(
+                new Transaction("Stress", new Date(), 1.0, category, first)).getId();
+        long categoryId = category.getId();
+
+        int writers = 8;
+        int changesPerWriter = 25;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            boolean batch = i % 2 == 0;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < changesPerWriter; j++) {
+                    long walletId = j % 2 == 0 ? second.getId() : first.getId();
+                    double amount = j + 1.0;
+                    if (batch) {
+                        transactionService.applyTransactionBatch(List.of(
+                                new TransactionBatchOperationDto(
+                                        TransactionBatchOperationType.UPDATE, transactionId,
+                                        "Batch", new Date(), amount, categoryId, walletId)
+                        ), getTestUserId());
+                    } else {
+                        transactionService.updateTransaction(new UpdateTransactionDto(
+                                transactionId, "Single", new Date(), amount, categoryId, walletId
+                        ), getTestUserId());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        for (Future<?> result : results) {
+            result.get(); // Rethrows the failure of a writer
+        }
+
+        // Balances match the final state of the transaction, so no change was lost
+        Transaction transaction = transactionDao.findById(transactionId).orElseThrow();
+        assertBalance(first.getId(), transaction.getWallet().getId() == first.getId()
+                                     ? -transaction.getAmount()
+                                     : 0.0);
+        assertBalance(second.getId(), transaction.getWallet().getId() == second.getId()
+                                      ? -transaction.getAmount()
+                                      : 0.0);
+        // Deadlocks are prevented by the lock order, not hidden by the retries
+        Counter deadlocks = meterRegistry.find(WalletWriteTemplate.RETRIES_METRIC)
+                .tag("cause", "deadlock")
+                .counter();
+        assertEquals(0.0, deadlocks.count());
+    }
+
+    @Test
+    void createUpdateDeleteTransaction_analyticsRollupsFollow() {
+        TransactionCategory food = transactionCategoryDao.save(
+                new TransactionCategory("Rollup food", TransactionType.OUTCOME, null));
+        TransactionCategory health = transactionCategoryDao.save(
+                new TransactionCategory("Rollup health", TransactionType.OUTCOME, null));
+        Wallet wallet = walletDao.saveAndFlush(
+                new Wallet("Rollups", 0.0, Currency.USD, DbUserFiller.getTestUser()));
+
+        Transaction first = transactionService.createTransaction(new CreateTransactionDto(
+                null, prepareDate("2021-03-15T10:00:00Z"), 2.5, food.getId(), wallet.getId()
+        ), getTestUserId());
+        Transaction second = transactionService.createTransaction(new CreateTransactionDto(
+                null, prepareDate("2021-03-15T12:00:00Z"), 1.0, food.getId(), wallet.getId()
+        ), getTestUserId());
+        // Moved to another day and category
+        transactionService.updateTransaction(new UpdateTransactionDto(
+                second.getId(), null, prepareDate("2021-03-16T08:00:00Z"), 4.0, health.getId(),
+                wallet.getId()
+        ), getTestUserId());
+        transactionService.deleteTransaction(first.getId(), getTestUserId());
+
+        List<AnalyticsDbDto> result = analyticsRollupDao.getAnalyticsBetweenDays(
+                AnalyticsPeriod.DAILY.getTruncUnit(),
+                wallet.getId(),
+                LocalDate.of(2021, 3, 1),
+                LocalDate.of(2021, 3, 31)
+        );
+
+        // The rollup of the first day has no transactions left
+        assertEquals(1, result.size());
+        assertEquals(LocalDate.of(2021, 3, 16), result.get(0).getGroupedDate());
+        assertEquals("Rollup health", result.get(0).getCategoryName());
+        assertEquals(4.0, result.get(0).getSum());
+    }
+
+    @Test
+    void changeTransferLeg_rejectedAndBothLegsKept() {
+        Wallet from = walletDao.saveAndFlush(
+                new Wallet("Transfer from", 10.0, Currency.USD, DbUserFiller.getTestUser()));
+        Wallet to = walletDao.saveAndFlush(
+                new Wallet("Transfer to", 0.0, Currency.USD, DbUserFiller.getTestUser()));
+        Transfer transfer = transferService.createTransfer(new CreateTransferDto(
+                null, new Date(), 4.0, from.getId(), to.getId()
+        ), getTestUserId());
+        Transaction outcome = transfer.getOutcome();
+        Transaction income = transfer.getIncome();
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.deleteTransaction(outcome.getId(), getTestUserId()));
+        assertEquals("validation.transaction.transfer-leg", e.getMessageCode());
+
+        e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.updateTransaction(new UpdateTransactionDto(
+                        income.getId(), null, new Date(), 40.0, income.getCategory().getId(),
+                        to.getId()
+                ), getTestUserId()));
+        assertEquals("validation.transaction.transfer-leg", e.getMessageCode());
+
+        e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(List.of(
+                        new TransactionBatchOperationDto(
+                                TransactionBatchOperationType.DELETE, income.getId(),
+                                null, null, null, null, null)
+                ), getTestUserId()));
+        assertEquals("validation.transaction.batch.transfer-leg", e.getMessageCode());
+
+        assertTrue(transactionDao.existsById(outcome.getId()));
+        assertTrue(transactionDao.existsById(income.getId()));
+        assertBalance(from.getId(), 6.0);
+        assertBalance(to.getId(), 4.0);
+    }
+
+    private static Date prepareDate(String date) {
+        return Date.from(Instant.parse(date));
+    }
+
+    private void assertBalance(long walletId, double expected) {
+        BigDecimal balance = jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, walletId);
+
+        assertEquals(0, BigDecimal.valueOf(expected).compareTo(balance),
+                     "Expected %s, but was %s".formatted(expected, balance));
+    }
+
+}
@@ -4,6 +4,7 @@ import com.danarim.monal.config.WebConfig;
 import com.danarim.monal.config.security.auth.AuthUtil;
 import com.danarim.monal.failhandler.RestExceptionHandler;
 import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.service.AnalyticsService;
 import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
 import org.junit.jupiter.api.AfterAll;
@@ -115,4 +116,25 @@ class AnalyticsControllerIT {
                 .andExpect(jsonPath("$.outcome['2021'].Test").value(1.0));
     }
 
+    @Test
+    void getUserAnalytics_byCurrency() throws Exception {
+        Map<Currency, ViewAnalyticsDto> analytics = Map.of(
+                Currency.USD,
+                new ViewAnalyticsDto(Map.of(), Map.of("2021-01", Map.of("Test", 1.0))),
+                Currency.UAH,
+                new ViewAnalyticsDto(Map.of("2021-01", Map.of("Test", 2.0)), Map.of())
+        );
+        when(analyticsService.getUserAnalytics(eq(AnalyticsPeriod.MONTHLY),
+                                               any(Date.class),
+                                               eq(1L)))
+                .thenReturn(analytics);
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/analytics/user")
+                                .param("date", "2021-05")
+                                .param("period", "MONTHLY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.USD.outcome['2021-01'].Test").value(1.0))
+                .andExpect(jsonPath("$.UAH.income['2021-01'].Test").value(2.0));
+    }
+
 }
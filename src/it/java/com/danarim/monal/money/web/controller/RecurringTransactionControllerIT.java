@@ -0,0 +1,129 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.service.RecurringTransactionService;
+import com.danarim.monal.money.web.dto.CreateRecurringTransactionDto;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static com.danarim.monal.TestUtils.deleteExt;
+import static com.danarim.monal.TestUtils.getExt;
+import static com.danarim.monal.TestUtils.postExt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(RecurringTransactionController.class)
+@ContextConfiguration(classes = {RecurringTransactionController.class,
+        RestExceptionHandler.class})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+class RecurringTransactionControllerIT {
+
+    private static final MockedStatic<AuthUtil> authUtilMockedStatic = mockStatic(AuthUtil.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private RecurringTransactionService recurringTransactionService;
+
+    @BeforeAll
+    static void beforeAll() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        when(AuthUtil.getLoggedUserId()).thenReturn(1L);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        authUtilMockedStatic.close();
+    }
+
+    @Test
+    void createRecurringTransaction() throws Exception {
+        CreateRecurringTransactionDto dto = new CreateRecurringTransactionDto(
+                "Rent", 300.0, 2L, 1L, "0 0 9 1 * *", null);
+
+        when(recurringTransactionService.createRecurringTransaction(
+                any(CreateRecurringTransactionDto.class), eq(1L)))
+                .thenReturn(new RecurringTransaction("Rent",
+                                                     300.0,
+                                                     new TransactionCategory(2L),
+                                                     new Wallet(1L),
+                                                     "0 0 9 1 * *",
+                                                     new Date(0L)));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/recurring-transaction", dto))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.description").value("Rent"))
+                .andExpect(jsonPath("$.amount").value(300.0))
+                .andExpect(jsonPath("$.categoryId").value(2L))
+                .andExpect(jsonPath("$.walletId").value(1L))
+                .andExpect(jsonPath("$.cron").value("0 0 9 1 * *"))
+                .andExpect(jsonPath("$.nextOccurrence").value("1970-01-01 00:00"));
+    }
+
+    @Test
+    void createRecurringTransaction_blankCron_BadRequest() throws Exception {
+        CreateRecurringTransactionDto dto = new CreateRecurringTransactionDto(
+                "Rent", 300.0, 2L, 1L, " ", null);
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/recurring-transaction", dto))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.recurring.cron.notblank"))
+                .andExpect(jsonPath("$[0].fieldName").value("cron"));
+
+        verify(recurringTransactionService, never()).createRecurringTransaction(any(), eq(1L));
+    }
+
+    @Test
+    void getWalletRecurringTransactions() throws Exception {
+        when(recurringTransactionService.getWalletRecurringTransactions(1L, 1L))
+                .thenReturn(List.of(new RecurringTransaction(null,
+                                                             1.0,
+                                                             new TransactionCategory(2L),
+                                                             new Wallet(1L),
+                                                             "@daily",
+                                                             null)));
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/recurring-transaction")
+                                .param("walletId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].cron").value("@daily"))
+                .andExpect(jsonPath("$[0].nextOccurrence").isEmpty());
+    }
+
+    @Test
+    void deleteRecurringTransaction() throws Exception {
+        mockMvc.perform(deleteExt(WebConfig.API_V1_PREFIX + "/recurring-transaction")
+                                .param("recurringTransactionId", "1"))
+                .andExpect(status().isOk());
+
+        verify(recurringTransactionService).deleteRecurringTransaction(1L, 1L);
+    }
+
+}
@@ -3,14 +3,24 @@ package com.danarim.monal.money.web.controller;
 import com.danarim.monal.config.WebConfig;
 import com.danarim.monal.config.security.auth.AuthUtil;
 import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.persistence.dao.IdempotencyKeyDao;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
 import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
 import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.service.IdempotencyService;
+import com.danarim.monal.money.service.IdempotencyServiceImpl;
 import com.danarim.monal.money.service.TransactionService;
+import com.danarim.monal.money.service.WalletWriteTemplate;
 import com.danarim.monal.money.web.dto.CreateTransactionDto;
+import com.danarim.monal.money.web.dto.TransactionBatchOperationDto;
+import com.danarim.monal.money.web.dto.TransactionPageCursor;
 import com.danarim.monal.money.web.dto.UpdateTransactionDto;
 import com.danarim.monal.user.persistence.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -22,11 +32,13 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
 import static com.danarim.monal.TestUtils.deleteExt;
@@ -34,14 +46,27 @@ import static com.danarim.monal.TestUtils.getExt;
 import static com.danarim.monal.TestUtils.postExt;
 import static com.danarim.monal.TestUtils.putExt;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(TransactionController.class)
-@ContextConfiguration(classes = {TransactionController.class, RestExceptionHandler.class})
+@ContextConfiguration(classes = {
+        TransactionController.class,
+        IdempotencyServiceImpl.class,
+        WalletWriteTemplate.class,
+        SimpleMeterRegistry.class,
+        RestExceptionHandler.class
+})
 @AutoConfigureMockMvc(addFilters = false)
 @ActiveProfiles("test")
 class TransactionControllerIT {
@@ -57,6 +82,12 @@ class TransactionControllerIT {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
     @BeforeAll
     static void beforeAll() {
         dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -99,6 +130,63 @@ class TransactionControllerIT {
                 .andExpect(jsonPath("$.walletId").value(dto.walletId()));
     }
 
+    @Test
+    void createTransaction_amountTooLarge_BadRequest() throws Exception {
+        CreateTransactionDto dto = new CreateTransactionDto(
+                "test", new Date(), 1e17, 1L, 1L
+        );
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction", dto))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.transaction.amount.max"))
+                .andExpect(jsonPath("$[0].fieldName").value("amount"));
+        verify(transactionService, never()).createTransaction(any(), anyLong());
+    }
+
+    @Test
+    void createTransaction_retryWithIdempotencyKey_createdOnce() throws Exception {
+        CreateTransactionDto dto = new CreateTransactionDto(
+                "test", new Date(), 1.0, 1L, 1L
+        );
+        when(idempotencyKeyDao.claimKey(eq(1L), eq("create-key"), anyString(), any()))
+                .thenReturn(1);
+        when(transactionService.createTransaction(any(CreateTransactionDto.class), eq(1L)))
+                .thenAnswer(invocation -> {
+                    Transaction transaction = new Transaction(
+                            dto.description(),
+                            dto.date(),
+                            dto.amount(),
+                            new TransactionCategory(dto.categoryId()),
+                            new Wallet(dto.walletId())
+                    );
+                    transaction.setId(1L);
+                    return transaction;
+                });
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction", dto)
+                                    .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER,
+                                            "create-key"))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value(1L))
+                    .andExpect(jsonPath("$.date").value(dateFormatter.format(dto.date())));
+        }
+        verify(transactionService, times(1)).createTransaction(any(CreateTransactionDto.class),
+                                                               eq(1L));
+        verify(idempotencyKeyDao).saveResponse(eq(1L), eq("create-key"), anyString());
+    }
+
+    @Test
+    void deleteTransaction_tooLongIdempotencyKey_BadRequest() throws Exception {
+        mockMvc.perform(deleteExt(WebConfig.API_V1_PREFIX + "/transaction")
+                                .param("transactionId", "1")
+                                .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER,
+                                        "k".repeat(IdempotencyService.MAX_KEY_LENGTH + 1)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.idempotency.key.size"));
+
+        verify(transactionService, never()).deleteTransaction(anyLong(), anyLong());
+    }
+
     @Test
     void getTransactionBetweenDates() throws Exception {
         List<Transaction> transactions = prepareTransaction();
@@ -107,7 +195,7 @@ class TransactionControllerIT {
                                                             any(Date.class),
                                                             eq(1L),
                                                             eq(1L)))
-                .thenReturn(transactions);
+                .thenReturn(toDbDtos(transactions));
 
         mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/date")
                                 .param("from", "2020-01-01 00")
@@ -127,6 +215,128 @@ class TransactionControllerIT {
                                    .value(transactions.get(1).getWallet().getId()));
     }
 
+    @Test
+    void getTransactionsPage() throws Exception {
+        List<Transaction> transactions = prepareTransaction();
+        transactions.get(0).setId(1L);
+        transactions.get(1).setId(2L);
+
+        when(transactionService.getTransactionsPageBetweenDates(any(Date.class),
+                                                                any(Date.class),
+                                                                eq(1L),
+                                                                isNull(),
+                                                                eq(1),
+                                                                eq(1L)))
+                .thenReturn(toDbDtos(List.of(transactions.get(1), transactions.get(0))));
+
+        String next = new TransactionPageCursor(transactions.get(1).getDate(), 2L).encode();
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/page")
+                                .param("from", "2020-01-01 00")
+                                .param("to", "2020-01-02 00")
+                                .param("walletId", "1")
+                                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].id").value(2L))
+                .andExpect(jsonPath("$.next").value(next));
+    }
+
+    @Test
+    void getTransactionsPage_lastPage_nextIsNull() throws Exception {
+        List<Transaction> transactions = prepareTransaction();
+        TransactionPageCursor cursor =
+                new TransactionPageCursor(transactions.get(1).getDate(), 2L);
+
+        when(transactionService.getTransactionsPageBetweenDates(any(Date.class),
+                                                                any(Date.class),
+                                                                eq(1L),
+                                                                eq(cursor),
+                                                                eq(50),
+                                                                eq(1L)))
+                .thenReturn(toDbDtos(List.of(transactions.get(0))));
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/page")
+                                .param("from", "2020-01-01 00")
+                                .param("to", "2020-01-02 00")
+                                .param("walletId", "1")
+                                .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void getTransactionsPage_invalidCursor_BadRequest() throws Exception {
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/page")
+                                .param("from", "2020-01-01 00")
+                                .param("to", "2020-01-02 00")
+                                .param("walletId", "1")
+                                .param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode")
+                                   .value("validation.transaction.page.cursor.invalid"));
+    }
+
+    @Test
+    void getTransactionsPage_limitTooBig_BadRequest() throws Exception {
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/page")
+                                .param("from", "2020-01-01 00")
+                                .param("to", "2020-01-02 00")
+                                .param("walletId", "1")
+                                .param("limit", "1000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.transaction.page.limit"))
+                .andExpect(jsonPath("$[0].fieldName").value("limit"));
+    }
+
+    @Test
+    void filterTransactions() throws Exception {
+        List<Transaction> transactions = prepareTransaction();
+        transactions.get(0).setId(1L);
+        transactions.get(1).setId(2L);
+
+        when(transactionService.filterTransactions(
+                eq(new TransactionFilter(1L,
+                                         dateFormatter.parse("2020-01-01 00:00"),
+                                         dateFormatter.parse("2020-01-02 00:00"),
+                                         Set.of(3L, 4L),
+                                         1.0,
+                                         null,
+                                         "coff")),
+                isNull(),
+                eq(1),
+                eq(1L)))
+                .thenReturn(toDbDtos(List.of(transactions.get(1), transactions.get(0))));
+
+        String next = new TransactionPageCursor(transactions.get(1).getDate(), 2L).encode();
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/filter")
+                                .param("from", "2020-01-01 00")
+                                .param("to", "2020-01-02 00")
+                                .param("walletId", "1")
+                                .param("categoryIds", "3", "4")
+                                .param("minAmount", "1")
+                                .param("descriptionPrefix", "coff")
+                                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].id").value(2L))
+                .andExpect(jsonPath("$.next").value(next));
+    }
+
+    @Test
+    void filterTransactions_limitTooBig_BadRequest() throws Exception {
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/filter")
+                                .param("from", "2020-01-01 00")
+                                .param("to", "2020-01-02 00")
+                                .param("walletId", "1")
+                                .param("limit", "1000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.transaction.page.limit"))
+                .andExpect(jsonPath("$[0].fieldName").value("limit"));
+    }
+
     @Test
     void deleteTransaction() throws Exception {
         mockMvc.perform(deleteExt(WebConfig.API_V1_PREFIX + "/transaction")
@@ -164,6 +374,51 @@ class TransactionControllerIT {
                 .andExpect(jsonPath("$.walletId").value(transactionDto.walletId()));
     }
 
+    @Test
+    void applyTransactionBatch() throws Exception {
+        List<Transaction> transactions = prepareTransaction();
+        transactions.get(0).setId(1L);
+        transactions.get(1).setId(2L);
+
+        when(transactionService.applyTransactionBatch(anyList(), eq(1L)))
+                .thenReturn(transactions);
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 "test", new Date(), 1.0, 1L, 1L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 2L,
+                                                 null, null, null, null, null)
+        );
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/batch", operations))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].type").value("CREATE"))
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[0].transaction.description").value("test"))
+                .andExpect(jsonPath("$[1].type").value("DELETE"))
+                .andExpect(jsonPath("$[1].id").value(2L))
+                .andExpect(jsonPath("$[1].transaction").doesNotExist());
+    }
+
+    @Test
+    void applyTransactionBatch_emptyBatch_BadRequest() throws Exception {
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/batch", List.of()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.transaction.batch.size"));
+    }
+
+    @Test
+    void applyTransactionBatch_invalidOperation_BadRequest() throws Exception {
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 "test", new Date(), -1.0, 1L, 1L)
+        );
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/batch", operations))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode")
+                                   .value("validation.transaction.amount.positive"));
+    }
+
     private static List<Transaction> prepareTransaction() throws ParseException {
         Wallet wallet = new Wallet("Test", 0.0, Currency.USD, new User(1L));
         wallet.setId(1L);
@@ -186,4 +441,15 @@ class TransactionControllerIT {
         );
     }
 
+    private static List<TransactionDbDto> toDbDtos(List<Transaction> transactions) {
+        return transactions.stream()
+                .map(transaction -> new TransactionDbDto(transaction.getId(),
+                                                         transaction.getDescription(),
+                                                         transaction.getDate(),
+                                                         transaction.getAmount(),
+                                                         transaction.getCategory().getId(),
+                                                         transaction.getWallet().getId()))
+                .toList();
+    }
+
 }
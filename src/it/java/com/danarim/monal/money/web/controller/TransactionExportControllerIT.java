@@ -0,0 +1,100 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.persistence.model.ExportFormat;
+import com.danarim.monal.money.service.TransactionExportService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.danarim.monal.TestUtils.getExt;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TransactionExportController.class)
+@ContextConfiguration(classes = {TransactionExportController.class, RestExceptionHandler.class})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+class TransactionExportControllerIT {
+
+    private static final MockedStatic<AuthUtil> authUtilMockedStatic = mockStatic(AuthUtil.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransactionExportService exportService;
+
+    @BeforeAll
+    static void beforeAll() {
+        when(AuthUtil.getLoggedUserId()).thenReturn(1L);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        authUtilMockedStatic.close();
+    }
+
+    @Test
+    void exportWalletTransactions_csv() throws Exception {
+        String csv = "id,date,amount,categoryId,walletId,description\n";
+        when(exportService.exportWalletTransactions(1L, ExportFormat.CSV, 1L))
+                .thenReturn(out -> out.write(csv.getBytes(StandardCharsets.UTF_8)));
+
+        MvcResult result = mockMvc.perform(
+                        getExt(WebConfig.API_V1_PREFIX + "/transaction/export")
+                                .param("walletId", "1")
+                                .param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                                           "attachment; filename=\"wallet-1-transactions.csv\""))
+                .andExpect(content().string(csv));
+    }
+
+    @Test
+    void exportWalletTransactions_defaultFormatNdjson() throws Exception {
+        when(exportService.exportWalletTransactions(1L, ExportFormat.NDJSON, 1L))
+                .thenReturn(out -> { });
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/export")
+                                .param("walletId", "1"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson"));
+    }
+
+    @Test
+    void exportWalletTransactions_userNotWalletOwner_Forbidden() throws Exception {
+        when(exportService.exportWalletTransactions(2L, ExportFormat.NDJSON, 1L))
+                .thenThrow(new AccessDeniedException("Access denied"));
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/export")
+                                .param("walletId", "2"))
+                .andExpect(status().isForbidden());
+    }
+
+}
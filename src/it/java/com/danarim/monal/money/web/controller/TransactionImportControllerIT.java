@@ -0,0 +1,122 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.service.TransactionImportService;
+import com.danarim.monal.money.web.dto.ImportTransactionDto;
+import com.danarim.monal.money.web.dto.ImportTransactionsResultDto;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.Reader;
+import java.util.Date;
+import java.util.List;
+
+import static com.danarim.monal.TestUtils.postExt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TransactionImportController.class)
+@ContextConfiguration(classes = {TransactionImportController.class, RestExceptionHandler.class})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+class TransactionImportControllerIT {
+
+    private static final MockedStatic<AuthUtil> authUtilMockedStatic = mockStatic(AuthUtil.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransactionImportService importService;
+
+    @BeforeAll
+    static void beforeAll() {
+        when(AuthUtil.getLoggedUserId()).thenReturn(1L);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        authUtilMockedStatic.close();
+    }
+
+    @Test
+    void importTransactions() throws Exception {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto("Coffee", new Date(), 1.0, 1L),
+                new ImportTransactionDto(null, new Date(), 2.0, 1L)
+        );
+        when(importService.importTransactions(eq(1L), anyList(), eq(1L)))
+                .thenReturn(new ImportTransactionsResultDto(1, 1));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/import?walletId=1",
+                                transactions))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.skipped").value(1));
+    }
+
+    @Test
+    void importTransactionsCsv() throws Exception {
+        when(importService.importTransactionsCsv(eq(1L), any(Reader.class), eq(1L)))
+                .thenReturn(new ImportTransactionsResultDto(2, 0));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/import")
+                                .param("walletId", "1")
+                                .contentType("text/csv")
+                                .content("""
+                                         date,amount,categoryId
+                                         2021-01-01 10:05,12.5,1
+                                         2021-01-02 10:05,3,1
+                                         """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.skipped").value(0));
+    }
+
+    @Test
+    void importTransactionsCsv_invalidCsv_BadRequest() throws Exception {
+        when(importService.importTransactionsCsv(eq(1L), any(Reader.class), eq(1L)))
+                .thenThrow(new BadRequestException(
+                        "Missing CSV column categoryId",
+                        "validation.transaction.import.csv.column.missing",
+                        new Object[]{"categoryId"}));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/import")
+                                .param("walletId", "1")
+                                .contentType("text/csv")
+                                .content("date,amount\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].message").exists())
+                .andExpect(jsonPath("$[0].errorCode")
+                                   .value("validation.transaction.import.csv.column.missing"));
+    }
+
+    @Test
+    void importTransactions_userNotWalletOwner_Forbidden() throws Exception {
+        when(importService.importTransactions(eq(2L), anyList(), eq(1L)))
+                .thenThrow(new ActionDeniedException("Access denied"));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transaction/import?walletId=2",
+                                List.of()))
+                .andExpect(status().isForbidden());
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import com.danarim.monal.money.service.TransactionSearchService;
+import com.danarim.monal.money.web.dto.TransactionSearchCursor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+import java.util.List;
+
+import static com.danarim.monal.TestUtils.getExt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TransactionSearchController.class)
+@ContextConfiguration(classes = {TransactionSearchController.class, RestExceptionHandler.class})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+class TransactionSearchControllerIT {
+
+    private static final MockedStatic<AuthUtil> authUtilMockedStatic = mockStatic(AuthUtil.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransactionSearchService searchService;
+
+    @BeforeAll
+    static void beforeAll() {
+        when(AuthUtil.getLoggedUserId()).thenReturn(1L);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        authUtilMockedStatic.close();
+    }
+
+    @Test
+    void searchTransactions() throws Exception {
+        TransactionSearchDbDto first = prepareFound(2L, 0.5f);
+        TransactionSearchDbDto second = prepareFound(1L, 0.25f);
+
+        when(searchService.searchTransactions(eq("coffee"),
+                                              eq(TransactionSearchOrder.RELEVANCE),
+                                              isNull(),
+                                              eq(1),
+                                              eq(1L)))
+                .thenReturn(List.of(first, second));
+
+        String next = new TransactionSearchCursor(
+                0.5f, new Date(first.transaction().dateMillis()), 2L).encode();
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/search")
+                                .param("query", "coffee")
+                                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].id").value(2L))
+                .andExpect(jsonPath("$.transactions[0].description").value("Coffee"))
+                .andExpect(jsonPath("$.next").value(next));
+    }
+
+    @Test
+    void searchTransactions_lastPage_nextIsNull() throws Exception {
+        TransactionSearchCursor cursor = new TransactionSearchCursor(0.5f, new Date(1000L), 2L);
+
+        when(searchService.searchTransactions(eq("coffee"),
+                                              eq(TransactionSearchOrder.DATE),
+                                              eq(cursor),
+                                              eq(50),
+                                              eq(1L)))
+                .thenReturn(List.of(prepareFound(1L, 0.25f)));
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/search")
+                                .param("query", "coffee")
+                                .param("order", "DATE")
+                                .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void searchTransactions_blankQuery_BadRequest() throws Exception {
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/search")
+                                .param("query", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode")
+                                   .value("validation.transaction.search.query.notblank"))
+                .andExpect(jsonPath("$[0].fieldName").value("query"));
+    }
+
+    @Test
+    void searchTransactions_invalidCursor_BadRequest() throws Exception {
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/transaction/search")
+                                .param("query", "coffee")
+                                .param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode")
+                                   .value("validation.transaction.page.cursor.invalid"));
+    }
+
+    private static TransactionSearchDbDto prepareFound(long id, float rank) {
+        return new TransactionSearchDbDto(
+                new TransactionDbDto(id, "Coffee", 1000L * id, 2.5, 1L, 1L),
+                rank
+        );
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.persistence.dao.IdempotencyKeyDao;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.service.IdempotencyServiceImpl;
+import com.danarim.monal.money.service.TransferService;
+import com.danarim.monal.money.service.WalletWriteTemplate;
+import com.danarim.monal.money.web.dto.CreateTransferDto;
+import com.danarim.monal.user.persistence.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static com.danarim.monal.TestUtils.postExt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = TransferController.class)
+@ContextConfiguration(classes = {
+        TransferController.class,
+        IdempotencyServiceImpl.class,
+        WalletWriteTemplate.class,
+        SimpleMeterRegistry.class,
+        RestExceptionHandler.class
+})
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+class TransferControllerIT {
+
+    private static final MockedStatic<AuthUtil> authUtilMockedStatic = mockStatic(AuthUtil.class);
+
+    private static final Date DATE = Date.from(Instant.parse("2023-03-03T12:00:00Z"));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransferService transferService;
+
+    @MockBean
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeAll
+    static void beforeAll() {
+        when(AuthUtil.getLoggedUserId()).thenReturn(1L);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        authUtilMockedStatic.close();
+    }
+
+    @Test
+    void createTransfer() throws Exception {
+        CreateTransferDto transferDto = new CreateTransferDto("Savings", DATE, 12.5, 1L, 2L);
+
+        when(transferService.createTransfer(transferDto, 1L))
+                .thenReturn(new Transfer(prepareTransaction(3L, 1L), prepareTransaction(4L, 2L)));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transfer", transferDto))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.outcome.id").value(3L))
+                .andExpect(jsonPath("$.outcome.walletId").value(1L))
+                .andExpect(jsonPath("$.outcome.amount").value(12.5))
+                .andExpect(jsonPath("$.income.id").value(4L))
+                .andExpect(jsonPath("$.income.walletId").value(2L))
+                .andExpect(jsonPath("$.income.amount").value(12.5));
+
+        verify(transferService).createTransfer(transferDto, 1L);
+    }
+
+    @Test
+    void createTransfer_negativeAmount_BadRequest() throws Exception {
+        CreateTransferDto transferDto = new CreateTransferDto("Savings", DATE, -1.0, 1L, 2L);
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/transfer", transferDto))
+                .andExpect(status().isBadRequest());
+
+        verify(transferService, never()).createTransfer(any(), anyLong());
+    }
+
+    private static Transaction prepareTransaction(long id, long walletId) {
+        Wallet wallet = new Wallet("test" + walletId, 0.0, Currency.USD, new User(1L));
+        wallet.setId(walletId);
+
+        Transaction transaction = new Transaction("Savings", DATE, 12.5,
+                                                  new TransactionCategory(5L), wallet);
+        transaction.setId(id);
+        return transaction;
+    }
+
+}
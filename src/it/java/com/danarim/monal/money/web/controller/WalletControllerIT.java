@@ -3,11 +3,18 @@ package com.danarim.monal.money.web.controller;
 import com.danarim.monal.config.WebConfig;
 import com.danarim.monal.config.security.auth.AuthUtil;
 import com.danarim.monal.failhandler.RestExceptionHandler;
+import com.danarim.monal.money.persistence.dao.IdempotencyKeyDao;
 import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.service.BalanceHistoryService;
+import com.danarim.monal.money.service.IdempotencyService;
+import com.danarim.monal.money.service.IdempotencyServiceImpl;
 import com.danarim.monal.money.service.WalletService;
+import com.danarim.monal.money.service.WalletWriteTemplate;
 import com.danarim.monal.money.web.dto.CreateWalletDto;
+import com.danarim.monal.money.web.dto.ViewBalanceHistoryDto;
 import com.danarim.monal.user.persistence.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -19,21 +26,35 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
 import java.util.List;
 
 import static com.danarim.monal.TestUtils.deleteExt;
 import static com.danarim.monal.TestUtils.getExt;
 import static com.danarim.monal.TestUtils.postExt;
 import static com.danarim.monal.TestUtils.putExt;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = WalletController.class)
-@ContextConfiguration(classes = {WalletController.class, RestExceptionHandler.class})
+@ContextConfiguration(classes = {
+        WalletController.class,
+        IdempotencyServiceImpl.class,
+        WalletWriteTemplate.class,
+        SimpleMeterRegistry.class,
+        RestExceptionHandler.class
+})
 @AutoConfigureMockMvc(addFilters = false)
 @ActiveProfiles("test")
 class WalletControllerIT {
@@ -46,6 +67,15 @@ class WalletControllerIT {
     @MockBean
     private WalletService walletService;
 
+    @MockBean
+    private BalanceHistoryService balanceHistoryService;
+
+    @MockBean
+    private IdempotencyKeyDao idempotencyKeyDao;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
     @BeforeAll
     static void beforeAll() {
         when(AuthUtil.getLoggedUserId()).thenReturn(1L);
@@ -77,6 +107,44 @@ class WalletControllerIT {
         verify(walletService).createWallet(createWalletDto, 1L);
     }
 
+    @Test
+    void createWallet_retryWithIdempotencyKey_createdOnce() throws Exception {
+        CreateWalletDto createWalletDto = new CreateWalletDto("Test", 23.0, "USD");
+
+        when(idempotencyKeyDao.claimKey(eq(1L), eq("create-key"), anyString(), any()))
+                .thenReturn(1);
+        when(walletService.createWallet(createWalletDto, 1L))
+                .thenReturn(new Wallet("Test", 23.0, Currency.USD, new User(1L)));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/wallet", createWalletDto)
+                                    .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER,
+                                            "create-key"))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.name").value(createWalletDto.name()));
+        }
+        verify(walletService, times(1)).createWallet(createWalletDto, 1L);
+    }
+
+    @Test
+    void createWallet_idempotencyKeyUsedForAnotherWallet_BadRequest() throws Exception {
+        when(idempotencyKeyDao.claimKey(eq(1L), eq("reused-key"), anyString(), any()))
+                .thenReturn(1);
+        when(walletService.createWallet(any(CreateWalletDto.class), eq(1L)))
+                .thenReturn(new Wallet("Test", 23.0, Currency.USD, new User(1L)));
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/wallet",
+                                new CreateWalletDto("Test", 23.0, "USD"))
+                                .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, "reused-key"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(postExt(WebConfig.API_V1_PREFIX + "/wallet",
+                                new CreateWalletDto("Test2", 23.0, "USD"))
+                                .header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, "reused-key"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$[0].errorCode").value("validation.idempotency.key.reused"));
+    }
+
     @Test
     void getUserWallets() throws Exception {
         List<Wallet> wallets = List.of(
@@ -109,6 +177,36 @@ class WalletControllerIT {
                 .andExpect(jsonPath("$").value(42L));
     }
 
+    @Test
+    void getWalletBalance() throws Exception {
+        Date date = Date.from(Instant.parse("2023-03-03T12:00:00Z"));
+
+        when(walletService.getWalletBalanceAt(1L, date, 1L)).thenReturn(12.5);
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/wallet/balance")
+                                .param("walletId", "1")
+                                .param("date", "2023-03-03T12:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(12.5));
+    }
+
+    @Test
+    void getWalletBalanceHistory() throws Exception {
+        LocalDate from = LocalDate.of(2023, 3, 1);
+
+        when(balanceHistoryService.getBalanceHistory(1L, from, LocalDate.of(2023, 3, 3), 1L))
+                .thenReturn(new ViewBalanceHistoryDto(from, new double[] {10.0, 12.5, 12.5}));
+
+        mockMvc.perform(getExt(WebConfig.API_V1_PREFIX + "/wallet/balanceHistory")
+                                .param("walletId", "1")
+                                .param("from", "2023-03-01")
+                                .param("to", "2023-03-03"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from").value("2023-03-01"))
+                .andExpect(jsonPath("$.balances.length()").value(3))
+                .andExpect(jsonPath("$.balances[1]").value(12.5));
+    }
+
     @Test
     void updateWalletName() throws Exception {
         when(walletService.updateWalletName(1L, "Test", 1L))
@@ -0,0 +1,8 @@
+-- Data migration of DataMigrationPopulatorIT. Every run adds one row.
+
+CREATE TABLE IF NOT EXISTS data_migration_test
+(
+    id SERIAL PRIMARY KEY
+);
+
+INSERT INTO data_migration_test DEFAULT VALUES;
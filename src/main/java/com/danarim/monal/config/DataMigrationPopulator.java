@@ -0,0 +1,80 @@
+package com.danarim.monal.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptException;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Runs one-time data migrations, for example backfills of tables that are maintained by the
+ * application. Unlike the init scripts, a migration is run only once per database: its name is
+ * recorded in the {@code data_migration} table in the same transaction as the migration.
+ *
+ * <p>If several instances start at once, the first one locks the name of the migration by its
+ * insert, the others wait for its commit and then skip the migration.
+ */
+public class DataMigrationPopulator implements DatabasePopulator {
+
+    private static final Log logger = LogFactory.getLog(DataMigrationPopulator.class);
+
+    private static final String CLAIM_MIGRATION_SQL =
+            "INSERT INTO data_migration (name) VALUES (?) ON CONFLICT DO NOTHING";
+
+    private final List<String> scripts;
+
+    /**
+     * Creates a populator of the migration scripts.
+     *
+     * @param scripts names of the scripts in the {@code /sql} directory, in the order to run
+     */
+    public DataMigrationPopulator(List<String> scripts) {
+        this.scripts = List.copyOf(scripts);
+    }
+
+    @Override
+    public void populate(Connection connection) throws SQLException, ScriptException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (String script : scripts) {
+                migrate(connection, script);
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void migrate(Connection connection, String script) throws SQLException {
+        try {
+            if (claimMigration(connection, script)) {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource("/sql/" + script));
+                logger.info("Data migration %s is applied".formatted(script));
+            }
+            connection.commit();
+        } catch (SQLException | ScriptException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the migration as applied.
+     *
+     * @return false if the migration was already applied
+     */
+    private static boolean claimMigration(Connection connection, String script)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(CLAIM_MIGRATION_SQL)) {
+            statement.setString(1, script);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ReloadableResourceBundleMessageSource;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.CompositeDatabasePopulator;
 import org.springframework.jdbc.datasource.init.DataSourceInitializer;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -50,7 +51,17 @@ public class WebConfig implements WebMvcConfigurer {
     // Public because it is used in tests.
     public static final List<String> SQL_INIT_SCRIPTS = List.of(
             "data-roles.sql",
-            "data-categories.sql"
+            "data-categories.sql",
+            "schema-transaction-search.sql",
+            "schema-transaction-filter.sql",
+            "schema-covering-indexes.sql",
+            "schema-data-migration.sql"
+    );
+
+    // One-time data migrations, run after the init scripts. Public because it is used in tests.
+    public static final List<String> SQL_MIGRATION_SCRIPTS = List.of(
+            "data-balance-checkpoints.sql",
+            "data-analytics-rollups.sql"
     );
 
     private static final List<String> FRONTEND_URLS = List.of(
@@ -138,7 +149,8 @@ public class WebConfig implements WebMvcConfigurer {
     }
 
     /**
-     * Bean for data source. It is used for database initialization.
+     * Bean for data source. It is used for database initialization: the init scripts are run on
+     * every start, the data migrations only once.
      *
      * @param dataSource DataSource
      *
@@ -156,7 +168,8 @@ public class WebConfig implements WebMvcConfigurer {
 
         DataSourceInitializer sourceInitializer = new DataSourceInitializer();
         sourceInitializer.setDataSource(dataSource);
-        sourceInitializer.setDatabasePopulator(resourceDbPopulator);
+        sourceInitializer.setDatabasePopulator(new CompositeDatabasePopulator(
+                resourceDbPopulator, new DataMigrationPopulator(SQL_MIGRATION_SCRIPTS)));
         return sourceInitializer;
     }
 
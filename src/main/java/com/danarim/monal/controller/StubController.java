@@ -5,6 +5,7 @@ import com.danarim.monal.exceptions.ActionDeniedException;
 import com.danarim.monal.exceptions.BadFieldException;
 import com.danarim.monal.exceptions.BadRequestException;
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.mail.MailSendException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.annotation.Secured;
@@ -60,6 +61,11 @@ public class StubController {
         throw new MailSendException("failed to send mail");
     }
 
+    @GetMapping("/concurrentChangeStub")
+    public String concurrentChangeStub() {
+        throw new OptimisticLockingFailureException("concurrent change stub");
+    }
+
     @GetMapping("/internalErrorStub")
     public String internalErrorStub() {
         throw new RuntimeException("internal error stub"); // Unexpected error
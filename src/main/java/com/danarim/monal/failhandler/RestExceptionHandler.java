@@ -10,6 +10,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -251,6 +252,31 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
                                     HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Handles {@link OptimisticLockingFailureException} thrown when data is changed by another
+     * request concurrently and all retries failed. The client can repeat the request.
+     *
+     * @param e       exception caused by concurrent change.
+     * @param request request where exception occurred.
+     *
+     * @return response with a list of {@link ErrorResponse} with one element.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    protected ResponseEntity<List<ErrorResponse>> handleOptimisticLockingFailureException(
+            OptimisticLockingFailureException e,
+            WebRequest request
+    ) {
+        rexLogger.warn(LOG_TEMPLATE.formatted(e.getClass(), request.getContextPath(),
+                                              e.getMessage()), e);
+
+        Locale locale = LocaleContextHolder.getLocale();
+        String message = messages.getMessage("error.concurrent-change", null, locale);
+
+        ErrorResponse errorResponse = ErrorResponse.globalError("error.concurrent-change", message);
+
+        return new ResponseEntity<>(Collections.singletonList(errorResponse), HttpStatus.CONFLICT);
+    }
+
     /**
      * Handles {@link HttpMessageNotWritableException}. Needed to be overridden because default
      * implementation returns html page with exception message.
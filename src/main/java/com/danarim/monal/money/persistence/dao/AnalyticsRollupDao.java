@@ -0,0 +1,110 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
+import com.danarim.monal.money.persistence.dto.UserAnalyticsDbDto;
+import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.AnalyticsRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DAO for {@link AnalyticsRollup AnalyticsRollup}.
+ */
+public interface AnalyticsRollupDao extends JpaRepository<AnalyticsRollup, Long>,
+        AnalyticsRollupUpsertDao {
+
+    /**
+     * Used to get analytics for a wallet for a specific period. The result is grouped by date and
+     * category. Summed from the daily rollups, so a year costs at most one row per day and
+     * category instead of one row per transaction.
+     *
+     * <p>Days are cut to their groups with {@code date_trunc}, so no row is formatted and the
+     * groups are formatted by {@link AnalyticsPeriod#format}. Rollups are first summed by group
+     * and category ID with an index-only scan of the covering index from
+     * {@code schema-covering-indexes.sql}, then the few sums are joined with the categories.
+     *
+     * @param truncUnit field of {@code date_trunc} to group by. Use
+     *                  {@link AnalyticsPeriod#getTruncUnit} to get the field for the period.
+     * @param walletId  wallet ID to get analytics for
+     * @param from      first day in UTC
+     * @param to        last day in UTC (inclusive)
+     *
+     * @return {@link AnalyticsDbDto} analytics data (grouped by date, grouped by category name and
+     *         type, sum of amounts) ordered by date and category name
+     */
+    @Query(
+            value = """
+                    SELECT r.grouped_date AS groupeddate,
+                           c.name AS categoryname,
+                           c.type AS categorytype,
+                           CAST(SUM(r.amount) AS DOUBLE PRECISION) AS sum
+                      FROM (SELECT CAST(date_trunc(:truncUnit, CAST(r.day AS TIMESTAMP)) AS DATE)
+                                   AS grouped_date,
+                                   r.category_id,
+                                   SUM(r.amount) AS amount
+                              FROM analytics_rollup AS r
+                             WHERE r.wallet_id = :walletId AND r.day BETWEEN :from AND :to
+                             GROUP BY 1, 2
+                            HAVING SUM(r.transaction_count) > 0) AS r
+                           INNER JOIN transaction_category AS c ON c.id = r.category_id
+                     GROUP BY r.grouped_date, c.name, c.type
+                     ORDER BY r.grouped_date, c.name
+                    """,
+            nativeQuery = true
+    )
+    List<AnalyticsDbDto> getAnalyticsBetweenDays(
+            String truncUnit,
+            long walletId,
+            LocalDate from,
+            LocalDate to
+    );
+
+    /**
+     * Used to get analytics of all wallets of a user for a specific period in one query. Same as
+     * {@link #getAnalyticsBetweenDays}, but the rollups of every wallet of the user are read by
+     * the covering index and the sums are grouped by currency too, because amounts in different
+     * currencies can't be added.
+     *
+     * @param truncUnit field of {@code date_trunc} to group by. Use
+     *                  {@link AnalyticsPeriod#getTruncUnit} to get the field for the period.
+     * @param userId    ID of the user to get analytics for
+     * @param from      first day in UTC
+     * @param to        last day in UTC (inclusive)
+     *
+     * @return {@link UserAnalyticsDbDto} analytics data (grouped by currency, date, category name
+     *         and type, sum of amounts) ordered by currency, date and category name
+     */
+    @Query(
+            value = """
+                    SELECT r.currency,
+                           r.grouped_date AS groupeddate,
+                           c.name AS categoryname,
+                           c.type AS categorytype,
+                           CAST(SUM(r.amount) AS DOUBLE PRECISION) AS sum
+                      FROM (SELECT w.currency,
+                                   CAST(date_trunc(:truncUnit, CAST(r.day AS TIMESTAMP)) AS DATE)
+                                   AS grouped_date,
+                                   r.category_id,
+                                   SUM(r.amount) AS amount
+                              FROM wallet AS w
+                                   INNER JOIN analytics_rollup AS r ON r.wallet_id = w.id
+                             WHERE w.owner_id = :userId AND r.day BETWEEN :from AND :to
+                             GROUP BY 1, 2, 3
+                            HAVING SUM(r.transaction_count) > 0) AS r
+                           INNER JOIN transaction_category AS c ON c.id = r.category_id
+                     GROUP BY r.currency, r.grouped_date, c.name, c.type
+                     ORDER BY r.currency, r.grouped_date, c.name
+                    """,
+            nativeQuery = true
+    )
+    List<UserAnalyticsDbDto> getUserAnalyticsBetweenDays(
+            String truncUnit,
+            long userId,
+            LocalDate from,
+            LocalDate to
+    );
+
+}
@@ -0,0 +1,24 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+
+import java.util.SortedMap;
+
+/**
+ * Changes of the daily analytics rollups. Part of {@link AnalyticsRollupDao}, the changes are
+ * written with one JDBC batch in {@link AnalyticsRollupUpsertDaoImpl}.
+ */
+public interface AnalyticsRollupUpsertDao {
+
+    /**
+     * Adds the changes to the rollups of the days. Creates the rollups that do not exist. Rollups
+     * are changed in the order of the map, so the sorted map keeps the lock order.
+     *
+     * <p>Must be called inside the database transaction that changes the transactions.
+     *
+     * @param changes change by wallet, day and category
+     */
+    void addDailyChanges(SortedMap<WalletDayCategory, AnalyticsRollupChange> changes);
+
+}
@@ -0,0 +1,64 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * JDBC implementation of {@link AnalyticsRollupUpsertDao}.
+ */
+public class AnalyticsRollupUpsertDaoImpl implements AnalyticsRollupUpsertDao {
+
+    /**
+     * Constraint is defined in
+     * {@link com.danarim.monal.money.persistence.model.AnalyticsRollup AnalyticsRollup}.
+     */
+    private static final String ADD_DAILY_CHANGE = """
+            INSERT INTO analytics_rollup (wallet_id, day, category_id, amount, transaction_count)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (wallet_id, day, category_id) DO UPDATE
+               SET amount = analytics_rollup.amount + EXCLUDED.amount,
+                   transaction_count = analytics_rollup.transaction_count
+                                       + EXCLUDED.transaction_count
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AnalyticsRollupUpsertDaoImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void addDailyChanges(SortedMap<WalletDayCategory, AnalyticsRollupChange> changes) {
+        List<Map.Entry<WalletDayCategory, AnalyticsRollupChange>> entries =
+                new ArrayList<>(changes.entrySet());
+
+        jdbcTemplate.batchUpdate(ADD_DAILY_CHANGE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                WalletDayCategory key = entries.get(i).getKey();
+                AnalyticsRollupChange change = entries.get(i).getValue();
+
+                statement.setLong(1, key.walletId());
+                statement.setObject(2, key.day());
+                statement.setLong(3, key.categoryId());
+                statement.setBigDecimal(4, change.amount());
+                statement.setLong(5, change.transactionCount());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+}
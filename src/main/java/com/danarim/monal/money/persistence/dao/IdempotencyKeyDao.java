@@ -0,0 +1,57 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Date;
+import java.util.Optional;
+import javax.transaction.Transactional;
+
+/**
+ * DAO for {@link IdempotencyKey IdempotencyKey}.
+ */
+public interface IdempotencyKeyDao extends JpaRepository<IdempotencyKey, Long> {
+
+    /**
+     * Claims the idempotency key for the current transaction. If another transaction has claimed
+     * the same key and is not finished yet, waits until it is committed or rolled back.
+     *
+     * @param userId         user ID
+     * @param idempotencyKey idempotency key sent by the client
+     * @param requestHash    hash of the operation and the request
+     * @param createdAt      current date
+     *
+     * @return 1 if the key is claimed, 0 if the key is already used
+     */
+    @Query(
+            value = """
+                    INSERT INTO idempotency_key (user_id, idempotency_key, request_hash, created_at)
+                    VALUES (:userId, :idempotencyKey, :requestHash, :createdAt)
+                    ON CONFLICT (user_id, idempotency_key) DO NOTHING
+                    """,
+            nativeQuery = true
+    )
+    @Modifying
+    int claimKey(long userId, String idempotencyKey, String requestHash, Date createdAt);
+
+    @Query(
+            """
+            UPDATE IdempotencyKey AS k
+               SET k.response = :response
+             WHERE k.user.id = :userId
+               AND k.idempotencyKey = :idempotencyKey
+            """
+    )
+    @Modifying
+    int saveResponse(long userId, String idempotencyKey, String response);
+
+    Optional<IdempotencyKey> findByUserIdAndIdempotencyKey(long userId, String idempotencyKey);
+
+    @Query("DELETE FROM IdempotencyKey AS k WHERE k.createdAt < :date")
+    @Modifying
+    @Transactional
+    int deleteAllCreatedBefore(Date date);
+
+}
@@ -0,0 +1,216 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.DueRecurringTransactionDbDto;
+import com.danarim.monal.money.persistence.dto.RecurringOccurrenceDbDto;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Plain JDBC access for the recurring transactions scheduler. Due recurring transactions are
+ * read in chunks and every chunk is written with a few JDBC batches, so the cost of a run grows
+ * with the number of occurrences and not with the number of round trips.
+ *
+ * <p>All methods must be called inside one database transaction per chunk.
+ */
+@Repository
+public class RecurringOccurrenceDao {
+
+    /**
+     * Locked rows are skipped, so several instances of the application can process different
+     * chunks at the same time. The index on next_occurrence keeps every chunk cheap.
+     */
+    private static final String LOCK_DUE_RECURRING_TRANSACTIONS = """
+            SELECT r.id, r.description, r.amount, r.category_id, r.wallet_id, r.cron,
+                   r.next_occurrence
+              FROM recurring_transaction AS r
+             WHERE r.next_occurrence <= ?
+             ORDER BY r.next_occurrence
+             LIMIT ?
+               FOR UPDATE SKIP LOCKED
+            """;
+
+    /**
+     * Occurrences that already exist are skipped. Constraint is defined in
+     * {@link com.danarim.monal.money.persistence.model.Transaction Transaction}.
+     */
+    private static final String INSERT_OCCURRENCE = """
+            INSERT INTO transaction (description, date, amount, category_id, wallet_id,
+                                     recurring_transaction_id)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (recurring_transaction_id, date) DO NOTHING
+            """;
+
+    private static final String UPDATE_NEXT_OCCURRENCE = """
+            UPDATE recurring_transaction
+               SET next_occurrence = ?
+             WHERE id = ?
+            """;
+
+    private static final String ADD_WALLET_BALANCE = """
+            UPDATE wallet
+               SET balance = balance + ?,
+                   version = version + 1
+             WHERE id = ?
+            """;
+
+    private static final String APPEND_WALLET_DELTA = """
+            INSERT INTO wallet_balance_delta (wallet_id, delta)
+            VALUES (?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RecurringOccurrenceDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Locks a chunk of recurring transactions whose next occurrence is not after the given date.
+     * Recurring transactions locked by another database transaction are skipped.
+     *
+     * @param now   current date
+     * @param limit max number of recurring transactions to lock
+     *
+     * @return locked recurring transactions, the most overdue first
+     */
+    public List<DueRecurringTransactionDbDto> lockDueRecurringTransactions(LocalDateTime now,
+                                                                          int limit
+    ) {
+        return jdbcTemplate.query(
+                LOCK_DUE_RECURRING_TRANSACTIONS,
+                (resultSet, rowNum) -> new DueRecurringTransactionDbDto(
+                        resultSet.getLong("id"),
+                        resultSet.getString("description"),
+                        resultSet.getBigDecimal("amount"),
+                        resultSet.getLong("category_id"),
+                        resultSet.getLong("wallet_id"),
+                        resultSet.getString("cron"),
+                        resultSet.getObject("next_occurrence", LocalDateTime.class)
+                ),
+                now,
+                limit
+        );
+    }
+
+    /**
+     * Inserts the occurrences with one JDBC batch.
+     *
+     * @param occurrences occurrences to insert
+     *
+     * @return number of inserted rows for every occurrence: 1 if the occurrence is inserted, 0 if
+     *         it already exists
+     */
+    public int[] insertOccurrences(List<RecurringOccurrenceDbDto> occurrences) {
+        return jdbcTemplate.batchUpdate(INSERT_OCCURRENCE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                RecurringOccurrenceDbDto occurrence = occurrences.get(i);
+
+                if (occurrence.description() == null) {
+                    statement.setNull(1, Types.VARCHAR);
+                } else {
+                    statement.setString(1, occurrence.description());
+                }
+                statement.setObject(2, occurrence.date());
+                statement.setBigDecimal(3, occurrence.amount());
+                statement.setLong(4, occurrence.categoryId());
+                statement.setLong(5, occurrence.walletId());
+                statement.setLong(6, occurrence.recurringTransactionId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return occurrences.size();
+            }
+        });
+    }
+
+    /**
+     * Moves the recurring transactions to their next occurrences with one JDBC batch.
+     *
+     * @param nextOccurrences next occurrence by recurring transaction ID. Null value if the
+     *                        schedule has no more occurrences.
+     */
+    public void updateNextOccurrences(Map<Long, LocalDateTime> nextOccurrences) {
+        List<Map.Entry<Long, LocalDateTime>> entries = new ArrayList<>(nextOccurrences.entrySet());
+
+        jdbcTemplate.batchUpdate(UPDATE_NEXT_OCCURRENCE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                Map.Entry<Long, LocalDateTime> entry = entries.get(i);
+
+                if (entry.getValue() == null) {
+                    statement.setNull(1, Types.TIMESTAMP);
+                } else {
+                    statement.setObject(1, entry.getValue());
+                }
+                statement.setLong(2, entry.getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    /**
+     * Adds the deltas to the wallet balances with one JDBC batch, one update per wallet. Wallets
+     * are updated in the order of the map, so the sorted map keeps the lock order by ID.
+     *
+     * @param balanceDeltas balance delta by wallet ID
+     */
+    public void addWalletBalances(SortedMap<Long, BigDecimal> balanceDeltas) {
+        List<Map.Entry<Long, BigDecimal>> entries = new ArrayList<>(balanceDeltas.entrySet());
+
+        jdbcTemplate.batchUpdate(ADD_WALLET_BALANCE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setBigDecimal(1, entries.get(i).getValue());
+                statement.setLong(2, entries.get(i).getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    /**
+     * Appends the deltas of the wallet balances with one JDBC batch, one delta per wallet. Used
+     * instead of {@link #addWalletBalances(SortedMap)} in the
+     * {@link com.danarim.monal.money.service.WalletConcurrencyMode#LEDGER ledger} mode, so the
+     * wallet rows are not locked.
+     *
+     * @param balanceDeltas balance delta by wallet ID
+     */
+    public void appendWalletDeltas(SortedMap<Long, BigDecimal> balanceDeltas) {
+        List<Map.Entry<Long, BigDecimal>> entries = new ArrayList<>(balanceDeltas.entrySet());
+
+        jdbcTemplate.batchUpdate(APPEND_WALLET_DELTA, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                statement.setLong(1, entries.get(i).getKey());
+                statement.setBigDecimal(2, entries.get(i).getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import javax.transaction.Transactional;
+
+/**
+ * DAO for {@link RecurringTransaction RecurringTransaction}.
+ */
+public interface RecurringTransactionDao extends JpaRepository<RecurringTransaction, Long> {
+
+    List<RecurringTransaction> findAllByWalletIdOrderByIdAsc(long walletId);
+
+    /**
+     * Deletes the recurring transaction if it belongs to a wallet of the user. Transactions that
+     * are already created by it are kept.
+     *
+     * @param id     recurring transaction ID
+     * @param userId user ID
+     *
+     * @return number of deleted recurring transactions: 1 or 0
+     */
+    @Query(
+            """
+            DELETE FROM RecurringTransaction AS r
+             WHERE r.id = :id
+               AND r.wallet.id IN (SELECT w.id FROM Wallet AS w WHERE w.owner.id = :userId)
+            """
+    )
+    @Modifying
+    @Transactional
+    int deleteUserRecurringTransaction(long id, long userId);
+
+}
@@ -1,20 +1,107 @@
 package com.danarim.monal.money.persistence.dao;
 
-import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
-import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.dto.TransactionBalanceDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionWalletDbDto;
+import com.danarim.monal.money.persistence.dto.UpdatedTransactionDbDto;
 import com.danarim.monal.money.persistence.model.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import javax.transaction.Transactional;
 
 /**
  * DAO for {@link Transaction Transaction} and analytics.
  */
-public interface TransactionDao extends JpaRepository<Transaction, Long> {
+public interface TransactionDao extends JpaRepository<Transaction, Long>, TransactionFilterDao {
 
-    List<Transaction> getTransactionsByWalletIdAndDateBetween(long walletId, Date from, Date to);
+    /**
+     * Gets wallet transactions between two dates. Only scalar columns of the transaction table are
+     * selected, category and wallet are not joined. Transactions are ordered by date and ID,
+     * newest first.
+     *
+     * @param walletId wallet ID
+     * @param from     start date
+     * @param to       end date
+     *
+     * @return transactions between the dates
+     */
+    @Query(
+            """
+            SELECT new com.danarim.monal.money.persistence.dto.TransactionDbDto(
+                       t.id, t.description, t.date, t.amount, t.category.id, t.wallet.id)
+              FROM Transaction AS t
+             WHERE t.wallet.id = :walletId
+               AND t.date BETWEEN :from AND :to
+             ORDER BY t.date DESC, t.id DESC
+            """
+    )
+    List<TransactionDbDto> getTransactionsBetweenDates(long walletId, Date from, Date to);
+
+    /**
+     * Gets the first page of wallet transactions between two dates. Transactions are ordered by
+     * date and ID, newest first.
+     *
+     * @param walletId wallet ID
+     * @param from     start date
+     * @param to       end date
+     * @param pageable used only to limit the number of returned transactions
+     *
+     * @return first page of transactions
+     */
+    @Query(
+            """
+            SELECT new com.danarim.monal.money.persistence.dto.TransactionDbDto(
+                       t.id, t.description, t.date, t.amount, t.category.id, t.wallet.id)
+              FROM Transaction AS t
+             WHERE t.wallet.id = :walletId
+               AND t.date BETWEEN :from AND :to
+             ORDER BY t.date DESC, t.id DESC
+            """
+    )
+    List<TransactionDbDto> getTransactionsPage(long walletId,
+                                               Date from,
+                                               Date to,
+                                               Pageable pageable
+    );
+
+    /**
+     * Gets the page of wallet transactions between two dates that follows the transaction with
+     * the given date and ID. Transactions are ordered by date and ID, newest first.
+     *
+     * @param walletId   wallet ID
+     * @param from       start date
+     * @param to         end date
+     * @param cursorDate date of the last transaction on the previous page
+     * @param cursorId   ID of the last transaction on the previous page
+     * @param pageable   used only to limit the number of returned transactions
+     *
+     * @return next page of transactions
+     */
+    @Query(
+            """
+            SELECT new com.danarim.monal.money.persistence.dto.TransactionDbDto(
+                       t.id, t.description, t.date, t.amount, t.category.id, t.wallet.id)
+              FROM Transaction AS t
+             WHERE t.wallet.id = :walletId
+               AND t.date BETWEEN :from AND :to
+               AND (t.date < :cursorDate OR (t.date = :cursorDate AND t.id < :cursorId))
+             ORDER BY t.date DESC, t.id DESC
+            """
+    )
+    List<TransactionDbDto> getTransactionsPageAfter(long walletId,
+                                                    Date from,
+                                                    Date to,
+                                                    Date cursorDate,
+                                                    long cursorId,
+                                                    Pageable pageable
+    );
 
     /**
      * Checks if the user is the owner of the transaction.
@@ -35,36 +122,151 @@ public interface TransactionDao extends JpaRepository<Transaction, Long> {
     boolean isUserTransactionOwner(long transactionId, long userId);
 
     /**
-     * Used to get analytics for a wallet for a specific period. The result is grouped by date and
-     * category.
+     * Deletes the transaction if it belongs to a wallet of the user and is not a leg of a
+     * transfer. Returns the deleted state in the same statement, so the wallet balance can be
+     * reverted without loading the transaction.
+     *
+     * @param transactionId transaction ID
+     * @param userId        ID of the user that must own the transaction
+     *
+     * @return deleted transaction state or empty if the transaction does not exist, belongs to
+     *         another user or is a leg of a transfer
+     */
+    @Transactional // Repository query methods are read-only by default
+    @Query(
+            value = """
+                    DELETE FROM transaction AS t
+                     USING wallet AS w, transaction_category AS c
+                     WHERE t.id = :transactionId
+                       AND w.id = t.wallet_id
+                       AND w.owner_id = :userId
+                       AND c.id = t.category_id
+                       AND NOT EXISTS (SELECT 1
+                                         FROM transfer AS tr
+                                        WHERE tr.outcome_transaction_id = t.id
+                                           OR tr.income_transaction_id = t.id)
+                    RETURNING t.amount AS amount,
+                              t.date AS date,
+                              t.category_id AS categoryid,
+                              c.type AS categorytype,
+                              t.wallet_id AS walletid,
+                              w.currency AS currency
+                    """,
+            nativeQuery = true
+    )
+    Optional<TransactionBalanceDbDto> deleteUserTransaction(long transactionId, long userId);
+
+    /**
+     * Updates the transaction if it and the new wallet belong to the user, the new wallet has the
+     * same currency as the old one and the transaction is not a leg of a transfer. The old
+     * transaction row is locked before it is read, so the returned state is the one that is
+     * overwritten.
      *
-     * @param analyticsDateFormat date format to group by. Use {@link AnalyticsPeriod#getDateFormat}
-     *                            to get the correct format for the period.
-     * @param walletId            wallet ID to get analytics for
-     * @param from                start date
-     * @param to                  end date
+     * <p>Precision of the amount depends on the wallet currency, so the amount is given for both
+     * currency types and the database picks one.
      *
-     * @return {@link AnalyticsDbDto} analytics data (grouped by date, grouped by category name and
-     *         type, sum of amounts)
+     * @param transactionId    transaction ID
+     * @param userId           ID of the user that must own the transaction and the new wallet
+     * @param description      new description
+     * @param date             new date
+     * @param basicAmount      new amount if the wallet has a basic currency
+     * @param cryptoAmount     new amount if the wallet has a cryptocurrency
+     * @param categoryId       new category ID
+     * @param walletId         new wallet ID
+     * @param cryptoCurrencies names of all cryptocurrencies
+     *
+     * @return old transaction state with the new amount or empty if the transaction was not
+     *         updated
      */
+    @Transactional // Repository query methods are read-only by default
     @Query(
             value = """
-                    SELECT TO_CHAR(t.date, :analyticsDateFormat) AS groupeddate,
-                           c.name AS categoryname,
-                           c.type AS categorytype,
-                           SUM(t.amount) AS sum
-                      FROM transaction AS t
-                           INNER JOIN transaction_category AS c ON c.id = t.category_id
-                     WHERE t.wallet_id = :walletId AND t.date BETWEEN :from AND :to
-                     GROUP BY groupeddate, categoryname, categorytype
+                    WITH old_state AS (
+                        SELECT t.id, t.amount, t.date, t.wallet_id, t.category_id,
+                               c.type AS category_type, w.currency
+                          FROM transaction AS t
+                               INNER JOIN wallet AS w ON w.id = t.wallet_id
+                               INNER JOIN transaction_category AS c ON c.id = t.category_id
+                         WHERE t.id = :transactionId
+                           AND w.owner_id = :userId
+                           AND NOT EXISTS (SELECT 1
+                                             FROM transfer AS tr
+                                            WHERE tr.outcome_transaction_id = t.id
+                                               OR tr.income_transaction_id = t.id)
+                           FOR UPDATE OF t
+                    )
+                    UPDATE transaction AS t
+                       SET description = CAST(:description AS VARCHAR),
+                           date = :date,
+                           amount = CASE WHEN old_state.currency IN (:cryptoCurrencies)
+                                         THEN :cryptoAmount
+                                         ELSE :basicAmount
+                                    END,
+                           category_id = :categoryId,
+                           wallet_id = :walletId
+                      FROM old_state, wallet AS nw
+                     WHERE t.id = old_state.id
+                       AND nw.id = :walletId
+                       AND nw.owner_id = :userId
+                       AND nw.currency = old_state.currency
+                    RETURNING old_state.amount AS amount,
+                              old_state.date AS date,
+                              old_state.category_id AS categoryid,
+                              old_state.category_type AS categorytype,
+                              old_state.wallet_id AS walletid,
+                              old_state.currency AS currency,
+                              t.amount AS newamount
                     """,
             nativeQuery = true
     )
-    List<AnalyticsDbDto> getTransactionAnalyticsBetweenDates(
-            String analyticsDateFormat,
-            long walletId,
-            Date from,
-            Date to
-    );
+    Optional<UpdatedTransactionDbDto> updateUserTransaction(long transactionId,
+                                                            long userId,
+                                                            String description,
+                                                            Date date,
+                                                            BigDecimal basicAmount,
+                                                            BigDecimal cryptoAmount,
+                                                            long categoryId,
+                                                            long walletId,
+                                                            Collection<String> cryptoCurrencies);
+
+    /**
+     * Gets wallet IDs of the transactions without loading the transactions and wallets. Used to
+     * lock the wallets before the transactions are loaded.
+     *
+     * @param ids transaction IDs
+     *
+     * @return transaction ID and wallet ID of every existing transaction
+     */
+    @Query(
+            """
+            SELECT t.id AS id, t.wallet.id AS walletId
+              FROM Transaction AS t
+             WHERE t.id IN :ids
+            """
+    )
+    List<TransactionWalletDbDto> getTransactionWallets(Collection<Long> ids);
+
+    /**
+     * Locks the transactions for update in the order of ID, so concurrent transactions that lock
+     * the same transactions can't deadlock. Used instead of the wallet locks in the
+     * {@link com.danarim.monal.money.service.WalletConcurrencyMode#LEDGER ledger} mode.
+     *
+     * @param ids transaction IDs
+     *
+     * @return number of locked transactions
+     */
+    @Transactional // Repository query methods are read-only by default
+    @Query(
+            value = """
+                    SELECT COUNT(*)
+                      FROM (SELECT id
+                              FROM transaction
+                             WHERE id IN (:ids)
+                             ORDER BY id
+                               FOR UPDATE) AS locked
+                    """,
+            nativeQuery = true
+    )
+    long lockTransactions(Collection<Long> ids);
 
 }
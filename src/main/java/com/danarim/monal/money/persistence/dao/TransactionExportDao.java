@@ -0,0 +1,59 @@
+package com.danarim.monal.money.persistence.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Plain JDBC access to transactions for exports. Rows are read with a forward-only cursor and
+ * passed to the handler one by one, so no entities are created and the whole result is never
+ * held in memory.
+ */
+@Repository
+public class TransactionExportDao {
+
+    /**
+     * Number of rows fetched from the database per round trip.
+     */
+    public static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final String SELECT_WALLET_TRANSACTIONS = """
+            SELECT t.id, t.date, t.amount, t.category_id, t.wallet_id, t.description
+              FROM transaction AS t
+             WHERE t.wallet_id = ?
+             ORDER BY t.date, t.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionExportDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reads all transactions of the wallet ordered by date and ID (oldest first). Columns: id,
+     * date, amount, category_id, wallet_id, description.
+     *
+     * <p>Must be called inside a transaction. Otherwise, the PostgreSQL driver ignores the fetch
+     * size and loads the whole result at once.
+     *
+     * @param walletId   wallet ID
+     * @param rowHandler handler that is called for every row
+     */
+    public void streamWalletTransactions(long walletId, RowCallbackHandler rowHandler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_WALLET_TRANSACTIONS,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            );
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            statement.setLong(1, walletId);
+            return statement;
+        }, rowHandler);
+    }
+
+}
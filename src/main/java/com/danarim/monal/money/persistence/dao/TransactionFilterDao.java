@@ -0,0 +1,43 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Filtering of transactions by several conditions at once. Part of {@link TransactionDao}, the
+ * query is built with the Criteria API in {@link TransactionFilterDaoImpl}.
+ */
+public interface TransactionFilterDao {
+
+    /**
+     * Gets the first page of transactions that match the filter. Transactions are ordered by date
+     * and ID, newest first.
+     *
+     * @param filter filter conditions
+     * @param limit  max number of returned transactions
+     *
+     * @return first page of matching transactions
+     */
+    List<TransactionDbDto> filterTransactions(TransactionFilter filter, int limit);
+
+    /**
+     * Gets the page of transactions that match the filter and are older than the cursor
+     * transaction. Transactions are ordered by date and ID, newest first.
+     *
+     * @param filter     filter conditions
+     * @param cursorDate date of the last transaction on the previous page
+     * @param cursorId   ID of the last transaction on the previous page
+     * @param limit      max number of returned transactions
+     *
+     * @return next page of matching transactions
+     */
+    List<TransactionDbDto> filterTransactionsAfter(TransactionFilter filter,
+                                                   Date cursorDate,
+                                                   long cursorId,
+                                                   int limit
+    );
+
+}
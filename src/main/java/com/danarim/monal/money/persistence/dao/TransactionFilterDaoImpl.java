@@ -0,0 +1,146 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
+import com.danarim.monal.money.persistence.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Criteria API implementation of {@link TransactionFilterDao}.
+ *
+ * <p>Every value is bound as a parameter, so filters of the same shape produce the same SQL and
+ * reuse the prepared statement. Conditions are added in a fixed order: wallet, date range,
+ * categories, amount range, description prefix and cursor. Supporting indexes are
+ * {@code (wallet_id, category_id, date)} declared on {@link Transaction}, the covering
+ * {@code (wallet_id, date)} index from {@code schema-covering-indexes.sql} and the description
+ * prefix index from {@code schema-transaction-filter.sql}.
+ */
+public class TransactionFilterDaoImpl implements TransactionFilterDao {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionDbDto> filterTransactions(TransactionFilter filter, int limit) {
+        return filter(filter, null, 0, limit);
+    }
+
+    @Override
+    public List<TransactionDbDto> filterTransactionsAfter(TransactionFilter filter,
+                                                          Date cursorDate,
+                                                          long cursorId,
+                                                          int limit
+    ) {
+        return filter(filter, cursorDate, cursorId, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TransactionDbDto> filter(TransactionFilter filter,
+                                          Date cursorDate,
+                                          long cursorId,
+                                          int limit
+    ) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionDbDto> query = cb.createQuery(TransactionDbDto.class);
+        Root<Transaction> t = query.from(Transaction.class);
+
+        Path<Long> id = t.get("id");
+        Path<String> description = t.get("description");
+        Path<Date> date = t.get("date");
+        Path<Double> amount = t.get("amount");
+        Path<Long> categoryId = t.get("category").get("id");
+        Path<Long> walletId = t.get("wallet").get("id");
+
+        Map<ParameterExpression<?>, Object> params = new LinkedHashMap<>();
+        List<Predicate> predicates = new ArrayList<>();
+
+        predicates.add(cb.equal(walletId, bind(cb, params, Long.class, filter.walletId())));
+        predicates.add(cb.between(date,
+                                  bind(cb, params, Date.class, filter.from()),
+                                  bind(cb, params, Date.class, filter.to())));
+
+        if (!filter.categoryIds().isEmpty()) {
+            predicates.add(categoryId.in(
+                    bind(cb, params, Collection.class, filter.categoryIds())));
+        }
+        if (filter.minAmount() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(
+                    amount, bind(cb, params, Double.class, filter.minAmount())));
+        }
+        if (filter.maxAmount() != null) {
+            predicates.add(cb.lessThanOrEqualTo(
+                    amount, bind(cb, params, Double.class, filter.maxAmount())));
+        }
+        if (filter.descriptionPrefix() != null) {
+            String pattern = escapeLike(filter.descriptionPrefix()) + '%';
+            predicates.add(cb.like(cb.lower(description),
+                                   cb.lower(bind(cb, params, String.class, pattern)),
+                                   LIKE_ESCAPE));
+        }
+        if (cursorDate != null) {
+            ParameterExpression<Date> cursorDateParam = bind(cb, params, Date.class, cursorDate);
+            predicates.add(cb.or(
+                    cb.lessThan(date, cursorDateParam),
+                    cb.and(cb.equal(date, cursorDateParam),
+                           cb.lessThan(id, bind(cb, params, Long.class, cursorId)))
+            ));
+        }
+
+        query.select(cb.construct(TransactionDbDto.class,
+                                  id, description, date, amount, categoryId, walletId))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(date), cb.desc(id));
+
+        TypedQuery<TransactionDbDto> typedQuery = entityManager.createQuery(query)
+                .setMaxResults(limit);
+        params.forEach((param, value) -> typedQuery.setParameter((Parameter<Object>) param,
+                                                                 value));
+        return typedQuery.getResultList();
+    }
+
+    /**
+     * Creates a parameter and remembers its value to bind it after the query is built.
+     */
+    private static <T> ParameterExpression<T> bind(CriteriaBuilder cb,
+                                                   Map<ParameterExpression<?>, Object> params,
+                                                   Class<T> type,
+                                                   T value
+    ) {
+        ParameterExpression<T> param = cb.parameter(type);
+        params.put(param, value);
+        return param;
+    }
+
+    /**
+     * Escapes LIKE wildcards, so they match literally.
+     */
+    private static String escapeLike(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                result.append(LIKE_ESCAPE);
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.ImportTransactionDbDto;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Plain JDBC access to transactions for imports. Rows are inserted with JDBC batches, so a batch
+ * of rows costs one round trip instead of one per row.
+ */
+@Repository
+public class TransactionImportDao {
+
+    /**
+     * Max number of rows inserted with one JDBC batch.
+     */
+    public static final int IMPORT_BATCH_SIZE = 1000;
+
+    /**
+     * Rows with the fingerprint that already exists in the wallet are skipped. Constraint is
+     * defined in {@link com.danarim.monal.money.persistence.model.Transaction Transaction}.
+     */
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transaction (description, date, amount, category_id, wallet_id,
+                                     import_fingerprint)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (wallet_id, import_fingerprint) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionImportDao(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the rows to the wallet with one JDBC batch. Must be called inside a transaction.
+     *
+     * @param walletId wallet ID
+     * @param rows     rows to insert. Not more than {@link #IMPORT_BATCH_SIZE}.
+     *
+     * @return number of inserted rows for every row: 1 if the row is inserted, 0 if it is skipped
+     *         as a duplicate
+     */
+    public int[] insertTransactions(long walletId, List<ImportTransactionDbDto> rows) {
+        return jdbcTemplate.batchUpdate(INSERT_TRANSACTION, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                ImportTransactionDbDto row = rows.get(i);
+
+                if (row.description() == null) {
+                    statement.setNull(1, Types.VARCHAR);
+                } else {
+                    statement.setString(1, row.description());
+                }
+                statement.setTimestamp(2, new Timestamp(row.date().getTime()));
+                statement.setBigDecimal(3, row.amount());
+                statement.setLong(4, row.categoryId());
+                statement.setLong(5, walletId);
+                statement.setString(6, row.fingerprint());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Full-text search over transaction descriptions. Uses the generated {@code description_tsv}
+ * column and its GIN index from {@code schema-transaction-search.sql}.
+ *
+ * <p>Results are paged with a keyset (the position of the last row on the previous page)
+ * instead of an offset, so every page costs the same no matter how deep the client scrolls.
+ */
+@Repository
+public class TransactionSearchDao {
+
+    private static final String RANK = "ts_rank(t.description_tsv, q.query)";
+
+    private static final String SELECT_USER_TRANSACTIONS = """
+            SELECT t.id, t.description, t.date, t.amount, t.category_id, t.wallet_id,
+                   %s AS rank
+              FROM transaction AS t
+                   INNER JOIN wallet AS w ON w.id = t.wallet_id,
+                   websearch_to_tsquery('simple', :query) AS q(query)
+             WHERE w.owner_id = :userId
+               AND t.description_tsv @@ q.query
+            """.formatted(RANK);
+
+    private static final String AFTER_RANK = """
+               AND (%s < CAST(:cursorRank AS REAL)
+                    OR (%s = CAST(:cursorRank AS REAL) AND t.id < :cursorId))
+            """.formatted(RANK, RANK);
+
+    private static final String AFTER_DATE = """
+               AND (t.date < :cursorDate OR (t.date = :cursorDate AND t.id < :cursorId))
+            """;
+
+    private static final String ORDER_BY_RANK = " ORDER BY rank DESC, t.id DESC LIMIT :limit";
+
+    private static final String ORDER_BY_DATE = " ORDER BY t.date DESC, t.id DESC LIMIT :limit";
+
+    private static final RowMapper<TransactionSearchDbDto> ROW_MAPPER = (resultSet, rowNum) ->
+            new TransactionSearchDbDto(
+                    new TransactionDbDto(resultSet.getLong("id"),
+                                         resultSet.getString("description"),
+                                         resultSet.getTimestamp("date").getTime(),
+                                         resultSet.getDouble("amount"),
+                                         resultSet.getLong("category_id"),
+                                         resultSet.getLong("wallet_id")),
+                    resultSet.getFloat("rank")
+            );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public TransactionSearchDao(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the first page of the user transactions whose description matches the query.
+     *
+     * @param userId user ID. Only transactions from the user wallets are searched.
+     * @param query  search query in the web search syntax ({@code "quoted phrase"}, {@code or},
+     *               {@code -excluded})
+     * @param order  order of the results
+     * @param limit  max number of transactions to return
+     *
+     * @return found transactions
+     */
+    public List<TransactionSearchDbDto> searchUserTransactions(long userId,
+                                                               String query,
+                                                               TransactionSearchOrder order,
+                                                               int limit
+    ) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("query", query)
+                .addValue("limit", limit);
+
+        return jdbcTemplate.query(SELECT_USER_TRANSACTIONS + orderBy(order), params, ROW_MAPPER);
+    }
+
+    /**
+     * Returns the next page of the user transactions whose description matches the query. The
+     * page starts right after the last transaction of the previous page.
+     *
+     * @param userId     user ID. Only transactions from the user wallets are searched.
+     * @param query      search query in the web search syntax
+     * @param order      order of the results
+     * @param cursorRank rank of the last transaction on the previous page. Used only for
+     *                   {@link TransactionSearchOrder#RELEVANCE RELEVANCE} order.
+     * @param cursorDate date of the last transaction on the previous page. Used only for
+     *                   {@link TransactionSearchOrder#DATE DATE} order.
+     * @param cursorId   ID of the last transaction on the previous page
+     * @param limit      max number of transactions to return
+     *
+     * @return found transactions
+     */
+    public List<TransactionSearchDbDto> searchUserTransactionsAfter(long userId,
+                                                                    String query,
+                                                                    TransactionSearchOrder order,
+                                                                    float cursorRank,
+                                                                    Date cursorDate,
+                                                                    long cursorId,
+                                                                    int limit
+    ) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("query", query)
+                .addValue("cursorRank", cursorRank)
+                .addValue("cursorDate", cursorDate)
+                .addValue("cursorId", cursorId)
+                .addValue("limit", limit);
+
+        String after = order == TransactionSearchOrder.RELEVANCE ? AFTER_RANK : AFTER_DATE;
+
+        return jdbcTemplate.query(SELECT_USER_TRANSACTIONS + after + orderBy(order),
+                                  params,
+                                  ROW_MAPPER);
+    }
+
+    private static String orderBy(TransactionSearchOrder order) {
+        return order == TransactionSearchOrder.RELEVANCE ? ORDER_BY_RANK : ORDER_BY_DATE;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.model.Transfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * DAO for {@link Transfer Transfer}.
+ */
+public interface TransferDao extends JpaRepository<Transfer, Long> {
+
+    /**
+     * Checks if the transaction is a leg of a transfer.
+     *
+     * @param transactionId transaction ID
+     *
+     * @return true if the transaction is the outcome or the income of a transfer
+     */
+    @Query(
+            """
+            SELECT CASE WHEN COUNT(tr) > 0 THEN true ELSE false END AS is_transfer_leg
+              FROM Transfer AS tr
+             WHERE tr.outcome.id = :transactionId
+                OR tr.income.id = :transactionId
+            """
+    )
+    boolean isTransferLeg(long transactionId);
+
+    /**
+     * Returns the IDs of the given transactions that are legs of transfers.
+     *
+     * @param transactionIds transaction IDs
+     *
+     * @return IDs of the transactions that are the outcome or the income of a transfer
+     */
+    @Query(
+            """
+            SELECT t.id
+              FROM Transaction AS t
+             WHERE t.id IN :transactionIds
+               AND EXISTS (SELECT tr.id
+                             FROM Transfer AS tr
+                            WHERE tr.outcome = t
+                               OR tr.income = t)
+            """
+    )
+    List<Long> getTransferLegIds(Collection<Long> transactionIds);
+
+}
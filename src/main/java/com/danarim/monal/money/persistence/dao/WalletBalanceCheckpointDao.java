@@ -0,0 +1,163 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.BalanceHistoryDbDto;
+import com.danarim.monal.money.persistence.model.WalletBalanceCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import javax.transaction.Transactional;
+
+/**
+ * DAO for {@link WalletBalanceCheckpoint WalletBalanceCheckpoint}.
+ */
+public interface WalletBalanceCheckpointDao extends JpaRepository<WalletBalanceCheckpoint, Long> {
+
+    /**
+     * Adds the change to the checkpoint of the month. Creates the checkpoint if it does not exist.
+     * Only one row is changed, so a change of an old transaction costs the same as a new one.
+     *
+     * @param walletId wallet ID
+     * @param month    first day of the month
+     * @param change   net change of the balance (can be negative)
+     *
+     * @return 1 if the checkpoint is changed
+     */
+    @Query(
+            value = """
+                    INSERT INTO wallet_balance_checkpoint (wallet_id, month, net_change)
+                    VALUES (:walletId, :month, :change)
+                    ON CONFLICT (wallet_id, month) DO UPDATE
+                       SET net_change = wallet_balance_checkpoint.net_change
+                                        + EXCLUDED.net_change
+                    """,
+            nativeQuery = true
+    )
+    @Modifying
+    @Transactional
+    int addMonthlyChange(long walletId, LocalDate month, BigDecimal change);
+
+    /**
+     * Returns the balance of the wallet at the date. Reverts the checkpoints of the months after
+     * the date and the transactions of the same month after the date from the current balance
+     * with the pending ledger deltas. At most one month of transactions is read, so the time
+     * doesn't grow with the history.
+     *
+     * @param walletId wallet ID
+     * @param ownerId  ID of the user that must own the wallet
+     * @param date     date of the balance. Transactions at the date are included.
+     *
+     * @return balance at the date or empty if the wallet does not exist or belongs to another
+     *         user
+     */
+    @Query(
+            value = """
+                    SELECT CAST(w.balance AS NUMERIC)
+                           + COALESCE((SELECT SUM(d.delta)
+                                         FROM wallet_balance_delta AS d
+                                        WHERE d.wallet_id = w.id), 0)
+                           - COALESCE((SELECT SUM(c.net_change)
+                                         FROM wallet_balance_checkpoint AS c
+                                        WHERE c.wallet_id = w.id
+                                          AND c.month > CAST(:date AS TIMESTAMP)), 0)
+                           - COALESCE((SELECT SUM(CASE WHEN tc.type = 'INCOME'
+                                                       THEN t.amount
+                                                       ELSE -t.amount
+                                                  END)
+                                         FROM transaction AS t
+                                              INNER JOIN transaction_category AS tc
+                                                      ON tc.id = t.category_id
+                                        WHERE t.wallet_id = w.id
+                                          AND t.date > :date
+                                          AND t.date < date_trunc('month', CAST(:date AS TIMESTAMP))
+                                                       + INTERVAL '1 month'), 0)
+                           AS balance
+                      FROM wallet AS w
+                     WHERE w.id = :walletId
+                       AND w.owner_id = :ownerId
+                    """,
+            nativeQuery = true
+    )
+    Optional<BigDecimal> getOwnedWalletBalanceAt(long walletId, long ownerId, Date date);
+
+    /**
+     * Returns the end-of-day balances of the wallet for every day of the range. The balance before
+     * the first day is found like in {@link #getOwnedWalletBalanceAt(long, long, Date)}, then the
+     * transactions of the range are summed by day and accumulated by a window function. Days
+     * without transactions keep the balance of the previous day.
+     *
+     * @param walletId wallet ID
+     * @param ownerId  ID of the user that must own the wallet
+     * @param from     first day of the range in UTC
+     * @param to       last day of the range in UTC (inclusive)
+     *
+     * @return one balance for every day ordered by day or empty list if the wallet does not exist
+     *         or belongs to another user
+     */
+    @Query(
+            value = """
+                    WITH start AS (
+                        SELECT w.currency,
+                               CAST(w.balance AS NUMERIC)
+                               + COALESCE((SELECT SUM(d.delta)
+                                             FROM wallet_balance_delta AS d
+                                            WHERE d.wallet_id = w.id), 0)
+                               - COALESCE((SELECT SUM(c.net_change)
+                                             FROM wallet_balance_checkpoint AS c
+                                            WHERE c.wallet_id = w.id
+                                              AND c.month > CAST(:from AS DATE)), 0)
+                               - COALESCE((SELECT SUM(CASE WHEN tc.type = 'INCOME'
+                                                           THEN CAST(t.amount AS NUMERIC)
+                                                           ELSE -CAST(t.amount AS NUMERIC)
+                                                      END)
+                                             FROM transaction AS t
+                                                  INNER JOIN transaction_category AS tc
+                                                          ON tc.id = t.category_id
+                                            WHERE t.wallet_id = w.id
+                                              AND t.date >= CAST(:from AS DATE)
+                                              AND t.date < date_trunc('month',
+                                                                      CAST(:from AS TIMESTAMP))
+                                                           + INTERVAL '1 month'), 0)
+                               AS balance
+                          FROM wallet AS w
+                         WHERE w.id = :walletId
+                           AND w.owner_id = :ownerId
+                    ),
+                    daily AS (
+                        SELECT CAST(t.date AS DATE) AS day,
+                               SUM(CASE WHEN tc.type = 'INCOME'
+                                        THEN CAST(t.amount AS NUMERIC)
+                                        ELSE -CAST(t.amount AS NUMERIC)
+                                   END) AS change
+                          FROM transaction AS t
+                               INNER JOIN transaction_category AS tc
+                                       ON tc.id = t.category_id
+                         WHERE t.wallet_id = :walletId
+                           AND t.date >= CAST(:from AS DATE)
+                           AND t.date < CAST(:to AS DATE) + 1
+                         GROUP BY CAST(t.date AS DATE)
+                    )
+                    SELECT s.currency,
+                           s.balance + SUM(COALESCE(daily.change, 0))
+                                       OVER (ORDER BY days.day) AS balance
+                      FROM start AS s
+                           CROSS JOIN generate_series(CAST(:from AS DATE),
+                                                      CAST(:to AS DATE),
+                                                      INTERVAL '1 day') AS days(day)
+                           LEFT JOIN daily
+                                  ON daily.day = CAST(days.day AS DATE)
+                     ORDER BY days.day
+                    """,
+            nativeQuery = true
+    )
+    List<BalanceHistoryDbDto> getOwnedWalletBalanceHistory(long walletId,
+                                                           long ownerId,
+                                                           LocalDate from,
+                                                           LocalDate to);
+
+}
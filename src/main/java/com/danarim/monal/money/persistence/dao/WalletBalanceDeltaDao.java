@@ -0,0 +1,140 @@
+package com.danarim.monal.money.persistence.dao;
+
+import com.danarim.monal.money.persistence.dto.WalletBalanceDbDto;
+import com.danarim.monal.money.persistence.model.WalletBalanceDelta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.transaction.Transactional;
+
+/**
+ * DAO for {@link WalletBalanceDelta WalletBalanceDelta}. The wallet row is never locked by an
+ * appended delta, so concurrent writers of one wallet don't wait for each other. The foreign key
+ * check takes only a {@code KEY SHARE} lock, which doesn't conflict with other writers.
+ */
+public interface WalletBalanceDeltaDao extends JpaRepository<WalletBalanceDelta, Long> {
+
+    /**
+     * Appends the delta of the wallet balance if the wallet belongs to the owner. Precision of the
+     * delta depends on the wallet currency, so the delta is given for both currency types and the
+     * database picks one.
+     *
+     * @param walletId         wallet ID
+     * @param ownerId          ID of the user that must own the wallet
+     * @param basicDelta       delta for basic currencies
+     * @param cryptoDelta      delta for cryptocurrencies
+     * @param cryptoCurrencies names of all cryptocurrencies
+     *
+     * @return currency of the wallet or empty if the wallet does not exist or belongs to another
+     *         user
+     */
+    @Transactional // Repository query methods are read-only by default
+    @Query(
+            value = """
+                    WITH w AS (
+                        SELECT id, currency
+                          FROM wallet
+                         WHERE id = :walletId
+                           AND owner_id = :ownerId
+                    ), appended AS (
+                        INSERT INTO wallet_balance_delta (wallet_id, delta)
+                        SELECT id, CASE WHEN currency IN (:cryptoCurrencies)
+                                        THEN :cryptoDelta
+                                        ELSE :basicDelta
+                                   END
+                          FROM w
+                    )
+                    SELECT currency FROM w
+                    """,
+            nativeQuery = true
+    )
+    Optional<String> appendOwnedWalletDelta(long walletId,
+                                            long ownerId,
+                                            BigDecimal basicDelta,
+                                            BigDecimal cryptoDelta,
+                                            Collection<String> cryptoCurrencies);
+
+    /**
+     * Appends the delta of the wallet balance.
+     *
+     * @param walletId wallet ID
+     * @param delta    amount to add (can be negative)
+     *
+     * @return 1 if the delta is appended, 0 if the wallet does not exist
+     */
+    @Query(
+            value = """
+                    INSERT INTO wallet_balance_delta (wallet_id, delta)
+                    SELECT id, :delta
+                      FROM wallet
+                     WHERE id = :walletId
+                    """,
+            nativeQuery = true
+    )
+    @Modifying
+    @Transactional
+    int appendWalletDelta(long walletId, BigDecimal delta);
+
+    /**
+     * Returns balances of the wallets of the owner with the pending deltas. The balance and the
+     * deltas are read by one statement, so a concurrent compaction can't count a delta twice or
+     * skip it.
+     *
+     * @param ownerId ID of the user that owns the wallets
+     *
+     * @return balance of every wallet of the owner
+     */
+    @Query(
+            value = """
+                    SELECT w.id AS walletid,
+                           w.balance + COALESCE(SUM(d.delta), 0) AS balance
+                      FROM wallet AS w
+                           LEFT JOIN wallet_balance_delta AS d ON d.wallet_id = w.id
+                     WHERE w.owner_id = :ownerId
+                     GROUP BY w.id
+                    """,
+            nativeQuery = true
+    )
+    List<WalletBalanceDbDto> getOwnerWalletBalances(long ownerId);
+
+    /**
+     * Folds the oldest deltas into the wallet balances. Deltas locked by another compaction are
+     * skipped, so compactions on several instances don't wait for each other.
+     *
+     * @param limit maximum number of deltas to fold
+     *
+     * @return number of updated wallets
+     */
+    @Query(
+            value = """
+                    WITH folded AS (
+                        DELETE FROM wallet_balance_delta
+                         WHERE id IN (SELECT id
+                                        FROM wallet_balance_delta
+                                       ORDER BY id
+                                       LIMIT :limit
+                                         FOR UPDATE SKIP LOCKED)
+                        RETURNING wallet_id, delta
+                    ), sums AS (
+                        SELECT wallet_id, SUM(delta) AS delta
+                          FROM folded
+                         GROUP BY wallet_id
+                    )
+                    UPDATE wallet AS w
+                       SET balance = w.balance + sums.delta,
+                           version = w.version + 1
+                      FROM sums
+                     WHERE w.id = sums.wallet_id
+                    """,
+            nativeQuery = true
+    )
+    @Modifying
+    @Transactional
+    int compactDeltas(int limit);
+
+}
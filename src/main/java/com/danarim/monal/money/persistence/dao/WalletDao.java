@@ -6,9 +6,12 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import javax.persistence.LockModeType;
+import javax.transaction.Transactional;
 
 /**
  * Repository for {@link Wallet} entities.
@@ -20,6 +23,109 @@ public interface WalletDao extends JpaRepository<Wallet, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Wallet> findById(long id);
 
+    /**
+     * Locks the wallets for update. Wallets are locked in the order of ID, so concurrent
+     * transactions that lock the same wallets can't deadlock.
+     *
+     * @param ids wallet IDs
+     *
+     * @return existing wallets ordered by ID
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Wallet> findAllByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Reads the wallets without a lock. Use
+     * {@link #addWalletBalanceIfVersion(long, long, BigDecimal)} to change them, so the change
+     * fails if any wallet is changed by another transaction in the meantime.
+     *
+     * @param ids wallet IDs
+     *
+     * @return existing wallets ordered by ID
+     */
+    List<Wallet> readAllByIdInOrderByIdAsc(Collection<Long> ids);
+
+    /**
+     * Adds the delta to the wallet balance with exact NUMERIC arithmetic. The row is locked only
+     * for the time of the statement, so the wallet doesn't have to be loaded or locked before.
+     *
+     * @param walletId wallet ID
+     * @param delta    amount to add (can be negative)
+     *
+     * @return new balance or empty if the wallet does not exist
+     */
+    @Transactional // Repository query methods are read-only by default
+    @Query(
+            value = """
+                UPDATE wallet
+                   SET balance = balance + :delta,
+                       version = version + 1
+                 WHERE id = :walletId
+             RETURNING balance
+                """,
+            nativeQuery = true
+    )
+    Optional<BigDecimal> addWalletBalance(long walletId, BigDecimal delta);
+
+    /**
+     * Adds the delta to the wallet balance if the wallet still has the given version. Used in
+     * the optimistic mode, where the wallet is read without a lock.
+     *
+     * @param walletId wallet ID
+     * @param version  version of the wallet when it was read
+     * @param delta    amount to add (can be negative or zero)
+     *
+     * @return new balance or empty if the wallet does not exist or was changed since it was read
+     */
+    @Transactional
+    @Query(
+            value = """
+                UPDATE wallet
+                   SET balance = balance + :delta,
+                       version = version + 1
+                 WHERE id = :walletId
+                   AND version = :version
+             RETURNING balance
+                """,
+            nativeQuery = true
+    )
+    Optional<BigDecimal> addWalletBalanceIfVersion(long walletId, long version, BigDecimal delta);
+
+    /**
+     * Adds the delta to the wallet balance if the wallet belongs to the owner. The row is locked,
+     * checked and updated by one statement. Precision of the delta depends on the wallet currency,
+     * so the delta is given for both currency types and the database picks one.
+     *
+     * @param walletId         wallet ID
+     * @param ownerId          ID of the user that must own the wallet
+     * @param basicDelta       delta for basic currencies
+     * @param cryptoDelta      delta for cryptocurrencies
+     * @param cryptoCurrencies names of all cryptocurrencies
+     *
+     * @return currency of the updated wallet or empty if the wallet does not exist or belongs to
+     *         another user
+     */
+    @Transactional // Repository query methods are read-only by default
+    @Query(
+            value = """
+                UPDATE wallet
+                   SET balance = balance + CASE WHEN currency IN (:cryptoCurrencies)
+                                                THEN :cryptoDelta
+                                                ELSE :basicDelta
+                                           END,
+                       version = version + 1
+                 WHERE id = :walletId
+                   AND owner_id = :ownerId
+                RETURNING currency
+                """,
+            nativeQuery = true
+    )
+    Optional<String> addOwnedWalletBalance(long walletId,
+                                           long ownerId,
+                                           BigDecimal basicDelta,
+                                           BigDecimal cryptoDelta,
+                                           Collection<String> cryptoCurrencies);
+
     boolean existsByOwnerIdAndName(long ownerId, String name);
 
     @Query(
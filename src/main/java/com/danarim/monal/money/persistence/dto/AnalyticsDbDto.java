@@ -2,17 +2,19 @@ package com.danarim.monal.money.persistence.dto;
 
 import com.danarim.monal.money.persistence.model.TransactionType;
 
-import java.util.Date;
+import java.time.LocalDate;
 
 /**
  * DTO for analytics. Represents one row from the result of the query in
- * {@link
- * com.danarim.monal.money.persistence.dao.TransactionDao#getTransactionAnalyticsBetweenDates(
- * String, long, Date, Date) TransactionDao#getTransactionDailyAnalyticsBetweenDates}
+ * {@link com.danarim.monal.money.persistence.dao.AnalyticsRollupDao#getAnalyticsBetweenDays(
+ * String, long, LocalDate, LocalDate) AnalyticsRollupDao#getAnalyticsBetweenDays}
  */
 public interface AnalyticsDbDto {
 
-    String getGroupedDate();
+    /**
+     * First day of the group in UTC.
+     */
+    LocalDate getGroupedDate();
 
     String getCategoryName();
 
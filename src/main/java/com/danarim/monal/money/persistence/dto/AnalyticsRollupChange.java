@@ -0,0 +1,25 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Change of a daily analytics rollup.
+ *
+ * @param amount           change of the sum of amounts (can be negative)
+ * @param transactionCount change of the number of transactions (can be negative)
+ */
+public record AnalyticsRollupChange(
+        BigDecimal amount,
+        long transactionCount
+) {
+
+    public AnalyticsRollupChange plus(AnalyticsRollupChange other) {
+        return new AnalyticsRollupChange(amount.add(other.amount),
+                                         transactionCount + other.transactionCount);
+    }
+
+    public boolean isZero() {
+        return amount.signum() == 0 && transactionCount == 0;
+    }
+
+}
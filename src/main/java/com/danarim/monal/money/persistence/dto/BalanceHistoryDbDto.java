@@ -0,0 +1,19 @@
+package com.danarim.monal.money.persistence.dto;
+
+import com.danarim.monal.money.persistence.dao.WalletBalanceCheckpointDao;
+import com.danarim.monal.money.persistence.model.Currency;
+
+import java.math.BigDecimal;
+
+/**
+ * End-of-day balance of a wallet. Represents one row from the result of the query in
+ * {@link WalletBalanceCheckpointDao#getOwnedWalletBalanceHistory
+ * WalletBalanceCheckpointDao#getOwnedWalletBalanceHistory}
+ */
+public interface BalanceHistoryDbDto {
+
+    BigDecimal getBalance();
+
+    Currency getCurrency();
+
+}
@@ -0,0 +1,28 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Recurring transaction whose next occurrence is due. Locked by the scheduler until the end of
+ * the database transaction.
+ *
+ * @param id             recurring transaction ID
+ * @param description    description of every occurrence. Can be null.
+ * @param amount         amount of every occurrence
+ * @param categoryId     category ID
+ * @param walletId       wallet ID
+ * @param cron           Spring cron expression of the schedule
+ * @param nextOccurrence date of the next occurrence that is not created yet
+ */
+public record DueRecurringTransactionDbDto(
+        long id,
+        String description,
+        BigDecimal amount,
+        long categoryId,
+        long walletId,
+        String cron,
+        LocalDateTime nextOccurrence
+) {
+
+}
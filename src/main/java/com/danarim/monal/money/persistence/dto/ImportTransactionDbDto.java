@@ -0,0 +1,32 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Validated and normalized row of the transactions import, ready to be inserted.
+ *
+ * @param description normalized description. Can be null.
+ * @param date        date of the transaction
+ * @param amount      amount rounded to the wallet currency precision
+ * @param categoryId  ID of an existing category
+ * @param fingerprint hash of the row, unique per wallet
+ */
+public record ImportTransactionDbDto(
+        String description,
+        Date date,
+        BigDecimal amount,
+        long categoryId,
+        String fingerprint
+) {
+
+    public ImportTransactionDbDto {
+        date = new Date(date.getTime());
+    }
+
+    @Override
+    public Date date() {
+        return new Date(date.getTime());
+    }
+
+}
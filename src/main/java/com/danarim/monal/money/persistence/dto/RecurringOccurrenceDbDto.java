@@ -0,0 +1,25 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Transaction created by a recurring transaction.
+ *
+ * @param recurringTransactionId recurring transaction ID
+ * @param description            description of the transaction. Can be null.
+ * @param date                   date of the occurrence
+ * @param amount                 amount of the transaction
+ * @param categoryId             category ID
+ * @param walletId               wallet ID
+ */
+public record RecurringOccurrenceDbDto(
+        long recurringTransactionId,
+        String description,
+        LocalDateTime date,
+        BigDecimal amount,
+        long categoryId,
+        long walletId
+) {
+
+}
@@ -0,0 +1,27 @@
+package com.danarim.monal.money.persistence.dto;
+
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.TransactionType;
+
+import java.util.Date;
+
+/**
+ * State of a deleted or updated transaction before the change. Contains everything needed to
+ * revert the transaction from the wallet balance, its monthly checkpoint and its daily analytics
+ * rollup.
+ */
+public interface TransactionBalanceDbDto {
+
+    double getAmount();
+
+    Date getDate();
+
+    long getCategoryId();
+
+    TransactionType getCategoryType();
+
+    long getWalletId();
+
+    Currency getCurrency();
+
+}
@@ -0,0 +1,45 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.util.Date;
+
+/**
+ * Scalar columns of a {@link com.danarim.monal.money.persistence.model.Transaction Transaction}.
+ * Used for reading many transactions without loading their category, wallet and wallet owner.
+ *
+ * @param id          transaction ID
+ * @param description description of the transaction. Can be null.
+ * @param dateMillis  date of the transaction in milliseconds since the epoch
+ * @param amount      amount of the transaction
+ * @param categoryId  category ID
+ * @param walletId    wallet ID
+ */
+public record TransactionDbDto(
+        long id,
+        String description,
+        long dateMillis,
+        double amount,
+        long categoryId,
+        long walletId
+) {
+
+    /**
+     * Constructor for JPQL constructor expressions.
+     *
+     * @param id          transaction ID
+     * @param description description of the transaction
+     * @param date        date of the transaction
+     * @param amount      amount of the transaction
+     * @param categoryId  category ID
+     * @param walletId    wallet ID
+     */
+    public TransactionDbDto(long id,
+                            String description,
+                            Date date,
+                            double amount,
+                            long categoryId,
+                            long walletId
+    ) {
+        this(id, description, date.getTime(), amount, categoryId, walletId);
+    }
+
+}
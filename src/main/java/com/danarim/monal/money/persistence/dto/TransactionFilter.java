@@ -0,0 +1,48 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Conditions of the transaction filter. All conditions are combined with AND. Optional conditions
+ * are skipped when they are null (or empty for the category set).
+ *
+ * @param walletId          wallet ID
+ * @param from              start date (inclusive)
+ * @param to                end date (inclusive)
+ * @param categoryIds       IDs of the categories the transaction can belong to. Empty for any
+ *                          category.
+ * @param minAmount         min amount (inclusive). Can be null.
+ * @param maxAmount         max amount (inclusive). Can be null.
+ * @param descriptionPrefix case-insensitive beginning of the description. Can be null.
+ */
+public record TransactionFilter(
+        long walletId,
+        Date from,
+        Date to,
+        Set<Long> categoryIds,
+        Double minAmount,
+        Double maxAmount,
+        String descriptionPrefix
+) {
+
+    /**
+     * Copies the mutable arguments.
+     */
+    public TransactionFilter {
+        from = new Date(from.getTime());
+        to = new Date(to.getTime());
+        categoryIds = categoryIds == null ? Set.of() : Set.copyOf(categoryIds);
+    }
+
+    @Override
+    public Date from() {
+        return new Date(from.getTime());
+    }
+
+    @Override
+    public Date to() {
+        return new Date(to.getTime());
+    }
+
+}
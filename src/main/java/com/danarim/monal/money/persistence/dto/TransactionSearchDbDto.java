@@ -0,0 +1,14 @@
+package com.danarim.monal.money.persistence.dto;
+
+/**
+ * Transaction found by the full-text search.
+ *
+ * @param transaction found transaction
+ * @param rank        how well the description matches the search query. Higher is better.
+ */
+public record TransactionSearchDbDto(
+        TransactionDbDto transaction,
+        float rank
+) {
+
+}
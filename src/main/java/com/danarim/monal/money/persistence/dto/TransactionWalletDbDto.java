@@ -0,0 +1,16 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.util.Collection;
+
+/**
+ * DTO with the wallet of a transaction. Represents one row from the result of the query in
+ * {@link com.danarim.monal.money.persistence.dao.TransactionDao#getTransactionWallets(Collection)
+ * TransactionDao#getTransactionWallets}
+ */
+public interface TransactionWalletDbDto {
+
+    long getId();
+
+    long getWalletId();
+
+}
@@ -0,0 +1,11 @@
+package com.danarim.monal.money.persistence.dto;
+
+/**
+ * State of an updated transaction before the change and the new amount rounded to the wallet
+ * currency precision.
+ */
+public interface UpdatedTransactionDbDto extends TransactionBalanceDbDto {
+
+    double getNewAmount();
+
+}
@@ -0,0 +1,15 @@
+package com.danarim.monal.money.persistence.dto;
+
+import com.danarim.monal.money.persistence.dao.AnalyticsRollupDao;
+import com.danarim.monal.money.persistence.model.Currency;
+
+/**
+ * Analytics of all wallets of a user in one currency. Represents one row from the result of the
+ * query in {@link AnalyticsRollupDao#getUserAnalyticsBetweenDays
+ * AnalyticsRollupDao#getUserAnalyticsBetweenDays}
+ */
+public interface UserAnalyticsDbDto extends AnalyticsDbDto {
+
+    Currency getCurrency();
+
+}
@@ -0,0 +1,17 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance of a wallet with the pending ledger deltas. Represents one row from the result of the
+ * query in
+ * {@link com.danarim.monal.money.persistence.dao.WalletBalanceDeltaDao#getOwnerWalletBalances(long)
+ * WalletBalanceDeltaDao#getOwnerWalletBalances}
+ */
+public interface WalletBalanceDbDto {
+
+    long getWalletId();
+
+    BigDecimal getBalance();
+
+}
@@ -0,0 +1,30 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Key of a daily analytics rollup. Ordered by wallet ID, day and category ID, so rollups are
+ * always changed in the same order and concurrent changes can't deadlock.
+ *
+ * @param walletId   wallet ID
+ * @param day        day of the transactions in UTC
+ * @param categoryId category ID
+ */
+public record WalletDayCategory(
+        long walletId,
+        LocalDate day,
+        long categoryId
+) implements Comparable<WalletDayCategory> {
+
+    private static final Comparator<WalletDayCategory> ORDER =
+            Comparator.comparingLong(WalletDayCategory::walletId)
+                    .thenComparing(WalletDayCategory::day)
+                    .thenComparingLong(WalletDayCategory::categoryId);
+
+    @Override
+    public int compareTo(WalletDayCategory other) {
+        return ORDER.compare(this, other);
+    }
+
+}
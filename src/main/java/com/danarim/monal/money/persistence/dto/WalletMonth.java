@@ -0,0 +1,47 @@
+package com.danarim.monal.money.persistence.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Key of a monthly wallet balance checkpoint. Ordered by wallet ID and month, so checkpoints are
+ * always changed in the same order and concurrent changes can't deadlock.
+ *
+ * @param walletId wallet ID
+ * @param month    first day of the month in UTC
+ */
+public record WalletMonth(
+        long walletId,
+        LocalDate month
+) implements Comparable<WalletMonth> {
+
+    private static final Comparator<WalletMonth> ORDER =
+            Comparator.comparingLong(WalletMonth::walletId).thenComparing(WalletMonth::month);
+
+    /**
+     * Returns the month of the date in UTC, the time zone of the database.
+     *
+     * @param walletId wallet ID
+     * @param date     date in the month
+     *
+     * @return key of the checkpoint that contains the date
+     */
+    public static WalletMonth of(long walletId, Date date) {
+        return of(walletId,
+                  LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneOffset.UTC));
+    }
+
+    public static WalletMonth of(long walletId, LocalDateTime date) {
+        return new WalletMonth(walletId, date.toLocalDate().withDayOfMonth(1));
+    }
+
+    @Override
+    public int compareTo(WalletMonth other) {
+        return ORDER.compare(this, other);
+    }
+
+}
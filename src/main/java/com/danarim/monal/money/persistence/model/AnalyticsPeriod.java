@@ -1,20 +1,43 @@
 package com.danarim.monal.money.persistence.model;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
 /**
  * Represents the period of time for which analytics are calculated.
  */
 public enum AnalyticsPeriod {
-    DAILY("YYYY-MM-DD"),
-    MONTHLY("YYYY-MM"),
-    YEARLY("YYYY");
+    DAILY("day", "yyyy-MM-dd"),
+    MONTHLY("month", "yyyy-MM"),
+    YEARLY("year", "yyyy");
+
+    private final String truncUnit;
+    private final DateTimeFormatter formatter;
 
-    private final String dateFormat;
+    AnalyticsPeriod(String truncUnit, String pattern) {
+        this.truncUnit = truncUnit;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+    }
 
-    AnalyticsPeriod(String dateFormat) {
-        this.dateFormat = dateFormat;
+    /**
+     * Returns the field of the PostgreSQL {@code date_trunc} function that cuts a day to the
+     * first day of its group.
+     *
+     * @return field of {@code date_trunc}
+     */
+    public String getTruncUnit() {
+        return truncUnit;
     }
 
-    public String getDateFormat() {
-        return dateFormat;
+    /**
+     * Formats the first day of a group as the key of the group in analytics reports, for example
+     * 2021-01 for {@link #MONTHLY}.
+     *
+     * @param groupedDate first day of the group
+     *
+     * @return key of the group
+     */
+    public String format(LocalDate groupedDate) {
+        return formatter.format(groupedDate);
     }
 }
@@ -0,0 +1,89 @@
+package com.danarim.monal.money.persistence.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Sum and number of the transactions of a wallet in one category on one day. Analytics of any
+ * period are summed from these rows, so they don't read the transactions themselves.
+ *
+ * <p>Rollups are changed with native upserts together with the wallet balance, so the entity is
+ * read-only. A rollup whose transactions were all deleted keeps a zero count and is skipped by
+ * the analytics.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"wallet_id", "day", "category_id"}))
+public class AnalyticsRollup implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -4311958087452736216L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(targetEntity = Wallet.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Wallet wallet;
+
+    /**
+     * Day of the transactions in UTC.
+     */
+    @Column(nullable = false, updatable = false)
+    private LocalDate day;
+
+    @ManyToOne(targetEntity = TransactionCategory.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "category_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private TransactionCategory category;
+
+    @Column(nullable = false, precision = 1000, scale = 8)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private long transactionCount;
+
+    protected AnalyticsRollup() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public TransactionCategory getCategory() {
+        return category;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+}
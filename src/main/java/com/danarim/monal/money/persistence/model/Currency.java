@@ -1,5 +1,10 @@
 package com.danarim.monal.money.persistence.model;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 /**
  * Represents a currency. Can be country-specific or cryptocurrency.
  */
@@ -201,6 +206,12 @@ public enum Currency {
     SOL(CurrencyType.CRYPTO),
     TRX(CurrencyType.CRYPTO);
 
+    private static final Map<CurrencyType, List<String>> NAMES_BY_TYPE =
+            Arrays.stream(values()).collect(Collectors.groupingBy(
+                    Currency::getType,
+                    Collectors.mapping(Currency::name, Collectors.toUnmodifiableList())
+            ));
+
     private final CurrencyType type;
 
     Currency(CurrencyType type) {
@@ -210,4 +221,16 @@ public enum Currency {
     public CurrencyType getType() {
         return type;
     }
+
+    /**
+     * Returns names of all currencies of the given type. Used in native queries that depend on
+     * the currency precision.
+     *
+     * @param type currency type
+     *
+     * @return immutable list of currency names
+     */
+    public static List<String> getNames(CurrencyType type) {
+        return NAMES_BY_TYPE.getOrDefault(type, List.of());
+    }
 }
@@ -4,6 +4,51 @@ package com.danarim.monal.money.persistence.model;
  * Represents a currency type. Is it ISO 4217 currency or cryptocurrency?
  */
 public enum CurrencyType {
-    BASIC,
-    CRYPTO
+    BASIC(2),
+    CRYPTO(8);
+
+    /**
+     * Number of decimal digits of the largest amount in minor units. 10^18 still fits into a
+     * long, with room for the sum of a few such amounts.
+     */
+    private static final int MAX_MINOR_UNITS_DIGITS = 18;
+
+    private final int scale;
+    private final long minorUnitsPerUnit;
+    private final double maxAmount;
+
+    CurrencyType(int scale) {
+        this.scale = scale;
+        this.minorUnitsPerUnit = (long) Math.pow(10, scale);
+        this.maxAmount = Math.pow(10, MAX_MINOR_UNITS_DIGITS - scale);
+    }
+
+    /**
+     * Returns the number of decimal places of amounts in currencies of this type.
+     *
+     * @return number of decimal places
+     */
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the number of minor units in one unit of a currency of this type, for example 100
+     * cents in one dollar.
+     *
+     * @return 10 to the power of {@link #getScale() scale}
+     */
+    public long getMinorUnitsPerUnit() {
+        return minorUnitsPerUnit;
+    }
+
+    /**
+     * Returns the largest amount in a currency of this type. Its minor units still fit into a
+     * long, see {@link Money}.
+     *
+     * @return largest amount in units of the currency
+     */
+    public double getMaxAmount() {
+        return maxAmount;
+    }
 }
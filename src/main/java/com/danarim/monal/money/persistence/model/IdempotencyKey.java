@@ -0,0 +1,95 @@
+package com.danarim.monal.money.persistence.model;
+
+import com.danarim.monal.user.persistence.model.User;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Represents an idempotency key sent by a client with a mutation, and the serialized response of
+ * the mutation. A retry with the same key gets the stored response instead of a second execution.
+ * Keys are claimed and completed by {@link com.danarim.monal.money.service.IdempotencyServiceImpl}
+ * with native queries, so the entity is read-only.
+ */
+@Entity
+@Table(
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "idempotency_key"}),
+        indexes = @Index(name = "idempotency_key_created_at_index", columnList = "created_at")
+)
+public class IdempotencyKey implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 4610921876519331012L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(targetEntity = User.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @Column(name = "idempotency_key", nullable = false, length = 64)
+    private String idempotencyKey;
+
+    /**
+     * SHA-256 of the operation and the request. Used to reject the same key for another request.
+     */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    /**
+     * JSON of the response. Null until the mutation is finished.
+     */
+    @Column(columnDefinition = "TEXT")
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    protected IdempotencyKey() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public Date getCreatedAt() {
+        return new Date(createdAt.getTime());
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.danarim.monal.money.persistence.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money amounts. An amount is a {@code long} number of minor units of the currency
+ * type: 0.01 for basic currencies and 0.00000001 for cryptocurrencies (see
+ * {@link CurrencyType#getScale()}).
+ *
+ * <p>Sums and deltas of minor units are exact and don't allocate. Amounts are converted only at
+ * the edges: from the {@code double} received from the client, to the {@code double} of the
+ * entities and views, and to the {@link BigDecimal} bound to NUMERIC columns.
+ */
+public final class Money {
+
+    /**
+     * Largest amount in any currency type, for validation annotations. Amounts in cryptocurrencies
+     * have a lower limit, see {@link #isValidAmount(double, CurrencyType)}.
+     */
+    public static final long MAX_AMOUNT = 10_000_000_000_000_000L;
+
+    /**
+     * Maximum distance in ULPs between the scaled amount and the nearest whole number of minor
+     * units, for the amount to be treated as that number. Covers the error of the
+     * multiplication, for example 0.29 * 100 = 28.999999999999996.
+     */
+    private static final int ROUNDING_TOLERANCE_ULPS = 4;
+
+    private Money() {
+        throw new AssertionError("No Money instances for you!");
+    }
+
+    /**
+     * Checks that the amount can be converted to minor units of the currency type.
+     *
+     * @param amount       amount in units of the currency
+     * @param currencyType currency type that defines the minor unit
+     *
+     * @return true if the amount is finite and not larger than
+     *         {@link CurrencyType#getMaxAmount()} by absolute value
+     */
+    public static boolean isValidAmount(double amount, CurrencyType currencyType) {
+        return Double.isFinite(amount) && Math.abs(amount) <= currencyType.getMaxAmount();
+    }
+
+    /**
+     * Converts the amount to minor units of the currency type. Extra decimal places are rounded
+     * down (towards negative infinity), like {@code BigDecimal.valueOf(amount)} with
+     * {@code RoundingMode.FLOOR}, but without allocations.
+     *
+     * @param amount       amount in units of the currency, for example dollars
+     * @param currencyType currency type that defines the minor unit
+     *
+     * @return amount in minor units
+     *
+     * @throws ArithmeticException if the amount is not finite or doesn't fit into a long
+     */
+    public static long toMinorUnits(double amount, CurrencyType currencyType) {
+        double scaled = amount * currencyType.getMinorUnitsPerUnit();
+
+        if (!Double.isFinite(scaled) || Math.abs(scaled) >= Long.MAX_VALUE) {
+            throw new ArithmeticException("Amount %s can't be converted to minor units of %s"
+                                                  .formatted(amount, currencyType));
+        }
+        double rounded = Math.rint(scaled);
+
+        if (Math.abs(scaled - rounded) <= ROUNDING_TOLERANCE_ULPS * Math.ulp(scaled)) {
+            return (long) rounded;
+        }
+        return (long) Math.floor(scaled);
+    }
+
+    /**
+     * Converts the decimal amount, for example read from a NUMERIC column, to minor units of the
+     * currency type. Extra decimal places are rounded down (towards negative infinity).
+     *
+     * @param amount       amount in units of the currency
+     * @param currencyType currency type that defines the minor unit
+     *
+     * @return amount in minor units
+     *
+     * @throws ArithmeticException if the amount doesn't fit into a long
+     */
+    public static long toMinorUnits(BigDecimal amount, CurrencyType currencyType) {
+        return amount.setScale(currencyType.getScale(), RoundingMode.FLOOR)
+                .unscaledValue()
+                .longValueExact();
+    }
+
+    /**
+     * Converts minor units of the currency type to the amount in units of the currency.
+     *
+     * @param minorUnits   amount in minor units
+     * @param currencyType currency type that defines the minor unit
+     *
+     * @return the closest double to the exact amount
+     */
+    public static double toDouble(long minorUnits, CurrencyType currencyType) {
+        return (double) minorUnits / currencyType.getMinorUnitsPerUnit();
+    }
+
+    /**
+     * Converts minor units of the currency type to the exact decimal amount, for example to bind
+     * it to a NUMERIC column.
+     *
+     * @param minorUnits   amount in minor units
+     * @param currencyType currency type that defines the minor unit
+     *
+     * @return exact amount with the scale of the currency type
+     */
+    public static BigDecimal toBigDecimal(long minorUnits, CurrencyType currencyType) {
+        return BigDecimal.valueOf(minorUnits, currencyType.getScale());
+    }
+
+    /**
+     * Converts the amount to the decimal amount with the scale of the currency type. Extra
+     * decimal places are rounded down like in {@link #toMinorUnits(double, CurrencyType)}, but
+     * the amount doesn't have to fit into a long of minor units.
+     *
+     * @param amount       amount in units of the currency
+     * @param currencyType currency type that defines the scale
+     *
+     * @return exact amount with the scale of the currency type
+     *
+     * @throws NumberFormatException if the amount is not finite
+     */
+    public static BigDecimal toBigDecimal(double amount, CurrencyType currencyType) {
+        return BigDecimal.valueOf(amount).setScale(currencyType.getScale(), RoundingMode.FLOOR);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.danarim.monal.money.persistence.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Represents a rule that creates the same transaction on a cron schedule, for example rent or a
+ * salary. Occurrences are created by the scheduler in
+ * {@link com.danarim.monal.money.service.RecurringTransactionServiceImpl}.
+ */
+@Entity
+@Table(indexes = @Index(name = "recurring_transaction_next_occurrence_index",
+                        columnList = "next_occurrence"))
+public class RecurringTransaction implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -2715542880262546398L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    private String description; // Can be empty
+
+    /**
+     * The amount of every occurrence. Can't be negative or zero. Already rounded to the wallet
+     * currency.
+     */
+    @Column(
+            columnDefinition = "NUMERIC(1000, 8) CHECK (amount > 0)",
+            nullable = false
+    )
+    private double amount;
+
+    @ManyToOne(targetEntity = TransactionCategory.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "category_id", nullable = false)
+    private TransactionCategory category;
+
+    @ManyToOne(targetEntity = Wallet.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Wallet wallet;
+
+    /**
+     * Spring cron expression with seconds, for example "0 0 9 1 * *" for 9:00 on the first day of
+     * every month.
+     */
+    @Column(nullable = false, length = 120)
+    private String cron;
+
+    /**
+     * Date of the next occurrence that is not created yet. Null if the schedule has no more
+     * occurrences.
+     */
+    @Column(name = "next_occurrence")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextOccurrence;
+
+    protected RecurringTransaction() {
+    }
+
+    /**
+     * Creates a new recurring transaction for the given wallet.
+     *
+     * @param description    A description of every occurrence.
+     * @param amount         The amount of every occurrence. Can't be negative or zero.
+     * @param category       The category of every occurrence.
+     * @param wallet         The wallet the occurrences belong to.
+     * @param cron           Spring cron expression of the schedule.
+     * @param nextOccurrence The date of the first occurrence.
+     */
+    public RecurringTransaction(String description,
+                                double amount,
+                                TransactionCategory category,
+                                Wallet wallet,
+                                String cron,
+                                Date nextOccurrence
+    ) {
+        this.description = description;
+        this.amount = amount;
+        this.category = category;
+        this.wallet = wallet;
+        this.cron = cron;
+        this.nextOccurrence = nextOccurrence == null ? null : new Date(nextOccurrence.getTime());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public TransactionCategory getCategory() {
+        return category;
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public Date getNextOccurrence() {
+        return nextOccurrence == null ? null : new Date(nextOccurrence.getTime());
+    }
+
+}
@@ -8,15 +8,27 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
 
 /**
  * Represents a financial transaction.
  */
 @Entity
+@Table(
+        uniqueConstraints = {
+                @UniqueConstraint(columnNames = {"wallet_id", "import_fingerprint"}),
+                @UniqueConstraint(columnNames = {"recurring_transaction_id", "date"})
+        },
+        // Covering index on (wallet_id, date) is created by schema-covering-indexes.sql
+        indexes = @Index(name = "transaction_wallet_id_category_id_date_index",
+                         columnList = "wallet_id, category_id, date")
+)
 public class Transaction implements Serializable {
 
     @Serial
@@ -49,6 +61,21 @@ public class Transaction implements Serializable {
     @JoinColumn(name = "wallet_id", nullable = false)
     private Wallet wallet;
 
+    /**
+     * Hash of the imported row. Used to skip rows that are already imported to the wallet. Null
+     * for transactions that are not imported.
+     */
+    @Column(name = "import_fingerprint", length = 64, updatable = false)
+    private String importFingerprint;
+
+    /**
+     * ID of the {@link RecurringTransaction} that created this transaction. Null for transactions
+     * that are not created by a schedule. Together with the date it identifies the occurrence, so
+     * the scheduler never creates the same occurrence twice.
+     */
+    @Column(name = "recurring_transaction_id", updatable = false)
+    private Long recurringTransactionId;
+
     protected Transaction() {
     }
 
@@ -98,6 +125,15 @@ public class Transaction implements Serializable {
         this.date = new Date(date.getTime());
     }
 
+    /**
+     * Returns the date of the transaction without copying it.
+     *
+     * @return milliseconds since the epoch
+     */
+    public long getDateMillis() {
+        return date.getTime();
+    }
+
     public double getAmount() {
         return amount;
     }
@@ -122,4 +158,12 @@ public class Transaction implements Serializable {
         this.wallet = wallet;
     }
 
+    public String getImportFingerprint() {
+        return importFingerprint;
+    }
+
+    public Long getRecurringTransactionId() {
+        return recurringTransactionId;
+    }
+
 }
@@ -0,0 +1,10 @@
+package com.danarim.monal.money.persistence.model;
+
+/**
+ * Represents the type of the operation in a batch of transaction changes.
+ */
+public enum TransactionBatchOperationType {
+    CREATE,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,16 @@
+package com.danarim.monal.money.persistence.model;
+
+/**
+ * Represents the order of the transaction search results.
+ */
+public enum TransactionSearchOrder {
+    /**
+     * The best matching transactions first. Transactions with the same rank are ordered by ID
+     * (newest first).
+     */
+    RELEVANCE,
+    /**
+     * The newest transactions first, ordered by date and ID.
+     */
+    DATE
+}
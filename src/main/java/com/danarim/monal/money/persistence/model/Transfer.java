@@ -0,0 +1,66 @@
+package com.danarim.monal.money.persistence.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serial;
+import java.io.Serializable;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+
+/**
+ * Links the two legs of a transfer between wallets: the outcome from the source wallet and the
+ * income to the target wallet. Both legs are ordinary transactions, so balances, checkpoints and
+ * analytics need nothing special for transfers.
+ *
+ * <p>The legs can't be changed or deleted through the transaction API one by one, otherwise the
+ * other leg would be left without its pair. The link is deleted with its legs by the
+ * database.
+ */
+@Entity
+public class Transfer implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 5349032806468127741L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(targetEntity = Transaction.class)
+    @JoinColumn(name = "outcome_transaction_id", nullable = false, updatable = false,
+                unique = true)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Transaction outcome;
+
+    @ManyToOne(targetEntity = Transaction.class)
+    @JoinColumn(name = "income_transaction_id", nullable = false, updatable = false,
+                unique = true)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Transaction income;
+
+    protected Transfer() {
+    }
+
+    public Transfer(Transaction outcome, Transaction income) {
+        this.outcome = outcome;
+        this.income = income;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Transaction getOutcome() {
+        return outcome;
+    }
+
+    public Transaction getIncome() {
+        return income;
+    }
+
+}
@@ -17,6 +17,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 
 /**
  * Represents a wallet that belongs to a user.
@@ -47,6 +48,15 @@ public class Wallet implements Serializable {
     @OnDelete(action = OnDeleteAction.CASCADE)
     private User owner;
 
+    /**
+     * Incremented by every change of the balance. Used by
+     * {@link com.danarim.monal.money.service.WalletConcurrencyMode#OPTIMISTIC optimistic} wallet
+     * changes to detect concurrent changes. Native updates of the balance must increment it too.
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long version;
+
     protected Wallet() {
     }
 
@@ -65,6 +75,15 @@ public class Wallet implements Serializable {
         this.owner = owner;
     }
 
+    /**
+     * Use this constructor when you have only the ID of the wallet. This is useful when you want to
+     * link a new transaction to the wallet without loading it.
+     *
+     * @param id The ID of the wallet.
+     */
+    public Wallet(long id) {
+        this.id = id;
+    }
 
     public long getId() {
         return id;
@@ -106,4 +125,8 @@ public class Wallet implements Serializable {
         this.owner = owner;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
 }
@@ -0,0 +1,73 @@
+package com.danarim.monal.money.persistence.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Net change of a wallet balance by the transactions of one month. The balance at any date is
+ * the current balance minus the checkpoints of the later months and the transactions of the same
+ * month after the date, so old balances are found without reading the whole history.
+ *
+ * <p>Checkpoints are changed with native upserts together with the wallet balance, so the entity
+ * is read-only.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"wallet_id", "month"}))
+public class WalletBalanceCheckpoint implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 2846601187213946358L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(targetEntity = Wallet.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Wallet wallet;
+
+    /**
+     * First day of the month in UTC.
+     */
+    @Column(nullable = false, updatable = false)
+    private LocalDate month;
+
+    @Column(nullable = false, precision = 1000, scale = 8)
+    private BigDecimal netChange;
+
+    protected WalletBalanceCheckpoint() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    public LocalDate getMonth() {
+        return month;
+    }
+
+    public BigDecimal getNetChange() {
+        return netChange;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.danarim.monal.money.persistence.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+/**
+ * Pending change of a wallet balance in the
+ * {@link com.danarim.monal.money.service.WalletConcurrencyMode#LEDGER ledger} mode. Deltas are
+ * appended without locking the wallet and are folded into the balance by a background task.
+ * Deltas are appended and folded with native queries, so the entity is read-only.
+ */
+@Entity
+@Table(indexes = @Index(name = "wallet_balance_delta_wallet_id_index", columnList = "wallet_id"))
+public class WalletBalanceDelta implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -3197345284930157705L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @ManyToOne(targetEntity = Wallet.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Wallet wallet;
+
+    @Column(nullable = false, updatable = false, precision = 18, scale = 8)
+    private BigDecimal delta;
+
+    protected WalletBalanceDelta() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+
+    public BigDecimal getDelta() {
+        return delta;
+    }
+
+}
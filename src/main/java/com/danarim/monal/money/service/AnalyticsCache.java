@@ -0,0 +1,287 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of analytics reports, one entry per wallet with the reports of its buckets. A
+ * bucket is the range of days read by one report: the month of a daily report, the year of a
+ * monthly report and the years around the year of a yearly report.
+ *
+ * <p>Size of the cache is limited by the number of cached values, so a few wallets with long
+ * reports can't take more memory than many wallets with short ones.
+ *
+ * <p>A change of a transaction removes only the buckets that contain its day. Every change stamps
+ * the entry of the wallet with a new value of a global counter. A loaded report is stored only if
+ * the entry was not stamped after the load started, so a load that raced with a change can't put
+ * an old report back.
+ */
+@Component
+public class AnalyticsCache {
+
+    /**
+     * Max number of cached values: category sums, dates and wallets.
+     */
+    public static final long MAX_WEIGHT = 1_000_000L;
+
+    public static final String GETS_METRIC = "analytics.cache.gets";
+
+    private static final long NO_OWNER = -1L;
+
+    private final Cache<Long, Entry> entries = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_WEIGHT)
+            .weigher((Long walletId, Entry entry) -> entry.weight())
+            .build();
+
+    private final AtomicLong stamps = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param meterRegistry registry of the hit and miss counters
+     */
+    public AnalyticsCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder(GETS_METRIC)
+                .description("Analytics reports read from the cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder(GETS_METRIC)
+                .description("Analytics reports loaded from the database")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached report of the wallet.
+     *
+     * @param walletId ID of the wallet
+     * @param ownerId  ID of the user that must own the wallet
+     * @param period   period of the report
+     * @param day      day of the report in UTC
+     *
+     * @return cached report or empty if the report is not cached for the owner
+     */
+    public Optional<ViewAnalyticsDto> get(long walletId,
+                                          long ownerId,
+                                          AnalyticsPeriod period,
+                                          LocalDate day
+    ) {
+        Entry entry = entries.getIfPresent(walletId);
+        ViewAnalyticsDto analytics = entry == null || entry.ownerId() != ownerId
+                                     ? null
+                                     : entry.analytics().get(Bucket.of(period, day));
+        if (analytics == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(analytics);
+    }
+
+    /**
+     * Starts a load of a report of the wallet. Must be called before the report is read from the
+     * database.
+     *
+     * @param walletId ID of the wallet
+     *
+     * @return stamp of the load for {@link #put}
+     */
+    public long startLoad(long walletId) {
+        long stamp = stamps.get();
+        // Keeps the stamp of the wallet, so an eviction doesn't hide a change during the load
+        entries.asMap().putIfAbsent(walletId, Entry.empty(stamp));
+        return stamp;
+    }
+
+    /**
+     * Caches the loaded report of the wallet unless the wallet was changed after the load
+     * started.
+     *
+     * @param walletId  ID of the wallet
+     * @param ownerId   ID of the user that owns the wallet
+     * @param period    period of the report
+     * @param day       day of the report in UTC
+     * @param analytics loaded report
+     * @param loadStamp stamp returned by {@link #startLoad(long)}
+     *
+     * @return true if the report is cached
+     */
+    public boolean put(long walletId,
+                       long ownerId,
+                       AnalyticsPeriod period,
+                       LocalDate day,
+                       ViewAnalyticsDto analytics,
+                       long loadStamp
+    ) {
+        Bucket bucket = Bucket.of(period, day);
+        // Shared by all readers, so it must not be changed
+        ViewAnalyticsDto loaded = new ViewAnalyticsDto(copy(analytics.income()),
+                                                       copy(analytics.outcome()));
+
+        Entry result = entries.asMap().compute(walletId, (id, current) -> {
+            boolean unchanged = current == null
+                                ? stamps.get() == loadStamp
+                                : current.stamp() <= loadStamp;
+            if (!unchanged) {
+                return current;
+            }
+            Map<Bucket, ViewAnalyticsDto> cached = new HashMap<>();
+            if (current != null && current.ownerId() == ownerId) {
+                cached.putAll(current.analytics());
+            }
+            cached.put(bucket, loaded);
+            return new Entry(current == null ? loadStamp : current.stamp(), ownerId,
+                             Map.copyOf(cached));
+        });
+        return result.analytics().get(bucket) == loaded;
+    }
+
+    /**
+     * Removes the cached reports that contain the changed days. If a database transaction is
+     * active, the reports are removed after its commit, otherwise immediately.
+     *
+     * @param changes changed wallets, days and categories
+     */
+    public void invalidateAfterCommit(Collection<WalletDayCategory> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Long, Set<LocalDate>> changedDays = new HashMap<>();
+        for (WalletDayCategory change : changes) {
+            changedDays.computeIfAbsent(change.walletId(), id -> new HashSet<>())
+                    .add(change.day());
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            changedDays.forEach(AnalyticsCache.this::invalidate);
+                        }
+                    });
+        } else {
+            changedDays.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * Removes the cached reports of the wallet that contain any of the days. Other reports of the
+     * wallet stay cached.
+     *
+     * @param walletId ID of the wallet
+     * @param days     changed days in UTC
+     */
+    public void invalidate(long walletId, Collection<LocalDate> days) {
+        entries.asMap().compute(walletId, (id, current) -> {
+            long stamp = stamps.incrementAndGet();
+
+            if (current == null) {
+                return Entry.empty(stamp);
+            }
+            Map<Bucket, ViewAnalyticsDto> cached = new HashMap<>(current.analytics());
+            for (LocalDate day : days) {
+                Bucket.containing(day).forEach(cached::remove);
+            }
+            return new Entry(stamp, current.ownerId(), Map.copyOf(cached));
+        });
+    }
+
+    private static Map<String, Map<String, Double>> copy(Map<String, Map<String, Double>> sums) {
+        Map<String, Map<String, Double>> result = new HashMap<>();
+        sums.forEach((date, categorySums) -> result.put(date, Map.copyOf(categorySums)));
+        return Map.copyOf(result);
+    }
+
+    /**
+     * Range of days read by one report.
+     *
+     * @param period period of the report
+     * @param start  first day of the month of a daily report and of the year of other reports
+     */
+    record Bucket(AnalyticsPeriod period, LocalDate start) {
+
+        static Bucket of(AnalyticsPeriod period, LocalDate day) {
+            return new Bucket(period, period == AnalyticsPeriod.DAILY
+                                      ? day.withDayOfMonth(1)
+                                      : day.withDayOfYear(1));
+        }
+
+        /**
+         * Returns the buckets of all reports that read the day.
+         */
+        static List<Bucket> containing(LocalDate day) {
+            LocalDate year = day.withDayOfYear(1);
+            int range = AnalyticsServiceImpl.YERLY_ANALYTICS_RANGE;
+
+            List<Bucket> result = new ArrayList<>();
+            result.add(of(AnalyticsPeriod.DAILY, day));
+            result.add(of(AnalyticsPeriod.MONTHLY, day));
+            for (int i = -range; i <= range; i++) {
+                result.add(new Bucket(AnalyticsPeriod.YEARLY, year.plusYears(i)));
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Cached reports of a wallet.
+     *
+     * @param stamp     value of the global counter at the last change or load
+     * @param ownerId   ID of the user that owns the wallet
+     * @param analytics report by bucket
+     */
+    private record Entry(
+            long stamp,
+            long ownerId,
+            Map<Bucket, ViewAnalyticsDto> analytics
+    ) {
+
+        static Entry empty(long stamp) {
+            return new Entry(stamp, NO_OWNER, Map.of());
+        }
+
+        /**
+         * Number of cached values, at least 1 for the entry itself.
+         */
+        int weight() {
+            int weight = 1;
+            for (ViewAnalyticsDto report : analytics.values()) {
+                weight += weight(report.income()) + weight(report.outcome());
+            }
+            return weight;
+        }
+
+        private static int weight(Map<String, Map<String, Double>> sums) {
+            int weight = sums.size();
+            for (Map<String, Double> categorySums : sums.values()) {
+                weight += categorySums.size();
+            }
+            return weight;
+        }
+
+    }
+
+}
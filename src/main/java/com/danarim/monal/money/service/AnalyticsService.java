@@ -1,9 +1,11 @@
 package com.danarim.monal.money.service;
 
 import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
 
 import java.util.Date;
+import java.util.Map;
 
 /**
  * Service for transactions analytics.
@@ -12,4 +14,8 @@ public interface AnalyticsService {
 
     ViewAnalyticsDto getAnalytics(AnalyticsPeriod period, Long walletId, Date date, long userId);
 
+    Map<Currency, ViewAnalyticsDto> getUserAnalytics(AnalyticsPeriod period,
+                                                     Date date,
+                                                     long userId);
+
 }
@@ -1,20 +1,26 @@
 package com.danarim.monal.money.service;
 
-import com.danarim.monal.exceptions.InternalServerException;
-import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.AnalyticsRollupDao;
 import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
+import com.danarim.monal.money.persistence.dto.UserAnalyticsDbDto;
 import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.persistence.model.TransactionType;
 import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 /**
  * Service for analytics reports.
@@ -25,18 +31,31 @@ public class AnalyticsServiceImpl implements AnalyticsService {
     /**
      * Years before and after the current year to get analytics for.
      */
-    private static final int YERLY_ANALYTICS_RANGE = 1;
+    static final int YERLY_ANALYTICS_RANGE = 1;
 
-    private final TransactionDao transactionDao;
+    private final AnalyticsRollupDao analyticsRollupDao;
     private final WalletService walletService;
+    private final AnalyticsCache analyticsCache;
 
-    public AnalyticsServiceImpl(TransactionDao transactionDao, WalletService walletService) {
-        this.transactionDao = transactionDao;
+    /**
+     * Dependency injection constructor.
+     *
+     * @param analyticsRollupDao DAO for daily analytics rollups
+     * @param walletService      checks the wallet owner
+     * @param analyticsCache     cached reports, invalidated by transaction changes
+     */
+    public AnalyticsServiceImpl(AnalyticsRollupDao analyticsRollupDao,
+                                WalletService walletService,
+                                AnalyticsCache analyticsCache
+    ) {
+        this.analyticsRollupDao = analyticsRollupDao;
         this.walletService = walletService;
+        this.analyticsCache = analyticsCache;
     }
 
     /**
-     * Gets analytics for a wallet for a specific month.
+     * Gets analytics for a wallet for a specific month. Reports are cached until a transaction
+     * of their days is changed.
      *
      * @param period      analytics period to get analytics for
      * @param walletId     wallet ID to get analytics for
@@ -53,112 +72,167 @@ public class AnalyticsServiceImpl implements AnalyticsService {
                                          Date date,
                                          long loggedUserId
     ) {
+        LocalDate day = toUtcDay(date);
+
+        // The cached report is stored with its owner, so a hit needs no ownership check
+        Optional<ViewAnalyticsDto> cached =
+                analyticsCache.get(walletId, loggedUserId, period, day);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
         if (!walletService.isUserWalletOwner(walletId, loggedUserId)) {
             throw new AccessDeniedException("User with ID %d is not the owner of wallet with ID %d"
                                                     .formatted(loggedUserId, walletId));
         }
-        List<AnalyticsDbDto> analytics = transactionDao.getTransactionAnalyticsBetweenDates(
-                period.getDateFormat(),
-                walletId,
-                getStartDateByPeriod(period, date),
-                getEndDateByPeriod(period, date)
-        );
-        return new ViewAnalyticsDto(
-                convertAnalyticsWithTypeFilter(analytics, TransactionType.INCOME),
-                convertAnalyticsWithTypeFilter(analytics, TransactionType.OUTCOME)
-        );
+        long loadStamp = analyticsCache.startLoad(walletId);
+
+        LocalDate from = getStartDayByPeriod(period, day);
+        LocalDate to = getEndDayByPeriod(period, day);
+        List<AnalyticsDbDto> analytics = analyticsRollupDao.getAnalyticsBetweenDays(
+                period.getTruncUnit(), walletId, from, to);
+
+        ViewAnalyticsDto result =
+                convertAnalytics(analytics, period, getGroupCount(period, from, to));
+        analyticsCache.put(walletId, loggedUserId, period, day, result, loadStamp);
+        return result;
     }
 
     /**
-     * Get start date for the given period and date. For example, if the period is
-     * {@link AnalyticsPeriod#DAILY DAILY} and the date is 2021-01-15, the start date will be
-     * 2021-01-01.
+     * Gets analytics of all wallets of the user for a specific date, one report per currency of
+     * the wallets. Read by one query, so the time depends on the number of groups and not on the
+     * number of wallets. Wallets without transactions in the period are not in the result.
      *
-     * @param period analytics period to get the start date for
-     * @param date   date to get the start date for
+     * @param period analytics period to get analytics for
+     * @param date   date to get analytics for (month and year)
+     * @param userId ID of the logged-in user
      *
-     * @return start date for the given period and date
+     * @return {@link ViewAnalyticsDto ViewAnalyticsDto} of the user wallets by their currency
      */
-    private static Date getStartDateByPeriod(AnalyticsPeriod period, Date date) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-
-        switch (period) {
-            case DAILY -> calendar.set(Calendar.DAY_OF_MONTH, 1);
-            case MONTHLY -> {
-                calendar.set(Calendar.MONTH, Calendar.JANUARY);
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
-            }
-            case YEARLY -> {
-                calendar.add(Calendar.YEAR, -YERLY_ANALYTICS_RANGE);
-                calendar.set(Calendar.MONTH, Calendar.JANUARY);
-                calendar.set(Calendar.DAY_OF_MONTH, 1);
+    @Override
+    public Map<Currency, ViewAnalyticsDto> getUserAnalytics(AnalyticsPeriod period,
+                                                            Date date,
+                                                            long userId
+    ) {
+        LocalDate day = toUtcDay(date);
+        LocalDate from = getStartDayByPeriod(period, day);
+        LocalDate to = getEndDayByPeriod(period, day);
+
+        List<UserAnalyticsDbDto> analytics = analyticsRollupDao.getUserAnalyticsBetweenDays(
+                period.getTruncUnit(), userId, from, to);
+
+        int groupCount = getGroupCount(period, from, to);
+        Map<Currency, ViewAnalyticsDto> result = new EnumMap<>(Currency.class);
+        // Rows are ordered by currency, so the rows of a currency are converted as one sublist
+        int start = 0;
+        for (int i = 1; i <= analytics.size(); i++) {
+            Currency currency = analytics.get(start).getCurrency();
+            if (i == analytics.size() || analytics.get(i).getCurrency() != currency) {
+                result.put(currency,
+                           convertAnalytics(analytics.subList(start, i), period, groupCount));
+                start = i;
             }
-            default -> throw new InternalServerException(
-                    "Unsupported analytics period: %s".formatted(period)
-            );
         }
-        return calendar.getTime();
+        return result;
+    }
+
+    /**
+     * Days in UTC, the time zone of the rollups.
+     */
+    private static LocalDate toUtcDay(Date date) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneOffset.UTC);
     }
 
     /**
-     * Get end date for the given period and date. For example, if the period is
-     * {@link AnalyticsPeriod#DAILY DAILY} and the date is 2021-01-15, the end date will be
+     * Get first day for the given period and date. For example, if the period is
+     * {@link AnalyticsPeriod#DAILY DAILY} and the date is 2021-01-15, the first day will be
+     * 2021-01-01.
+     *
+     * @param period analytics period to get the first day for
+     * @param day    day to get the first day for
+     *
+     * @return first day for the given period and day
+     */
+    private static LocalDate getStartDayByPeriod(AnalyticsPeriod period, LocalDate day) {
+        return switch (period) {
+            case DAILY -> day.withDayOfMonth(1);
+            case MONTHLY -> day.withDayOfYear(1);
+            case YEARLY -> day.minusYears(YERLY_ANALYTICS_RANGE).withDayOfYear(1);
+        };
+    }
+
+    /**
+     * Get last day for the given period and date. For example, if the period is
+     * {@link AnalyticsPeriod#DAILY DAILY} and the date is 2021-01-15, the last day will be
      * 2021-01-31.
      *
-     * @param period analytics period to get the end date for
-     * @param date   date to get the end date for
+     * @param period analytics period to get the last day for
+     * @param day    day to get the last day for
      *
-     * @return end date for the given period and date
+     * @return last day (inclusive) for the given period and day
      */
-    private static Date getEndDateByPeriod(AnalyticsPeriod period, Date date) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-
-        switch (period) {
-            case DAILY -> calendar.set(Calendar.DAY_OF_MONTH,
-                                       calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-            case MONTHLY -> {
-                calendar.set(Calendar.MONTH, calendar.getActualMaximum(Calendar.MONTH));
-                calendar.set(Calendar.DAY_OF_MONTH,
-                             calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-            }
-            case YEARLY -> {
-                calendar.add(Calendar.YEAR, YERLY_ANALYTICS_RANGE);
-                calendar.set(Calendar.MONTH, calendar.getActualMaximum(Calendar.MONTH));
-                calendar.set(Calendar.DAY_OF_MONTH,
-                             calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-            }
-            default -> throw new InternalServerException(
-                    "Unsupported analytics period: %s".formatted(period)
-            );
-        }
-        return calendar.getTime();
+    private static LocalDate getEndDayByPeriod(AnalyticsPeriod period, LocalDate day) {
+        return switch (period) {
+            case DAILY -> day.with(TemporalAdjusters.lastDayOfMonth());
+            case MONTHLY -> day.with(TemporalAdjusters.lastDayOfYear());
+            case YEARLY -> day.plusYears(YERLY_ANALYTICS_RANGE)
+                    .with(TemporalAdjusters.lastDayOfYear());
+        };
+    }
+
+    /**
+     * Get the number of groups between the first and the last day of the period. For example, if
+     * the period is {@link AnalyticsPeriod#MONTHLY MONTHLY}, there are 12 groups.
+     *
+     * @param period analytics period of the days
+     * @param from   first day of the period
+     * @param to     last day (inclusive) of the period
+     *
+     * @return max number of dates in the analytics
+     */
+    private static int getGroupCount(AnalyticsPeriod period, LocalDate from, LocalDate to) {
+        ChronoUnit unit = switch (period) {
+            case DAILY -> ChronoUnit.DAYS;
+            case MONTHLY -> ChronoUnit.MONTHS;
+            case YEARLY -> ChronoUnit.YEARS;
+        };
+        return (int) unit.between(from, to) + 1;
     }
 
-    private static Map<String, Map<String, Double>> convertAnalyticsWithTypeFilter(
-            List<AnalyticsDbDto> analytics,
-            TransactionType type
+    /**
+     * Converts the analytics to income and outcome maps in one pass. The maps of dates are
+     * presized for all groups of the period, and every date is formatted once, because the rows
+     * are ordered by date.
+     *
+     * @param analytics  analytics ordered by date
+     * @param period     analytics period to format the dates for
+     * @param groupCount max number of dates in the analytics
+     *
+     * @return income and outcome sums by formatted date and category name
+     */
+    static ViewAnalyticsDto convertAnalytics(List<? extends AnalyticsDbDto> analytics,
+                                             AnalyticsPeriod period,
+                                             int groupCount
     ) {
-        return analytics.stream()
-                .filter(dto -> dto.getCategoryType() == type)
-                .map(dto -> Map.entry(dto.getGroupedDate(),
-                                      Map.entry(dto.getCategoryName(), dto.getSum())))
-                .collect(Collectors.toMap(
-                        // Key mapper
-                        Map.Entry::getKey,
-                        // Value mapper
-                        entry -> {
-                            Map<String, Double> innerMap = new HashMap<>();
-                            innerMap.put(entry.getValue().getKey(), entry.getValue().getValue());
-                            return innerMap;
-                        },
-                        // Merge function
-                        (existing, replacement) -> {
-                            existing.putAll(replacement);
-                            return existing;
-                        }
-                ));
+        // Capacity for the load factor 0.75, so the maps are never resized
+        int capacity = groupCount * 4 / 3 + 1;
+        Map<String, Map<String, Double>> income = new HashMap<>(capacity);
+        Map<String, Map<String, Double>> outcome = new HashMap<>(capacity);
+
+        LocalDate groupedDate = null;
+        String formattedDate = null;
+        for (AnalyticsDbDto dto : analytics) {
+            LocalDate rowDate = dto.getGroupedDate();
+            if (!rowDate.equals(groupedDate)) {
+                groupedDate = rowDate;
+                formattedDate = period.format(rowDate);
+            }
+            Map<String, Map<String, Double>> sums = dto.getCategoryType() == TransactionType.INCOME
+                                                    ? income
+                                                    : outcome;
+            sums.computeIfAbsent(formattedDate, date -> new HashMap<>())
+                    .put(dto.getCategoryName(), dto.getSum());
+        }
+        return new ViewAnalyticsDto(income, outcome);
     }
 
 }
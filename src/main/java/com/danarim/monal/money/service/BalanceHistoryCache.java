@@ -0,0 +1,256 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of daily wallet balances, one series of consecutive days per wallet.
+ *
+ * <p>A series is stored as the first balance followed by the differences between neighbouring
+ * days, all in minor units and written as zigzag varints. Most days have no transactions, so most
+ * differences take one byte and a year of balances takes a few hundred bytes instead of a list of
+ * boxed numbers.
+ *
+ * <p>A change of a transaction changes the balances from its day on, so the series is cut before
+ * this day and the older days stay cached. Every change stamps the entry of the wallet with a
+ * new value of a global counter. A loaded series is stored only if the entry was not stamped after
+ * the load started, so a load that raced with a change can't put old balances back.
+ */
+@Component
+public class BalanceHistoryCache {
+
+    /**
+     * Max number of wallets with cached balances.
+     */
+    public static final int CACHE_SIZE = 10_000;
+
+    private static final long NO_OWNER = -1L;
+    private static final byte[] NO_BALANCES = new byte[0];
+    /**
+     * Max length of a zigzag varint of a long.
+     */
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final Cache<Long, Entry> entries = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .build();
+
+    private final AtomicLong stamps = new AtomicLong();
+
+    /**
+     * Returns the cached balances of the wallet for every day of the range.
+     *
+     * @param walletId ID of the wallet
+     * @param ownerId  ID of the user that must own the wallet
+     * @param from     first day of the range
+     * @param to       last day of the range (inclusive)
+     *
+     * @return balances ordered by day or empty if the range is not cached for the owner
+     */
+    public Optional<double[]> getBalances(long walletId,
+                                          long ownerId,
+                                          LocalDate from,
+                                          LocalDate to
+    ) {
+        Entry entry = entries.getIfPresent(walletId);
+
+        if (entry == null || entry.days() == 0 || entry.ownerId() != ownerId
+                || from.isBefore(entry.start())
+                || ChronoUnit.DAYS.between(entry.start(), to) >= entry.days()) {
+            return Optional.empty();
+        }
+        int offset = (int) ChronoUnit.DAYS.between(entry.start(), from);
+        int count = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        long[] balances = decode(entry.balances(), offset + count);
+
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = Money.toDouble(balances[offset + i], entry.currencyType());
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Starts a load of the balances of the wallet. Must be called before the balances are read
+     * from the database.
+     *
+     * @param walletId ID of the wallet
+     *
+     * @return stamp of the load for {@link #put}
+     */
+    public long startLoad(long walletId) {
+        long stamp = stamps.get();
+        // Keeps the stamp of the wallet, so an eviction doesn't hide a change during the load
+        entries.asMap().putIfAbsent(walletId, Entry.empty(stamp));
+        return stamp;
+    }
+
+    /**
+     * Caches the loaded balances of the wallet. Replaces the cached balances unless the wallet was
+     * changed after the load started.
+     *
+     * @param walletId     ID of the wallet
+     * @param ownerId      ID of the user that owns the wallet
+     * @param from         day of the first balance
+     * @param currencyType currency type of the wallet
+     * @param balances     balances in minor units ordered by day
+     * @param loadStamp    stamp returned by {@link #startLoad(long)}
+     *
+     * @return true if the balances are cached
+     */
+    public boolean put(long walletId,
+                       long ownerId,
+                       LocalDate from,
+                       CurrencyType currencyType,
+                       long[] balances,
+                       long loadStamp
+    ) {
+        Entry loaded = new Entry(loadStamp, ownerId, from, balances.length, currencyType,
+                                 encode(balances));
+
+        return entries.asMap().compute(walletId, (id, current) -> {
+            boolean unchanged = current == null
+                                ? stamps.get() == loadStamp
+                                : current.stamp() <= loadStamp;
+            return unchanged ? loaded : current;
+        }) == loaded;
+    }
+
+    /**
+     * Removes the cached balances of the wallet from the day on. If a database transaction is
+     * active, the balances are removed after its commit, otherwise immediately.
+     *
+     * @param firstChangedDays wallet ID to the first day with a changed balance
+     */
+    public void invalidateAfterCommit(Map<Long, LocalDate> firstChangedDays) {
+        if (firstChangedDays.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDate> changes = Map.copyOf(firstChangedDays);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            changes.forEach(BalanceHistoryCache.this::invalidate);
+                        }
+                    });
+        } else {
+            changes.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * Removes the cached balances of the wallet from the day on. Balances before the day stay
+     * cached.
+     *
+     * @param walletId ID of the wallet
+     * @param day      first day with a changed balance
+     */
+    public void invalidate(long walletId, LocalDate day) {
+        entries.asMap().compute(walletId, (id, current) -> {
+            long stamp = stamps.incrementAndGet();
+
+            if (current == null || current.days() == 0 || !day.isAfter(current.start())) {
+                return Entry.empty(stamp);
+            }
+            long keptDays = Math.min(current.days(),
+                                     ChronoUnit.DAYS.between(current.start(), day));
+            return new Entry(stamp, current.ownerId(), current.start(), (int) keptDays,
+                             current.currencyType(),
+                             truncate(current.balances(), (int) keptDays));
+        });
+    }
+
+    static byte[] encode(long[] balances) {
+        byte[] buffer = new byte[balances.length * MAX_VARINT_BYTES];
+        int length = 0;
+        long previous = 0L;
+
+        for (long balance : balances) {
+            long delta = balance - previous; // Overflow is reverted by the decoding
+            long zigzag = (delta << 1) ^ (delta >> 63);
+
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[length++] = (byte) zigzag;
+            previous = balance;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    static long[] decode(byte[] encoded, int count) {
+        long[] balances = new long[count];
+        int position = 0;
+        long previous = 0L;
+
+        for (int i = 0; i < count; i++) {
+            long zigzag = 0L;
+            int shift = 0;
+            byte current;
+            do {
+                current = encoded[position++];
+                zigzag |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            balances[i] = previous;
+        }
+        return balances;
+    }
+
+    /**
+     * Returns the encoded balances of the first days.
+     */
+    private static byte[] truncate(byte[] encoded, int days) {
+        int position = 0;
+        for (int i = 0; i < days; i++) {
+            while (encoded[position++] < 0) {
+                // Skip the continuation bytes of the varint
+            }
+        }
+        return Arrays.copyOf(encoded, position);
+    }
+
+    /**
+     * Cached balances of a wallet.
+     *
+     * @param stamp        value of the global counter at the last change or load
+     * @param ownerId      ID of the user that owns the wallet
+     * @param start        day of the first balance
+     * @param days         number of balances. Zero if nothing is cached.
+     * @param currencyType currency type of the wallet
+     * @param balances     encoded balances
+     */
+    private record Entry(
+            long stamp,
+            long ownerId,
+            LocalDate start,
+            int days,
+            CurrencyType currencyType,
+            byte[] balances
+    ) {
+
+        static Entry empty(long stamp) {
+            return new Entry(stamp, NO_OWNER, LocalDate.MIN, 0, CurrencyType.BASIC, NO_BALANCES);
+        }
+
+    }
+
+}
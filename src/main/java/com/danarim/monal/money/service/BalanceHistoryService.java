@@ -0,0 +1,17 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.web.dto.ViewBalanceHistoryDto;
+
+import java.time.LocalDate;
+
+/**
+ * Service for daily balance histories of wallets.
+ */
+public interface BalanceHistoryService {
+
+    ViewBalanceHistoryDto getBalanceHistory(long walletId,
+                                            LocalDate from,
+                                            LocalDate to,
+                                            long loggedUserId);
+
+}
@@ -0,0 +1,108 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.WalletBalanceCheckpointDao;
+import com.danarim.monal.money.persistence.dto.BalanceHistoryDbDto;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
+import com.danarim.monal.money.web.dto.ViewBalanceHistoryDto;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service for daily balance histories of wallets. Histories are cached by
+ * {@link BalanceHistoryCache}, a miss loads the whole range with one query.
+ */
+@Service
+public class BalanceHistoryServiceImpl implements BalanceHistoryService {
+
+    /**
+     * Max number of days in one history, about five years.
+     */
+    public static final int MAX_HISTORY_DAYS = 1830;
+
+    private final WalletBalanceCheckpointDao walletBalanceCheckpointDao;
+    private final WalletService walletService;
+    private final BalanceHistoryCache balanceHistoryCache;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param walletBalanceCheckpointDao loads the histories
+     * @param walletService              used to explain why a history is not found
+     * @param balanceHistoryCache        cached histories
+     */
+    public BalanceHistoryServiceImpl(WalletBalanceCheckpointDao walletBalanceCheckpointDao,
+                                     WalletService walletService,
+                                     BalanceHistoryCache balanceHistoryCache
+    ) {
+        this.walletBalanceCheckpointDao = walletBalanceCheckpointDao;
+        this.walletService = walletService;
+        this.balanceHistoryCache = balanceHistoryCache;
+    }
+
+    /**
+     * Returns the end-of-day balances of the wallet for every day of the range. Days are in UTC.
+     *
+     * @param walletId     id of the wallet
+     * @param from         first day of the range
+     * @param to           last day of the range (inclusive)
+     * @param loggedUserId id of the user that owns the wallet
+     *
+     * @return balances of the wallet ordered by day
+     *
+     * @throws BadRequestException   if the range is invalid or too long, or wallet with the given
+     *                               id does not exist
+     * @throws ActionDeniedException if wallet with the given id does not belong to the user with
+     *                               the given id
+     */
+    @Override
+    public ViewBalanceHistoryDto getBalanceHistory(long walletId,
+                                                   LocalDate from,
+                                                   LocalDate to,
+                                                   long loggedUserId
+    ) {
+        if (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= MAX_HISTORY_DAYS) {
+            throw new BadRequestException(
+                    "Invalid balance history range: %s - %s".formatted(from, to),
+                    "validation.wallet.balance-history.range.invalid",
+                    new Object[] {MAX_HISTORY_DAYS});
+        }
+        Optional<double[]> cached =
+                balanceHistoryCache.getBalances(walletId, loggedUserId, from, to);
+
+        if (cached.isPresent()) {
+            return new ViewBalanceHistoryDto(from, cached.get());
+        }
+        long loadStamp = balanceHistoryCache.startLoad(walletId);
+        List<BalanceHistoryDbDto> history = walletBalanceCheckpointDao
+                .getOwnedWalletBalanceHistory(walletId, loggedUserId, from, to);
+
+        if (history.isEmpty()) {
+            if (!walletService.existsWallet(walletId)) {
+                throw new BadRequestException("Wallet with id " + walletId + " does not exist.",
+                                              "validation.wallet.notFound",
+                                              null);
+            }
+            throw new ActionDeniedException("Wallet with id %d does not belong to user with id %d."
+                                                    .formatted(walletId, loggedUserId));
+        }
+        CurrencyType currencyType = history.get(0).getCurrency().getType();
+        long[] minorUnits = history.stream()
+                .mapToLong(day -> Money.toMinorUnits(day.getBalance(), currencyType))
+                .toArray();
+        balanceHistoryCache.put(walletId, loggedUserId, from, currencyType, minorUnits, loadStamp);
+
+        double[] balances = new double[minorUnits.length];
+        for (int i = 0; i < minorUnits.length; i++) {
+            balances[i] = Money.toDouble(minorUnits[i], currencyType);
+        }
+        return new ViewBalanceHistoryDto(from, balances);
+    }
+
+}
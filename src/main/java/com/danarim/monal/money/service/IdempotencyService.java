@@ -0,0 +1,23 @@
+package com.danarim.monal.money.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.util.function.Supplier;
+
+/**
+ * Executes mutations at most once per idempotency key, so clients can safely retry them.
+ */
+public interface IdempotencyService {
+
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    int MAX_KEY_LENGTH = 64;
+
+    <T> T execute(String idempotencyKey,
+                  String operation,
+                  Object request,
+                  TypeReference<T> responseType,
+                  long loggedUserId,
+                  Supplier<T> mutation);
+
+}
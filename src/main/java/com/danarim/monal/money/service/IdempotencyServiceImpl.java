@@ -0,0 +1,205 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.exceptions.InternalServerException;
+import com.danarim.monal.money.persistence.dao.IdempotencyKeyDao;
+import com.danarim.monal.money.persistence.model.IdempotencyKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Service for idempotency keys.
+ *
+ * <p>Responses of recent keys are kept in a bounded in-memory cache, so a retry is answered
+ * without the database. On a cache miss the key is claimed in the database in the same
+ * transaction as the mutation: a concurrent claim of the same key waits for the first transaction
+ * and then reads its stored response. Concurrent retries on the same instance are collapsed by the
+ * cache before they reach the database. Failed mutations store nothing, so the client can retry
+ * them with the same key.
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    /**
+     * Max number of responses kept in memory.
+     */
+    public static final int CACHE_SIZE = 10_000;
+
+    /**
+     * How long a key is kept. A retry after that executes the mutation again.
+     */
+    public static final int KEY_TTL_IN_HOURS = 24;
+
+    private static final int CLEANUP_DELAY_IN_HOURS = 1;
+
+    private static final Log logger = LogFactory.getLog(IdempotencyServiceImpl.class);
+
+    private final Cache<CacheKey, StoredResponse> responses = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .expireAfterWrite(KEY_TTL_IN_HOURS, TimeUnit.HOURS)
+            .build();
+
+    private final IdempotencyKeyDao idempotencyKeyDao;
+    private final ObjectMapper objectMapper;
+    private final WalletWriteTemplate walletWriteTemplate;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param idempotencyKeyDao   IdempotencyKeyDao
+     * @param objectMapper        used to serialize requests and responses
+     * @param walletWriteTemplate used to claim the key in the transaction of the mutation. All
+     *                            idempotent mutations change wallets, so the claim is retried
+     *                            together with the mutation in the optimistic mode.
+     */
+    public IdempotencyServiceImpl(IdempotencyKeyDao idempotencyKeyDao,
+                                  ObjectMapper objectMapper,
+                                  WalletWriteTemplate walletWriteTemplate
+    ) {
+        this.idempotencyKeyDao = idempotencyKeyDao;
+        this.objectMapper = objectMapper;
+        this.walletWriteTemplate = walletWriteTemplate;
+    }
+
+    /**
+     * Executes the mutation once per idempotency key of the user. Retries with the same key get
+     * the response of the first execution. The response is always read from its JSON, so every
+     * retry gets exactly the same response as the first request.
+     *
+     * @param idempotencyKey key sent by the client. If null, the mutation is executed as usual.
+     * @param operation      name of the mutation, for example "transaction.create"
+     * @param request        request of the mutation. Must be serializable to JSON.
+     * @param responseType   type of the response
+     * @param loggedUserId   logged in user ID
+     * @param mutation       mutation to execute
+     * @param <T>            type of the response
+     *
+     * @return response of the first execution
+     *
+     * @throws BadRequestException if the key is already used for another request
+     */
+    @Override
+    public <T> T execute(String idempotencyKey,
+                         String operation,
+                         Object request,
+                         TypeReference<T> responseType,
+                         long loggedUserId,
+                         Supplier<T> mutation
+    ) {
+        if (idempotencyKey == null) {
+            return mutation.get();
+        }
+        String requestHash = hashRequest(operation, request);
+        StoredResponse stored;
+        try {
+            stored = responses.get(new CacheKey(loggedUserId, idempotencyKey),
+                                   () -> executeOnce(idempotencyKey,
+                                                     requestHash,
+                                                     loggedUserId,
+                                                     mutation));
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new InternalServerException("Idempotent mutation failed", e.getCause());
+        }
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new BadRequestException(
+                    "Idempotency key %s is already used for another request"
+                            .formatted(idempotencyKey),
+                    "validation.idempotency.key.reused",
+                    null
+            );
+        }
+        return readResponse(stored.response(), responseType);
+    }
+
+    /**
+     * Deletes expired keys from the database.
+     */
+    @Scheduled(fixedDelay = CLEANUP_DELAY_IN_HOURS, timeUnit = TimeUnit.HOURS)
+    protected void deleteExpiredKeysTask() {
+        try {
+            int deleted = idempotencyKeyDao.deleteAllCreatedBefore(
+                    Date.from(Instant.now().minus(KEY_TTL_IN_HOURS, ChronoUnit.HOURS))
+            );
+            logger.info("Scheduled task: %d expired idempotency keys deleted".formatted(deleted));
+        } catch (RuntimeException e) {
+            logger.error("Scheduled task: delete expired idempotency keys failed", e);
+        }
+    }
+
+    /**
+     * Claims the key and executes the mutation in one transaction. If the key is already used,
+     * returns the stored response instead.
+     */
+    private <T> StoredResponse executeOnce(String idempotencyKey,
+                                           String requestHash,
+                                           long userId,
+                                           Supplier<T> mutation
+    ) {
+        return walletWriteTemplate.execute(status -> {
+            if (idempotencyKeyDao.claimKey(userId, idempotencyKey, requestHash, new Date()) == 0) {
+                IdempotencyKey existing = idempotencyKeyDao
+                        .findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                        .orElseThrow(() -> new InternalServerException(
+                                "Idempotency key %s is claimed but not found"
+                                        .formatted(idempotencyKey)));
+
+                return new StoredResponse(existing.getRequestHash(), existing.getResponse());
+            }
+            String response = writeJson(mutation.get());
+            idempotencyKeyDao.saveResponse(userId, idempotencyKey, response);
+
+            return new StoredResponse(requestHash, response);
+        });
+    }
+
+    private String hashRequest(String operation, Object request) {
+        return Hashing.sha256()
+                .hashString(operation + '\n' + writeJson(request), StandardCharsets.UTF_8)
+                .toString();
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerException("Failed to serialize " + value, e);
+        }
+    }
+
+    private <T> T readResponse(String response, TypeReference<T> responseType) {
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException e) {
+            throw new InternalServerException("Failed to deserialize stored response", e);
+        }
+    }
+
+    private record CacheKey(long userId, String idempotencyKey) {
+
+    }
+
+    private record StoredResponse(String requestHash, String response) {
+
+    }
+
+}
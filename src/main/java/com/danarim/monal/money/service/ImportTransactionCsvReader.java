@@ -0,0 +1,197 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.web.dto.ImportTransactionDto;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads transactions import rows from CSV (RFC 4180). The first record is a header with column
+ * names. Columns "date", "amount" and "categoryId" are required, column "description" is
+ * optional. Other columns are ignored, so the file created by the export can be imported back.
+ */
+final class ImportTransactionCsvReader {
+
+    /**
+     * Same format as in {@link ImportTransactionDto}.
+     */
+    private static final DateTimeFormatter DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final String DATE_COLUMN = "date";
+    private static final String AMOUNT_COLUMN = "amount";
+    private static final String CATEGORY_ID_COLUMN = "categoryId";
+    private static final String DESCRIPTION_COLUMN = "description";
+
+    private ImportTransactionCsvReader() {
+    }
+
+    /**
+     * Reads all rows of the CSV.
+     *
+     * @param reader CSV source
+     *
+     * @return rows in the order of the file
+     *
+     * @throws IOException         if the source can't be read
+     * @throws BadRequestException if the CSV is malformed or contains invalid values
+     */
+    static List<ImportTransactionDto> read(Reader reader) throws IOException {
+        PushbackReader in = new PushbackReader(reader);
+
+        List<String> header = readRecord(in);
+        if (header == null) {
+            return List.of();
+        }
+        int dateIndex = getColumnIndex(header, DATE_COLUMN, true);
+        int amountIndex = getColumnIndex(header, AMOUNT_COLUMN, true);
+        int categoryIdIndex = getColumnIndex(header, CATEGORY_ID_COLUMN, true);
+        int descriptionIndex = getColumnIndex(header, DESCRIPTION_COLUMN, false);
+
+        List<ImportTransactionDto> result = new ArrayList<>();
+        List<String> fields;
+
+        while ((fields = readRecord(in)) != null) {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) { // Blank line
+                continue;
+            }
+            int row = result.size() + 1;
+            String description = descriptionIndex == -1
+                    ? null
+                    : getField(fields, descriptionIndex, row);
+
+            result.add(new ImportTransactionDto(
+                    description == null || description.isEmpty() ? null : description,
+                    parseDate(getField(fields, dateIndex, row), row),
+                    parseAmount(getField(fields, amountIndex, row), row),
+                    parseCategoryId(getField(fields, categoryIdIndex, row), row)
+            ));
+        }
+        return result;
+    }
+
+    /**
+     * Reads one CSV record. Quoted fields can contain commas, line breaks and escaped quotes.
+     *
+     * @param in CSV source
+     *
+     * @return fields of the record or null if the end of the source is reached
+     *
+     * @throws IOException         if the source can't be read
+     * @throws BadRequestException if a quoted field is not closed
+     */
+    private static List<String> readRecord(PushbackReader in) throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new BadRequestException("Unclosed quoted field in CSV",
+                                                  "validation.transaction.import.csv.malformed",
+                                                  null);
+                }
+                if (c == '"') {
+                    int next = in.read();
+                    if (next != '"') { // Closing quote, otherwise escaped quote
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int next = in.read();
+                    if (next != '\n' && next != -1) {
+                        in.unread(next);
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+
+    private static int getColumnIndex(List<String> header, String column, boolean required) {
+        int index = header.indexOf(column);
+
+        if (index == -1 && required) {
+            throw new BadRequestException("Missing CSV column " + column,
+                                          "validation.transaction.import.csv.column.missing",
+                                          new Object[]{column});
+        }
+        return index;
+    }
+
+    private static String getField(List<String> fields, int index, int row) {
+        if (index >= fields.size()) {
+            throw new BadRequestException("Missing fields in CSV row " + row,
+                                          "validation.transaction.import.csv.malformed",
+                                          null);
+        }
+        return fields.get(index);
+    }
+
+    private static Date parseDate(String value, int row) {
+        if (value.isEmpty()) {
+            return null; // Validated with the other import rows
+        }
+        try {
+            return Date.from(LocalDateTime.parse(value, DATE_FORMATTER).toInstant(ZoneOffset.UTC));
+        } catch (DateTimeParseException e) {
+            throw invalidValue(DATE_COLUMN, value, row, e);
+        }
+    }
+
+    private static double parseAmount(String value, int row) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalidValue(AMOUNT_COLUMN, value, row, e);
+        }
+    }
+
+    private static long parseCategoryId(String value, int row) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalidValue(CATEGORY_ID_COLUMN, value, row, e);
+        }
+    }
+
+    private static BadRequestException invalidValue(String column,
+                                                    String value,
+                                                    int row,
+                                                    Exception cause
+    ) {
+        return new BadRequestException(
+                "Invalid value '%s' of column %s in CSV row %d".formatted(value, column, row),
+                cause,
+                "validation.transaction.import.csv.value.invalid",
+                new Object[]{row, column});
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.web.dto.CreateRecurringTransactionDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Service for recurring transactions and the scheduler that creates their occurrences.
+ */
+public interface RecurringTransactionService {
+
+    RecurringTransaction createRecurringTransaction(CreateRecurringTransactionDto dto,
+                                                    long loggedUserId
+    );
+
+    List<RecurringTransaction> getWalletRecurringTransactions(long walletId, long loggedUserId);
+
+    void deleteRecurringTransaction(long recurringTransactionId, long loggedUserId);
+
+    int createDueOccurrences(LocalDateTime now);
+
+}
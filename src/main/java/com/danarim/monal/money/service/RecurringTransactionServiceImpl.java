@@ -0,0 +1,372 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadFieldException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.RecurringOccurrenceDao;
+import com.danarim.monal.money.persistence.dao.RecurringTransactionDao;
+import com.danarim.monal.money.persistence.dto.DueRecurringTransactionDbDto;
+import com.danarim.monal.money.persistence.dto.RecurringOccurrenceDbDto;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.CreateRecurringTransactionDto;
+import com.google.common.collect.Lists;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service for recurring transactions.
+ *
+ * <p>The scheduler creates due occurrences in chunks of recurring transactions. Every chunk is
+ * one database transaction: the chunk is locked, occurrences are inserted with JDBC batches
+ * grouped by wallet, every wallet balance is updated once (or gets one delta in the
+ * {@link WalletConcurrencyMode#LEDGER ledger} mode) and the recurring transactions are moved to
+ * their next occurrences. An occurrence is identified by the recurring transaction and the
+ * date, so a chunk that is processed twice (for example after a crash) creates nothing new. A
+ * chunk that the database rolled back to resolve a deadlock is processed again.
+ */
+@Service
+public class RecurringTransactionServiceImpl implements RecurringTransactionService {
+
+    /**
+     * Max number of recurring transactions locked by one database transaction.
+     */
+    public static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Max number of occurrences of one recurring transaction created by one chunk. A recurring
+     * transaction that has more overdue occurrences (after downtime) stays due and is picked up by
+     * the next chunk of the same run.
+     */
+    public static final int MAX_OCCURRENCES_PER_CHUNK = 100;
+
+    /**
+     * Max number of occurrences inserted with one JDBC batch.
+     */
+    public static final int INSERT_BATCH_SIZE = 1000;
+
+    private static final int SCHEDULER_DELAY_IN_MINUTES = 5;
+
+    private static final Log logger = LogFactory.getLog(RecurringTransactionServiceImpl.class);
+
+    private final RecurringTransactionDao recurringTransactionDao;
+    private final RecurringOccurrenceDao recurringOccurrenceDao;
+    private final WalletService walletService;
+    private final TransactionCategoryService categoryService;
+    private final WalletWriteTemplate walletWriteTemplate;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param recurringTransactionDao RecurringTransactionDao
+     * @param recurringOccurrenceDao  RecurringOccurrenceDao
+     * @param walletService           WalletService
+     * @param categoryService         TransactionCategoryService
+     * @param walletWriteTemplate     used to process every chunk in its own transaction
+     */
+    public RecurringTransactionServiceImpl(RecurringTransactionDao recurringTransactionDao,
+                                           RecurringOccurrenceDao recurringOccurrenceDao,
+                                           WalletService walletService,
+                                           TransactionCategoryService categoryService,
+                                           WalletWriteTemplate walletWriteTemplate
+    ) {
+        this.recurringTransactionDao = recurringTransactionDao;
+        this.recurringOccurrenceDao = recurringOccurrenceDao;
+        this.walletService = walletService;
+        this.categoryService = categoryService;
+        this.walletWriteTemplate = walletWriteTemplate;
+    }
+
+    /**
+     * Creates a new recurring transaction. The first occurrence is the first date of the schedule
+     * that is not before the start date. Occurrences in the past are created by the next run of
+     * the scheduler.
+     *
+     * @param dto          DTO with recurring transaction data
+     * @param loggedUserId logged in user ID
+     *
+     * @return created recurring transaction
+     *
+     * @throws BadRequestException   if the wallet does not exist or the amount rounds to zero
+     * @throws BadFieldException     if the category does not exist, the schedule is invalid or
+     *                               the amount is too large for the wallet currency
+     * @throws ActionDeniedException if the user is not the owner of the wallet
+     */
+    @Override
+    public RecurringTransaction createRecurringTransaction(CreateRecurringTransactionDto dto,
+                                                           long loggedUserId
+    ) {
+        if (!walletService.isUserWalletOwner(dto.walletId(), loggedUserId)) {
+            if (!walletService.existsWallet(dto.walletId())) {
+                throw new BadRequestException("Wallet with ID " + dto.walletId()
+                                                      + " does not exist.",
+                                              "validation.wallet.notFound",
+                                              null);
+            }
+            throw new ActionDeniedException("User with ID %d does not own wallet with ID %d"
+                                                    .formatted(loggedUserId, dto.walletId()));
+        }
+        if (categoryService.getCategoryType(dto.categoryId()) == null) {
+            throw new BadFieldException("Missing category with ID " + dto.categoryId(),
+                                        "validation.category.notFound",
+                                        null,
+                                        "category");
+        }
+        CronExpression cron = parseSchedule(dto.cron());
+
+        LocalDateTime start = dto.startDate() == null
+                ? LocalDateTime.now()
+                : LocalDateTime.ofInstant(dto.startDate().toInstant(), ZoneId.systemDefault());
+        LocalDateTime firstOccurrence = cron.next(start.minusSeconds(1));
+
+        if (firstOccurrence == null) {
+            throw invalidSchedule(dto.cron());
+        }
+        CurrencyType currencyType = walletService.getWalletCurrency(dto.walletId()).getType();
+
+        if (!Money.isValidAmount(dto.amount(), currencyType)) {
+            throw new BadFieldException("Amount %s is too large for %s currency"
+                                                .formatted(dto.amount(), currencyType),
+                                        "validation.transaction.amount.max-for-currency",
+                                        null,
+                                        "amount");
+        }
+        BigDecimal amount = roundTransactionAmount(dto.amount(), currencyType);
+
+        if (amount.signum() <= 0) {
+            throw new BadFieldException("Amount is zero after rounding to the wallet currency",
+                                        "validation.transaction.amount.positive",
+                                        null,
+                                        "amount");
+        }
+        return recurringTransactionDao.save(new RecurringTransaction(
+                normalizeDescription(dto.description()),
+                amount.doubleValue(),
+                new TransactionCategory(dto.categoryId()),
+                new Wallet(dto.walletId()),
+                dto.cron().trim(),
+                Date.from(firstOccurrence.atZone(ZoneId.systemDefault()).toInstant())
+        ));
+    }
+
+    /**
+     * Gets all recurring transactions of the wallet.
+     *
+     * @param walletId     wallet ID
+     * @param loggedUserId logged in user ID
+     *
+     * @return recurring transactions ordered by ID
+     *
+     * @throws AccessDeniedException if the user is not the owner of the wallet
+     */
+    @Override
+    public List<RecurringTransaction> getWalletRecurringTransactions(long walletId,
+                                                                     long loggedUserId
+    ) {
+        if (!walletService.isUserWalletOwner(walletId, loggedUserId)) {
+            throw new AccessDeniedException("User with ID %d is not the owner of wallet with ID %d"
+                                                    .formatted(loggedUserId, walletId));
+        }
+        return recurringTransactionDao.findAllByWalletIdOrderByIdAsc(walletId);
+    }
+
+    /**
+     * Deletes the recurring transaction. Transactions that are already created by it are kept.
+     *
+     * @param recurringTransactionId recurring transaction ID
+     * @param loggedUserId           logged in user ID
+     *
+     * @throws BadRequestException   if the recurring transaction does not exist
+     * @throws ActionDeniedException if the user is not the owner of the recurring transaction
+     */
+    @Override
+    public void deleteRecurringTransaction(long recurringTransactionId, long loggedUserId) {
+        if (recurringTransactionDao.deleteUserRecurringTransaction(recurringTransactionId,
+                                                                   loggedUserId) == 1) {
+            return;
+        }
+        if (!recurringTransactionDao.existsById(recurringTransactionId)) {
+            throw new BadRequestException("Recurring transaction with ID " + recurringTransactionId
+                                                  + " does not exist.",
+                                          "validation.recurring.notFound",
+                                          null);
+        }
+        throw new ActionDeniedException(
+                "User with ID %d does not own recurring transaction with ID %d"
+                        .formatted(loggedUserId, recurringTransactionId));
+    }
+
+    /**
+     * Creates all occurrences that are due at the given date, chunk by chunk, until no recurring
+     * transaction is due. Every chunk moves each of its recurring transactions at least one
+     * occurrence forward, so the loop always ends.
+     *
+     * @param now current date
+     *
+     * @return number of created transactions
+     */
+    @Override
+    public int createDueOccurrences(LocalDateTime now) {
+        int created = 0;
+        ChunkResult chunk;
+        do {
+            chunk = walletWriteTemplate.execute(status -> createDueOccurrencesChunk(now));
+            created += chunk.created();
+        } while (chunk.processed() > 0);
+
+        return created;
+    }
+
+    /**
+     * Runs the scheduler. The duration of the run is logged, so the run window can be measured.
+     */
+    @Scheduled(fixedDelay = SCHEDULER_DELAY_IN_MINUTES, timeUnit = TimeUnit.MINUTES)
+    protected void createDueOccurrencesTask() {
+        logger.info("Scheduled task: create recurring transactions started");
+        long startNanos = System.nanoTime();
+        try {
+            int created = createDueOccurrences(LocalDateTime.now());
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            logger.info("Scheduled task: create recurring transactions finished. "
+                                + "%d transactions created in %d ms"
+                                        .formatted(created, durationMillis));
+        } catch (RuntimeException e) {
+            logger.error("Scheduled task: create recurring transactions failed", e);
+        }
+    }
+
+    /**
+     * Processes one chunk of due recurring transactions. Must be called inside a transaction.
+     *
+     * @return number of processed recurring transactions and number of created transactions
+     */
+    private ChunkResult createDueOccurrencesChunk(LocalDateTime now) {
+        List<DueRecurringTransactionDbDto> due =
+                recurringOccurrenceDao.lockDueRecurringTransactions(now, CHUNK_SIZE);
+
+        if (due.isEmpty()) {
+            return new ChunkResult(0, 0);
+        }
+        List<RecurringOccurrenceDbDto> occurrences = new ArrayList<>();
+        Map<Long, LocalDateTime> nextOccurrences = new HashMap<>();
+
+        for (DueRecurringTransactionDbDto recurring : due) {
+            CronExpression cron = CronExpression.parse(recurring.cron());
+            LocalDateTime occurrence = recurring.nextOccurrence();
+
+            for (int i = 0; i < MAX_OCCURRENCES_PER_CHUNK
+                    && occurrence != null && !occurrence.isAfter(now); i++) {
+                occurrences.add(new RecurringOccurrenceDbDto(recurring.id(),
+                                                             recurring.description(),
+                                                             occurrence,
+                                                             recurring.amount(),
+                                                             recurring.categoryId(),
+                                                             recurring.walletId()));
+                occurrence = cron.next(occurrence);
+            }
+            nextOccurrences.put(recurring.id(), occurrence);
+        }
+        // Group the occurrences by wallet
+        occurrences.sort(Comparator.comparingLong(RecurringOccurrenceDbDto::walletId));
+
+        SortedMap<Long, BigDecimal> balanceDeltas = new TreeMap<>();
+        WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+        int created = 0;
+
+        for (List<RecurringOccurrenceDbDto> batch :
+                Lists.partition(occurrences, INSERT_BATCH_SIZE)) {
+            int[] inserted = recurringOccurrenceDao.insertOccurrences(batch);
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (inserted[i] == 0) {
+                    continue; // Already created
+                }
+                RecurringOccurrenceDbDto occurrence = batch.get(i);
+                TransactionType categoryType =
+                        categoryService.getCategoryType(occurrence.categoryId());
+                BigDecimal delta = categoryType == TransactionType.INCOME
+                        ? occurrence.amount()
+                        : occurrence.amount().negate();
+
+                balanceDeltas.merge(occurrence.walletId(), delta, BigDecimal::add);
+                balanceChanges.addTransaction(occurrence.walletId(), occurrence.date(),
+                                              occurrence.categoryId(), categoryType,
+                                              occurrence.amount());
+                created++;
+            }
+        }
+        if (!balanceDeltas.isEmpty()) {
+            if (walletWriteTemplate.getMode() == WalletConcurrencyMode.LEDGER) {
+                recurringOccurrenceDao.appendWalletDeltas(balanceDeltas);
+            } else {
+                recurringOccurrenceDao.addWalletBalances(balanceDeltas);
+            }
+            walletService.addBalanceChanges(balanceChanges);
+        }
+        recurringOccurrenceDao.updateNextOccurrences(nextOccurrences);
+
+        return new ChunkResult(due.size(), created);
+    }
+
+    /**
+     * Parses the schedule. Occurrences must be at most once an hour, so seconds and minutes must
+     * be fixed numbers. Macros like "@monthly" are allowed.
+     */
+    private static CronExpression parseSchedule(String cron) {
+        String trimmed = cron.trim();
+
+        if (!CronExpression.isValidExpression(trimmed)) {
+            throw invalidSchedule(cron);
+        }
+        if (!trimmed.startsWith("@")) {
+            String[] fields = trimmed.split("\\s+");
+
+            if (!fields[0].matches("\\d+") || !fields[1].matches("\\d+")) {
+                throw invalidSchedule(cron);
+            }
+        }
+        return CronExpression.parse(trimmed);
+    }
+
+    private static BadFieldException invalidSchedule(String cron) {
+        return new BadFieldException("Invalid recurring transaction schedule: " + cron,
+                                     "validation.recurring.cron.invalid",
+                                     null,
+                                     "cron");
+    }
+
+    private static String normalizeDescription(String description) {
+        return description == null ? null : description.trim().replaceAll("\\s+", " ");
+    }
+
+    private static BigDecimal roundTransactionAmount(double amount, CurrencyType currencyType) {
+        return Money.toBigDecimal(Money.toMinorUnits(amount, currencyType), currencyType);
+    }
+
+    private record ChunkResult(int processed, int created) {
+
+    }
+
+}
@@ -4,6 +4,7 @@ import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.TransactionType;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service for {@link TransactionCategory}.
@@ -14,4 +15,8 @@ public interface TransactionCategoryService {
 
     TransactionType getCategoryType(long categoryId);
 
+    Map<Long, TransactionType> getCategoryTypes();
+
+    long getTransferCategoryId(TransactionType type);
+
 }
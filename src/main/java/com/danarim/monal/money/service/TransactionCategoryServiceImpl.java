@@ -1,20 +1,36 @@
 package com.danarim.monal.money.service;
 
+import com.danarim.monal.exceptions.InternalServerException;
 import com.danarim.monal.money.persistence.dao.TransactionCategoryDao;
 import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.TransactionType;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Service for {@link TransactionCategory}.
+ *
+ * <p>Categories are static data from the SQL init scripts, so their types and the transfer
+ * categories are loaded once on startup and read from memory after that.
  */
 @Service
 public class TransactionCategoryServiceImpl implements TransactionCategoryService {
 
+    /**
+     * Name of the top-level categories of the transfer legs. Created by data-categories.sql.
+     */
+    public static final String TRANSFER_CATEGORY_NAME = "Transfer";
+
     private final TransactionCategoryDao transactionCategoryDao;
 
+    private volatile Map<Long, TransactionType> categoryTypes;
+    private volatile Map<TransactionType, Long> transferCategoryIds;
+
     public TransactionCategoryServiceImpl(TransactionCategoryDao transactionCategoryDao) {
         this.transactionCategoryDao = transactionCategoryDao;
     }
@@ -38,9 +54,77 @@ public class TransactionCategoryServiceImpl implements TransactionCategoryServic
         return categories;
     }
 
+    /**
+     * Returns the type of the category without querying the database.
+     *
+     * @param categoryId ID of the category
+     *
+     * @return type of the category or null if the category does not exist
+     */
     @Override
     public TransactionType getCategoryType(long categoryId) {
-        return transactionCategoryDao.getTypeById(categoryId);
+        return getCategoryTypes().get(categoryId);
+    }
+
+    /**
+     * Returns types of all categories. Used to validate many transactions without querying the
+     * category of every transaction.
+     *
+     * @return immutable category ID to category type map
+     */
+    @Override
+    public Map<Long, TransactionType> getCategoryTypes() {
+        Map<Long, TransactionType> types = categoryTypes;
+        if (types == null) { // Not loaded yet, e.g. the application is still starting
+            types = loadCategoryTypes();
+        }
+        return types;
+    }
+
+    /**
+     * Returns the ID of the transfer category of the type without querying the database.
+     *
+     * @param type type of the transfer leg
+     *
+     * @return ID of the category
+     *
+     * @throws InternalServerException if the category is missing in the database
+     */
+    @Override
+    public long getTransferCategoryId(TransactionType type) {
+        Map<TransactionType, Long> ids = transferCategoryIds;
+        if (ids == null) { // Not loaded yet, e.g. the application is still starting
+            loadCategoryTypes();
+            ids = transferCategoryIds;
+        }
+        Long id = ids.get(type);
+        if (id == null) {
+            throw new InternalServerException(
+                    "Transfer category of type %s does not exist".formatted(type));
+        }
+        return id;
+    }
+
+    /**
+     * Loads types of all categories into memory. Called when the application is ready, so the
+     * categories are already inserted by the SQL init scripts.
+     *
+     * @return immutable category ID to category type map
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public Map<Long, TransactionType> loadCategoryTypes() {
+        List<TransactionCategory> categories = transactionCategoryDao.findAll();
+
+        transferCategoryIds = categories.stream()
+                .filter(category -> category.getParentCategory() == null
+                        && TRANSFER_CATEGORY_NAME.equals(category.getName()))
+                .collect(Collectors.toUnmodifiableMap(TransactionCategory::getType,
+                                                      TransactionCategory::getId));
+        Map<Long, TransactionType> types = categories.stream()
+                .collect(Collectors.toUnmodifiableMap(TransactionCategory::getId,
+                                                      TransactionCategory::getType));
+        categoryTypes = types;
+        return types;
     }
 
     /**
@@ -0,0 +1,15 @@
+package com.danarim.monal.money.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Prepared export of transactions. Nothing is read from the database until
+ * {@link #writeTo(OutputStream)} is called.
+ */
+@FunctionalInterface
+public interface TransactionExport {
+
+    void writeTo(OutputStream out) throws IOException;
+
+}
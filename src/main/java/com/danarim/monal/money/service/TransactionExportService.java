@@ -0,0 +1,15 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.model.ExportFormat;
+
+/**
+ * Service for exporting the transactions history of a wallet.
+ */
+public interface TransactionExportService {
+
+    TransactionExport exportWalletTransactions(long walletId,
+                                               ExportFormat format,
+                                               long loggedUserId
+    );
+
+}
@@ -0,0 +1,186 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.InternalServerException;
+import com.danarim.monal.money.persistence.dao.TransactionExportDao;
+import com.danarim.monal.money.persistence.model.ExportFormat;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Streams the transactions history of a wallet straight from the database cursor to the output
+ * stream. Rows are formatted one by one without creating entities or DTOs, so memory usage
+ * doesn't depend on the size of the history.
+ */
+@Service
+public class TransactionExportServiceImpl implements TransactionExportService {
+
+    /**
+     * Same format as in {@link com.danarim.monal.money.web.dto.ViewTransactionDto}.
+     */
+    private static final DateTimeFormatter DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final String CSV_HEADER = "id,date,amount,categoryId,walletId,description";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final WalletService walletService;
+    private final TransactionExportDao transactionExportDao;
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param walletService        WalletService
+     * @param transactionExportDao TransactionExportDao
+     * @param transactionManager   used to open a read-only transaction for the database cursor
+     */
+    public TransactionExportServiceImpl(WalletService walletService,
+                                        TransactionExportDao transactionExportDao,
+                                        PlatformTransactionManager transactionManager
+    ) {
+        this.walletService = walletService;
+        this.transactionExportDao = transactionExportDao;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Checks that the user owns the wallet and prepares the export. The access check is done
+     * immediately, the data is read only when the export is written.
+     *
+     * @param walletId     wallet ID
+     * @param format       format of the export
+     * @param loggedUserId logged in user ID
+     *
+     * @return export that writes all wallet transactions ordered by date (oldest first)
+     *
+     * @throws AccessDeniedException if the user is not the owner of the wallet
+     */
+    @Override
+    public TransactionExport exportWalletTransactions(long walletId,
+                                                      ExportFormat format,
+                                                      long loggedUserId
+    ) {
+        if (!walletService.isUserWalletOwner(walletId, loggedUserId)) {
+            throw new AccessDeniedException("User with ID %d is not the owner of wallet with ID %d"
+                                                    .formatted(loggedUserId, walletId));
+        }
+        return switch (format) {
+            case NDJSON -> out -> writeNdjson(walletId, out);
+            case CSV -> out -> writeCsv(walletId, out);
+            default -> throw new InternalServerException(
+                    "Unsupported export format: %s".formatted(format)
+            );
+        };
+    }
+
+    private void writeNdjson(long walletId, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+
+            streamRows(walletId, resultSet -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", resultSet.getLong(1));
+                    generator.writeStringField("date", formatDate(resultSet));
+                    generator.writeFieldName("amount");
+                    generator.writeNumber(formatAmount(resultSet));
+                    generator.writeNumberField("categoryId", resultSet.getLong(4));
+                    generator.writeNumberField("walletId", resultSet.getLong(5));
+                    generator.writeStringField("description", resultSet.getString(6));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private void writeCsv(long walletId, OutputStream out) throws IOException {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+
+            streamRows(walletId, resultSet -> {
+                try {
+                    writer.write(Long.toString(resultSet.getLong(1)));
+                    writer.write(',');
+                    writer.write(formatDate(resultSet));
+                    writer.write(',');
+                    writer.write(formatAmount(resultSet));
+                    writer.write(',');
+                    writer.write(Long.toString(resultSet.getLong(4)));
+                    writer.write(',');
+                    writer.write(Long.toString(resultSet.getLong(5)));
+                    writer.write(',');
+                    writeCsvValue(writer, resultSet.getString(6));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads the wallet transactions in a read-only transaction, which is required by the database
+     * cursor. {@link IOException IOExceptions} thrown by the row handler are unwrapped.
+     */
+    private void streamRows(long walletId, RowCallbackHandler rowHandler) throws IOException {
+        try {
+            readOnlyTransaction.executeWithoutResult(
+                    status -> transactionExportDao.streamWalletTransactions(walletId, rowHandler)
+            );
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String formatDate(ResultSet resultSet) throws SQLException {
+        return resultSet.getObject(2, LocalDateTime.class).format(DATE_FORMATTER);
+    }
+
+    private static String formatAmount(ResultSet resultSet) throws SQLException {
+        BigDecimal amount = resultSet.getBigDecimal(3);
+        return amount.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Writes the value as a CSV field. Quotes the value if it contains special characters.
+     */
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+}
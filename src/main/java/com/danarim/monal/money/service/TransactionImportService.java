@@ -0,0 +1,23 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.web.dto.ImportTransactionDto;
+import com.danarim.monal.money.web.dto.ImportTransactionsResultDto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Service for importing many transactions at once.
+ */
+public interface TransactionImportService {
+
+    ImportTransactionsResultDto importTransactions(long walletId,
+                                                   List<ImportTransactionDto> transactions,
+                                                   long loggedUserId);
+
+    ImportTransactionsResultDto importTransactionsCsv(long walletId,
+                                                      Reader csv,
+                                                      long loggedUserId) throws IOException;
+
+}
@@ -0,0 +1,245 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.TransactionImportDao;
+import com.danarim.monal.money.persistence.dto.ImportTransactionDbDto;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.web.dto.ImportTransactionDto;
+import com.danarim.monal.money.web.dto.ImportTransactionsResultDto;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports transactions to a wallet in batches. Every batch is inserted with one JDBC batch and
+ * changes the wallet balance once, in its own database transaction.
+ *
+ * <p>Every row has a fingerprint (hash of its data). Rows with the fingerprint that already
+ * exists in the wallet are skipped, so a failed or repeated import can be safely run again.
+ */
+@Service
+public class TransactionImportServiceImpl implements TransactionImportService {
+
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+    private final TransactionCategoryService categoryService;
+    private final WalletService walletService;
+    private final TransactionImportDao transactionImportDao;
+    private final WalletWriteTemplate walletWriteTemplate;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param categoryService      TransactionCategoryService
+     * @param walletService        WalletService
+     * @param transactionImportDao TransactionImportDao
+     * @param walletWriteTemplate  used to open a transaction for every batch
+     */
+    public TransactionImportServiceImpl(TransactionCategoryService categoryService,
+                                        WalletService walletService,
+                                        TransactionImportDao transactionImportDao,
+                                        WalletWriteTemplate walletWriteTemplate
+    ) {
+        this.categoryService = categoryService;
+        this.walletService = walletService;
+        this.transactionImportDao = transactionImportDao;
+        this.walletWriteTemplate = walletWriteTemplate;
+    }
+
+    /**
+     * Validates all rows and imports them to the wallet. Nothing is imported if any row is
+     * invalid.
+     *
+     * @param walletId     wallet ID
+     * @param transactions rows to import
+     * @param loggedUserId logged in user ID
+     *
+     * @return number of imported and skipped rows
+     *
+     * @throws ActionDeniedException if the user is not the owner of the wallet
+     * @throws BadRequestException   if any row is invalid
+     */
+    @Override
+    public ImportTransactionsResultDto importTransactions(long walletId,
+                                                          List<ImportTransactionDto> transactions,
+                                                          long loggedUserId
+    ) {
+        if (!walletService.isUserWalletOwner(walletId, loggedUserId)) {
+            throw new ActionDeniedException("User with ID %d does not own wallet with ID %d"
+                                                    .formatted(loggedUserId, walletId));
+        }
+        CurrencyType currencyType = walletService.getWalletCurrency(walletId).getType();
+        Map<Long, TransactionType> categoryTypes = categoryService.getCategoryTypes();
+
+        List<ImportTransactionDbDto> rows = new ArrayList<>(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            rows.add(prepareRow(transactions.get(i), i + 1, currencyType, categoryTypes));
+        }
+        int imported = 0;
+        for (List<ImportTransactionDbDto> batch
+                : Lists.partition(rows, TransactionImportDao.IMPORT_BATCH_SIZE)) {
+            imported += walletWriteTemplate.execute(
+                    status -> importBatch(walletId, currencyType, batch, categoryTypes)
+            );
+        }
+        return new ImportTransactionsResultDto(imported, rows.size() - imported);
+    }
+
+    /**
+     * Reads rows from CSV and imports them to the wallet.
+     *
+     * @param walletId     wallet ID
+     * @param csv          CSV with header. See {@link ImportTransactionCsvReader}
+     * @param loggedUserId logged in user ID
+     *
+     * @return number of imported and skipped rows
+     *
+     * @throws IOException           if the CSV can't be read
+     * @throws ActionDeniedException if the user is not the owner of the wallet
+     * @throws BadRequestException   if the CSV is malformed or any row is invalid
+     */
+    @Override
+    public ImportTransactionsResultDto importTransactionsCsv(long walletId,
+                                                             Reader csv,
+                                                             long loggedUserId
+    ) throws IOException {
+        return importTransactions(walletId, ImportTransactionCsvReader.read(csv), loggedUserId);
+    }
+
+    /**
+     * Inserts the batch and adds the sum of the inserted rows to the wallet balance and the
+     * monthly balance checkpoints. The wallet is not locked: duplicates are skipped by the
+     * fingerprint and the balance is changed by one atomic update, so concurrent imports to the
+     * same wallet can't lose a balance change.
+     *
+     * @param walletId      wallet ID
+     * @param currencyType  currency type of the wallet
+     * @param batch         validated rows
+     * @param categoryTypes category ID to category type map
+     *
+     * @return number of inserted rows
+     */
+    private int importBatch(long walletId,
+                            CurrencyType currencyType,
+                            List<ImportTransactionDbDto> batch,
+                            Map<Long, TransactionType> categoryTypes
+    ) {
+        if (!walletService.existsWallet(walletId)) {
+            throw walletNotFound(walletId);
+        }
+        int[] insertedCounts = transactionImportDao.insertTransactions(walletId, batch);
+
+        int imported = 0;
+        long balanceDelta = 0L; // Minor units
+        WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+
+        for (int i = 0; i < insertedCounts.length; i++) {
+            if (insertedCounts[i] == 0) { // Duplicate
+                continue;
+            }
+            ImportTransactionDbDto row = batch.get(i);
+            long amount = Money.toMinorUnits(row.amount(), currencyType);
+            TransactionType categoryType = categoryTypes.get(row.categoryId());
+            imported++;
+            balanceDelta = Math.addExact(balanceDelta, categoryType == TransactionType.INCOME
+                                                       ? amount
+                                                       : -amount);
+            balanceChanges.addTransaction(walletId, row.date(), row.categoryId(), categoryType,
+                                          Money.toBigDecimal(amount, currencyType));
+        }
+        if (imported > 0
+                && !walletService.addWalletBalance(walletId, balanceDelta, currencyType)) {
+            throw walletNotFound(walletId);
+        }
+        walletService.addBalanceChanges(balanceChanges);
+        return imported;
+    }
+
+    private static BadRequestException walletNotFound(long walletId) {
+        return new BadRequestException("Wallet with ID " + walletId + " does not exist.",
+                                       "validation.wallet.notFound",
+                                       null);
+    }
+
+    /**
+     * Validates and normalizes the row the same way as a created transaction.
+     *
+     * @param transaction   row to import
+     * @param row           row number for error messages, starting from 1
+     * @param currencyType  currency type of the wallet
+     * @param categoryTypes category ID to category type map
+     *
+     * @return row ready to be inserted
+     *
+     * @throws BadRequestException if the row is invalid
+     */
+    private static ImportTransactionDbDto prepareRow(ImportTransactionDto transaction,
+                                                     int row,
+                                                     CurrencyType currencyType,
+                                                     Map<Long, TransactionType> categoryTypes
+    ) {
+        if (transaction.date() == null) {
+            throw invalidRow(row, "validation.transaction.import.date.notnull");
+        }
+        if (!categoryTypes.containsKey(transaction.categoryId())) {
+            throw invalidRow(row, "validation.transaction.import.category.notFound");
+        }
+        if (!Money.isValidAmount(transaction.amount(), currencyType)) {
+            throw invalidRow(row, "validation.transaction.import.amount.max");
+        }
+        BigDecimal amount = Money.toBigDecimal(transaction.amount(), currencyType);
+        if (amount.signum() <= 0) {
+            throw invalidRow(row, "validation.transaction.import.amount.positive");
+        }
+        String description = transaction.description() == null
+                ? null
+                : transaction.description().trim().replaceAll("\\s+", " ");
+        if (description != null && description.length() > MAX_DESCRIPTION_LENGTH) {
+            throw invalidRow(row, "validation.transaction.import.description.size");
+        }
+        return new ImportTransactionDbDto(
+                description,
+                transaction.date(),
+                amount,
+                transaction.categoryId(),
+                getFingerprint(description, transaction, amount)
+        );
+    }
+
+    /**
+     * Hash of the normalized row data. Equal rows of the same wallet are considered the same
+     * transaction.
+     *
+     * @return SHA-256 hex string
+     */
+    private static String getFingerprint(String description,
+                                         ImportTransactionDto transaction,
+                                         BigDecimal amount
+    ) {
+        return Hashing.sha256().newHasher()
+                .putLong(transaction.date().getTime())
+                .putLong(transaction.categoryId())
+                .putString(amount.toPlainString(), StandardCharsets.UTF_8)
+                .putChar('\n')
+                .putString(description == null ? "" : description, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
+    private static BadRequestException invalidRow(int row, String messageCode) {
+        return new BadRequestException("Invalid import row " + row, messageCode,
+                                       new Object[]{row});
+    }
+
+}
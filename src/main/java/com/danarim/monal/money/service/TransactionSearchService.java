@@ -0,0 +1,21 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import com.danarim.monal.money.web.dto.TransactionSearchCursor;
+
+import java.util.List;
+
+/**
+ * Service for the full-text search over transaction descriptions.
+ */
+public interface TransactionSearchService {
+
+    List<TransactionSearchDbDto> searchTransactions(String query,
+                                                    TransactionSearchOrder order,
+                                                    TransactionSearchCursor cursor,
+                                                    int pageSize,
+                                                    long loggedUserId
+    );
+
+}
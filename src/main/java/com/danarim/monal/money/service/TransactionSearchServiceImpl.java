@@ -0,0 +1,58 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dao.TransactionSearchDao;
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import com.danarim.monal.money.web.dto.TransactionSearchCursor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Service for the full-text search over transaction descriptions.
+ */
+@Service
+public class TransactionSearchServiceImpl implements TransactionSearchService {
+
+    private final TransactionSearchDao transactionSearchDao;
+
+    public TransactionSearchServiceImpl(TransactionSearchDao transactionSearchDao) {
+        this.transactionSearchDao = transactionSearchDao;
+    }
+
+    /**
+     * Searches the transactions of all wallets of the user by description. Returns one more
+     * transaction than the page size, so the caller can tell if there is a next page.
+     *
+     * @param query        search query in the web search syntax
+     * @param order        order of the results
+     * @param cursor       position of the last transaction on the previous page. Null for the
+     *                     first page.
+     * @param pageSize     number of transactions on the page
+     * @param loggedUserId logged in user ID
+     *
+     * @return up to {@code pageSize + 1} found transactions
+     */
+    @Override
+    public List<TransactionSearchDbDto> searchTransactions(String query,
+                                                           TransactionSearchOrder order,
+                                                           TransactionSearchCursor cursor,
+                                                           int pageSize,
+                                                           long loggedUserId
+    ) {
+        if (cursor == null) {
+            return transactionSearchDao.searchUserTransactions(loggedUserId,
+                                                               query,
+                                                               order,
+                                                               pageSize + 1);
+        }
+        return transactionSearchDao.searchUserTransactionsAfter(loggedUserId,
+                                                                query,
+                                                                order,
+                                                                cursor.rank(),
+                                                                cursor.date(),
+                                                                cursor.id(),
+                                                                pageSize + 1);
+    }
+
+}
@@ -1,7 +1,11 @@
 package com.danarim.monal.money.service;
 
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
 import com.danarim.monal.money.persistence.model.Transaction;
 import com.danarim.monal.money.web.dto.CreateTransactionDto;
+import com.danarim.monal.money.web.dto.TransactionBatchOperationDto;
+import com.danarim.monal.money.web.dto.TransactionPageCursor;
 import com.danarim.monal.money.web.dto.UpdateTransactionDto;
 
 import java.util.Date;
@@ -14,14 +18,31 @@ public interface TransactionService {
 
     Transaction createTransaction(CreateTransactionDto createTransactionDto, long userId);
 
-    List<Transaction> getTransactionsBetweenDates(Date from,
-                                                  Date to,
-                                                  long walletId,
-                                                  long loggedUserId
+    List<TransactionDbDto> getTransactionsBetweenDates(Date from,
+                                                       Date to,
+                                                       long walletId,
+                                                       long loggedUserId
+    );
+
+    List<TransactionDbDto> getTransactionsPageBetweenDates(Date from,
+                                                           Date to,
+                                                           long walletId,
+                                                           TransactionPageCursor cursor,
+                                                           int pageSize,
+                                                           long loggedUserId
+    );
+
+    List<TransactionDbDto> filterTransactions(TransactionFilter filter,
+                                              TransactionPageCursor cursor,
+                                              int pageSize,
+                                              long loggedUserId
     );
 
     void deleteTransaction(long transactionId, long loggedUserId);
 
     Transaction updateTransaction(UpdateTransactionDto transactionDto, long loggedUserId);
 
+    List<Transaction> applyTransactionBatch(List<TransactionBatchOperationDto> operations,
+                                            long loggedUserId);
+
 }
@@ -5,20 +5,40 @@ import com.danarim.monal.exceptions.BadFieldException;
 import com.danarim.monal.exceptions.BadRequestException;
 import com.danarim.monal.exceptions.InternalServerException;
 import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.TransferDao;
+import com.danarim.monal.money.persistence.dto.TransactionBalanceDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
+import com.danarim.monal.money.persistence.dto.TransactionWalletDbDto;
+import com.danarim.monal.money.persistence.dto.UpdatedTransactionDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
 import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
 import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.TransactionType;
 import com.danarim.monal.money.persistence.model.Wallet;
 import com.danarim.monal.money.web.dto.CreateTransactionDto;
+import com.danarim.monal.money.web.dto.TransactionBatchOperationDto;
+import com.danarim.monal.money.web.dto.TransactionPageCursor;
 import com.danarim.monal.money.web.dto.UpdateTransactionDto;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.transaction.Transactional;
 
 /**
@@ -30,31 +50,47 @@ public class TransactionServiceImpl implements TransactionService {
     private final TransactionCategoryService categoryService;
     private final WalletService walletService;
     private final TransactionDao transactionDao;
+    private final TransferDao transferDao;
+    private final WalletWriteTemplate walletWriteTemplate;
 
     /**
      * Dependency injection constructor.
      *
-     * @param categoryService TransactionCategoryService
-     * @param walletService   WalletService
-     * @param transactionDao  TransactionDao
+     * @param categoryService     TransactionCategoryService
+     * @param walletService       WalletService
+     * @param transactionDao      TransactionDao
+     * @param transferDao         used to tell transfer legs, which can't be changed one by one
+     * @param walletWriteTemplate used to apply batches according to the wallet concurrency mode
      */
     public TransactionServiceImpl(TransactionCategoryService categoryService,
                                   WalletService walletService,
-                                  TransactionDao transactionDao
+                                  TransactionDao transactionDao,
+                                  TransferDao transferDao,
+                                  WalletWriteTemplate walletWriteTemplate
     ) {
         this.categoryService = categoryService;
         this.walletService = walletService;
         this.transactionDao = transactionDao;
+        this.transferDao = transferDao;
+        this.walletWriteTemplate = walletWriteTemplate;
     }
 
     /**
      * Checks if the transaction data is valid. Creates a new transaction and updates the wallet
      * balance.
      *
+     * <p>Category type is read from memory. Wallet lock, owner check and balance change are done
+     * by one update, so the happy path costs one update, one checkpoint upsert and one insert.
+     *
      * @param createTransactionDto DTO with transaction data
      * @param userId               logged in user ID
      *
      * @return created transaction
+     *
+     * @throws BadFieldException     if category is not found or the amount is too large for the
+     *                               wallet currency
+     * @throws BadRequestException   if wallet is not found
+     * @throws ActionDeniedException if a user does not own the wallet
      */
     @Override
     @Transactional(rollbackOn = Exception.class)
@@ -62,49 +98,105 @@ public class TransactionServiceImpl implements TransactionService {
         TransactionType categoryType =
                 categoryService.getCategoryType(createTransactionDto.categoryId());
 
-        Optional<Wallet> optionalWallet =
-                walletService.getWalletForUpdate(createTransactionDto.walletId());
+        if (categoryType == null) {
+            throw categoryNotFound(createTransactionDto.categoryId());
+        }
+        // Decimal, so the amount doesn't have to fit into minor units of the other currency type
+        BigDecimal basicAmount =
+                Money.toBigDecimal(createTransactionDto.amount(), CurrencyType.BASIC);
+        BigDecimal cryptoAmount =
+                Money.toBigDecimal(createTransactionDto.amount(), CurrencyType.CRYPTO);
+        boolean income = categoryType == TransactionType.INCOME;
+
+        Currency currency = walletService.addOwnedWalletBalance(
+                        createTransactionDto.walletId(),
+                        userId,
+                        income ? basicAmount : basicAmount.negate(),
+                        income ? cryptoAmount : cryptoAmount.negate())
+                .orElseThrow(() -> walletNotUpdated(createTransactionDto.walletId(), userId));
+        CurrencyType currencyType = currency.getType();
 
-        validateCreateTransaction(createTransactionDto, userId, categoryType, optionalWallet);
+        if (!Money.isValidAmount(createTransactionDto.amount(), currencyType)) {
+            // The balance change is rolled back
+            throw amountOutOfRange(createTransactionDto.amount(), currencyType);
+        }
+        BigDecimal amount = currencyType == CurrencyType.BASIC ? basicAmount : cryptoAmount;
+        Date date = new Date(createTransactionDto.date().getTime());
 
-        Wallet wallet = optionalWallet.get(); // Wallet is present because of validation
+        WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+        balanceChanges.addTransaction(createTransactionDto.walletId(), date,
+                                      createTransactionDto.categoryId(), categoryType, amount);
+        walletService.addBalanceChanges(balanceChanges);
 
-        double amount = roundTransactionAmount(
-                createTransactionDto.amount(), wallet.getCurrency().getType()
-        );
-        Transaction result = transactionDao.save(new Transaction(
-                createTransactionDto.description() == null
-                        ? null
-                        : createTransactionDto.description().trim().replaceAll("\\s+", " "),
-                new Date(createTransactionDto.date().getTime()),
-                amount,
+        return transactionDao.save(new Transaction(
+                normalizeDescription(createTransactionDto.description()),
+                date,
+                amount.doubleValue(),
                 new TransactionCategory(createTransactionDto.categoryId()),
-                wallet
+                new Wallet(createTransactionDto.walletId())
         ));
-        walletService.updateWalletBalance(
-                wallet,
-                categoryType == TransactionType.INCOME ? amount : -amount
-        );
-        return result;
     }
 
     /**
-     * Gets all transactions between two dates for a wallet.
+     * Gets all transactions between two dates for a wallet. Only scalar columns are read, so the
+     * category, wallet and wallet owner are not loaded.
+     *
+     * @param from         date from
+     * @param to           date to
+     * @param walletId     wallet ID
+     * @param loggedUserId logged in user ID
+     *
+     * @return list of transactions ordered by date and ID (newest first)
+     *
+     * @throws AccessDeniedException if a user does not own the wallet
+     * @throws BadRequestException   if date 'from' is after date 'to'
+     */
+    @Override
+    public List<TransactionDbDto> getTransactionsBetweenDates(Date from,
+                                                              Date to,
+                                                              long walletId,
+                                                              long loggedUserId
+    ) {
+        if (!walletService.isUserWalletOwner(walletId, loggedUserId)) {
+            throw new AccessDeniedException("User with ID %d is not the owner of wallet with ID %d"
+                                                    .formatted(loggedUserId, walletId));
+        }
+        if (from.after(to)) {
+            throw new BadRequestException("Date 'from' must be before date 'to'",
+                                          "validation.transaction.date-from-after-date-to",
+                                          null);
+        }
+        return transactionDao.getTransactionsBetweenDates(walletId, from, to);
+    }
+
+    /**
+     * Gets one page of wallet transactions between two dates. Transactions are sorted by date and
+     * ID in the database (newest first), so the cost of the request doesn't depend on the number
+     * of transactions in the range.
+     *
+     * <p>Returns up to {@code pageSize + 1} transactions. The extra transaction is not a part of
+     * the page, it only signals that the next page exists.
      *
      * @param from         date from
      * @param to           date to
      * @param walletId     wallet ID
+     * @param cursor       position of the last transaction on the previous page. Null for the
+     *                     first page.
+     * @param pageSize     max number of transactions on the page
      * @param loggedUserId logged in user ID
      *
-     * @return list of transactions
+     * @return transactions of the page and optionally the first transaction of the next page
      *
      * @throws AccessDeniedException if a user does not own the wallet
      * @throws BadRequestException   if date 'from' is after date 'to'
      */
     @Override
-    public List<Transaction> getTransactionsBetweenDates(Date from,
-                                                         Date to, long walletId,
-                                                         long loggedUserId
+    public List<TransactionDbDto> getTransactionsPageBetweenDates(Date from,
+                                                                  Date to,
+                                                                  long walletId,
+                                                                  TransactionPageCursor cursor,
+                                                                  int pageSize,
+                                                                  long loggedUserId
     ) {
         if (!walletService.isUserWalletOwner(walletId, loggedUserId)) {
             throw new AccessDeniedException("User with ID %d is not the owner of wallet with ID %d"
@@ -115,276 +207,682 @@ public class TransactionServiceImpl implements TransactionService {
                                           "validation.transaction.date-from-after-date-to",
                                           null);
         }
-        return transactionDao.getTransactionsByWalletIdAndDateBetween(walletId, from, to);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        if (cursor == null) {
+            return transactionDao.getTransactionsPage(walletId, from, to, limit);
+        }
+        return transactionDao.getTransactionsPageAfter(walletId,
+                                                       from,
+                                                       to,
+                                                       cursor.date(),
+                                                       cursor.id(),
+                                                       limit);
+    }
+
+    /**
+     * Returns one page of wallet transactions that match all conditions of the filter.
+     * Transactions are sorted by date and ID (newest first). Returns one more transaction than the
+     * page size, so the caller can tell if there is a next page.
+     *
+     * @param filter       filter conditions
+     * @param cursor       position of the last transaction on the previous page. Null for the
+     *                     first page.
+     * @param pageSize     number of transactions on the page
+     * @param loggedUserId logged in user ID
+     *
+     * @return up to {@code pageSize + 1} matching transactions
+     *
+     * @throws AccessDeniedException if the user is not the owner of the wallet
+     * @throws BadRequestException   if the date or amount range is empty
+     */
+    @Override
+    public List<TransactionDbDto> filterTransactions(TransactionFilter filter,
+                                                     TransactionPageCursor cursor,
+                                                     int pageSize,
+                                                     long loggedUserId
+    ) {
+        if (!walletService.isUserWalletOwner(filter.walletId(), loggedUserId)) {
+            throw new AccessDeniedException("User with ID %d is not the owner of wallet with ID %d"
+                                                    .formatted(loggedUserId, filter.walletId()));
+        }
+        if (filter.from().after(filter.to())) {
+            throw new BadRequestException("Date 'from' must be before date 'to'",
+                                          "validation.transaction.date-from-after-date-to",
+                                          null);
+        }
+        if (filter.minAmount() != null && filter.maxAmount() != null
+                && filter.minAmount() > filter.maxAmount()) {
+            throw new BadRequestException("Min amount must not be greater than max amount",
+                                          "validation.transaction.filter.min-amount-after-max",
+                                          null);
+        }
+        if (cursor == null) {
+            return transactionDao.filterTransactions(filter, pageSize + 1);
+        }
+        return transactionDao.filterTransactionsAfter(filter,
+                                                      cursor.date(),
+                                                      cursor.id(),
+                                                      pageSize + 1);
     }
 
     /**
      * Deletes a transaction if it exists and the user is the owner of the transaction.
      *
+     * <p>The wallet of the transaction is locked first, like in every other change of wallets.
+     * Then the delete checks the owner and returns the deleted state in one statement, and the
+     * wallet balance is reverted by one update.
+     *
+     * <p>A leg of a transfer is not deleted, otherwise the other leg would be left without its
+     * pair.
+     *
      * @param transactionId transaction ID
      * @param loggedUserId  logged in user ID
      *
-     * @throws BadRequestException   if the transaction does not exist
+     * @throws BadRequestException   if the transaction does not exist or is a leg of a transfer
      * @throws ActionDeniedException if the user is not the owner of the transaction
      */
     @Override
-    @Transactional(rollbackOn = Exception.class)
     public void deleteTransaction(long transactionId, long loggedUserId) {
-        if (!transactionDao.existsById(transactionId)) {
-            throw new BadRequestException(
-                    "Transaction with ID %d does not exist.".formatted(transactionId),
-                    "validation.transaction.notFound",
-                    null);
-        }
-        if (!transactionDao.isUserTransactionOwner(transactionId, loggedUserId)) {
-            throw new ActionDeniedException(
-                    "User with ID %d is not the owner of transaction with ID %d"
-                            .formatted(loggedUserId, transactionId));
-        }
-        Transaction transaction = transactionDao.getById(transactionId);
-        Optional<Wallet> walletForUpdate =
-                walletService.getWalletForUpdate(transaction.getWallet().getId());
+        walletWriteTemplate.execute(status -> {
+            lockTransactionWallets(transactionId);
 
-        if (walletForUpdate.isEmpty()) { // Should never happen
-            throw new InternalServerException(
-                    "Wallet with ID %d does not exist.".formatted(transaction.getWallet().getId())
-            );
-        }
-        transactionDao.deleteById(transactionId);
+            TransactionBalanceDbDto deleted =
+                    transactionDao.deleteUserTransaction(transactionId, loggedUserId)
+                            .orElseThrow(() -> transactionNotDeleted(transactionId, loggedUserId));
+
+            CurrencyType currencyType = deleted.getCurrency().getType();
+            long amount = Money.toMinorUnits(deleted.getAmount(), currencyType);
+
+            addWalletBalance(deleted.getWalletId(),
+                             deleted.getCategoryType() == TransactionType.INCOME ? -amount : amount,
+                             currencyType);
 
-        walletService.updateWalletBalance(walletForUpdate.get(),
-                                          transaction.getCategory().getType()
-                                                  == TransactionType.INCOME
-                                                  ? -transaction.getAmount()
-                                                  : transaction.getAmount());
+            WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+            balanceChanges.removeTransaction(deleted.getWalletId(), deleted.getDate(),
+                                             deleted.getCategoryId(), deleted.getCategoryType(),
+                                             Money.toBigDecimal(amount, currencyType));
+            walletService.addBalanceChanges(balanceChanges);
+            return null;
+        });
     }
 
     /**
      * Updates a transaction and the wallet balance.
      *
+     * <p>The old and the new wallet are locked first in the order of ID, like in every other
+     * change of wallets, so concurrent moves of transactions between the same wallets can't
+     * deadlock. Then the update checks the owners and the currency and returns the old state in
+     * one statement, and every affected wallet balance is changed by one update. A leg of a
+     * transfer is not updated, like it is not deleted.
+     *
      * @param transactionDto DTO with transaction data
      * @param loggedUserId   logged in user ID
      *
      * @return updated transaction
+     *
+     * @throws BadFieldException     if category is not found or the amount is too large for the
+     *                               wallet currency
+     * @throws BadRequestException   if the transaction or the new wallet does not exist, the new
+     *                               wallet has a different currency or the transaction is a leg
+     *                               of a transfer
+     * @throws ActionDeniedException if the user does not own the transaction or the new wallet
      */
     @Override
-    @Transactional(rollbackOn = Exception.class)
     public Transaction updateTransaction(UpdateTransactionDto transactionDto, long loggedUserId) {
         TransactionType newCategoryType =
                 categoryService.getCategoryType(transactionDto.categoryId());
-        Optional<Wallet> optionalNewWallet =
-                walletService.getWalletForUpdate(transactionDto.walletId());
 
-        validateUpdateTransaction(transactionDto, loggedUserId, newCategoryType, optionalNewWallet);
+        if (newCategoryType == null) {
+            throw categoryNotFound(transactionDto.categoryId());
+        }
+        return walletWriteTemplate.execute(
+                status -> applyUpdate(transactionDto, newCategoryType, loggedUserId)
+        );
+    }
+
+    /**
+     * Updates the transaction and the balances of the affected wallets. Must be called inside a
+     * transaction.
+     *
+     * @param transactionDto  DTO with transaction data
+     * @param newCategoryType type of the new category
+     * @param loggedUserId    logged in user ID
+     *
+     * @return updated transaction
+     */
+    private Transaction applyUpdate(UpdateTransactionDto transactionDto,
+                                    TransactionType newCategoryType,
+                                    long loggedUserId
+    ) {
+        lockTransactionWallets(transactionDto.id(), transactionDto.walletId());
+
+        String description = normalizeDescription(transactionDto.description());
+        Date date = new Date(transactionDto.date().getTime());
 
-        // Transaction is present because of validation
-        Transaction transaction = transactionDao.findById(transactionDto.id()).get();
+        UpdatedTransactionDbDto oldState = transactionDao.updateUserTransaction(
+                transactionDto.id(),
+                loggedUserId,
+                description,
+                date,
+                Money.toBigDecimal(transactionDto.amount(), CurrencyType.BASIC),
+                Money.toBigDecimal(transactionDto.amount(), CurrencyType.CRYPTO),
+                transactionDto.categoryId(),
+                transactionDto.walletId(),
+                Currency.getNames(CurrencyType.CRYPTO)
+        ).orElseThrow(() -> transactionNotUpdated(transactionDto, loggedUserId));
 
-        // New wallet must have the same currency as the old wallet
-        if (walletService.getWalletCurrency(transactionDto.walletId())
-                != optionalNewWallet.get().getCurrency()) {
-            throw new BadRequestException(
-                    "Wallet with ID %d has different currency than transaction with ID %d"
-                            .formatted(transactionDto.walletId(), transactionDto.id()),
-                    "validation.transaction.wallet-has-different-currency",
-                    null);
+        // Both wallets have the same currency, checked by the update
+        CurrencyType currencyType = oldState.getCurrency().getType();
+
+        if (!Money.isValidAmount(transactionDto.amount(), currencyType)) {
+            // The update is rolled back
+            throw amountOutOfRange(transactionDto.amount(), currencyType);
         }
-        // Wallet, category type or amount changed
-        if (transaction.getWallet().getId() != transactionDto.walletId()
-                || transaction.getCategory().getType() != newCategoryType
-                || transaction.getAmount() != transactionDto.amount()) {
-            updateWalletBallanceOnUpdate(transactionDto,
-                                         transaction,
-                                         optionalNewWallet,
-                                         newCategoryType);
-        }
-        // Must be after updating the wallet balance because updating use old transaction data
-        updateTransactionFields(transactionDto, transaction, optionalNewWallet);
-        return transactionDao.save(transaction);
+        long oldAmount = Money.toMinorUnits(oldState.getAmount(), currencyType);
+        long newAmount = Money.toMinorUnits(oldState.getNewAmount(), currencyType);
+
+        // Ordered by wallet ID, so concurrent updates of the same wallets can't deadlock
+        Map<Long, Long> balanceDeltas = new TreeMap<>();
+        addBalanceDelta(balanceDeltas, oldState.getWalletId(), oldState.getCategoryType(),
+                        -oldAmount);
+        addBalanceDelta(balanceDeltas, transactionDto.walletId(), newCategoryType, newAmount);
+
+        balanceDeltas.forEach((walletId, delta) -> {
+            if (delta != 0L) {
+                addWalletBalance(walletId, delta, currencyType);
+            }
+        });
+        WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+        balanceChanges.removeTransaction(oldState.getWalletId(), oldState.getDate(),
+                                         oldState.getCategoryId(), oldState.getCategoryType(),
+                                         Money.toBigDecimal(oldAmount, currencyType));
+        balanceChanges.addTransaction(transactionDto.walletId(), date,
+                                      transactionDto.categoryId(), newCategoryType,
+                                      Money.toBigDecimal(newAmount, currencyType));
+        walletService.addBalanceChanges(balanceChanges);
+
+        Transaction result = new Transaction(description,
+                                             date,
+                                             oldState.getNewAmount(),
+                                             new TransactionCategory(transactionDto.categoryId()),
+                                             new Wallet(transactionDto.walletId()));
+        result.setId(transactionDto.id());
+        return result;
     }
 
     /**
-     * Validates the transaction data.
+     * Applies a batch of transaction changes in one database transaction. Either all operations
+     * are applied or none of them.
      *
-     * @param createTransactionDto DTO with transaction data
-     * @param userId               logged in user ID
-     * @param categoryType         type of the transaction category from the DTO
-     * @param optionalWallet       optional wallet from the database with the ID from the DTO
+     * <p>Unlike the single operations, ownership is checked once per wallet, every affected
+     * wallet is locked once (in the order of ID, so concurrent batches can't deadlock) and the
+     * balance of every wallet is changed once with the net delta of all operations by one atomic
+     * update. In the {@link WalletConcurrencyMode#OPTIMISTIC optimistic} mode the wallets are not
+     * locked, and the batch is applied again if any of them is changed concurrently. In the
+     * {@link WalletConcurrencyMode#LEDGER ledger} mode the wallets are not locked either, only the
+     * updated and deleted transactions are.
      *
-     * @throws BadFieldException     if category is not found
-     * @throws BadRequestException   if wallet is not found
-     * @throws ActionDeniedException if a user does not own the wallet
+     * @param operations   operations in the order they are applied. One transaction can be
+     *                     updated or deleted only by one operation of the batch.
+     * @param loggedUserId logged in user ID
+     *
+     * @return for every operation the created, updated or deleted transaction
+     *
+     * @throws BadRequestException   if any operation is invalid or changes a leg of a transfer
+     * @throws ActionDeniedException if the user is not the owner of any affected wallet
      */
-    private static void validateCreateTransaction(CreateTransactionDto createTransactionDto,
-                                                  long userId,
-                                                  TransactionType categoryType,
-                                                  Optional<Wallet> optionalWallet
+    @Override
+    public List<Transaction> applyTransactionBatch(List<TransactionBatchOperationDto> operations,
+                                                   long loggedUserId
     ) {
-        // categoryType fetched from the database by category ID from the DTO
-        if (categoryType == null) {
-            throw new BadFieldException(
-                    "Missing category with ID " + createTransactionDto.categoryId(),
-                    "validation.category.notFound",
-                    null,
-                    "category");
-        }
-        if (optionalWallet.isEmpty()) {
-            throw new BadRequestException(
-                    "Wallet with ID " + createTransactionDto.walletId() + " does not exist.",
-                    "validation.wallet.notFound",
-                    null);
+        Map<Long, Integer> changedTransactionIds = validateBatchOperations(operations);
+
+        return walletWriteTemplate.execute(
+                status -> applyValidatedBatch(operations, changedTransactionIds, loggedUserId)
+        );
+    }
+
+    /**
+     * Applies the batch. Must be called inside a transaction.
+     *
+     * @param operations            validated operations
+     * @param changedTransactionIds IDs of updated and deleted transactions with the index of the
+     *                              operation
+     * @param loggedUserId          logged in user ID
+     *
+     * @return for every operation the created, updated or deleted transaction
+     */
+    private List<Transaction> applyValidatedBatch(List<TransactionBatchOperationDto> operations,
+                                                  Map<Long, Integer> changedTransactionIds,
+                                                  long loggedUserId
+    ) {
+        if (walletWriteTemplate.getMode() == WalletConcurrencyMode.LEDGER
+                && !changedTransactionIds.isEmpty()) {
+            // Wallets are not locked, so the changed transactions are locked instead. Otherwise a
+            // concurrent change of the same transaction could revert its old amount twice.
+            transactionDao.lockTransactions(changedTransactionIds.keySet());
         }
-        if (optionalWallet.get().getOwner().getId() != userId) {
-            throw new ActionDeniedException(
-                    "User with ID %d does not own wallet with ID %d"
-                            .formatted(userId, optionalWallet.get().getId()));
+        // Wallets must be locked before the transactions with their wallets are loaded,
+        // otherwise the wallets are read before the lock and the balance can be outdated.
+        Map<Long, Long> transactionWalletIds =
+                transactionDao.getTransactionWallets(changedTransactionIds.keySet()).stream()
+                        .collect(Collectors.toMap(TransactionWalletDbDto::getId,
+                                                  TransactionWalletDbDto::getWalletId));
+
+        changedTransactionIds.forEach((transactionId, index) -> {
+            if (!transactionWalletIds.containsKey(transactionId)) {
+                throw invalidBatchOperation(index, "validation.transaction.batch.notFound");
+            }
+        });
+        // Legs of transfers are changed only together, see deleteTransaction
+        if (!changedTransactionIds.isEmpty()) {
+            transferDao.getTransferLegIds(changedTransactionIds.keySet()).stream()
+                    .mapToInt(changedTransactionIds::get)
+                    .min()
+                    .ifPresent(index -> {
+                        throw invalidBatchOperation(index,
+                                                    "validation.transaction.batch.transfer-leg");
+                    });
         }
-    }
+        Map<Long, Wallet> wallets =
+                lockBatchWallets(operations, transactionWalletIds, loggedUserId);
+
+        Map<Long, Transaction> transactions =
+                transactionDao.findAllById(changedTransactionIds.keySet()).stream()
+                        .collect(Collectors.toMap(Transaction::getId, Function.identity()));
+        Map<Long, TransactionType> categoryTypes = categoryService.getCategoryTypes();
+
+        Map<Long, Long> balanceDeltas = new TreeMap<>();
+        WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+        List<Transaction> deletedTransactions = new ArrayList<>();
+        List<Transaction> result = new ArrayList<>(operations.size());
 
-    private static double roundTransactionAmount(double amount, CurrencyType currencyType) {
-        return switch (currencyType) {
-            // round to 2 decimal places
-            case BASIC -> Math.floor(amount * 100.0) / 100.0;
-            // round to 8 decimal places
-            case CRYPTO -> Math.floor(amount * 100000000.0) / 100000000.0;
-        };
+        for (int i = 0; i < operations.size(); i++) {
+            TransactionBatchOperationDto operation = operations.get(i);
+
+            switch (operation.type()) {
+                case CREATE -> result.add(applyBatchCreate(
+                        operation, i, wallets, categoryTypes, balanceDeltas, balanceChanges
+                ));
+                case UPDATE -> result.add(applyBatchUpdate(
+                        operation, i, transactions.get(operation.id()), wallets, categoryTypes,
+                        balanceDeltas, balanceChanges
+                ));
+                case DELETE -> {
+                    Transaction transaction = transactions.get(operation.id());
+                    Wallet wallet = transaction.getWallet();
+                    CurrencyType currencyType = wallet.getCurrency().getType();
+                    TransactionCategory category = transaction.getCategory();
+                    long amount = Money.toMinorUnits(transaction.getAmount(), currencyType);
+
+                    addBalanceDelta(balanceDeltas, wallet.getId(), category.getType(), -amount);
+                    balanceChanges.removeTransaction(wallet.getId(), transaction.getDate(),
+                                                     category.getId(), category.getType(),
+                                                     Money.toBigDecimal(amount, currencyType));
+                    deletedTransactions.add(transaction);
+                    result.add(transaction);
+                }
+                default -> throw new InternalServerException(
+                        "Unsupported batch operation type: %s".formatted(operation.type())
+                );
+            }
+        }
+        if (!deletedTransactions.isEmpty()) {
+            transactionDao.deleteAllInBatch(deletedTransactions);
+        }
+        // Every wallet is passed, so its version is checked in the optimistic mode
+        wallets.forEach((walletId, wallet) -> walletService.updateWalletBalance(
+                wallet, balanceDeltas.getOrDefault(walletId, 0L)
+        ));
+        walletService.addBalanceChanges(balanceChanges);
+        return result;
     }
 
     /**
-     * Calculates the wallet amount delta for new transaction state on update.
+     * Checks that every operation has the fields required by its type and that every transaction
+     * is changed only by one operation.
+     *
+     * @param operations batch operations
      *
-     * @param oldType   transaction type for old transaction state
-     * @param oldAmount transaction amount for old transaction state
-     * @param newType   transaction type for new transaction state
-     * @param newAmount transaction amount for new transaction state
+     * @return IDs of updated and deleted transactions with the index of the operation
      *
-     * @return wallet amount delta for new transaction state
+     * @throws BadRequestException if any operation is incomplete or a transaction is changed twice
      */
-    private static double calculateWalletNewAmountDelta(TransactionType oldType,
-                                                        double oldAmount,
-                                                        TransactionType newType,
-                                                        double newAmount
+    private static Map<Long, Integer> validateBatchOperations(
+            List<TransactionBatchOperationDto> operations
     ) {
-        double walletOldAmountDelta =
-                oldType == TransactionType.INCOME ? oldAmount : -oldAmount;
+        Map<Long, Integer> changedTransactionIds = new HashMap<>();
 
-        double walletNewAmountDelta =
-                newType == TransactionType.INCOME ? newAmount : -newAmount;
+        for (int i = 0; i < operations.size(); i++) {
+            TransactionBatchOperationDto operation = operations.get(i);
 
-        return BigDecimal.valueOf(walletNewAmountDelta)
-                .subtract(BigDecimal.valueOf(walletOldAmountDelta))
-                .doubleValue();
+            boolean complete = switch (operation.type()) {
+                case CREATE -> operation.date() != null
+                        && operation.amount() != null
+                        && operation.categoryId() != null
+                        && operation.walletId() != null;
+                case UPDATE -> operation.id() != null
+                        && operation.date() != null
+                        && operation.amount() != null
+                        && operation.categoryId() != null
+                        && operation.walletId() != null;
+                case DELETE -> operation.id() != null;
+            };
+            if (!complete) {
+                throw invalidBatchOperation(i, "validation.transaction.batch.incomplete");
+            }
+            if (operation.type() != TransactionBatchOperationType.CREATE
+                    && changedTransactionIds.putIfAbsent(operation.id(), i) != null) {
+                throw invalidBatchOperation(i, "validation.transaction.batch.duplicate");
+            }
+        }
+        return changedTransactionIds;
     }
 
     /**
-     * Updates the transaction fields from the DTO.
+     * Locks all wallets affected by the batch in the order of ID and checks that the user owns
+     * them.
+     *
+     * @param operations           batch operations
+     * @param transactionWalletIds transaction ID to wallet ID map of updated and deleted
+     *                             transactions
+     * @param userId               logged in user ID
+     *
+     * @return wallet ID to locked wallet map
      *
-     * @param transactionDto    DTO with transaction data
-     * @param transaction       transaction to update
-     * @param optionalNewWallet new transaction state wallet. Must be present!
+     * @throws BadRequestException   if a wallet of any operation does not exist
+     * @throws ActionDeniedException if the user does not own any of the wallets
      */
-    private static void updateTransactionFields(UpdateTransactionDto transactionDto,
-                                                Transaction transaction,
-                                                Optional<Wallet> optionalNewWallet
+    private Map<Long, Wallet> lockBatchWallets(List<TransactionBatchOperationDto> operations,
+                                               Map<Long, Long> transactionWalletIds,
+                                               long userId
     ) {
-        transaction.setDescription(
-                transactionDto.description() == null
-                        ? null
-                        : transactionDto.description().trim().replaceAll("\\s+", " ")
-        );
-        transaction.setDate(new Date(transactionDto.date().getTime()));
-        transaction.setAmount(roundTransactionAmount(
-                transactionDto.amount(),
-                transaction.getWallet().getCurrency().getType()
+        Set<Long> walletIds = new TreeSet<>(transactionWalletIds.values());
+        operations.stream()
+                .filter(operation -> operation.type() != TransactionBatchOperationType.DELETE)
+                .forEach(operation -> walletIds.add(operation.walletId()));
+
+        Map<Long, Wallet> wallets = walletService.getWalletsForUpdate(walletIds).stream()
+                .collect(Collectors.toMap(Wallet::getId, Function.identity()));
+
+        for (int i = 0; i < operations.size(); i++) {
+            TransactionBatchOperationDto operation = operations.get(i);
+
+            if (operation.type() != TransactionBatchOperationType.DELETE
+                    && !wallets.containsKey(operation.walletId())) {
+                throw invalidBatchOperation(i, "validation.transaction.batch.wallet.notFound");
+            }
+        }
+        for (Wallet wallet : wallets.values()) {
+            if (wallet.getOwner().getId() != userId) {
+                throw new ActionDeniedException(
+                        "User with ID %d does not own wallet with ID %d"
+                                .formatted(userId, wallet.getId()));
+            }
+        }
+        return wallets;
+    }
+
+    private Transaction applyBatchCreate(TransactionBatchOperationDto operation,
+                                         int index,
+                                         Map<Long, Wallet> wallets,
+                                         Map<Long, TransactionType> categoryTypes,
+                                         Map<Long, Long> balanceDeltas,
+                                         WalletBalanceChanges balanceChanges
+    ) {
+        TransactionType categoryType = categoryTypes.get(operation.categoryId());
+        if (categoryType == null) {
+            throw invalidBatchOperation(index, "validation.transaction.batch.category.notFound");
+        }
+        Wallet wallet = wallets.get(operation.walletId());
+        CurrencyType currencyType = wallet.getCurrency().getType();
+
+        if (!Money.isValidAmount(operation.amount(), currencyType)) {
+            throw invalidBatchOperation(index, "validation.transaction.batch.amount.max");
+        }
+        long amount = Money.toMinorUnits(operation.amount(), currencyType);
+
+        Date date = new Date(operation.date().getTime());
+
+        addBalanceDelta(balanceDeltas, wallet.getId(), categoryType, amount);
+        balanceChanges.addTransaction(wallet.getId(), date, operation.categoryId(), categoryType,
+                                      Money.toBigDecimal(amount, currencyType));
+
+        return transactionDao.save(new Transaction(
+                normalizeDescription(operation.description()),
+                date,
+                Money.toDouble(amount, currencyType),
+                new TransactionCategory(operation.categoryId()),
+                wallet
         ));
-        transaction.setCategory(new TransactionCategory(transactionDto.categoryId()));
-        transaction.setWallet(optionalNewWallet.get());
+    }
+
+    private static Transaction applyBatchUpdate(TransactionBatchOperationDto operation,
+                                                int index,
+                                                Transaction transaction,
+                                                Map<Long, Wallet> wallets,
+                                                Map<Long, TransactionType> categoryTypes,
+                                                Map<Long, Long> balanceDeltas,
+                                                WalletBalanceChanges balanceChanges
+    ) {
+        TransactionType newCategoryType = categoryTypes.get(operation.categoryId());
+        if (newCategoryType == null) {
+            throw invalidBatchOperation(index, "validation.transaction.batch.category.notFound");
+        }
+        Wallet oldWallet = transaction.getWallet();
+        Wallet newWallet = wallets.get(operation.walletId());
+
+        if (oldWallet.getCurrency() != newWallet.getCurrency()) {
+            throw invalidBatchOperation(
+                    index, "validation.transaction.batch.wallet-has-different-currency"
+            );
+        }
+        CurrencyType currencyType = oldWallet.getCurrency().getType();
+
+        if (!Money.isValidAmount(operation.amount(), currencyType)) {
+            throw invalidBatchOperation(index, "validation.transaction.batch.amount.max");
+        }
+        TransactionCategory oldCategory = transaction.getCategory();
+        long oldAmount = Money.toMinorUnits(transaction.getAmount(), currencyType);
+        long newAmount = Money.toMinorUnits(operation.amount(), currencyType);
+
+        addBalanceDelta(balanceDeltas, oldWallet.getId(), oldCategory.getType(), -oldAmount);
+        addBalanceDelta(balanceDeltas, newWallet.getId(), newCategoryType, newAmount);
+
+        Date newDate = new Date(operation.date().getTime());
+        balanceChanges.removeTransaction(oldWallet.getId(), transaction.getDate(),
+                                         oldCategory.getId(), oldCategory.getType(),
+                                         Money.toBigDecimal(oldAmount, currencyType));
+        balanceChanges.addTransaction(newWallet.getId(), newDate, operation.categoryId(),
+                                      newCategoryType,
+                                      Money.toBigDecimal(newAmount, currencyType));
+
+        // Managed entity, changes are saved on commit
+        transaction.setDescription(normalizeDescription(operation.description()));
+        transaction.setDate(newDate);
+        transaction.setAmount(Money.toDouble(newAmount, currencyType));
+        transaction.setCategory(new TransactionCategory(operation.categoryId()));
+        transaction.setWallet(newWallet);
+        return transaction;
     }
 
     /**
-     * Validates the transaction data for updating.
+     * Locks the current wallet of the transaction and the other wallets in the order of ID,
+     * before the transaction itself is locked. The batch locks wallets before transactions too, so
+     * a single change and a batch can't wait for each other in a cycle. Ownership is checked by
+     * the following statement. Only needed in the {@link WalletConcurrencyMode#PESSIMISTIC
+     * pessimistic} mode. The other modes don't lock wallets, and the following statement locks
+     * the transaction itself.
      *
-     * @param updateTransactionDto DTO with transaction data
-     * @param userId               logged in user ID
-     * @param categoryType         type of the transaction category from the DTO
-     * @param optionalWallet       optional wallet from the database with the ID from the DTO
+     * <p>The wallet of the transaction is read before the lock. If a concurrent change moves the
+     * transaction to another wallet in between, the balance updates are still atomic, and a
+     * resulting deadlock is retried by the {@link WalletWriteTemplate}.
      *
-     * @throws BadFieldException     if category is not found
-     * @throws BadRequestException   if a wallet is not found or transaction does not exist
-     * @throws ActionDeniedException if a user does not own the transaction or wallet
+     * @param transactionId ID of the changed transaction
+     * @param walletIds     IDs of other affected wallets
      */
-    private void validateUpdateTransaction(UpdateTransactionDto updateTransactionDto,
-                                           long userId,
-                                           TransactionType categoryType,
-                                           Optional<Wallet> optionalWallet
+    private void lockTransactionWallets(long transactionId, long... walletIds) {
+        if (walletWriteTemplate.getMode() != WalletConcurrencyMode.PESSIMISTIC) {
+            return;
+        }
+        Set<Long> lockedWalletIds = new TreeSet<>();
+        transactionDao.getTransactionWallets(Set.of(transactionId))
+                .forEach(transactionWallet -> lockedWalletIds.add(transactionWallet.getWalletId()));
+        for (long walletId : walletIds) {
+            lockedWalletIds.add(walletId);
+        }
+        walletService.getWalletsForUpdate(lockedWalletIds);
+    }
+
+    /**
+     * Adds the transaction amount to the net balance delta of the wallet.
+     *
+     * @param balanceDeltas wallet ID to net balance delta map in minor units
+     * @param walletId      wallet ID
+     * @param type          transaction category type
+     * @param amount        transaction amount in minor units. Negative to revert the transaction.
+     */
+    private static void addBalanceDelta(Map<Long, Long> balanceDeltas,
+                                        long walletId,
+                                        TransactionType type,
+                                        long amount
     ) {
-        if (!transactionDao.existsById(updateTransactionDto.id())) {
-            throw new BadRequestException(
-                    "Transaction with ID %d does not exist.".formatted(updateTransactionDto.id()),
+        balanceDeltas.merge(walletId,
+                            type == TransactionType.INCOME ? amount : -amount,
+                            Math::addExact);
+    }
+
+    private static String normalizeDescription(String description) {
+        return description == null ? null : description.trim().replaceAll("\\s+", " ");
+    }
+
+    private static BadRequestException invalidBatchOperation(int index, String messageCode) {
+        return new BadRequestException("Invalid batch operation " + index, messageCode,
+                                       new Object[]{index});
+    }
+
+    /**
+     * Creates an exception for the wallet that was not updated because it does not exist or
+     * belongs to another user. Only called on failure, so the extra query is fine.
+     *
+     * @param walletId wallet ID
+     * @param userId   logged in user ID
+     *
+     * @return BadRequestException if the wallet does not exist, ActionDeniedException otherwise
+     */
+    private RuntimeException walletNotUpdated(long walletId, long userId) {
+        if (!walletService.existsWallet(walletId)) {
+            return new BadRequestException("Wallet with ID " + walletId + " does not exist.",
+                                           "validation.wallet.notFound",
+                                           null);
+        }
+        return new ActionDeniedException("User with ID %d does not own wallet with ID %d"
+                                                 .formatted(userId, walletId));
+    }
+
+    /**
+     * Creates an exception for the transaction that was not deleted because it does not exist,
+     * belongs to another user or is a leg of a transfer. Only called on failure, so the extra
+     * queries are fine.
+     *
+     * @param transactionId transaction ID
+     * @param userId        logged in user ID
+     *
+     * @return exception that describes why the transaction was not deleted
+     */
+    private RuntimeException transactionNotDeleted(long transactionId, long userId) {
+        if (!transactionDao.isUserTransactionOwner(transactionId, userId)) {
+            return transactionNotOwned(transactionId, userId);
+        }
+        return transferLegChanged(transactionId);
+    }
+
+    /**
+     * Creates an exception for the transaction that does not belong to the user.
+     *
+     * @param transactionId transaction ID
+     * @param userId        logged in user ID
+     *
+     * @return BadRequestException if the transaction does not exist, ActionDeniedException
+     *         otherwise
+     */
+    private RuntimeException transactionNotOwned(long transactionId, long userId) {
+        if (!transactionDao.existsById(transactionId)) {
+            return new BadRequestException(
+                    "Transaction with ID %d does not exist.".formatted(transactionId),
                     "validation.transaction.notFound",
                     null);
         }
-        if (!transactionDao.isUserTransactionOwner(updateTransactionDto.id(), userId)) {
-            throw new ActionDeniedException(
-                    "User with ID %d is not the owner of transaction with ID %d"
-                            .formatted(userId, updateTransactionDto.id()));
-        }
-        CreateTransactionDto createTransactionDto = new CreateTransactionDto(
-                updateTransactionDto.description(),
-                updateTransactionDto.date(),
-                updateTransactionDto.amount(),
-                updateTransactionDto.categoryId(),
-                updateTransactionDto.walletId()
-        );
-        // Same validation as for creation transaction
-        validateCreateTransaction(createTransactionDto, userId, categoryType, optionalWallet);
+        return new ActionDeniedException(
+                "User with ID %d is not the owner of transaction with ID %d"
+                        .formatted(userId, transactionId));
     }
 
     /**
-     * If the wallet is not changed, updates the wallet balance. If the wallet is changed, updates
-     * the wallet balance for the old and new wallets.
+     * Creates an exception for the transaction that was not updated. Checks the same conditions
+     * as the update one by one to find the failed one. Only called on failure, so the extra
+     * queries are fine.
      *
-     * @param transactionDto     DTO with transaction data
-     * @param transaction        old transaction state
-     * @param optionalNewWallet  new transaction state wallet. Must be present!
-     * @param newTransactionType new transaction state category type
+     * @param transactionDto DTO with transaction data
+     * @param userId         logged in user ID
+     *
+     * @return exception that describes why the transaction was not updated
      */
-    private void updateWalletBallanceOnUpdate(UpdateTransactionDto transactionDto,
-                                              Transaction transaction,
-                                              Optional<Wallet> optionalNewWallet,
-                                              TransactionType newTransactionType
+    private RuntimeException transactionNotUpdated(UpdateTransactionDto transactionDto,
+                                                   long userId
     ) {
-        TransactionType oldTransactionType = transaction.getCategory().getType();
-        double oldTransactionAmount = transaction.getAmount();
+        if (!transactionDao.isUserTransactionOwner(transactionDto.id(), userId)) {
+            return transactionNotOwned(transactionDto.id(), userId);
+        }
+        if (transferDao.isTransferLeg(transactionDto.id())) {
+            return transferLegChanged(transactionDto.id());
+        }
+        if (!walletService.isUserWalletOwner(transactionDto.walletId(), userId)) {
+            return walletNotUpdated(transactionDto.walletId(), userId);
+        }
+        return new BadRequestException(
+                "Wallet with ID %d has different currency than transaction with ID %d"
+                        .formatted(transactionDto.walletId(), transactionDto.id()),
+                "validation.transaction.wallet-has-different-currency",
+                null);
+    }
 
-        double transactionAmount = roundTransactionAmount(
-                transactionDto.amount(),
-                transaction.getWallet().getCurrency().getType()
-        );
-        if (transaction.getWallet().getId() == transactionDto.walletId()) { // Wallet isn't changed
-            double walletAmountDelta = calculateWalletNewAmountDelta(
-                    oldTransactionType,
-                    oldTransactionAmount,
-                    newTransactionType,
-                    transactionAmount
-            );
-            // Wallet is present because of validation
-            walletService.updateWalletBalance(optionalNewWallet.get(), walletAmountDelta);
-            return;
+    private static BadRequestException transferLegChanged(long transactionId) {
+        return new BadRequestException(
+                "Transaction with ID %d is a leg of a transfer.".formatted(transactionId),
+                "validation.transaction.transfer-leg",
+                null);
+    }
+
+    /**
+     * Adds the delta to the balance of the wallet that is already known to belong to the user.
+     *
+     * @param walletId     wallet ID
+     * @param delta        minor units to add to the wallet balance (can be negative)
+     * @param currencyType currency type of the wallet
+     */
+    private void addWalletBalance(long walletId, long delta, CurrencyType currencyType) {
+        if (!walletService.addWalletBalance(walletId, delta, currencyType)) {
+            // Should never happen
+            throw new InternalServerException(
+                    "Wallet with ID %d was not updated.".formatted(walletId));
         }
-        // Wallet changed
-        Optional<Wallet> optionalOldWallet =
-                walletService.getWalletForUpdate(transaction.getWallet().getId());
-
-        // Wallet is present because of validation
-        walletService.updateWalletBalance(optionalOldWallet.get(),
-                                          oldTransactionType == TransactionType.INCOME
-                                                  ? -oldTransactionAmount
-                                                  : oldTransactionAmount);
-        walletService.updateWalletBalance(optionalNewWallet.get(),
-                                          newTransactionType == TransactionType.INCOME
-                                                  ? transactionAmount
-                                                  : -transactionAmount);
+    }
+
+    private static BadFieldException categoryNotFound(long categoryId) {
+        return new BadFieldException("Missing category with ID " + categoryId,
+                                     "validation.category.notFound",
+                                     null,
+                                     "category");
+    }
+
+    private static BadFieldException amountOutOfRange(double amount, CurrencyType currencyType) {
+        return new BadFieldException("Amount %s is too large for %s currency"
+                                             .formatted(amount, currencyType),
+                                     "validation.transaction.amount.max-for-currency",
+                                     null,
+                                     "amount");
     }
 
 }
@@ -0,0 +1,13 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.web.dto.CreateTransferDto;
+
+/**
+ * Service for {@link Transfer Transfer}.
+ */
+public interface TransferService {
+
+    Transfer createTransfer(CreateTransferDto transferDto, long loggedUserId);
+
+}
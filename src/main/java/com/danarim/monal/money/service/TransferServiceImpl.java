@@ -0,0 +1,170 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadFieldException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.TransferDao;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.CreateTransferDto;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service for {@link Transfer Transfer}.
+ *
+ * <p>A transfer is written in one database transaction: the outcome from the source wallet, the
+ * income to the target wallet, both balance changes and the link between them. Either everything
+ * is written or nothing. Both wallets are locked in the order of ID, so transfers in opposite
+ * directions wait for each other instead of deadlocking. A deadlock with other writers is
+ * retried by {@link WalletWriteTemplate}. In the {@link WalletConcurrencyMode#LEDGER ledger}
+ * mode the wallets are not locked, both balance changes are appended deltas.
+ */
+@Service
+public class TransferServiceImpl implements TransferService {
+
+    private final TransactionDao transactionDao;
+    private final TransferDao transferDao;
+    private final TransactionCategoryService categoryService;
+    private final WalletService walletService;
+    private final WalletWriteTemplate walletWriteTemplate;
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param transactionDao      saves the transactions of the transfer
+     * @param transferDao         saves the link between the transactions
+     * @param categoryService     provides the transfer categories
+     * @param walletService       locks and updates the wallets
+     * @param walletWriteTemplate executes the transfer in one transaction with retries
+     */
+    public TransferServiceImpl(TransactionDao transactionDao,
+                               TransferDao transferDao,
+                               TransactionCategoryService categoryService,
+                               WalletService walletService,
+                               WalletWriteTemplate walletWriteTemplate
+    ) {
+        this.transactionDao = transactionDao;
+        this.transferDao = transferDao;
+        this.categoryService = categoryService;
+        this.walletService = walletService;
+        this.walletWriteTemplate = walletWriteTemplate;
+    }
+
+    /**
+     * Moves the amount from one wallet of the user to another.
+     *
+     * @param transferDto  transfer data
+     * @param loggedUserId ID of the user that owns both wallets
+     *
+     * @return created transfer with both transactions
+     *
+     * @throws BadRequestException   if the wallets are the same, have different currencies or
+     *                               any of them does not exist
+     * @throws BadFieldException     if the amount is too large for the wallet currency
+     * @throws ActionDeniedException if the user does not own any of the wallets
+     */
+    @Override
+    public Transfer createTransfer(CreateTransferDto transferDto, long loggedUserId) {
+        if (transferDto.fromWalletId() == transferDto.toWalletId()) {
+            throw new BadRequestException(
+                    "Transfer to the same wallet with id " + transferDto.toWalletId(),
+                    "validation.transfer.same-wallet",
+                    null);
+        }
+        return walletWriteTemplate.execute(status -> applyTransfer(transferDto, loggedUserId));
+    }
+
+    /**
+     * Writes the transfer. Must be called inside a transaction.
+     */
+    private Transfer applyTransfer(CreateTransferDto transferDto, long loggedUserId) {
+        // Ordered by ID, so the lock order doesn't depend on the direction of the transfer
+        List<Wallet> wallets = walletService.getWalletsForUpdate(
+                Set.of(transferDto.fromWalletId(), transferDto.toWalletId()));
+
+        Wallet fromWallet = findWallet(wallets, transferDto.fromWalletId());
+        Wallet toWallet = findWallet(wallets, transferDto.toWalletId());
+
+        for (Wallet wallet : wallets) {
+            if (wallet.getOwner().getId() != loggedUserId) {
+                throw new ActionDeniedException(
+                        "Wallet with id %d does not belong to user with id %d."
+                                .formatted(wallet.getId(), loggedUserId));
+            }
+        }
+        if (fromWallet.getCurrency() != toWallet.getCurrency()) {
+            throw new BadRequestException(
+                    "Wallets %d and %d have different currencies"
+                            .formatted(fromWallet.getId(), toWallet.getId()),
+                    "validation.transfer.wallet-has-different-currency",
+                    null);
+        }
+        CurrencyType currencyType = fromWallet.getCurrency().getType();
+
+        if (!Money.isValidAmount(transferDto.amount(), currencyType)) {
+            throw new BadFieldException("Amount %s is too large for %s currency"
+                                                .formatted(transferDto.amount(), currencyType),
+                                        "validation.transaction.amount.max-for-currency",
+                                        null,
+                                        "amount");
+        }
+        long amount = Money.toMinorUnits(transferDto.amount(), currencyType);
+        Date date = new Date(transferDto.date().getTime());
+
+        // In the order of ID, the same as the locks
+        for (Wallet wallet : wallets) {
+            walletService.updateWalletBalance(wallet, wallet == fromWallet ? -amount : amount);
+        }
+        long outcomeCategoryId = categoryService.getTransferCategoryId(TransactionType.OUTCOME);
+        long incomeCategoryId = categoryService.getTransferCategoryId(TransactionType.INCOME);
+
+        WalletBalanceChanges balanceChanges = new WalletBalanceChanges();
+        balanceChanges.addTransaction(fromWallet.getId(), date, outcomeCategoryId,
+                                      TransactionType.OUTCOME,
+                                      Money.toBigDecimal(amount, currencyType));
+        balanceChanges.addTransaction(toWallet.getId(), date, incomeCategoryId,
+                                      TransactionType.INCOME,
+                                      Money.toBigDecimal(amount, currencyType));
+        walletService.addBalanceChanges(balanceChanges);
+
+        String description = transferDto.description() == null
+                ? null
+                : transferDto.description().trim().replaceAll("\\s+", " ");
+        Transaction outcome = transactionDao.save(new Transaction(
+                description,
+                date,
+                Money.toDouble(amount, currencyType),
+                new TransactionCategory(outcomeCategoryId),
+                fromWallet
+        ));
+        Transaction income = transactionDao.save(new Transaction(
+                description,
+                date,
+                Money.toDouble(amount, currencyType),
+                new TransactionCategory(incomeCategoryId),
+                toWallet
+        ));
+        return transferDao.save(new Transfer(outcome, income));
+    }
+
+    private static Wallet findWallet(List<Wallet> wallets, long walletId) {
+        return wallets.stream()
+                .filter(wallet -> wallet.getId() == walletId)
+                .findFirst()
+                .orElseThrow(() -> new BadRequestException(
+                        "Wallet with id " + walletId + " does not exist.",
+                        "validation.wallet.notFound",
+                        null));
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+import com.danarim.monal.money.persistence.dto.WalletMonth;
+import com.danarim.monal.money.persistence.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Balance changes of wallets made by one write of transactions. Collects the net change by wallet
+ * and month for the monthly balance checkpoints, the first changed day of every wallet for the
+ * cached balance histories and the change by wallet, day and category for the daily analytics
+ * rollups. Applied by {@link WalletService#addBalanceChanges}.
+ *
+ * <p>Dates are converted to UTC, the time zone of the database.
+ */
+public final class WalletBalanceChanges {
+
+    private final SortedMap<WalletMonth, BigDecimal> monthlyChanges = new TreeMap<>();
+    private final Map<Long, LocalDate> firstChangedDays = new HashMap<>();
+    private final SortedMap<WalletDayCategory, AnalyticsRollupChange> dailyChanges =
+            new TreeMap<>();
+
+    /**
+     * Adds a created transaction or the new state of an updated one.
+     *
+     * @param walletId     ID of the wallet
+     * @param date         date of the transaction
+     * @param categoryId   ID of the transaction category
+     * @param categoryType type of the transaction category
+     * @param amount       amount of the transaction
+     */
+    public void addTransaction(long walletId,
+                               Date date,
+                               long categoryId,
+                               TransactionType categoryType,
+                               BigDecimal amount
+    ) {
+        add(walletId, toUtc(date), categoryId, categoryType, amount, 1L);
+    }
+
+    /**
+     * Adds a created transaction or the new state of an updated one.
+     *
+     * @param walletId     ID of the wallet
+     * @param date         date of the transaction in UTC
+     * @param categoryId   ID of the transaction category
+     * @param categoryType type of the transaction category
+     * @param amount       amount of the transaction
+     */
+    public void addTransaction(long walletId,
+                               LocalDateTime date,
+                               long categoryId,
+                               TransactionType categoryType,
+                               BigDecimal amount
+    ) {
+        add(walletId, date, categoryId, categoryType, amount, 1L);
+    }
+
+    /**
+     * Reverts a deleted transaction or the old state of an updated one.
+     *
+     * @param walletId     ID of the wallet
+     * @param date         date of the transaction
+     * @param categoryId   ID of the transaction category
+     * @param categoryType type of the transaction category
+     * @param amount       amount of the transaction
+     */
+    public void removeTransaction(long walletId,
+                                  Date date,
+                                  long categoryId,
+                                  TransactionType categoryType,
+                                  BigDecimal amount
+    ) {
+        add(walletId, toUtc(date), categoryId, categoryType, amount.negate(), -1L);
+    }
+
+    /**
+     * Returns the net change of the balance by wallet and month. Ordered by wallet and month, so
+     * the checkpoints are always changed in the same order.
+     *
+     * @return unmodifiable sorted map of the net changes
+     */
+    public SortedMap<WalletMonth, BigDecimal> getMonthlyChanges() {
+        return Collections.unmodifiableSortedMap(monthlyChanges);
+    }
+
+    /**
+     * Returns the first changed day of every changed wallet. Daily balances from this day on are
+     * changed.
+     *
+     * @return unmodifiable map of wallet ID to the first changed day
+     */
+    public Map<Long, LocalDate> getFirstChangedDays() {
+        return Collections.unmodifiableMap(firstChangedDays);
+    }
+
+    /**
+     * Returns the change of the amount and the number of transactions by wallet, day and
+     * category. Ordered by the key, so the rollups are always changed in the same order. A
+     * transaction that stays in its day and category gives a zero change.
+     *
+     * @return unmodifiable sorted map of the daily changes
+     */
+    public SortedMap<WalletDayCategory, AnalyticsRollupChange> getDailyChanges() {
+        return Collections.unmodifiableSortedMap(dailyChanges);
+    }
+
+    public boolean isEmpty() {
+        return firstChangedDays.isEmpty();
+    }
+
+    /**
+     * Adds the transaction to all changes. A zero balance change still marks the day as changed,
+     * because a transaction moved inside one month changes the daily balances.
+     *
+     * @param amount           amount of the transaction. Negative to revert the transaction.
+     * @param transactionCount 1 to add the transaction, -1 to revert it
+     */
+    private void add(long walletId,
+                     LocalDateTime date,
+                     long categoryId,
+                     TransactionType categoryType,
+                     BigDecimal amount,
+                     long transactionCount
+    ) {
+        LocalDate day = date.toLocalDate();
+        BigDecimal balanceChange = categoryType == TransactionType.INCOME
+                                   ? amount
+                                   : amount.negate();
+
+        monthlyChanges.merge(WalletMonth.of(walletId, date), balanceChange, BigDecimal::add);
+        firstChangedDays.merge(walletId, day, (first, other) -> first.isAfter(other)
+                                                                ? other
+                                                                : first);
+        dailyChanges.merge(new WalletDayCategory(walletId, day, categoryId),
+                           new AnalyticsRollupChange(amount, transactionCount),
+                           AnalyticsRollupChange::plus);
+    }
+
+    private static LocalDateTime toUtc(Date date) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.danarim.monal.money.service;
+
+/**
+ * How wallets are protected from lost balance updates when they are changed by concurrent
+ * requests. Set with the {@code wallet.concurrency-mode} property.
+ *
+ * <p>In the pessimistic and optimistic modes single transaction changes and imports change the
+ * balance with one atomic update. The mode is used by batches that read the wallets first.
+ */
+public enum WalletConcurrencyMode {
+
+    /**
+     * Wallets are locked with {@code SELECT ... FOR UPDATE} until the end of the transaction.
+     * Concurrent writers of one wallet wait for each other.
+     */
+    PESSIMISTIC,
+
+    /**
+     * Wallets are read without a lock. The balance is written by a conditional
+     * {@code UPDATE ... WHERE version = ?} (see
+     * {@link com.danarim.monal.money.persistence.dao.WalletDao#addWalletBalanceIfVersion}), which
+     * also increments the version, so the check happens at write time and not at commit. The
+     * writer whose update finds a changed version fails and is retried with a random delay.
+     */
+    OPTIMISTIC,
+
+    /**
+     * Balance changes are appended to the {@code wallet_balance_delta} table without locking the
+     * wallet row, so writers of one hot wallet don't wait for each other. A background task folds
+     * the deltas into the balance and reads add the deltas that are not folded yet. No change
+     * locks the wallet rows: the owner and the currency of a wallet never change, and the
+     * statements that append the deltas check the owner themselves. Batches lock the transactions
+     * they update or delete instead, so a concurrent change of the same transaction can't revert
+     * it twice.
+     */
+    LEDGER
+
+}
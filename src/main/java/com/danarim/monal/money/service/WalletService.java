@@ -1,9 +1,14 @@
 package com.danarim.monal.money.service;
 
 import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
 import com.danarim.monal.money.persistence.model.Wallet;
 import com.danarim.monal.money.web.dto.CreateWalletDto;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,20 +21,34 @@ public interface WalletService {
 
     List<Wallet> getUserWallets(long loggedUserId);
 
-    Optional<Wallet> getWalletForUpdate(long id);
+    List<Wallet> getWalletsForUpdate(Collection<Long> ids);
+
+    Optional<Currency> addOwnedWalletBalance(long walletId,
+                                             long ownerId,
+                                             BigDecimal basicDelta,
+                                             BigDecimal cryptoDelta);
+
+    boolean existsWallet(long walletId);
 
     boolean isUserWalletOwner(long walletId, long userId);
 
     Currency getWalletCurrency(long walletId);
 
+    boolean addWalletBalance(long walletId, long delta, CurrencyType currencyType);
+
     /**
-     * Updates the balance of the given wallet by adding the given amount to the current balance.
-     * {@link WalletService#getWalletForUpdate(long id)} must be used before calling this method.
+     * Adds the delta to the balance of the wallet returned by
+     * {@link WalletService#getWalletsForUpdate(Collection ids)}.
      *
-     * @param wallet     wallet to update
-     * @param deltaAmount amount to add to the wallet balance (can be negative)
+     * @param wallet wallet to update
+     * @param delta  amount in {@link Money minor units} to add to the wallet balance (can be
+     *               negative or zero)
      */
-    void updateWalletBalance(Wallet wallet, double deltaAmount);
+    void updateWalletBalance(Wallet wallet, long delta);
+
+    void addBalanceChanges(WalletBalanceChanges changes);
+
+    double getWalletBalanceAt(long walletId, Date date, long loggedUserId);
 
     Wallet updateWalletName(Long walletId, String newName, long loggedUserId);
 
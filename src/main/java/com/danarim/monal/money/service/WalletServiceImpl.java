@@ -3,17 +3,36 @@ package com.danarim.monal.money.service;
 import com.danarim.monal.exceptions.ActionDeniedException;
 import com.danarim.monal.exceptions.BadFieldException;
 import com.danarim.monal.exceptions.BadRequestException;
-import com.danarim.monal.exceptions.InternalServerException;
+import com.danarim.monal.money.persistence.dao.AnalyticsRollupDao;
+import com.danarim.monal.money.persistence.dao.WalletBalanceCheckpointDao;
+import com.danarim.monal.money.persistence.dao.WalletBalanceDeltaDao;
 import com.danarim.monal.money.persistence.dao.WalletDao;
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.WalletBalanceDbDto;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
 import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.Money;
 import com.danarim.monal.money.persistence.model.Wallet;
 import com.danarim.monal.money.web.dto.CreateWalletDto;
 import com.danarim.monal.user.persistence.model.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Service for {@link Wallet} entities.
@@ -21,10 +40,53 @@ import java.util.Optional;
 @Service
 public class WalletServiceImpl implements WalletService {
 
+    private static final Log logger = LogFactory.getLog(WalletServiceImpl.class);
+
+    private static final int COMPACTION_DELAY_IN_SECONDS = 5;
+    /**
+     * Maximum number of balance deltas folded by one statement.
+     */
+    private static final int COMPACTION_BATCH_SIZE = 1000;
+    /**
+     * Maximum number of statements in one run of the compaction task. Limits the run time when
+     * deltas are appended faster than they are folded.
+     */
+    private static final int MAX_COMPACTION_BATCHES = 100;
+
     private final WalletDao walletDao;
+    private final WalletBalanceDeltaDao walletBalanceDeltaDao;
+    private final WalletBalanceCheckpointDao walletBalanceCheckpointDao;
+    private final AnalyticsRollupDao analyticsRollupDao;
+    private final WalletWriteTemplate walletWriteTemplate;
+    private final BalanceHistoryCache balanceHistoryCache;
+    private final AnalyticsCache analyticsCache;
 
-    public WalletServiceImpl(WalletDao walletDao) {
+    /**
+     * Dependency injection constructor.
+     *
+     * @param walletDao                  DAO for wallets
+     * @param walletBalanceDeltaDao      DAO for balance deltas of the ledger mode
+     * @param walletBalanceCheckpointDao DAO for monthly balance checkpoints
+     * @param analyticsRollupDao         DAO for daily analytics rollups
+     * @param walletWriteTemplate        provides the wallet concurrency mode
+     * @param balanceHistoryCache        cached daily balances, invalidated by balance changes
+     * @param analyticsCache             cached analytics, invalidated by balance changes
+     */
+    public WalletServiceImpl(WalletDao walletDao,
+                             WalletBalanceDeltaDao walletBalanceDeltaDao,
+                             WalletBalanceCheckpointDao walletBalanceCheckpointDao,
+                             AnalyticsRollupDao analyticsRollupDao,
+                             WalletWriteTemplate walletWriteTemplate,
+                             BalanceHistoryCache balanceHistoryCache,
+                             AnalyticsCache analyticsCache
+    ) {
         this.walletDao = walletDao;
+        this.walletBalanceDeltaDao = walletBalanceDeltaDao;
+        this.walletBalanceCheckpointDao = walletBalanceCheckpointDao;
+        this.analyticsRollupDao = analyticsRollupDao;
+        this.walletWriteTemplate = walletWriteTemplate;
+        this.balanceHistoryCache = balanceHistoryCache;
+        this.analyticsCache = analyticsCache;
     }
 
     /**
@@ -57,17 +119,10 @@ public class WalletServiceImpl implements WalletService {
                                         null,
                                         "currency");
         }
-        // Round balance based on a currency type
-        double parsedBalance = switch (parsedCurrency.getType()) {
-            // 2 decimal places
-            case BASIC -> Math.floor(walletDto.balance() * 100.0) / 100.0;
-            // 8 decimal places
-            case CRYPTO -> Math.floor(walletDto.balance() * 100_000_000.0) / 100_000_000.0;
-            default -> throw new InternalServerException(
-                    // Should never happen
-                    "Currency type %s is not supported.".formatted(parsedCurrency.getType())
-            );
-        };
+        // Round balance down to the minor unit of the currency type
+        CurrencyType currencyType = parsedCurrency.getType();
+        double parsedBalance = Money.toDouble(
+                Money.toMinorUnits(walletDto.balance(), currencyType), currencyType);
         // User with only id is enough for linking in the database.
         return walletDao.save(new Wallet(walletDto.name().trim().replaceAll("\\s+", " "),
                                          parsedBalance,
@@ -78,6 +133,9 @@ public class WalletServiceImpl implements WalletService {
     /**
      * Returns all wallets owned by the user with the given id. DON'T check if the user exists.
      *
+     * <p>In the {@link WalletConcurrencyMode#LEDGER ledger} mode the balances include the deltas
+     * that are not folded yet. The returned wallets are detached copies and must not be saved.
+     *
      * @param loggedUserId id of the user that owns the wallets
      *
      * @return list of wallets owned by the user with the given id
@@ -86,19 +144,79 @@ public class WalletServiceImpl implements WalletService {
      */
     @Override
     public List<Wallet> getUserWallets(long loggedUserId) {
-        return walletDao.findAllByOwnerId(loggedUserId);
+        List<Wallet> wallets = walletDao.findAllByOwnerId(loggedUserId);
+
+        if (walletWriteTemplate.getMode() != WalletConcurrencyMode.LEDGER) {
+            return wallets;
+        }
+        Map<Long, BigDecimal> balances = walletBalanceDeltaDao.getOwnerWalletBalances(loggedUserId)
+                .stream()
+                .collect(Collectors.toMap(WalletBalanceDbDto::getWalletId,
+                                          WalletBalanceDbDto::getBalance));
+
+        return wallets.stream()
+                .map(wallet -> copyWithBalance(wallet, balances.get(wallet.getId())))
+                .toList();
+    }
+
+    /**
+     * Locks the wallets with the given ids for update in ascending order of ID. Require
+     * Transactional annotation. In the {@link WalletConcurrencyMode#OPTIMISTIC optimistic} mode
+     * the wallets are not locked, instead their versions are checked by
+     * {@link #updateWalletBalance(Wallet, long)}. In the {@link WalletConcurrencyMode#LEDGER
+     * ledger} mode the wallets are not locked either, their balances are changed by appended
+     * deltas only.
+     *
+     * @param ids ids of the wallets
+     *
+     * @return existing wallets with the given ids ordered by ID
+     */
+    @Override
+    public List<Wallet> getWalletsForUpdate(Collection<Long> ids) {
+        if (walletWriteTemplate.getMode() != WalletConcurrencyMode.PESSIMISTIC) {
+            return walletDao.readAllByIdInOrderByIdAsc(ids);
+        }
+        return walletDao.findAllByIdInOrderByIdAsc(ids);
     }
 
     /**
-     * Locks the wallet with the given id for update. Require Transactional annotation.
+     * Adds the delta to the balance of the wallet with the given id if the user with the given id
+     * owns it. One statement locks the wallet, checks the owner and updates the balance. In the
+     * {@link WalletConcurrencyMode#LEDGER ledger} mode the delta is appended without locking the
+     * wallet. Require Transactional annotation.
      *
-     * @param id id of the wallet
+     * <p>Minor units depend on the wallet currency, which is not known before the update, so the
+     * delta is given for both currency types. The deltas are decimal, so a delta that doesn't fit
+     * into minor units of the other currency type can still be passed.
      *
-     * @return wallet with the given id
+     * @param walletId    id of the wallet
+     * @param ownerId     id of the user that must own the wallet
+     * @param basicDelta  amount to add if the wallet has a basic currency (can be negative)
+     * @param cryptoDelta amount to add if the wallet has a cryptocurrency (can be negative)
+     *
+     * @return currency of the updated wallet or empty if the wallet does not exist or belongs to
+     *         another user
      */
     @Override
-    public Optional<Wallet> getWalletForUpdate(long id) {
-        return walletDao.findById(id);
+    public Optional<Currency> addOwnedWalletBalance(long walletId,
+                                                    long ownerId,
+                                                    BigDecimal basicDelta,
+                                                    BigDecimal cryptoDelta
+    ) {
+        Collection<String> cryptoCurrencies = Currency.getNames(CurrencyType.CRYPTO);
+
+        Optional<String> currency = walletWriteTemplate.getMode() == WalletConcurrencyMode.LEDGER
+                ? walletBalanceDeltaDao.appendOwnedWalletDelta(
+                        walletId, ownerId, basicDelta, cryptoDelta, cryptoCurrencies)
+                : walletDao.addOwnedWalletBalance(
+                        walletId, ownerId, basicDelta, cryptoDelta, cryptoCurrencies);
+
+        return currency.map(Currency::valueOf);
+    }
+
+    @Override
+    public boolean existsWallet(long walletId) {
+        return walletDao.existsById(walletId);
     }
 
     /**
@@ -127,27 +245,131 @@ public class WalletServiceImpl implements WalletService {
         return walletDao.getWalletCurrency(walletId);
     }
 
+    /**
+     * Adds the delta to the balance of the wallet with the given id. The wallet doesn't have to be
+     * loaded or locked before, the database changes the balance atomically. In the
+     * {@link WalletConcurrencyMode#LEDGER ledger} mode the delta is appended instead.
+     *
+     * @param walletId     id of the wallet
+     * @param delta        minor units to add to the wallet balance (can be negative)
+     * @param currencyType currency type of the wallet
+     *
+     * @return true if the balance is changed, false if the wallet does not exist
+     */
+    @Override
+    public boolean addWalletBalance(long walletId, long delta, CurrencyType currencyType) {
+        BigDecimal amount = Money.toBigDecimal(delta, currencyType);
+
+        if (walletWriteTemplate.getMode() == WalletConcurrencyMode.LEDGER) {
+            return walletBalanceDeltaDao.appendWalletDelta(walletId, amount) > 0;
+        }
+        return walletDao.addWalletBalance(walletId, amount).isPresent();
+    }
+
+    /**
+     * For internal usage only!
+     *
+     * <p>Adds the delta to the balance of the given wallet. In the
+     * {@link WalletConcurrencyMode#PESSIMISTIC pessimistic} mode the wallet is locked, so a zero
+     * delta doesn't touch the row. In the {@link WalletConcurrencyMode#OPTIMISTIC optimistic}
+     * mode the version of the wallet is checked and incremented even for a zero delta, so a
+     * concurrent change of the wallet or its transactions fails the update. In the
+     * {@link WalletConcurrencyMode#LEDGER ledger} mode the delta is appended.
+     *
+     * @param wallet wallet to update (returned by {@link #getWalletsForUpdate(Collection)})
+     * @param delta  minor units to add to the wallet balance (can be negative or zero)
+     *
+     * @throws ObjectOptimisticLockingFailureException if the wallet was changed since it was read
+     */
+    @Override
+    public void updateWalletBalance(Wallet wallet, long delta) {
+        BigDecimal amount = Money.toBigDecimal(delta, wallet.getCurrency().getType());
+
+        if (walletWriteTemplate.getMode() == WalletConcurrencyMode.OPTIMISTIC) {
+            if (walletDao.addWalletBalanceIfVersion(wallet.getId(), wallet.getVersion(), amount)
+                    .isEmpty()) {
+                throw new ObjectOptimisticLockingFailureException(Wallet.class, wallet.getId());
+            }
+        } else if (delta != 0) {
+            if (walletWriteTemplate.getMode() == WalletConcurrencyMode.LEDGER) {
+                walletBalanceDeltaDao.appendWalletDelta(wallet.getId(), amount);
+            } else {
+                walletDao.addWalletBalance(wallet.getId(), amount);
+            }
+        }
+    }
+
     /**
      * For internal usage only!
      *
-     * <p>Updates the balance of the given wallet by adding the given amount to the current balance.
+     * <p>Adds the net changes of transactions to the monthly balance checkpoints of their wallets
+     * and to the daily analytics rollups, then removes the cached daily balances from the first
+     * changed day on and the cached analytics of the changed days after the commit. Must be called
+     * in the same transaction as the change of the wallet balance. Checkpoints and rollups are
+     * changed in the order of their keys, so concurrent writes can't deadlock.
+     *
+     * @param changes balance changes of the transactions
+     */
+    @Override
+    public void addBalanceChanges(WalletBalanceChanges changes) {
+        changes.getMonthlyChanges().forEach((walletMonth, change) -> {
+            if (change.signum() != 0) {
+                walletBalanceCheckpointDao.addMonthlyChange(walletMonth.walletId(),
+                                                            walletMonth.month(),
+                                                            change);
+            }
+        });
+        SortedMap<WalletDayCategory, AnalyticsRollupChange> dailyChanges = new TreeMap<>();
+        changes.getDailyChanges().forEach((key, change) -> {
+            if (!change.isZero()) {
+                dailyChanges.put(key, change);
+            }
+        });
+        if (!dailyChanges.isEmpty()) {
+            analyticsRollupDao.addDailyChanges(dailyChanges);
+        }
+        balanceHistoryCache.invalidateAfterCommit(changes.getFirstChangedDays());
+        analyticsCache.invalidateAfterCommit(dailyChanges.keySet());
+    }
+
+    /**
+     * Returns the balance of the wallet at the given date. The balance is found from the monthly
+     * checkpoints and the transactions of one month, so it costs the same for any date.
+     *
+     * @param walletId     id of the wallet
+     * @param date         date of the balance. Transactions at the date are included.
+     * @param loggedUserId id of the user that owns the wallet
      *
-     * @param wallet      wallet to update (must be locked for update)
-     * @param deltaAmount amount to add to the wallet balance (can be negative)
+     * @return balance of the wallet at the given date
      *
-     * @see WalletService#getWalletForUpdate(long id)
+     * @throws BadRequestException   if wallet with the given id does not exist
+     * @throws ActionDeniedException if wallet with the given id does not belong to the user with
+     *                               the given id
      */
     @Override
-    public void updateWalletBalance(Wallet wallet, double deltaAmount) {
-        wallet.setBalance(BigDecimal.valueOf(wallet.getBalance())
-                                  .add(BigDecimal.valueOf(deltaAmount))
-                                  .doubleValue());
-        walletDao.save(wallet);
+    public double getWalletBalanceAt(long walletId, Date date, long loggedUserId) {
+        return walletBalanceCheckpointDao.getOwnedWalletBalanceAt(walletId, loggedUserId, date)
+                .orElseThrow(() -> {
+                    if (!walletDao.existsById(walletId)) {
+                        return new BadRequestException(
+                                "Wallet with id " + walletId + " does not exist.",
+                                "validation.wallet.notFound",
+                                null);
+                    }
+                    return new ActionDeniedException(
+                            "Wallet with id %d does not belong to user with id %d."
+                                    .formatted(walletId, loggedUserId));
+                })
+                .doubleValue();
     }
 
     /**
      * Updates the name of the wallet with the given id. Removes all extra spaces from the name.
      *
+     * <p>In the {@link WalletConcurrencyMode#LEDGER ledger} mode the balance of the returned
+     * wallet includes the deltas that are not folded yet, so it matches
+     * {@link #getUserWallets(long)}. The returned wallet is then a detached copy.
+     *
      * @param walletId     id of the wallet to update
      * @param newName      new name of the wallet
      * @param loggedUserId id of the user that owns the wallet
@@ -171,7 +393,18 @@ public class WalletServiceImpl implements WalletService {
         }
         Wallet wallet = walletDao.getById(walletId);
         wallet.setName(newName.trim().replaceAll("\\s+", " "));
-        return walletDao.save(wallet);
+        Wallet saved = walletDao.save(wallet);
+
+        if (walletWriteTemplate.getMode() != WalletConcurrencyMode.LEDGER) {
+            return saved;
+        }
+        BigDecimal balance = walletBalanceDeltaDao.getOwnerWalletBalances(loggedUserId)
+                .stream()
+                .filter(walletBalance -> walletBalance.getWalletId() == walletId)
+                .findFirst()
+                .map(WalletBalanceDbDto::getBalance)
+                .orElse(null);
+        return copyWithBalance(saved, balance);
     }
 
     /**
@@ -203,6 +436,7 @@ public class WalletServiceImpl implements WalletService {
                                           new Object[] {transactionsCount});
         }
         walletDao.deleteById(walletId);
+        balanceHistoryCache.invalidateAfterCommit(Map.of(walletId, LocalDate.MIN));
     }
 
     /**
@@ -231,4 +465,39 @@ public class WalletServiceImpl implements WalletService {
         return walletDao.countWalletTransactions(walletId);
     }
 
+    /**
+     * Folds the balance deltas appended in the {@link WalletConcurrencyMode#LEDGER ledger} mode
+     * into the wallet balances. Runs in every mode, so the deltas left after a mode change are
+     * folded too.
+     */
+    @Scheduled(fixedDelay = COMPACTION_DELAY_IN_SECONDS, timeUnit = TimeUnit.SECONDS)
+    protected void compactBalanceDeltasTask() {
+        try {
+            int updatedWallets = 0;
+            int batches = 0;
+            int updated;
+            do {
+                updated = walletBalanceDeltaDao.compactDeltas(COMPACTION_BATCH_SIZE);
+                updatedWallets += updated;
+                batches++;
+            } while (updated > 0 && batches < MAX_COMPACTION_BATCHES);
+
+            if (updatedWallets > 0) {
+                logger.debug("Scheduled task: balance deltas of %d wallets compacted"
+                                     .formatted(updatedWallets));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Scheduled task: compact wallet balance deltas failed", e);
+        }
+    }
+
+    private static Wallet copyWithBalance(Wallet wallet, BigDecimal balance) {
+        Wallet copy = new Wallet(wallet.getName(),
+                                 balance == null ? wallet.getBalance() : balance.doubleValue(),
+                                 wallet.getCurrency(),
+                                 wallet.getOwner());
+        copy.setId(wallet.getId());
+        return copy;
+    }
+
 }
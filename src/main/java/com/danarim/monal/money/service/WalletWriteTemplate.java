@@ -0,0 +1,217 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.InternalServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotSerializeTransactionException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes changes of wallets in a transaction according to the {@link WalletConcurrencyMode}.
+ *
+ * <p>A transaction that the database rolled back to resolve a deadlock, a serialization failure
+ * or a lock timeout is retried in every mode, and in the optimistic mode also a transaction that
+ * fails because a wallet was changed concurrently. Every change is attempted up to
+ * {@link #MAX_ATTEMPTS} times. Before every retry the thread sleeps for a random time up to an
+ * exponentially growing limit, so the writers that collided don't collide again.
+ * Only the outermost transaction can be retried. If a transaction is already active, the action
+ * is executed once and the failure is thrown to the owner of the transaction.
+ *
+ * <p>Retries are counted by cause (deadlock, serialization, lock or version) in the
+ * {@value #RETRIES_METRIC} metric, and changes that failed after the last attempt in the
+ * {@value #FAILURES_METRIC} metric.
+ */
+@Component
+public class WalletWriteTemplate {
+
+    /**
+     * Max number of attempts of one change.
+     */
+    public static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Limit of the random delay before the first retry. Doubled for every next retry.
+     */
+    public static final long FIRST_BACKOFF_MILLIS = 10;
+
+    /**
+     * Name of the counter of retried changes, tagged with the cause.
+     */
+    public static final String RETRIES_METRIC = "wallet.write.retries";
+
+    /**
+     * Name of the counter of changes that failed after the last attempt, tagged with the
+     * cause of the last failure.
+     */
+    public static final String FAILURES_METRIC = "wallet.write.failures";
+
+    /**
+     * SQL state of a PostgreSQL deadlock victim.
+     */
+    private static final String DEADLOCK_SQL_STATE = "40P01";
+
+    /**
+     * SQL state of a PostgreSQL serialization failure.
+     */
+    private static final String SERIALIZATION_FAILURE_SQL_STATE = "40001";
+
+    private static final Log logger = LogFactory.getLog(WalletWriteTemplate.class);
+
+    private final WalletConcurrencyMode mode;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<RetryCause, Counter> retries = new EnumMap<>(RetryCause.class);
+    private final Map<RetryCause, Counter> failures = new EnumMap<>(RetryCause.class);
+
+    /**
+     * Dependency injection constructor.
+     *
+     * @param transactionManager used to open a transaction for every attempt
+     * @param mode               how wallets are protected from concurrent changes
+     * @param meterRegistry      registry of the retry counters
+     */
+    public WalletWriteTemplate(
+            PlatformTransactionManager transactionManager,
+            @Value("${wallet.concurrency-mode:PESSIMISTIC}") WalletConcurrencyMode mode,
+            MeterRegistry meterRegistry
+    ) {
+        this.mode = mode;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        for (RetryCause cause : RetryCause.values()) {
+            String tag = cause.name().toLowerCase(Locale.ROOT);
+            retries.put(cause, meterRegistry.counter(RETRIES_METRIC, "cause", tag));
+            failures.put(cause, meterRegistry.counter(FAILURES_METRIC, "cause", tag));
+        }
+    }
+
+    public WalletConcurrencyMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Executes the action in a transaction. Retries the whole transaction if the database rolled
+     * it back to resolve a deadlock, a serialization failure or a lock conflict, and in the
+     * optimistic mode also if a wallet was changed concurrently.
+     *
+     * @param action action that changes wallets. Can be executed several times.
+     * @param <T>    type of the result
+     *
+     * @return result of the action
+     *
+     * @throws DataAccessException if every attempt failed
+     */
+    public <T> T execute(TransactionCallback<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(action);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (DataAccessException e) {
+                RetryCause cause = getRetryCause(e);
+
+                if (cause == null) {
+                    throw e;
+                }
+                if (attempt == MAX_ATTEMPTS) {
+                    failures.get(cause).increment();
+                    logger.warn("Wallet change failed after %d attempts, last failure: %s"
+                                        .formatted(attempt, cause));
+                    throw e;
+                }
+                retries.get(cause).increment();
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Returns why the failed transaction can be retried. A deadlock victim, a serialization failure
+     * or a lock timeout is rolled back completely, so it can be retried in every mode. The SQL
+     * state is checked too, because not every driver error is translated to a specific exception.
+     * A failed version check is expected only in the optimistic mode.
+     *
+     * @return cause of the failure or null if the transaction must not be retried
+     */
+    private RetryCause getRetryCause(DataAccessException e) {
+        if (e instanceof DeadlockLoserDataAccessException || hasSqlState(e, DEADLOCK_SQL_STATE)) {
+            return RetryCause.DEADLOCK;
+        }
+        if (e instanceof CannotSerializeTransactionException
+                || hasSqlState(e, SERIALIZATION_FAILURE_SQL_STATE)) {
+            return RetryCause.SERIALIZATION;
+        }
+        if (e instanceof PessimisticLockingFailureException) {
+            return RetryCause.LOCK;
+        }
+        if (mode == WalletConcurrencyMode.OPTIMISTIC
+                && e instanceof OptimisticLockingFailureException) {
+            return RetryCause.VERSION;
+        }
+        return null;
+    }
+
+    private static boolean hasSqlState(Throwable e, String sqlState) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && sqlState.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sleeps for a random time from zero to the limit of the attempt ("full jitter").
+     */
+    private static void backOff(int attempt) {
+        long maxDelay = FIRST_BACKOFF_MILLIS << (attempt - 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(maxDelay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Interrupted while waiting for a retry", e);
+        }
+    }
+
+    /**
+     * Cause of a retried failure.
+     */
+    private enum RetryCause {
+        /**
+         * The database rolled the transaction back to resolve a deadlock.
+         */
+        DEADLOCK,
+        /**
+         * The database could not serialize the transaction with a concurrent one.
+         */
+        SERIALIZATION,
+        /**
+         * A lock was not acquired in time.
+         */
+        LOCK,
+        /**
+         * A wallet was changed concurrently (optimistic mode only).
+         */
+        VERSION
+    }
+
+}
@@ -3,6 +3,7 @@ package com.danarim.monal.money.web.controller;
 import com.danarim.monal.config.WebConfig;
 import com.danarim.monal.config.security.auth.AuthUtil;
 import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.service.AnalyticsService;
 import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -12,6 +13,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Date;
+import java.util.Map;
 
 /**
  * Controller for transactions analytics.
@@ -47,4 +49,21 @@ public class AnalyticsController {
                                              AuthUtil.getLoggedUserId());
     }
 
+    /**
+     * Gets analytics of all wallets of the logged-in user for a date and period, one report per
+     * currency of the wallets.
+     *
+     * @param date   date to get analytics for in format yyyy-MM
+     * @param period period of time to get analytics for {@link AnalyticsPeriod AnalyticsPeriod}
+     *
+     * @return {@link ViewAnalyticsDto ViewAnalyticsDto} by currency
+     */
+    @GetMapping("/user")
+    public Map<Currency, ViewAnalyticsDto> getUserAnalytics(
+            @RequestParam("date") @DateTimeFormat(fallbackPatterns = {"yyyy-MM", "yyyy"}) Date date,
+            @RequestParam("period") AnalyticsPeriod period
+    ) {
+        return analyticsService.getUserAnalytics(period, date, AuthUtil.getLoggedUserId());
+    }
+
 }
@@ -0,0 +1,87 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.service.RecurringTransactionService;
+import com.danarim.monal.money.web.dto.CreateRecurringTransactionDto;
+import com.danarim.monal.money.web.dto.ViewRecurringTransactionDto;
+import com.danarim.monal.money.web.mapper.RecurringTransactionMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import javax.validation.Valid;
+
+/**
+ * Controller for {@link RecurringTransaction RecurringTransaction}.
+ */
+@RestController
+@RequestMapping(WebConfig.API_V1_PREFIX + "/recurring-transaction")
+public class RecurringTransactionController {
+
+    private final RecurringTransactionService recurringTransactionService;
+
+    public RecurringTransactionController(
+            RecurringTransactionService recurringTransactionService
+    ) {
+        this.recurringTransactionService = recurringTransactionService;
+    }
+
+    /**
+     * Creates a new recurring transaction.
+     *
+     * @param dto DTO with recurring transaction data
+     *
+     * @return DTO with created recurring transaction data
+     */
+    @PostMapping(
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseStatus(HttpStatus.CREATED)
+    public ViewRecurringTransactionDto createRecurringTransaction(
+            @RequestBody @Valid CreateRecurringTransactionDto dto
+    ) {
+        RecurringTransaction recurringTransaction =
+                recurringTransactionService.createRecurringTransaction(
+                        dto,
+                        AuthUtil.getLoggedUserId()
+                );
+        return RecurringTransactionMapper.toViewDto(recurringTransaction);
+    }
+
+    /**
+     * Returns all recurring transactions of the wallet.
+     *
+     * @param walletId Wallet ID.
+     *
+     * @return List of recurring transactions ordered by ID.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<ViewRecurringTransactionDto> getWalletRecurringTransactions(
+            @RequestParam long walletId
+    ) {
+        List<RecurringTransaction> recurringTransactions =
+                recurringTransactionService.getWalletRecurringTransactions(
+                        walletId,
+                        AuthUtil.getLoggedUserId()
+                );
+        return RecurringTransactionMapper.toViewDtos(recurringTransactions);
+    }
+
+    @DeleteMapping
+    public void deleteRecurringTransaction(@RequestParam long recurringTransactionId) {
+        recurringTransactionService.deleteRecurringTransaction(recurringTransactionId,
+                                                               AuthUtil.getLoggedUserId());
+    }
+
+}
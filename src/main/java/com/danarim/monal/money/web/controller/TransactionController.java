@@ -2,47 +2,82 @@ package com.danarim.monal.money.web.controller;
 
 import com.danarim.monal.config.WebConfig;
 import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
 import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
+import com.danarim.monal.money.service.IdempotencyService;
 import com.danarim.monal.money.service.TransactionService;
 import com.danarim.monal.money.web.dto.CreateTransactionDto;
+import com.danarim.monal.money.web.dto.TransactionBatchOperationDto;
+import com.danarim.monal.money.web.dto.TransactionBatchResultDto;
+import com.danarim.monal.money.web.dto.TransactionPageCursor;
 import com.danarim.monal.money.web.dto.UpdateTransactionDto;
 import com.danarim.monal.money.web.dto.ViewTransactionDto;
-import org.modelmapper.ModelMapper;
+import com.danarim.monal.money.web.dto.ViewTransactionPageDto;
+import com.danarim.monal.money.web.mapper.TransactionMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
 
 /**
  * Controller for {@link Transaction Transaction}.
  */
 @RestController
 @RequestMapping(WebConfig.API_V1_PREFIX + "/transaction")
+@Validated
 public class TransactionController {
 
-    private static final ModelMapper modelMapper = new ModelMapper();
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static final TypeReference<ViewTransactionDto> VIEW_TRANSACTION_TYPE =
+            new TypeReference<>() {};
+
+    private static final TypeReference<List<TransactionBatchResultDto>> BATCH_RESULT_TYPE =
+            new TypeReference<>() {};
+
+    private static final TypeReference<Void> NO_CONTENT_TYPE = new TypeReference<>() {};
+
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService,
+                                 IdempotencyService idempotencyService
+    ) {
         this.transactionService = transactionService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * Creates a new transaction.
      *
-     * @param transDto DTO with transaction data
+     * @param transDto       DTO with transaction data
+     * @param idempotencyKey Optional key of the request. A retry with the same key returns the
+     *                       first response and does not create the transaction again.
      *
      * @return DTO with created transaction data
      */
@@ -51,12 +86,22 @@ public class TransactionController {
             produces = MediaType.APPLICATION_JSON_VALUE
     )
     @ResponseStatus(HttpStatus.CREATED)
-    public ViewTransactionDto createTransaction(@RequestBody @Valid CreateTransactionDto transDto) {
-        Transaction transaction = transactionService.createTransaction(
-                transDto,
-                AuthUtil.getLoggedUserId()
+    public ViewTransactionDto createTransaction(
+            @RequestBody @Valid CreateTransactionDto transDto,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
+    ) {
+        long loggedUserId = AuthUtil.getLoggedUserId();
+
+        return idempotencyService.execute(
+                idempotencyKey, "transaction.create", transDto, VIEW_TRANSACTION_TYPE, loggedUserId,
+                () -> TransactionMapper.toViewDto(
+                        transactionService.createTransaction(transDto, loggedUserId))
         );
-        return modelMapper.map(transaction, ViewTransactionDto.class);
     }
 
     /**
@@ -79,39 +124,241 @@ public class TransactionController {
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH") Date to,
             @RequestParam long walletId
     ) {
-        List<Transaction> transactions = transactionService.getTransactionsBetweenDates(
+        List<TransactionDbDto> transactions = transactionService.getTransactionsBetweenDates(
+                from,
+                to,
+                walletId,
+                AuthUtil.getLoggedUserId()
+        );
+        List<ViewTransactionDto> result = TransactionMapper.toViewDtos(transactions);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns one page of transactions for the specified period and wallet. Transactions are
+     * sorted by date and ID (newest first).
+     *
+     * @param from     Date in format 'yyyy-MM-dd hh' in UTC time zone.
+     * @param to       Date in format 'yyyy-MM-dd hh' in UTC time zone.
+     * @param walletId Wallet ID.
+     * @param limit    Max number of transactions on the page.
+     * @param cursor   Cursor from the previous page. Not present for the first page.
+     *
+     * @return Page of transactions with the cursor for the next page.
+     */
+    @GetMapping(
+            path = "/page",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ViewTransactionPageDto getTransactionsPageBetweenDates(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH") Date from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH") Date to,
+            @RequestParam long walletId,
+
+            @RequestParam(defaultValue = "50")
+            @Min(value = 1, message = "{validation.transaction.page.limit}")
+            @Max(value = MAX_PAGE_SIZE, message = "{validation.transaction.page.limit}")
+            int limit,
+
+            @RequestParam(required = false) String cursor
+    ) {
+        List<TransactionDbDto> transactions = transactionService.getTransactionsPageBetweenDates(
                 from,
                 to,
                 walletId,
+                cursor == null ? null : TransactionPageCursor.decode(cursor),
+                limit,
+                AuthUtil.getLoggedUserId()
+        );
+        return toPageDto(transactions, limit);
+    }
+
+    /**
+     * Returns one page of wallet transactions that match all specified conditions. Transactions
+     * are sorted by date and ID (newest first).
+     *
+     * @param from              Date in format 'yyyy-MM-dd hh' in UTC time zone.
+     * @param to                Date in format 'yyyy-MM-dd hh' in UTC time zone.
+     * @param walletId          Wallet ID.
+     * @param categoryIds       Categories of the transactions. Not present for any category.
+     * @param minAmount         Min amount (inclusive). Optional.
+     * @param maxAmount         Max amount (inclusive). Optional.
+     * @param descriptionPrefix Case-insensitive beginning of the description. Optional.
+     * @param limit             Max number of transactions on the page.
+     * @param cursor            Cursor from the previous page. Not present for the first page.
+     *
+     * @return Page of transactions with the cursor for the next page.
+     */
+    @GetMapping(
+            path = "/filter",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ViewTransactionPageDto filterTransactions(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH") Date from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH") Date to,
+            @RequestParam long walletId,
+            @RequestParam(required = false) Set<Long> categoryIds,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) Double maxAmount,
+
+            @RequestParam(required = false)
+            @Size(max = 255, message = "{validation.transaction.description.size}")
+            String descriptionPrefix,
+
+            @RequestParam(defaultValue = "50")
+            @Min(value = 1, message = "{validation.transaction.page.limit}")
+            @Max(value = MAX_PAGE_SIZE, message = "{validation.transaction.page.limit}")
+            int limit,
+
+            @RequestParam(required = false) String cursor
+    ) {
+        TransactionFilter filter = new TransactionFilter(walletId,
+                                                         from,
+                                                         to,
+                                                         categoryIds,
+                                                         minAmount,
+                                                         maxAmount,
+                                                         descriptionPrefix);
+        List<TransactionDbDto> transactions = transactionService.filterTransactions(
+                filter,
+                cursor == null ? null : TransactionPageCursor.decode(cursor),
+                limit,
                 AuthUtil.getLoggedUserId()
         );
-        return transactions.stream()
-                .map(transaction -> modelMapper.map(transaction, ViewTransactionDto.class))
-                .sorted()
-                .toList();
+        return toPageDto(transactions, limit);
     }
 
     /**
      * Updates a transaction.
      *
      * @param updateTransactionDto The DTO with the updated transaction data.
+     * @param idempotencyKey       Optional key of the request.
      *
      * @return The DTO with the updated transaction data.
      */
     @PutMapping
     public ViewTransactionDto updateTransaction(
-            @RequestBody @Valid UpdateTransactionDto updateTransactionDto
+            @RequestBody @Valid UpdateTransactionDto updateTransactionDto,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
     ) {
-        Transaction transaction = transactionService.updateTransaction(
-                updateTransactionDto,
-                AuthUtil.getLoggedUserId());
+        long loggedUserId = AuthUtil.getLoggedUserId();
 
-        return modelMapper.map(transaction, ViewTransactionDto.class);
+        return idempotencyService.execute(
+                idempotencyKey, "transaction.update", updateTransactionDto, VIEW_TRANSACTION_TYPE,
+                loggedUserId,
+                () -> TransactionMapper.toViewDto(
+                        transactionService.updateTransaction(updateTransactionDto, loggedUserId))
+        );
     }
 
+    /**
+     * Deletes a transaction.
+     *
+     * @param transactionId  ID of the transaction.
+     * @param idempotencyKey Optional key of the request. A retry with the same key succeeds even
+     *                       though the transaction is already deleted.
+     */
     @DeleteMapping
-    public void deleteTransaction(@RequestParam long transactionId) {
-        transactionService.deleteTransaction(transactionId, AuthUtil.getLoggedUserId());
+    public void deleteTransaction(
+            @RequestParam long transactionId,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
+    ) {
+        long loggedUserId = AuthUtil.getLoggedUserId();
+
+        idempotencyService.execute(
+                idempotencyKey, "transaction.delete", transactionId, NO_CONTENT_TYPE, loggedUserId,
+                () -> {
+                    transactionService.deleteTransaction(transactionId, loggedUserId);
+                    return null;
+                }
+        );
+    }
+
+    /**
+     * Applies a batch of transaction changes. Either all operations are applied or none of them.
+     *
+     * @param operations     Operations to create, update or delete transactions. Applied in the
+     *                       given order.
+     * @param idempotencyKey Optional key of the request.
+     *
+     * @return For every operation the type and the ID of the transaction. Created and updated
+     *         transactions are returned too.
+     */
+    @PostMapping(
+            path = "/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public List<TransactionBatchResultDto> applyTransactionBatch(
+            @RequestBody
+            @Size(min = 1, max = MAX_BATCH_SIZE, message = "{validation.transaction.batch.size}")
+            List<@Valid TransactionBatchOperationDto> operations,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
+    ) {
+        long loggedUserId = AuthUtil.getLoggedUserId();
+
+        return idempotencyService.execute(
+                idempotencyKey, "transaction.batch", operations, BATCH_RESULT_TYPE, loggedUserId,
+                () -> toBatchResult(
+                        operations,
+                        transactionService.applyTransactionBatch(operations, loggedUserId))
+        );
+    }
+
+    private static List<TransactionBatchResultDto> toBatchResult(
+            List<TransactionBatchOperationDto> operations,
+            List<Transaction> transactions
+    ) {
+        List<TransactionBatchResultDto> result = new ArrayList<>(operations.size());
+
+        for (int i = 0; i < operations.size(); i++) {
+            TransactionBatchOperationType type = operations.get(i).type();
+            Transaction transaction = transactions.get(i);
+
+            result.add(new TransactionBatchResultDto(
+                    type,
+                    transaction.getId(),
+                    type == TransactionBatchOperationType.DELETE
+                            ? null
+                            : TransactionMapper.toViewDto(transaction)
+            ));
+        }
+        return result;
+    }
+
+    /**
+     * Converts the transactions to a page. The service returns one more transaction than the
+     * limit if there is a next page.
+     */
+    private static ViewTransactionPageDto toPageDto(List<TransactionDbDto> transactions,
+                                                    int limit
+    ) {
+        List<ViewTransactionDto> page = TransactionMapper.toViewDtos(
+                transactions.subList(0, Math.min(limit, transactions.size()))
+        );
+
+        String next = null;
+        if (transactions.size() > limit) {
+            ViewTransactionDto last = page.get(page.size() - 1);
+            next = new TransactionPageCursor(last.getDate(), last.getId()).encode();
+        }
+        return new ViewTransactionPageDto(page, next);
     }
 
 }
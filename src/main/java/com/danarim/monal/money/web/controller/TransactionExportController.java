@@ -0,0 +1,61 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.money.persistence.model.ExportFormat;
+import com.danarim.monal.money.service.TransactionExport;
+import com.danarim.monal.money.service.TransactionExportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Controller for exporting the transactions history.
+ */
+@RestController
+@RequestMapping(WebConfig.API_V1_PREFIX + "/transaction/export")
+public class TransactionExportController {
+
+    private final TransactionExportService exportService;
+
+    public TransactionExportController(TransactionExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Exports all transactions of the wallet ordered by date (oldest first). The response is
+     * streamed in chunks while the rows are read from the database.
+     *
+     * @param walletId wallet ID
+     * @param format   format of the export {@link ExportFormat ExportFormat}
+     *
+     * @return streamed file with the transactions
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportWalletTransactions(
+            @RequestParam long walletId,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format
+    ) {
+        TransactionExport export = exportService.exportWalletTransactions(
+                walletId,
+                format,
+                AuthUtil.getLoggedUserId()
+        );
+        ContentDisposition contentDisposition = ContentDisposition.attachment()
+                .filename("wallet-%d-transactions.%s".formatted(walletId,
+                                                                format.getFileExtension()))
+                .build();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString())
+                .body(export::writeTo);
+    }
+
+}
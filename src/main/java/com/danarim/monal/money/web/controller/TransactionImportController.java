@@ -0,0 +1,76 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.money.service.TransactionImportService;
+import com.danarim.monal.money.web.dto.ImportTransactionDto;
+import com.danarim.monal.money.web.dto.ImportTransactionsResultDto;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Controller for importing many transactions at once.
+ */
+@RestController
+@RequestMapping(WebConfig.API_V1_PREFIX + "/transaction/import")
+public class TransactionImportController {
+
+    private final TransactionImportService importService;
+
+    public TransactionImportController(TransactionImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Imports transactions from a JSON array to the wallet. Rows that are already imported to the
+     * wallet are skipped.
+     *
+     * @param walletId     wallet ID
+     * @param transactions rows to import
+     *
+     * @return number of imported and skipped rows
+     */
+    @PostMapping(
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ImportTransactionsResultDto importTransactions(
+            @RequestParam long walletId,
+            @RequestBody List<ImportTransactionDto> transactions
+    ) {
+        return importService.importTransactions(walletId,
+                                                transactions,
+                                                AuthUtil.getLoggedUserId());
+    }
+
+    /**
+     * Imports transactions from CSV to the wallet. The CSV must have a header with columns
+     * "date", "amount", "categoryId" and optionally "description". Rows that are already imported
+     * to the wallet are skipped.
+     *
+     * @param walletId wallet ID
+     * @param csv      request body
+     *
+     * @return number of imported and skipped rows
+     *
+     * @throws IOException if the request body can't be read
+     */
+    @PostMapping(
+            consumes = "text/csv",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ImportTransactionsResultDto importTransactionsCsv(@RequestParam long walletId,
+                                                             Reader csv
+    ) throws IOException {
+        return importService.importTransactionsCsv(walletId, csv, AuthUtil.getLoggedUserId());
+    }
+
+}
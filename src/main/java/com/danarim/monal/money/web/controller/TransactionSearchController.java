@@ -0,0 +1,90 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import com.danarim.monal.money.service.TransactionSearchService;
+import com.danarim.monal.money.web.dto.TransactionSearchCursor;
+import com.danarim.monal.money.web.dto.ViewTransactionPageDto;
+import com.danarim.monal.money.web.mapper.TransactionMapper;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Date;
+import java.util.List;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+
+/**
+ * Controller for the full-text search over transaction descriptions.
+ */
+@RestController
+@RequestMapping(WebConfig.API_V1_PREFIX + "/transaction/search")
+@Validated
+public class TransactionSearchController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final TransactionSearchService searchService;
+
+    public TransactionSearchController(TransactionSearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    /**
+     * Searches the transactions of all wallets of the logged user by description.
+     *
+     * @param query  Search query. Supports "quoted phrases", 'or' and -excluded words.
+     * @param order  Order of the results {@link TransactionSearchOrder TransactionSearchOrder}.
+     * @param limit  Max number of transactions on the page.
+     * @param cursor Cursor from the previous page. Not present for the first page.
+     *
+     * @return Page of found transactions with the cursor for the next page.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ViewTransactionPageDto searchTransactions(
+            @RequestParam
+            @NotBlank(message = "{validation.transaction.search.query.notblank}")
+            @Size(max = 255, message = "{validation.transaction.search.query.size}")
+            String query,
+
+            @RequestParam(defaultValue = "RELEVANCE") TransactionSearchOrder order,
+
+            @RequestParam(defaultValue = "50")
+            @Min(value = 1, message = "{validation.transaction.page.limit}")
+            @Max(value = MAX_PAGE_SIZE, message = "{validation.transaction.page.limit}")
+            int limit,
+
+            @RequestParam(required = false) String cursor
+    ) {
+        List<TransactionSearchDbDto> found = searchService.searchTransactions(
+                query,
+                order,
+                cursor == null ? null : TransactionSearchCursor.decode(cursor),
+                limit,
+                AuthUtil.getLoggedUserId()
+        );
+        List<TransactionSearchDbDto> page = found.subList(0, Math.min(limit, found.size()));
+
+        String next = null;
+        if (found.size() > limit) {
+            TransactionSearchDbDto last = page.get(page.size() - 1);
+            next = new TransactionSearchCursor(last.rank(),
+                                               new Date(last.transaction().dateMillis()),
+                                               last.transaction().id()).encode();
+        }
+        List<TransactionDbDto> transactions = page.stream()
+                .map(TransactionSearchDbDto::transaction)
+                .toList();
+        return new ViewTransactionPageDto(TransactionMapper.toViewDtos(transactions), next);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.danarim.monal.money.web.controller;
+
+import com.danarim.monal.config.WebConfig;
+import com.danarim.monal.config.security.auth.AuthUtil;
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.service.IdempotencyService;
+import com.danarim.monal.money.service.TransferService;
+import com.danarim.monal.money.web.dto.CreateTransferDto;
+import com.danarim.monal.money.web.dto.ViewTransferDto;
+import com.danarim.monal.money.web.mapper.TransferMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Size;
+
+/**
+ * Controller for {@link Transfer Transfer}.
+ */
+@RestController
+@RequestMapping(WebConfig.API_V1_PREFIX + "/transfer")
+@Validated
+public class TransferController {
+
+    private static final TypeReference<ViewTransferDto> VIEW_TRANSFER_TYPE =
+            new TypeReference<>() {};
+
+    private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
+
+    public TransferController(TransferService transferService,
+                              IdempotencyService idempotencyService
+    ) {
+        this.transferService = transferService;
+        this.idempotencyService = idempotencyService;
+    }
+
+    /**
+     * Moves money between two wallets of the current user. Both transactions of the transfer are
+     * created together or not at all.
+     *
+     * @param transferDto    DTO with transfer data
+     * @param idempotencyKey Optional key of the request. A retry with the same key returns the
+     *                       first response and does not move the money again.
+     *
+     * @return DTO with both created transactions
+     */
+    @PostMapping(
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @ResponseStatus(HttpStatus.CREATED)
+    public ViewTransferDto createTransfer(
+            @RequestBody @Valid CreateTransferDto transferDto,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
+    ) {
+        long loggedUserId = AuthUtil.getLoggedUserId();
+
+        return idempotencyService.execute(
+                idempotencyKey, "transfer.create", transferDto, VIEW_TRANSFER_TYPE, loggedUserId,
+                () -> TransferMapper.toViewDto(
+                        transferService.createTransfer(transferDto, loggedUserId))
+        );
+    }
+
+}
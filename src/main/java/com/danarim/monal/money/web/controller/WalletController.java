@@ -3,10 +3,15 @@ package com.danarim.monal.money.web.controller;
 import com.danarim.monal.config.WebConfig;
 import com.danarim.monal.config.security.auth.AuthUtil;
 import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.service.BalanceHistoryService;
+import com.danarim.monal.money.service.IdempotencyService;
 import com.danarim.monal.money.service.WalletService;
 import com.danarim.monal.money.web.dto.CreateWalletDto;
+import com.danarim.monal.money.web.dto.ViewBalanceHistoryDto;
 import com.danarim.monal.money.web.dto.ViewWalletDto;
-import org.modelmapper.ModelMapper;
+import com.danarim.monal.money.web.mapper.WalletMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
@@ -15,11 +20,14 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.Date;
 import java.util.List;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
@@ -33,17 +41,37 @@ import javax.validation.constraints.Size;
 @Validated
 public class WalletController {
 
-    private static final ModelMapper modelMapper = new ModelMapper();
+    private static final TypeReference<ViewWalletDto> VIEW_WALLET_TYPE =
+            new TypeReference<>() {};
+
+    private static final TypeReference<Void> NO_CONTENT_TYPE = new TypeReference<>() {};
+
     private final WalletService walletService;
+    private final IdempotencyService idempotencyService;
+    private final BalanceHistoryService balanceHistoryService;
 
-    public WalletController(WalletService walletService) {
+    /**
+     * Dependency injection constructor.
+     *
+     * @param walletService         WalletService
+     * @param idempotencyService    IdempotencyService
+     * @param balanceHistoryService BalanceHistoryService
+     */
+    public WalletController(WalletService walletService,
+                            IdempotencyService idempotencyService,
+                            BalanceHistoryService balanceHistoryService
+    ) {
         this.walletService = walletService;
+        this.idempotencyService = idempotencyService;
+        this.balanceHistoryService = balanceHistoryService;
     }
 
     /**
      * Creates a new wallet for the current user.
      *
-     * @param walletDto wallet data
+     * @param walletDto      wallet data
+     * @param idempotencyKey optional key of the request. A retry with the same key returns the
+     *                       first response and does not create the wallet again.
      *
      * @return view of the created wallet
      */
@@ -52,10 +80,21 @@ public class WalletController {
             consumes = MediaType.APPLICATION_JSON_VALUE
     )
     @ResponseStatus(HttpStatus.CREATED)
-    public ViewWalletDto createWallet(@RequestBody @Valid CreateWalletDto walletDto) {
-        Wallet result = walletService.createWallet(walletDto, AuthUtil.getLoggedUserId());
+    public ViewWalletDto createWallet(
+            @RequestBody @Valid CreateWalletDto walletDto,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
+    ) {
+        long loggedUserId = AuthUtil.getLoggedUserId();
 
-        return modelMapper.map(result, ViewWalletDto.class);
+        return idempotencyService.execute(
+                idempotencyKey, "wallet.create", walletDto, VIEW_WALLET_TYPE, loggedUserId,
+                () -> WalletMapper.toViewDto(walletService.createWallet(walletDto, loggedUserId))
+        );
     }
 
     /**
@@ -69,9 +108,7 @@ public class WalletController {
     public List<ViewWalletDto> getUserWallets() {
         List<Wallet> wallets = walletService.getUserWallets(AuthUtil.getLoggedUserId());
 
-        return wallets.stream()
-                .map(wallet -> modelMapper.map(wallet, ViewWalletDto.class))
-                .toList();
+        return WalletMapper.toViewDtos(wallets);
     }
 
     @GetMapping("/countTransactions")
@@ -79,6 +116,55 @@ public class WalletController {
         return walletService.countWalletTransactions(walletId, AuthUtil.getLoggedUserId());
     }
 
+    /**
+     * Returns the balance of the wallet of the current user at the given date.
+     *
+     * @param walletId ID of the wallet
+     * @param date     date in ISO format, for example '2023-03-03T12:00:00Z'. Transactions at the
+     *                 date are included.
+     *
+     * @return balance of the wallet at the date
+     */
+    @GetMapping("/balance")
+    public double getWalletBalance(
+            @RequestParam long walletId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date date
+    ) {
+        return walletService.getWalletBalanceAt(walletId, date, AuthUtil.getLoggedUserId());
+    }
+
+    /**
+     * Returns the end-of-day balances of the wallet of the current user for every day of the
+     * range. Days are in UTC.
+     *
+     * @param walletId ID of the wallet
+     * @param from     first day in ISO format, for example '2023-03-01'
+     * @param to       last day in ISO format (inclusive)
+     *
+     * @return balances of the wallet ordered by day
+     */
+    @GetMapping(
+            value = "/balanceHistory",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ViewBalanceHistoryDto getWalletBalanceHistory(
+            @RequestParam long walletId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return balanceHistoryService.getBalanceHistory(walletId, from, to,
+                                                       AuthUtil.getLoggedUserId());
+    }
+
+    /**
+     * Renames the wallet of the current user.
+     *
+     * @param walletId       ID of the wallet
+     * @param name           new name of the wallet
+     * @param idempotencyKey optional key of the request
+     *
+     * @return view of the renamed wallet
+     */
     @PutMapping("/name")
     public ViewWalletDto updateWalletName(
             @RequestParam
@@ -87,16 +173,51 @@ public class WalletController {
             @RequestParam
             @NotBlank(message = "{validation.wallet.required.name}")
             @Size(min = 2, max = 32, message = "{validation.wallet.size.name}")
-            String name
+            String name,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
     ) {
-        Wallet wallet = walletService.updateWalletName(walletId, name, AuthUtil.getLoggedUserId());
-        return modelMapper.map(wallet, ViewWalletDto.class);
+        long loggedUserId = AuthUtil.getLoggedUserId();
+
+        return idempotencyService.execute(
+                idempotencyKey, "wallet.name.update", List.of(walletId, name), VIEW_WALLET_TYPE,
+                loggedUserId,
+                () -> WalletMapper.toViewDto(
+                        walletService.updateWalletName(walletId, name, loggedUserId))
+        );
     }
 
+    /**
+     * Deletes the wallet of the current user.
+     *
+     * @param walletId       ID of the wallet
+     * @param idempotencyKey optional key of the request. A retry with the same key succeeds even
+     *                       though the wallet is already deleted.
+     */
     @DeleteMapping
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteWallet(@RequestParam long walletId) {
-        walletService.deleteWallet(walletId, AuthUtil.getLoggedUserId());
+    public void deleteWallet(
+            @RequestParam long walletId,
+
+            @RequestHeader(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false)
+            @Size(min = 1,
+                  max = IdempotencyService.MAX_KEY_LENGTH,
+                  message = "{validation.idempotency.key.size}")
+            String idempotencyKey
+    ) {
+        long loggedUserId = AuthUtil.getLoggedUserId();
+
+        idempotencyService.execute(
+                idempotencyKey, "wallet.delete", walletId, NO_CONTENT_TYPE, loggedUserId,
+                () -> {
+                    walletService.deleteWallet(walletId, loggedUserId);
+                    return null;
+                }
+        );
     }
 
 }
@@ -0,0 +1,47 @@
+package com.danarim.monal.money.web.dto;
+
+import com.danarim.monal.money.persistence.model.Money;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+
+/**
+ * DTO for creating a
+ * {@link com.danarim.monal.money.persistence.model.RecurringTransaction RecurringTransaction}.
+ *
+ * @param description A description of every occurrence.
+ * @param amount      The amount of every occurrence. Can't be negative or zero.
+ * @param categoryId  The ID of the category of every occurrence.
+ * @param walletId    The ID of the wallet the occurrences belong to.
+ * @param cron        Spring cron expression with seconds, for example "0 0 9 1 * *".
+ * @param startDate   The date from which occurrences are created. Now if not present.
+ */
+public record CreateRecurringTransactionDto(
+
+        @Size(max = 255, message = "{validation.transaction.description.size}")
+        String description,
+
+        @Positive(message = "{validation.transaction.amount.positive}")
+        @Max(value = Money.MAX_AMOUNT, message = "{validation.transaction.amount.max}")
+        double amount,
+
+        @NotNull(message = "{validation.transaction.categoryId.notnull}")
+        long categoryId,
+
+        @NotNull(message = "{validation.transaction.walletId.notnull}")
+        long walletId,
+
+        @NotBlank(message = "{validation.recurring.cron.notblank}")
+        @Size(max = 120, message = "{validation.recurring.cron.invalid}")
+        String cron,
+
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm")
+        Date startDate
+) {
+
+}
@@ -1,8 +1,10 @@
 package com.danarim.monal.money.web.dto;
 
+import com.danarim.monal.money.persistence.model.Money;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 import java.util.Date;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
@@ -26,6 +28,7 @@ public record CreateTransactionDto(
         Date date,
 
         @Positive(message = "{validation.transaction.amount.positive}")
+        @Max(value = Money.MAX_AMOUNT, message = "{validation.transaction.amount.max}")
         double amount,
 
         @NotNull(message = "{validation.transaction.categoryId.notnull}")
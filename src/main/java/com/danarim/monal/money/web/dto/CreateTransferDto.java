@@ -0,0 +1,42 @@
+package com.danarim.monal.money.web.dto;
+
+import com.danarim.monal.money.persistence.model.Money;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+
+/**
+ * DTO for creating a {@link com.danarim.monal.money.persistence.model.Transfer Transfer} between
+ * two wallets of the user.
+ *
+ * @param description  A description of both transactions of the transfer.
+ * @param date         The date of the transfer.
+ * @param amount       The amount of the transfer. Can't be negative or zero.
+ * @param fromWalletId The ID of the wallet the money is taken from.
+ * @param toWalletId   The ID of the wallet the money is added to.
+ */
+public record CreateTransferDto(
+
+        @Size(max = 255, message = "{validation.transaction.description.size}")
+        String description,
+
+        @NotNull(message = "{validation.transaction.date.notnull}")
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm")
+        Date date,
+
+        @Positive(message = "{validation.transaction.amount.positive}")
+        @Max(value = Money.MAX_AMOUNT, message = "{validation.transaction.amount.max}")
+        double amount,
+
+        @NotNull(message = "{validation.transaction.walletId.notnull}")
+        long fromWalletId,
+
+        @NotNull(message = "{validation.transaction.walletId.notnull}")
+        long toWalletId
+) {
+
+}
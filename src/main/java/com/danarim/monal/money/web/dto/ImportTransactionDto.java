@@ -0,0 +1,23 @@
+package com.danarim.monal.money.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+
+/**
+ * One row of the transactions import. The wallet is the same for all rows of the import.
+ *
+ * @param description A description of the transaction. Can be null.
+ * @param date        The date of the transaction.
+ * @param amount      The amount of the transaction. Can't be negative or zero.
+ * @param categoryId  The ID of the category of the transaction.
+ */
+public record ImportTransactionDto(
+        String description,
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm")
+        Date date,
+        double amount,
+        long categoryId
+) {
+
+}
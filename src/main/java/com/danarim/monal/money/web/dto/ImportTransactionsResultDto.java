@@ -0,0 +1,14 @@
+package com.danarim.monal.money.web.dto;
+
+/**
+ * Result of the transactions import.
+ *
+ * @param imported number of created transactions
+ * @param skipped  number of rows that were skipped because they are already imported
+ */
+public record ImportTransactionsResultDto(
+        int imported,
+        int skipped
+) {
+
+}
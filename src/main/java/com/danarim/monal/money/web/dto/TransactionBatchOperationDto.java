@@ -0,0 +1,52 @@
+package com.danarim.monal.money.web.dto;
+
+import com.danarim.monal.money.persistence.model.Money;
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+
+/**
+ * One operation of a batch of transaction changes. Required fields depend on the type:
+ * <ul>
+ *     <li>{@link TransactionBatchOperationType#CREATE CREATE} - all fields except id</li>
+ *     <li>{@link TransactionBatchOperationType#UPDATE UPDATE} - all fields</li>
+ *     <li>{@link TransactionBatchOperationType#DELETE DELETE} - only id</li>
+ * </ul>
+ * Description is optional for create and update.
+ *
+ * @param type        The type of the operation.
+ * @param id          The ID of the transaction to update or delete.
+ * @param description A description of the transaction.
+ * @param date        The date of the transaction.
+ * @param amount      The amount of the transaction. Can't be negative or zero.
+ * @param categoryId  The ID of the category of the transaction.
+ * @param walletId    The ID of the wallet the transaction belongs to.
+ */
+public record TransactionBatchOperationDto(
+
+        @NotNull(message = "{validation.transaction.batch.type.notnull}")
+        TransactionBatchOperationType type,
+
+        Long id,
+
+        @Size(max = 255, message = "{validation.transaction.description.size}")
+        String description,
+
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm")
+        Date date,
+
+        @Positive(message = "{validation.transaction.amount.positive}")
+        @Max(value = Money.MAX_AMOUNT, message = "{validation.transaction.amount.max}")
+        Double amount,
+
+        Long categoryId,
+
+        Long walletId
+) {
+
+}
@@ -0,0 +1,18 @@
+package com.danarim.monal.money.web.dto;
+
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
+
+/**
+ * Result of one operation of a batch of transaction changes.
+ *
+ * @param type        The type of the operation.
+ * @param id          The ID of the created, updated or deleted transaction.
+ * @param transaction The created or updated transaction. Null for delete operations.
+ */
+public record TransactionBatchResultDto(
+        TransactionBatchOperationType type,
+        long id,
+        ViewTransactionDto transaction
+) {
+
+}
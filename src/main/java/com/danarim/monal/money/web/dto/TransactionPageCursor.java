@@ -0,0 +1,73 @@
+package com.danarim.monal.money.web.dto;
+
+import com.danarim.monal.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of the last transaction on a page of transactions. Pages are ordered by date and ID
+ * (newest first), so the next page starts right after this position.
+ *
+ * <p>For the client the cursor is an opaque string. Use {@link #encode()} and
+ * {@link #decode(String)} to convert it.
+ *
+ * @param date date of the last transaction on the page
+ * @param id   ID of the last transaction on the page
+ */
+public record TransactionPageCursor(
+        Date date,
+        long id
+) {
+
+    private static final char SEPARATOR = ':';
+
+    public TransactionPageCursor {
+        date = new Date(date.getTime());
+    }
+
+    @Override
+    public Date date() {
+        return new Date(date.getTime());
+    }
+
+    /**
+     * Encodes the cursor to the opaque string that is sent to the client.
+     *
+     * @return URL safe cursor string
+     */
+    public String encode() {
+        String raw = String.valueOf(date.getTime()) + SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the cursor received from the client.
+     *
+     * @param cursor cursor string created by {@link #encode()}
+     *
+     * @return decoded cursor
+     *
+     * @throws BadRequestException if the cursor is malformed
+     */
+    public static TransactionPageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor),
+                                    StandardCharsets.UTF_8);
+            int separatorIndex = raw.indexOf(SEPARATOR);
+
+            return new TransactionPageCursor(
+                    new Date(Long.parseLong(raw.substring(0, separatorIndex))),
+                    Long.parseLong(raw.substring(separatorIndex + 1))
+            );
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid transaction page cursor: " + cursor, e,
+                                          "validation.transaction.page.cursor.invalid",
+                                          null);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.danarim.monal.money.web.dto;
+
+import com.danarim.monal.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Position of the last transaction on a page of search results. The rank is used when results
+ * are ordered by relevance and the date when they are ordered by date. The ID breaks ties in both
+ * cases.
+ *
+ * <p>For the client the cursor is an opaque string. Use {@link #encode()} and
+ * {@link #decode(String)} to convert it.
+ *
+ * @param rank rank of the last transaction on the page
+ * @param date date of the last transaction on the page
+ * @param id   ID of the last transaction on the page
+ */
+public record TransactionSearchCursor(
+        float rank,
+        Date date,
+        long id
+) {
+
+    private static final char SEPARATOR = ':';
+
+    public TransactionSearchCursor {
+        date = new Date(date.getTime());
+    }
+
+    @Override
+    public Date date() {
+        return new Date(date.getTime());
+    }
+
+    /**
+     * Encodes the cursor to the opaque string that is sent to the client.
+     *
+     * @return URL safe cursor string
+     */
+    public String encode() {
+        String raw = Float.toString(rank) + SEPARATOR + date.getTime() + SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the cursor received from the client.
+     *
+     * @param cursor cursor string created by {@link #encode()}
+     *
+     * @return decoded cursor
+     *
+     * @throws BadRequestException if the cursor is malformed
+     */
+    public static TransactionSearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor),
+                                    StandardCharsets.UTF_8);
+            String[] parts = raw.split(String.valueOf(SEPARATOR), -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Wrong number of cursor parts");
+            }
+            return new TransactionSearchCursor(
+                    Float.parseFloat(parts[0]),
+                    new Date(Long.parseLong(parts[1])),
+                    Long.parseLong(parts[2])
+            );
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid transaction search cursor: " + cursor, e,
+                                          "validation.transaction.page.cursor.invalid",
+                                          null);
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.danarim.monal.money.web.dto;
+
+import java.time.LocalDate;
+
+/**
+ * End-of-day balances of a wallet for consecutive days.
+ *
+ * @param from     day of the first balance
+ * @param balances balances ordered by day, one for every day from the first one
+ */
+public record ViewBalanceHistoryDto(
+        LocalDate from,
+        double[] balances
+) {
+
+}
@@ -0,0 +1,30 @@
+package com.danarim.monal.money.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.Date;
+
+/**
+ * DTO for viewing a
+ * {@link com.danarim.monal.money.persistence.model.RecurringTransaction RecurringTransaction}.
+ *
+ * @param id             The ID of the recurring transaction.
+ * @param description    A description of every occurrence.
+ * @param amount         The amount of every occurrence.
+ * @param categoryId     The ID of the category of every occurrence.
+ * @param walletId       The ID of the wallet the occurrences belong to.
+ * @param cron           Spring cron expression of the schedule.
+ * @param nextOccurrence The date of the next occurrence. Null if there are no more occurrences.
+ */
+public record ViewRecurringTransactionDto(
+        long id,
+        String description,
+        double amount,
+        long categoryId,
+        long walletId,
+        String cron,
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm")
+        Date nextOccurrence
+) {
+
+}
@@ -22,7 +22,20 @@ public class ViewTransactionCategoryDto {
     private List<ViewTransactionCategoryDto> subCategories;
 
     public ViewTransactionCategoryDto() {
-        // Empty constructor for model mapper.
+        // Empty constructor for Jackson.
+    }
+
+    /**
+     * Creates a DTO without sub-categories.
+     *
+     * @param id   The ID of the category.
+     * @param name The name of the category.
+     * @param type The type of the category.
+     */
+    public ViewTransactionCategoryDto(long id, String name, TransactionType type) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
     }
 
     public long getId() {
@@ -23,6 +23,35 @@ public class ViewTransactionDto implements Comparable<ViewTransactionDto> {
 
     private long walletId;
 
+    public ViewTransactionDto() {
+        // Empty constructor for Jackson.
+    }
+
+    /**
+     * Creates a DTO with all fields.
+     *
+     * @param id          The ID of the transaction.
+     * @param description A description of the transaction.
+     * @param dateMillis  The date of the transaction in milliseconds since the epoch.
+     * @param amount      The amount of the transaction.
+     * @param categoryId  The ID of the category of the transaction.
+     * @param walletId    The ID of the wallet the transaction belongs to.
+     */
+    public ViewTransactionDto(long id,
+                              String description,
+                              long dateMillis,
+                              double amount,
+                              long categoryId,
+                              long walletId
+    ) {
+        this.id = id;
+        this.description = description;
+        this.date = new Date(dateMillis);
+        this.amount = amount;
+        this.categoryId = categoryId;
+        this.walletId = walletId;
+    }
+
     public long getId() {
         return id;
     }
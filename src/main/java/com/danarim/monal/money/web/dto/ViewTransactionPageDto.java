@@ -0,0 +1,16 @@
+package com.danarim.monal.money.web.dto;
+
+import java.util.List;
+
+/**
+ * One page of transactions ordered by date and ID (newest first).
+ *
+ * @param transactions transactions on the page
+ * @param next         opaque cursor for the next page. Null if this is the last page.
+ */
+public record ViewTransactionPageDto(
+        List<ViewTransactionDto> transactions,
+        String next
+) {
+
+}
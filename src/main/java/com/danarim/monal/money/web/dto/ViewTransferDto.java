@@ -0,0 +1,16 @@
+package com.danarim.monal.money.web.dto;
+
+/**
+ * DTO for viewing a {@link com.danarim.monal.money.persistence.model.Transfer Transfer}.
+ *
+ * @param id      ID of the transfer
+ * @param outcome transaction that takes the money from the source wallet
+ * @param income  transaction that adds the money to the target wallet
+ */
+public record ViewTransferDto(
+        long id,
+        ViewTransactionDto outcome,
+        ViewTransactionDto income
+) {
+
+}
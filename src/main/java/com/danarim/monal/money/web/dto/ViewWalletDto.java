@@ -11,7 +11,22 @@ public final class ViewWalletDto {
     private String currency;
 
     public ViewWalletDto() {
-        // Empty constructor for ModelMapper.
+        // Empty constructor for Jackson.
+    }
+
+    /**
+     * Creates a DTO with all fields.
+     *
+     * @param id       The ID of the wallet.
+     * @param name     The name of the wallet.
+     * @param balance  The balance of the wallet.
+     * @param currency The currency code of the wallet.
+     */
+    public ViewWalletDto(long id, String name, double balance, String currency) {
+        this.id = id;
+        this.name = name;
+        this.balance = balance;
+        this.currency = currency;
     }
 
     public long getId() {
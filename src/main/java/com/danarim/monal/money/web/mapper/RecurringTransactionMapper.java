@@ -0,0 +1,56 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.web.dto.ViewRecurringTransactionDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps {@link RecurringTransaction} to DTOs. Category and wallet are lazy, only their IDs are
+ * read, so the mapping doesn't load them.
+ */
+public final class RecurringTransactionMapper {
+
+    private RecurringTransactionMapper() {
+        throw new AssertionError("No RecurringTransactionMapper instances for you!");
+    }
+
+    /**
+     * Maps the recurring transaction to the view DTO.
+     *
+     * @param recurringTransaction recurring transaction to map
+     *
+     * @return view DTO
+     */
+    public static ViewRecurringTransactionDto toViewDto(RecurringTransaction recurringTransaction) {
+        return new ViewRecurringTransactionDto(
+                recurringTransaction.getId(),
+                recurringTransaction.getDescription(),
+                recurringTransaction.getAmount(),
+                recurringTransaction.getCategory().getId(),
+                recurringTransaction.getWallet().getId(),
+                recurringTransaction.getCron(),
+                recurringTransaction.getNextOccurrence()
+        );
+    }
+
+    /**
+     * Maps the recurring transactions to view DTOs.
+     *
+     * @param recurringTransactions recurring transactions to map
+     *
+     * @return view DTOs in the same order
+     */
+    public static List<ViewRecurringTransactionDto> toViewDtos(
+            List<RecurringTransaction> recurringTransactions
+    ) {
+        List<ViewRecurringTransactionDto> result = new ArrayList<>(recurringTransactions.size());
+
+        for (RecurringTransaction recurringTransaction : recurringTransactions) {
+            result.add(toViewDto(recurringTransaction));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.web.dto.ViewTransactionCategoryDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps {@link TransactionCategory} to DTOs.
+ */
+public final class TransactionCategoryMapper {
+
+    private TransactionCategoryMapper() {
+        throw new AssertionError("No TransactionCategoryMapper instances for you!");
+    }
+
+    /**
+     * Maps the category with its sub-categories to the view DTO.
+     *
+     * @param category category to map
+     *
+     * @return view DTO
+     */
+    public static ViewTransactionCategoryDto toViewDto(TransactionCategory category) {
+        ViewTransactionCategoryDto result = new ViewTransactionCategoryDto(
+                category.getId(),
+                category.getName(),
+                category.getType()
+        );
+        category.getSubCategories().forEach(subCategory -> result.addSubCategory(
+                new ViewTransactionCategoryDto(subCategory.getId(),
+                                               subCategory.getName(),
+                                               subCategory.getType())
+        ));
+        return result;
+    }
+
+    /**
+     * Maps the categories with their sub-categories to the view DTOs keeping the order.
+     *
+     * @param categories categories to map
+     *
+     * @return view DTOs
+     */
+    public static List<ViewTransactionCategoryDto> toViewDtos(
+            List<TransactionCategory> categories
+    ) {
+        List<ViewTransactionCategoryDto> result = new ArrayList<>(categories.size());
+
+        for (TransactionCategory category : categories) {
+            result.add(toViewDto(category));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.web.dto.ViewTransactionDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps {@link Transaction} to DTOs. Plain field copies instead of reflection, because
+ * transactions are mapped in large lists.
+ */
+public final class TransactionMapper {
+
+    private TransactionMapper() {
+        throw new AssertionError("No TransactionMapper instances for you!");
+    }
+
+    /**
+     * Maps the transaction to the view DTO.
+     *
+     * @param transaction transaction to map
+     *
+     * @return view DTO
+     */
+    public static ViewTransactionDto toViewDto(Transaction transaction) {
+        return new ViewTransactionDto(
+                transaction.getId(),
+                transaction.getDescription(),
+                transaction.getDateMillis(),
+                transaction.getAmount(),
+                transaction.getCategory().getId(),
+                transaction.getWallet().getId()
+        );
+    }
+
+    /**
+     * Maps the transaction columns to the view DTO.
+     *
+     * @param transaction transaction columns to map
+     *
+     * @return view DTO
+     */
+    public static ViewTransactionDto toViewDto(TransactionDbDto transaction) {
+        return new ViewTransactionDto(
+                transaction.id(),
+                transaction.description(),
+                transaction.dateMillis(),
+                transaction.amount(),
+                transaction.categoryId(),
+                transaction.walletId()
+        );
+    }
+
+    /**
+     * Maps the transaction columns to the view DTOs keeping the order.
+     *
+     * @param transactions transaction columns to map
+     *
+     * @return view DTOs
+     */
+    public static List<ViewTransactionDto> toViewDtos(List<TransactionDbDto> transactions) {
+        List<ViewTransactionDto> result = new ArrayList<>(transactions.size());
+
+        for (TransactionDbDto transaction : transactions) {
+            result.add(toViewDto(transaction));
+        }
+        return result;
+    }
+
+}
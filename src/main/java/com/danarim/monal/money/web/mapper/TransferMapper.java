@@ -0,0 +1,30 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.web.dto.ViewTransferDto;
+
+/**
+ * Maps {@link Transfer} to DTOs.
+ */
+public final class TransferMapper {
+
+    private TransferMapper() {
+        throw new AssertionError("No TransferMapper instances for you!");
+    }
+
+    /**
+     * Maps the transfer with both its transactions to the view DTO.
+     *
+     * @param transfer transfer to map
+     *
+     * @return view DTO
+     */
+    public static ViewTransferDto toViewDto(Transfer transfer) {
+        return new ViewTransferDto(
+                transfer.getId(),
+                TransactionMapper.toViewDto(transfer.getOutcome()),
+                TransactionMapper.toViewDto(transfer.getIncome())
+        );
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.ViewWalletDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps {@link Wallet} to DTOs.
+ */
+public final class WalletMapper {
+
+    private WalletMapper() {
+        throw new AssertionError("No WalletMapper instances for you!");
+    }
+
+    /**
+     * Maps the wallet to the view DTO.
+     *
+     * @param wallet wallet to map
+     *
+     * @return view DTO
+     */
+    public static ViewWalletDto toViewDto(Wallet wallet) {
+        return new ViewWalletDto(
+                wallet.getId(),
+                wallet.getName(),
+                wallet.getBalance(),
+                wallet.getCurrency().name()
+        );
+    }
+
+    /**
+     * Maps the wallets to the view DTOs keeping the order.
+     *
+     * @param wallets wallets to map
+     *
+     * @return view DTOs
+     */
+    public static List<ViewWalletDto> toViewDtos(List<Wallet> wallets) {
+        List<ViewWalletDto> result = new ArrayList<>(wallets.size());
+
+        for (Wallet wallet : wallets) {
+            result.add(toViewDto(wallet));
+        }
+        return result;
+    }
+
+}
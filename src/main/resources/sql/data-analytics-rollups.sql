@@ -0,0 +1,14 @@
+-- Daily analytics rollups of the transactions created before the rollups were added.
+-- One-time data migration, see DataMigrationPopulator.
+-- Days that already have a rollup of the category are skipped: the rollup is changed together
+-- with every transaction of its day and category since it was created.
+
+INSERT INTO analytics_rollup (wallet_id, day, category_id, amount, transaction_count)
+SELECT t.wallet_id,
+       CAST(t.date AS DATE),
+       t.category_id,
+       SUM(CAST(t.amount AS NUMERIC)),
+       COUNT(*)
+  FROM transaction AS t
+ GROUP BY t.wallet_id, CAST(t.date AS DATE), t.category_id
+    ON CONFLICT (wallet_id, day, category_id) DO NOTHING;
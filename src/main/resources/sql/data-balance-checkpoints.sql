@@ -0,0 +1,13 @@
+-- Monthly balance checkpoints of the transactions created before the checkpoints were added.
+-- One-time data migration, see DataMigrationPopulator.
+-- Months that already have a checkpoint are skipped: the checkpoint is changed together with
+-- every transaction of its month since it was created.
+
+INSERT INTO wallet_balance_checkpoint (wallet_id, month, net_change)
+SELECT t.wallet_id,
+       CAST(date_trunc('month', t.date) AS DATE),
+       SUM(CASE WHEN c.type = 'INCOME' THEN t.amount ELSE -t.amount END)
+  FROM transaction AS t
+       INNER JOIN transaction_category AS c ON c.id = t.category_id
+ GROUP BY t.wallet_id, CAST(date_trunc('month', t.date) AS DATE)
+    ON CONFLICT (wallet_id, month) DO NOTHING;
@@ -321,3 +321,16 @@ VALUES ('Other', 'INCOME', NULL)
     ON CONFLICT DO NOTHING;
 
 
+--        Transfer categories
+-- Used by both legs of a transfer between wallets. Appended last, so the IDs of the other
+-- categories are the same as before they were added.
+
+
+INSERT INTO transaction_category (name, type, parent_category_id)
+VALUES ('Transfer', 'OUTCOME', NULL)
+    ON CONFLICT DO NOTHING;
+
+INSERT INTO transaction_category (name, type, parent_category_id)
+VALUES ('Transfer', 'INCOME', NULL)
+    ON CONFLICT DO NOTHING;
+
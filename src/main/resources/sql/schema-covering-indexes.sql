@@ -0,0 +1,13 @@
+-- Covering indexes. Columns in INCLUDE are stored in the index leaves but are not part of the
+-- key, so the queries that read only these columns are answered by index-only scans.
+
+-- Analytics reports: rollups of a wallet by day with everything summed by the report.
+CREATE INDEX IF NOT EXISTS analytics_rollup_wallet_id_day_covering_index
+    ON analytics_rollup (wallet_id, day) INCLUDE (category_id, amount, transaction_count);
+
+-- Transactions of a wallet by date: filters, balance histories and rollup backfills. Replaces the
+-- plain (wallet_id, date) index that was declared on the entity.
+CREATE INDEX IF NOT EXISTS transaction_wallet_id_date_covering_index
+    ON transaction (wallet_id, date) INCLUDE (category_id, amount);
+
+DROP INDEX IF EXISTS transaction_wallet_id_date_index;
@@ -0,0 +1,8 @@
+-- Data migrations that were applied. A migration script is run only if its name is not here yet,
+-- see DataMigrationPopulator.
+
+CREATE TABLE IF NOT EXISTS data_migration
+(
+    name       VARCHAR(255) PRIMARY KEY,
+    applied_at TIMESTAMP    NOT NULL DEFAULT now()
+);
@@ -0,0 +1,7 @@
+-- Index for the case-insensitive description prefix filter: lower(description) LIKE 'prefix%'.
+-- text_pattern_ops makes LIKE use the index with any database collation.
+-- Index on (wallet_id, category_id, date) is declared on the entity, the covering index on
+-- (wallet_id, date) is created by schema-covering-indexes.sql.
+
+CREATE INDEX IF NOT EXISTS transaction_wallet_id_description_prefix_index
+    ON transaction (wallet_id, lower(description) text_pattern_ops);
@@ -0,0 +1,10 @@
+-- Full-text search over transaction descriptions.
+-- The 'simple' configuration is used because descriptions are written in different languages,
+-- so words are only lower-cased and never stemmed.
+
+ALTER TABLE transaction
+    ADD COLUMN IF NOT EXISTS description_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('simple', coalesce(description, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS transaction_description_tsv_index
+    ON transaction USING GIN (description_tsv);
@@ -0,0 +1,155 @@
+package com.danarim.monal.money.persistence.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    /**
+     * Number of random amounts checked by every property test. The seed is fixed, so a failure
+     * can be reproduced.
+     */
+    private static final int SAMPLES = 100_000;
+
+    @Test
+    void createInstance_AssertionError() throws Exception {
+        Constructor<Money> constructor = Money.class.getDeclaredConstructor();
+        assertTrue(Modifier.isPrivate(constructor.getModifiers()));
+        constructor.setAccessible(true);
+        assertThrows(InvocationTargetException.class, constructor::newInstance);
+    }
+
+    @Test
+    void toMinorUnits_multiplicationError_notRoundedDown() {
+        // 0.29 * 100 = 28.999999999999996
+        assertEquals(29L, Money.toMinorUnits(0.29, CurrencyType.BASIC));
+        assertEquals(-29L, Money.toMinorUnits(-0.29, CurrencyType.BASIC));
+        assertEquals(112_345_678L, Money.toMinorUnits(1.12345678, CurrencyType.CRYPTO));
+    }
+
+    @Test
+    void toMinorUnits_extraDecimalPlaces_roundedDown() {
+        assertEquals(112L, Money.toMinorUnits(1.1299, CurrencyType.BASIC));
+        assertEquals(-113L, Money.toMinorUnits(-1.1201, CurrencyType.BASIC));
+        assertEquals(112_345_678L, Money.toMinorUnits(1.123456789, CurrencyType.CRYPTO));
+        assertEquals(112L, Money.toMinorUnits(new BigDecimal("1.129"), CurrencyType.BASIC));
+    }
+
+    @Test
+    void toMinorUnits_notFinite_ArithmeticException() {
+        assertThrows(ArithmeticException.class,
+                     () -> Money.toMinorUnits(Double.NaN, CurrencyType.BASIC));
+        assertThrows(ArithmeticException.class,
+                     () -> Money.toMinorUnits(Double.POSITIVE_INFINITY, CurrencyType.BASIC));
+        assertThrows(ArithmeticException.class,
+                     () -> Money.toMinorUnits(1e12, CurrencyType.CRYPTO));
+    }
+
+    @Test
+    void toBigDecimal_scaleOfCurrencyType() {
+        assertEquals(new BigDecimal("12.50"), Money.toBigDecimal(1250L, CurrencyType.BASIC));
+        assertEquals(new BigDecimal("-0.00000001"), Money.toBigDecimal(-1L, CurrencyType.CRYPTO));
+    }
+
+    @Test
+    void toBigDecimal_amountOutOfLongRange_roundedDown() {
+        assertEquals(new BigDecimal("100000000000.50000000"),
+                     Money.toBigDecimal(100_000_000_000.5, CurrencyType.CRYPTO));
+        assertEquals(new BigDecimal("0.29"), Money.toBigDecimal(0.29, CurrencyType.BASIC));
+        assertEquals(new BigDecimal("-1.13"), Money.toBigDecimal(-1.1201, CurrencyType.BASIC));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CurrencyType.class)
+    void isValidAmount_maxAmount_convertible(CurrencyType currencyType) {
+        double maxAmount = currencyType.getMaxAmount();
+
+        assertTrue(Money.isValidAmount(maxAmount, currencyType));
+        assertTrue(Money.isValidAmount(-maxAmount, currencyType));
+        assertEquals(BigDecimal.valueOf(maxAmount).movePointRight(currencyType.getScale())
+                             .longValueExact(),
+                     Money.toMinorUnits(maxAmount, currencyType));
+        assertFalse(Money.isValidAmount(Math.nextUp(maxAmount), currencyType));
+        assertFalse(Money.isValidAmount(Double.NaN, currencyType));
+        assertTrue(maxAmount <= Money.MAX_AMOUNT);
+    }
+
+    @Test
+    void maxAmount_maxOfCurrencyTypes() {
+        assertEquals(Money.MAX_AMOUNT, CurrencyType.BASIC.getMaxAmount());
+        assertFalse(Money.isValidAmount(1e12, CurrencyType.CRYPTO));
+        assertTrue(Money.isValidAmount(1e12, CurrencyType.BASIC));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CurrencyType.class)
+    void toMinorUnits_randomAmounts_sameAsBigDecimalFloor(CurrencyType currencyType) {
+        Random random = new Random(42);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            // Up to 14 significant digits, so the double keeps the decimal amount, and up to
+            // 14 digits before the point of minor units, so they fit into a long
+            int decimalPlaces = random.nextInt(currencyType.getScale() + 3);
+            long bound = (long) Math.pow(
+                    10, Math.min(14, 14 - currencyType.getScale() + decimalPlaces));
+            long unscaled = random.nextLong(-bound + 1, bound)
+                    / (long) Math.pow(10, random.nextInt(14));
+            double amount = BigDecimal.valueOf(unscaled, decimalPlaces).doubleValue();
+
+            long expected = BigDecimal.valueOf(amount)
+                    .setScale(currencyType.getScale(), RoundingMode.FLOOR)
+                    .unscaledValue()
+                    .longValueExact();
+
+            assertEquals(expected, Money.toMinorUnits(amount, currencyType),
+                         () -> "Amount " + amount);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CurrencyType.class)
+    void toDouble_randomMinorUnits_roundTrip(CurrencyType currencyType) {
+        Random random = new Random(42);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            // Doubles keep every whole number of minor units below 2^53
+            long minorUnits = random.nextLong(-1_000_000_000_000_000L, 1_000_000_000_000_000L)
+                    / (long) Math.pow(10, random.nextInt(16));
+            double amount = Money.toDouble(minorUnits, currencyType);
+
+            assertEquals(minorUnits, Money.toMinorUnits(amount, currencyType),
+                         () -> "Minor units " + minorUnits);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CurrencyType.class)
+    void sumOfMinorUnits_randomAmounts_sameAsBigDecimalSum(CurrencyType currencyType) {
+        Random random = new Random(42);
+        long sum = 0L;
+        BigDecimal expected = BigDecimal.ZERO;
+
+        for (int i = 0; i < SAMPLES; i++) {
+            long minorUnits = random.nextLong(-1_000_000_000L, 1_000_000_000L);
+            double amount = Money.toDouble(minorUnits, currencyType);
+
+            sum += Money.toMinorUnits(amount, currencyType);
+            expected = expected.add(BigDecimal.valueOf(amount));
+        }
+        assertEquals(0, expected.compareTo(Money.toBigDecimal(sum, currencyType)));
+    }
+
+}
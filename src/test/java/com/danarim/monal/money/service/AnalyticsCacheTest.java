@@ -0,0 +1,129 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalyticsCacheTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, 1, 10);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnalyticsCache cache = new AnalyticsCache(meterRegistry);
+
+    @Test
+    void get_sameBucket_hitAndCounted() {
+        ViewAnalyticsDto analytics = prepareAnalytics();
+        putAnalytics(AnalyticsPeriod.DAILY, DAY, analytics);
+
+        // Any day of the month reads the same report
+        assertEquals(analytics, cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY.plusDays(5))
+                .orElseThrow());
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY.plusMonths(1)).isPresent());
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.MONTHLY, DAY).isPresent());
+
+        assertEquals(1.0, getCount("hit"));
+        assertEquals(2.0, getCount("miss"));
+    }
+
+    @Test
+    void get_anotherOwner_empty() {
+        putAnalytics(AnalyticsPeriod.DAILY, DAY, prepareAnalytics());
+
+        assertFalse(cache.get(1L, 3L, AnalyticsPeriod.DAILY, DAY).isPresent());
+    }
+
+    @Test
+    void put_cachedReportCantBeChanged() {
+        putAnalytics(AnalyticsPeriod.DAILY, DAY, prepareAnalytics());
+
+        ViewAnalyticsDto cached = cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY).orElseThrow();
+
+        assertThrows(UnsupportedOperationException.class,
+                     () -> cached.outcome().get("2021-01-10").put("FOOD", 0.0));
+    }
+
+    @Test
+    void invalidate_onlyBucketsOfDayRemoved() {
+        putAnalytics(AnalyticsPeriod.DAILY, DAY, prepareAnalytics());
+        putAnalytics(AnalyticsPeriod.DAILY, DAY.plusMonths(1), prepareAnalytics());
+        putAnalytics(AnalyticsPeriod.MONTHLY, DAY, prepareAnalytics());
+        putAnalytics(AnalyticsPeriod.YEARLY, DAY.minusYears(2), prepareAnalytics());
+        putAnalytics(AnalyticsPeriod.YEARLY, DAY.plusYears(1), prepareAnalytics());
+
+        cache.invalidate(1L, List.of(DAY));
+
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY).isPresent());
+        assertTrue(cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY.plusMonths(1)).isPresent());
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.MONTHLY, DAY).isPresent());
+        // Report of 2019 reads 2018-2020, report of 2022 reads 2021-2023
+        assertTrue(cache.get(1L, 2L, AnalyticsPeriod.YEARLY, DAY.minusYears(2)).isPresent());
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.YEARLY, DAY.plusYears(1)).isPresent());
+    }
+
+    @Test
+    void put_changedDuringLoad_notCached() {
+        long loadStamp = cache.startLoad(1L);
+        cache.invalidate(1L, List.of(DAY.plusYears(5)));
+
+        assertFalse(cache.put(1L, 2L, AnalyticsPeriod.DAILY, DAY, prepareAnalytics(), loadStamp));
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY).isPresent());
+    }
+
+    @Test
+    void put_anotherWalletChangedDuringLoad_cached() {
+        long loadStamp = cache.startLoad(1L);
+        cache.invalidate(3L, List.of(DAY));
+
+        assertTrue(cache.put(1L, 2L, AnalyticsPeriod.DAILY, DAY, prepareAnalytics(), loadStamp));
+    }
+
+    @Test
+    void invalidateAfterCommit_activeTransaction_invalidatedAfterCommit() {
+        putAnalytics(AnalyticsPeriod.DAILY, DAY, prepareAnalytics());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateAfterCommit(List.of(new WalletDayCategory(1L, DAY, 5L)));
+
+            assertTrue(cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY).isPresent());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertFalse(cache.get(1L, 2L, AnalyticsPeriod.DAILY, DAY).isPresent());
+    }
+
+    private void putAnalytics(AnalyticsPeriod period, LocalDate day, ViewAnalyticsDto analytics) {
+        long loadStamp = cache.startLoad(1L);
+        assertTrue(cache.put(1L, 2L, period, day, analytics, loadStamp));
+    }
+
+    private double getCount(String result) {
+        return meterRegistry.get(AnalyticsCache.GETS_METRIC).tag("result", result).counter()
+                .count();
+    }
+
+    private static ViewAnalyticsDto prepareAnalytics() {
+        Map<String, Map<String, Double>> outcome = new HashMap<>();
+        outcome.put("2021-01-10", new HashMap<>(Map.of("FOOD", 100.0)));
+        return new ViewAnalyticsDto(new HashMap<>(), outcome);
+    }
+
+}
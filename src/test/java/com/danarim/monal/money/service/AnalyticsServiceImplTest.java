@@ -1,16 +1,20 @@
 package com.danarim.monal.money.service;
 
-import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.AnalyticsRollupDao;
 import com.danarim.monal.money.persistence.dto.AnalyticsDbDto;
+import com.danarim.monal.money.persistence.dto.UserAnalyticsDbDto;
 import com.danarim.monal.money.persistence.model.AnalyticsPeriod;
+import com.danarim.monal.money.persistence.model.Currency;
 import com.danarim.monal.money.persistence.model.TransactionType;
 import com.danarim.monal.money.web.dto.ViewAnalyticsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.access.AccessDeniedException;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -19,27 +23,33 @@ import java.util.Map;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class AnalyticsServiceImplTest {
 
-    private final TransactionDao transactionDao = mock(TransactionDao.class);
+    private final AnalyticsRollupDao analyticsRollupDao = mock(AnalyticsRollupDao.class);
     private final WalletService walletService = mock(WalletService.class);
 
-    @InjectMocks
-    private AnalyticsServiceImpl analyticsService;
+    // Real cache, so the loaded reports are cached
+    private final AnalyticsServiceImpl analyticsService = new AnalyticsServiceImpl(
+            analyticsRollupDao, walletService, new AnalyticsCache(new SimpleMeterRegistry())
+    );
 
     @Test
     void getAnalytics_Daily() {
         List<AnalyticsDbDto> analyticsDbDtos = getAnalyticsDtosToReturn(AnalyticsPeriod.DAILY);
 
         when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
-        when(transactionDao.getTransactionAnalyticsBetweenDates(
-                eq("YYYY-MM-DD"), eq(1L), any(Date.class), any(Date.class))
+        when(analyticsRollupDao.getAnalyticsBetweenDays(
+                eq("day"), eq(1L), any(LocalDate.class), any(LocalDate.class))
         ).thenReturn(analyticsDbDtos);
 
         Calendar calendar = Calendar.getInstance();
@@ -63,17 +73,15 @@ class AnalyticsServiceImplTest {
         assertEquals(expectedIncome, result.income());
 
         verify(walletService).isUserWalletOwner(1L, 1L);
-        verify(transactionDao).getTransactionAnalyticsBetweenDates(
-                eq("YYYY-MM-DD"), eq(1L), any(Date.class), any(Date.class)
+        verify(analyticsRollupDao).getAnalyticsBetweenDays(
+                eq("day"), eq(1L), any(LocalDate.class), any(LocalDate.class)
         );
 
-        calendar.set(2021, Calendar.JANUARY, 1);
-        Date expectedFrom = calendar.getTime();
-        calendar.set(2021, Calendar.JANUARY, 31);
-        Date expectedTo = calendar.getTime();
+        LocalDate expectedFrom = LocalDate.of(2021, 1, 1);
+        LocalDate expectedTo = LocalDate.of(2021, 1, 31);
 
-        verify(transactionDao).getTransactionAnalyticsBetweenDates(
-                eq("YYYY-MM-DD"), eq(1L), eq(expectedFrom), eq(expectedTo)
+        verify(analyticsRollupDao).getAnalyticsBetweenDays(
+                eq("day"), eq(1L), eq(expectedFrom), eq(expectedTo)
         );
     }
 
@@ -82,8 +90,8 @@ class AnalyticsServiceImplTest {
         List<AnalyticsDbDto> analyticsDbDtos = getAnalyticsDtosToReturn(AnalyticsPeriod.MONTHLY);
 
         when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
-        when(transactionDao.getTransactionAnalyticsBetweenDates(
-                eq("YYYY-MM"), eq(1L), any(Date.class), any(Date.class))
+        when(analyticsRollupDao.getAnalyticsBetweenDays(
+                eq("month"), eq(1L), any(LocalDate.class), any(LocalDate.class))
         ).thenReturn(analyticsDbDtos);
 
         Calendar calendar = Calendar.getInstance();
@@ -107,17 +115,15 @@ class AnalyticsServiceImplTest {
         assertEquals(expectedIncome, result.income());
 
         verify(walletService).isUserWalletOwner(1L, 1L);
-        verify(transactionDao).getTransactionAnalyticsBetweenDates(
-                eq("YYYY-MM"), eq(1L), any(Date.class), any(Date.class)
+        verify(analyticsRollupDao).getAnalyticsBetweenDays(
+                eq("month"), eq(1L), any(LocalDate.class), any(LocalDate.class)
         );
 
-        calendar.set(2021, Calendar.JANUARY, 1);
-        Date expectedFrom = calendar.getTime();
-        calendar.set(2021, Calendar.DECEMBER, 31);
-        Date expectedTo = calendar.getTime();
+        LocalDate expectedFrom = LocalDate.of(2021, 1, 1);
+        LocalDate expectedTo = LocalDate.of(2021, 12, 31);
 
-        verify(transactionDao).getTransactionAnalyticsBetweenDates(
-                eq("YYYY-MM"), eq(1L), eq(expectedFrom), eq(expectedTo)
+        verify(analyticsRollupDao).getAnalyticsBetweenDays(
+                eq("month"), eq(1L), eq(expectedFrom), eq(expectedTo)
         );
     }
 
@@ -126,8 +132,8 @@ class AnalyticsServiceImplTest {
         List<AnalyticsDbDto> analyticsDbDtos = getAnalyticsDtosToReturn(AnalyticsPeriod.YEARLY);
 
         when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
-        when(transactionDao.getTransactionAnalyticsBetweenDates(
-                eq("YYYY"), eq(1L), any(Date.class), any(Date.class))
+        when(analyticsRollupDao.getAnalyticsBetweenDays(
+                eq("year"), eq(1L), any(LocalDate.class), any(LocalDate.class))
         ).thenReturn(analyticsDbDtos);
 
         Calendar calendar = Calendar.getInstance();
@@ -151,20 +157,34 @@ class AnalyticsServiceImplTest {
         assertEquals(expectedIncome, result.income());
 
         verify(walletService).isUserWalletOwner(1L, 1L);
-        verify(transactionDao).getTransactionAnalyticsBetweenDates(
-                eq("YYYY"), eq(1L), any(Date.class), any(Date.class)
+        verify(analyticsRollupDao).getAnalyticsBetweenDays(
+                eq("year"), eq(1L), any(LocalDate.class), any(LocalDate.class)
         );
 
-        calendar.set(2020, Calendar.JANUARY, 1); // One year before
-        Date expectedFrom = calendar.getTime();
-        calendar.set(2022, Calendar.DECEMBER, 31); // One year after
-        Date expectedTo = calendar.getTime();
+        LocalDate expectedFrom = LocalDate.of(2020, 1, 1); // One year before
+        LocalDate expectedTo = LocalDate.of(2022, 12, 31); // One year after
 
-        verify(transactionDao).getTransactionAnalyticsBetweenDates(
-                eq("YYYY"), eq(1L), eq(expectedFrom), eq(expectedTo)
+        verify(analyticsRollupDao).getAnalyticsBetweenDays(
+                eq("year"), eq(1L), eq(expectedFrom), eq(expectedTo)
         );
     }
 
+    @Test
+    void getAnalytics_loadedOnceUntilDayChanged() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+        when(analyticsRollupDao.getAnalyticsBetweenDays(
+                eq("day"), eq(1L), any(LocalDate.class), any(LocalDate.class))
+        ).thenReturn(List.of());
+        Date date = Date.from(Instant.parse("2021-01-06T10:00:00Z"));
+
+        analyticsService.getAnalytics(AnalyticsPeriod.DAILY, 1L, date, 1L);
+        analyticsService.getAnalytics(AnalyticsPeriod.DAILY, 1L, date, 1L);
+
+        verify(walletService, times(1)).isUserWalletOwner(1L, 1L);
+        verify(analyticsRollupDao, times(1)).getAnalyticsBetweenDays(
+                anyString(), anyLong(), any(LocalDate.class), any(LocalDate.class));
+    }
+
     @Test
     void getAnalytics_useNotWalletOwner_AccessDeniedException() {
         when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(false);
@@ -175,11 +195,74 @@ class AnalyticsServiceImplTest {
         );
     }
 
+    @Test
+    void getUserAnalytics_oneQuerySplitByCurrency() {
+        LocalDate from = LocalDate.of(2021, 1, 1);
+        LocalDate to = LocalDate.of(2021, 12, 31);
+        List<UserAnalyticsDbDto> rows = List.of(
+                prepareUserRow(Currency.USD, from, "FOOD", TransactionType.OUTCOME, 10.0),
+                prepareUserRow(Currency.USD, from, "SALARY", TransactionType.INCOME, 100.0),
+                prepareUserRow(Currency.USD, from.plusMonths(1), "FOOD", TransactionType.OUTCOME,
+                               5.0),
+                prepareUserRow(Currency.UAH, from, "FOOD", TransactionType.OUTCOME, 300.0)
+        );
+        when(analyticsRollupDao.getUserAnalyticsBetweenDays("month", 1L, from, to))
+                .thenReturn(rows);
+        Date date = Date.from(Instant.parse("2021-05-06T10:00:00Z"));
+
+        Map<Currency, ViewAnalyticsDto> result =
+                analyticsService.getUserAnalytics(AnalyticsPeriod.MONTHLY, date, 1L);
+
+        assertEquals(Map.of(
+                Currency.USD, new ViewAnalyticsDto(
+                        Map.of("2021-01", Map.of("SALARY", 100.0)),
+                        Map.of("2021-01", Map.of("FOOD", 10.0), "2021-02", Map.of("FOOD", 5.0))
+                ),
+                Currency.UAH, new ViewAnalyticsDto(
+                        Map.of(),
+                        Map.of("2021-01", Map.of("FOOD", 300.0))
+                )
+        ), result);
+        // Owner is the filter of the query, wallets are not checked one by one
+        verify(walletService, never()).isUserWalletOwner(anyLong(), anyLong());
+    }
+
+    @Test
+    void getUserAnalytics_noRows_empty() {
+        when(analyticsRollupDao.getUserAnalyticsBetweenDays(
+                eq("year"), eq(1L), any(LocalDate.class), any(LocalDate.class))
+        ).thenReturn(List.of());
+
+        assertEquals(Map.of(),
+                     analyticsService.getUserAnalytics(AnalyticsPeriod.YEARLY, new Date(), 1L));
+    }
+
+    @Test
+    void convertAnalytics_rowsGroupedByTypeDateAndCategory() {
+        List<AnalyticsDbDto> analytics = List.of(
+                new AnalyticsRow(LocalDate.of(2021, 1, 1), "FOOD", TransactionType.OUTCOME, 10.0),
+                new AnalyticsRow(LocalDate.of(2021, 1, 1), "SALARY", TransactionType.INCOME,
+                                 100.0),
+                new AnalyticsRow(LocalDate.of(2021, 1, 1), "HEALTH", TransactionType.OUTCOME,
+                                 20.0),
+                new AnalyticsRow(LocalDate.of(2022, 1, 1), "FOOD", TransactionType.OUTCOME, 5.0)
+        );
+
+        ViewAnalyticsDto result =
+                AnalyticsServiceImpl.convertAnalytics(analytics, AnalyticsPeriod.YEARLY, 2);
+
+        assertEquals(new ViewAnalyticsDto(
+                Map.of("2021", Map.of("SALARY", 100.0)),
+                Map.of("2021", Map.of("FOOD", 10.0, "HEALTH", 20.0),
+                       "2022", Map.of("FOOD", 5.0))
+        ), result);
+    }
+
     private static List<AnalyticsDbDto> getAnalyticsDtosToReturn(AnalyticsPeriod period) {
-        String[] dates = switch (period) {
-            case DAILY -> new String[] {"2021-01-01", "2021-01-02"};
-            case MONTHLY -> new String[] {"2021-01", "2021-02"};
-            case YEARLY -> new String[] {"2021", "2022"};
+        LocalDate[] dates = switch (period) {
+            case DAILY -> new LocalDate[] {LocalDate.of(2021, 1, 1), LocalDate.of(2021, 1, 2)};
+            case MONTHLY -> new LocalDate[] {LocalDate.of(2021, 1, 1), LocalDate.of(2021, 2, 1)};
+            case YEARLY -> new LocalDate[] {LocalDate.of(2021, 1, 1), LocalDate.of(2022, 1, 1)};
         };
         AnalyticsDbDto analyticsRow1 = mock(AnalyticsDbDto.class);
         when(analyticsRow1.getGroupedDate()).thenReturn(dates[0]);
@@ -213,4 +296,48 @@ class AnalyticsServiceImplTest {
         );
     }
 
+    private static UserAnalyticsDbDto prepareUserRow(Currency currency,
+                                                     LocalDate groupedDate,
+                                                     String categoryName,
+                                                     TransactionType categoryType,
+                                                     double sum
+    ) {
+        UserAnalyticsDbDto row = mock(UserAnalyticsDbDto.class);
+        when(row.getCurrency()).thenReturn(currency);
+        when(row.getGroupedDate()).thenReturn(groupedDate);
+        when(row.getCategoryName()).thenReturn(categoryName);
+        when(row.getCategoryType()).thenReturn(categoryType);
+        when(row.getSum()).thenReturn(sum);
+        return row;
+    }
+
+    private record AnalyticsRow(
+            LocalDate groupedDate,
+            String categoryName,
+            TransactionType categoryType,
+            Double sum
+    ) implements AnalyticsDbDto {
+
+        @Override
+        public LocalDate getGroupedDate() {
+            return groupedDate;
+        }
+
+        @Override
+        public String getCategoryName() {
+            return categoryName;
+        }
+
+        @Override
+        public TransactionType getCategoryType() {
+            return categoryType;
+        }
+
+        @Override
+        public Double getSum() {
+            return sum;
+        }
+
+    }
+
 }
@@ -0,0 +1,152 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceHistoryCacheTest {
+
+    private static final LocalDate START = LocalDate.of(2021, 3, 1);
+
+    private final BalanceHistoryCache cache = new BalanceHistoryCache();
+
+    @Test
+    void encode_decode_roundTrip() {
+        long[] balances = {0L, 150L, 150L, -20_000L, Long.MAX_VALUE, Long.MIN_VALUE, 7L};
+
+        byte[] encoded = BalanceHistoryCache.encode(balances);
+
+        assertArrayEquals(balances, BalanceHistoryCache.decode(encoded, balances.length));
+    }
+
+    @Test
+    void encode_decode_randomWalk() {
+        Random random = new Random(42);
+        long[] balances = new long[1000];
+        for (int i = 1; i < balances.length; i++) {
+            balances[i] = balances[i - 1] + (random.nextBoolean() ? 0 : random.nextInt(200_000));
+        }
+        assertArrayEquals(balances,
+                          BalanceHistoryCache.decode(BalanceHistoryCache.encode(balances),
+                                                     balances.length));
+    }
+
+    @Test
+    void encode_unchangedDays_oneBytePerDay() {
+        long[] balances = new long[365];
+        balances[0] = 1_000_00L;
+        for (int i = 1; i < balances.length; i++) {
+            balances[i] = balances[0];
+        }
+        // 3 bytes for the first balance and 1 byte for every day without a change
+        assertEquals(3 + 364, BalanceHistoryCache.encode(balances).length);
+    }
+
+    @Test
+    void getBalances_subRangeOfCachedRange() {
+        putBalances(new long[] {100L, 150L, 120L, 120L});
+
+        Optional<double[]> result = cache.getBalances(1L, 2L, START.plusDays(1), START.plusDays(2));
+
+        assertTrue(result.isPresent());
+        assertArrayEquals(new double[] {1.5, 1.2}, result.get());
+    }
+
+    @Test
+    void getBalances_rangeNotCached_empty() {
+        putBalances(new long[] {100L, 150L});
+
+        assertFalse(cache.getBalances(1L, 2L, START.minusDays(1), START).isPresent());
+        assertFalse(cache.getBalances(1L, 2L, START, START.plusDays(2)).isPresent());
+        assertFalse(cache.getBalances(3L, 2L, START, START).isPresent());
+    }
+
+    @Test
+    void getBalances_anotherOwner_empty() {
+        putBalances(new long[] {100L, 150L});
+
+        assertFalse(cache.getBalances(1L, 3L, START, START.plusDays(1)).isPresent());
+    }
+
+    @Test
+    void invalidate_daysBeforeChangeStayCached() {
+        putBalances(new long[] {100L, 150L, 120L, 120L});
+
+        cache.invalidate(1L, START.plusDays(2));
+
+        assertArrayEquals(new double[] {1.0, 1.5},
+                          cache.getBalances(1L, 2L, START, START.plusDays(1)).orElseThrow());
+        assertFalse(cache.getBalances(1L, 2L, START, START.plusDays(2)).isPresent());
+    }
+
+    @Test
+    void invalidate_changeBeforeCachedRange_nothingCached() {
+        putBalances(new long[] {100L, 150L});
+
+        cache.invalidate(1L, START);
+
+        assertFalse(cache.getBalances(1L, 2L, START, START).isPresent());
+    }
+
+    @Test
+    void put_changedDuringLoad_notCached() {
+        long loadStamp = cache.startLoad(1L);
+        cache.invalidate(1L, START);
+
+        assertFalse(cache.put(1L, 2L, START, CurrencyType.BASIC, new long[] {100L}, loadStamp));
+        assertFalse(cache.getBalances(1L, 2L, START, START).isPresent());
+    }
+
+    @Test
+    void put_anotherWalletChangedDuringLoad_cached() {
+        long loadStamp = cache.startLoad(1L);
+        cache.invalidate(3L, START);
+
+        assertTrue(cache.put(1L, 2L, START, CurrencyType.BASIC, new long[] {100L}, loadStamp));
+    }
+
+    @Test
+    void invalidateAfterCommit_activeTransaction_invalidatedAfterCommit() {
+        putBalances(new long[] {100L, 150L});
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateAfterCommit(Map.of(1L, START));
+
+            assertTrue(cache.getBalances(1L, 2L, START, START).isPresent());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertFalse(cache.getBalances(1L, 2L, START, START).isPresent());
+    }
+
+    @Test
+    void invalidateAfterCommit_noTransaction_invalidatedImmediately() {
+        putBalances(new long[] {100L, 150L});
+
+        cache.invalidateAfterCommit(Map.of(1L, START.plusDays(1)));
+
+        assertTrue(cache.getBalances(1L, 2L, START, START).isPresent());
+        assertFalse(cache.getBalances(1L, 2L, START, START.plusDays(1)).isPresent());
+    }
+
+    private void putBalances(long[] balances) {
+        long loadStamp = cache.startLoad(1L);
+        assertTrue(cache.put(1L, 2L, START, CurrencyType.BASIC, balances, loadStamp));
+    }
+
+}
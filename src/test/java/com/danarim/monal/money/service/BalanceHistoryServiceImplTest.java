@@ -0,0 +1,119 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.WalletBalanceCheckpointDao;
+import com.danarim.monal.money.persistence.dto.BalanceHistoryDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.web.dto.ViewBalanceHistoryDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceHistoryServiceImplTest {
+
+    private static final LocalDate FROM = LocalDate.of(2021, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2021, 3, 3);
+
+    private final WalletBalanceCheckpointDao walletBalanceCheckpointDao =
+            mock(WalletBalanceCheckpointDao.class);
+    private final WalletService walletService = mock(WalletService.class);
+
+    // Real cache, so the loaded histories are cached
+    private final BalanceHistoryServiceImpl balanceHistoryService = new BalanceHistoryServiceImpl(
+            walletBalanceCheckpointDao, walletService, new BalanceHistoryCache()
+    );
+
+    @Test
+    void getBalanceHistory_loadedOnceThenCached() {
+        when(walletBalanceCheckpointDao.getOwnedWalletBalanceHistory(1L, 2L, FROM, TO))
+                .thenReturn(List.of(prepareDay("10.00"), prepareDay("12.50"), prepareDay("-1.25")));
+
+        ViewBalanceHistoryDto result = balanceHistoryService.getBalanceHistory(1L, FROM, TO, 2L);
+        ViewBalanceHistoryDto cached =
+                balanceHistoryService.getBalanceHistory(1L, FROM.plusDays(1), TO, 2L);
+
+        assertEquals(FROM, result.from());
+        assertArrayEquals(new double[] {10.0, 12.5, -1.25}, result.balances());
+        assertEquals(FROM.plusDays(1), cached.from());
+        assertArrayEquals(new double[] {12.5, -1.25}, cached.balances());
+        verify(walletBalanceCheckpointDao, times(1))
+                .getOwnedWalletBalanceHistory(anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void getBalanceHistory_fromAfterTo_BadRequestException() {
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> balanceHistoryService.getBalanceHistory(1L, TO, FROM, 2L)
+        );
+
+        assertEquals("validation.wallet.balance-history.range.invalid", e.getMessageCode());
+        verify(walletBalanceCheckpointDao, never())
+                .getOwnedWalletBalanceHistory(anyLong(), anyLong(), any(), any());
+    }
+
+    @Test
+    void getBalanceHistory_rangeTooLong_BadRequestException() {
+        LocalDate to = FROM.plusDays(BalanceHistoryServiceImpl.MAX_HISTORY_DAYS);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> balanceHistoryService.getBalanceHistory(1L, FROM, to, 2L)
+        );
+
+        assertEquals("validation.wallet.balance-history.range.invalid", e.getMessageCode());
+    }
+
+    @Test
+    void getBalanceHistory_walletNotFound_BadRequestException() {
+        when(walletBalanceCheckpointDao.getOwnedWalletBalanceHistory(1L, 2L, FROM, TO))
+                .thenReturn(List.of());
+        when(walletService.existsWallet(1L)).thenReturn(false);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> balanceHistoryService.getBalanceHistory(1L, FROM, TO, 2L)
+        );
+
+        assertEquals("validation.wallet.notFound", e.getMessageCode());
+    }
+
+    @Test
+    void getBalanceHistory_userNotOwner_ActionDeniedException() {
+        when(walletBalanceCheckpointDao.getOwnedWalletBalanceHistory(1L, 2L, FROM, TO))
+                .thenReturn(List.of());
+        when(walletService.existsWallet(1L)).thenReturn(true);
+
+        assertThrows(ActionDeniedException.class,
+                     () -> balanceHistoryService.getBalanceHistory(1L, FROM, TO, 2L));
+    }
+
+    private static BalanceHistoryDbDto prepareDay(String balance) {
+        return new BalanceHistoryDbDto() {
+            @Override
+            public BigDecimal getBalance() {
+                return new BigDecimal(balance);
+            }
+
+            @Override
+            public Currency getCurrency() {
+                return Currency.USD;
+            }
+        };
+    }
+
+}
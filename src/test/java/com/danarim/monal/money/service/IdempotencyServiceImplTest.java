@@ -0,0 +1,208 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.IdempotencyKeyDao;
+import com.danarim.monal.money.persistence.model.IdempotencyKey;
+import com.danarim.monal.money.web.dto.ViewWalletDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceImplTest {
+
+    private static final TypeReference<ViewWalletDto> VIEW_WALLET_TYPE = new TypeReference<>() {};
+
+    private final IdempotencyKeyDao idempotencyKeyDao = mock(IdempotencyKeyDao.class);
+    private final PlatformTransactionManager transactionManager =
+            mock(PlatformTransactionManager.class);
+
+    private final IdempotencyServiceImpl idempotencyService = new IdempotencyServiceImpl(
+            idempotencyKeyDao,
+            new ObjectMapper(),
+            new WalletWriteTemplate(transactionManager,
+                                    WalletConcurrencyMode.PESSIMISTIC,
+                                    new SimpleMeterRegistry())
+    );
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(idempotencyKeyDao.claimKey(anyLong(), anyString(), anyString(), any())).thenReturn(1);
+    }
+
+    @Test
+    void execute_withoutKey_executedEveryTime() {
+        createWallet(null, "Test");
+        createWallet(null, "Test");
+
+        assertEquals(2, executions.get());
+        verifyNoInteractions(idempotencyKeyDao);
+    }
+
+    @Test
+    void execute_newKey_responseStored() {
+        ViewWalletDto result = createWallet("key", "Test");
+
+        assertEquals(1, result.getId());
+        assertEquals("Test", result.getName());
+        verify(idempotencyKeyDao).claimKey(eq(1L), eq("key"), anyString(), any());
+        verify(idempotencyKeyDao).saveResponse(eq(1L), eq("key"), anyString());
+    }
+
+    @Test
+    void execute_retry_firstResponseReturnedFromCache() {
+        ViewWalletDto first = createWallet("key", "Test");
+        ViewWalletDto retry = createWallet("key", "Test");
+
+        assertEquals(1, executions.get());
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(first.getName(), retry.getName());
+        verify(idempotencyKeyDao, times(1)).claimKey(anyLong(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void execute_sameKeyOfAnotherUser_executedForEveryUser() {
+        createWallet("key", "Test", 1L);
+        createWallet("key", "Test", 2L);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void execute_keyUsedByAnotherInstance_storedResponseReturned() {
+        // Same request of another user, only to get the request hash
+        idempotencyService.execute("key", "wallet.create", "Test", VIEW_WALLET_TYPE, 2L,
+                                   () -> new ViewWalletDto(7, "Test", 0, "USD"));
+        String storedHash = getSavedRequestHash();
+
+        IdempotencyKey stored = mock(IdempotencyKey.class);
+        when(stored.getRequestHash()).thenReturn(storedHash);
+        when(stored.getResponse()).thenReturn(
+                "{\"id\":7,\"name\":\"Test\",\"balance\":0.0,\"currency\":\"USD\"}");
+        when(idempotencyKeyDao.claimKey(eq(1L), eq("key"), anyString(), any())).thenReturn(0);
+        when(idempotencyKeyDao.findByUserIdAndIdempotencyKey(1L, "key"))
+                .thenReturn(Optional.of(stored));
+
+        ViewWalletDto result = createWallet("key", "Test");
+
+        assertEquals(0, executions.get());
+        assertEquals(7, result.getId());
+        verify(idempotencyKeyDao, never()).saveResponse(eq(1L), anyString(), anyString());
+    }
+
+    @Test
+    void execute_keyUsedForAnotherRequest_BadRequestException() {
+        createWallet("key", "Test");
+
+        BadRequestException e = assertThrows(BadRequestException.class,
+                                             () -> createWallet("key", "Another"));
+
+        assertEquals("validation.idempotency.key.reused", e.getMessageCode());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_failedMutation_notStoredAndRetryExecuted() {
+        assertThrows(IllegalStateException.class,
+                     () -> idempotencyService.execute("key", "wallet.create", "Test",
+                                                      VIEW_WALLET_TYPE, 1L,
+                                                      () -> {
+                                                          throw new IllegalStateException();
+                                                      }));
+
+        ViewWalletDto result = createWallet("key", "Test");
+
+        assertEquals(1, result.getId());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_noContent_nullReturned() {
+        Void result = idempotencyService.execute("key", "wallet.delete", 1L,
+                                                 new TypeReference<>() {}, 1L,
+                                                 () -> {
+                                                     executions.incrementAndGet();
+                                                     return null;
+                                                 });
+
+        assertNull(result);
+        verify(idempotencyKeyDao).saveResponse(1L, "key", "null");
+    }
+
+    @Test
+    void execute_concurrentRetries_executedOnce() throws Exception {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ViewWalletDto>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return createWallet("key", "Test");
+                }));
+            }
+            start.countDown();
+
+            for (Future<ViewWalletDto> result : results) {
+                assertEquals(1, result.get(10, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, executions.get());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private ViewWalletDto createWallet(String idempotencyKey, String name) {
+        return createWallet(idempotencyKey, name, 1L);
+    }
+
+    private ViewWalletDto createWallet(String idempotencyKey, String name, long userId) {
+        return idempotencyService.execute(idempotencyKey, "wallet.create", name, VIEW_WALLET_TYPE,
+                                          userId,
+                                          () -> {
+                                              executions.incrementAndGet();
+                                              return new ViewWalletDto(1, name, 0, "USD");
+                                          });
+    }
+
+    private String getSavedRequestHash() {
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyKeyDao).claimKey(eq(2L), eq("key"), hash.capture(), any());
+        return hash.getValue();
+    }
+
+}
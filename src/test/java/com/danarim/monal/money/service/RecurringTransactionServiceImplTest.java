@@ -0,0 +1,297 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadFieldException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.RecurringOccurrenceDao;
+import com.danarim.monal.money.persistence.dao.RecurringTransactionDao;
+import com.danarim.monal.money.persistence.dto.DueRecurringTransactionDbDto;
+import com.danarim.monal.money.persistence.dto.RecurringOccurrenceDbDto;
+import com.danarim.monal.money.persistence.dto.WalletMonth;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.web.dto.CreateRecurringTransactionDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecurringTransactionServiceImplTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2021, 3, 15, 12, 0);
+
+    private final RecurringTransactionDao recurringTransactionDao =
+            mock(RecurringTransactionDao.class);
+    private final RecurringOccurrenceDao recurringOccurrenceDao =
+            mock(RecurringOccurrenceDao.class);
+    private final WalletService walletService = mock(WalletService.class);
+    private final TransactionCategoryService categoryService =
+            mock(TransactionCategoryService.class);
+    private final PlatformTransactionManager transactionManager =
+            mock(PlatformTransactionManager.class);
+
+    private final RecurringTransactionServiceImpl recurringTransactionService =
+            new RecurringTransactionServiceImpl(recurringTransactionDao,
+                                                recurringOccurrenceDao,
+                                                walletService,
+                                                categoryService,
+                                                new WalletWriteTemplate(
+                                                        transactionManager,
+                                                        WalletConcurrencyMode.PESSIMISTIC,
+                                                        new SimpleMeterRegistry()));
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(recurringTransactionDao.save(any(RecurringTransaction.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(categoryService.getCategoryType(1L)).thenReturn(TransactionType.INCOME);
+        when(categoryService.getCategoryType(2L)).thenReturn(TransactionType.OUTCOME);
+    }
+
+    @Test
+    void createRecurringTransaction_firstOccurrenceFromStartDate() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+        when(walletService.getWalletCurrency(1L)).thenReturn(Currency.USD);
+
+        Date startDate = toDate(LocalDateTime.of(2021, 1, 10, 0, 0));
+        CreateRecurringTransactionDto dto = new CreateRecurringTransactionDto(
+                "  Rent ", 100.129, 2L, 1L, "0 0 9 1 * *", startDate);
+
+        RecurringTransaction result =
+                recurringTransactionService.createRecurringTransaction(dto, 1L);
+
+        assertEquals("Rent", result.getDescription());
+        assertEquals(100.12, result.getAmount());
+        assertEquals("0 0 9 1 * *", result.getCron());
+        assertEquals(toDate(LocalDateTime.of(2021, 2, 1, 9, 0)), result.getNextOccurrence());
+    }
+
+    @Test
+    void createRecurringTransaction_startDateMatchesSchedule_startDateIsFirstOccurrence() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+        when(walletService.getWalletCurrency(1L)).thenReturn(Currency.BTC);
+
+        Date startDate = toDate(LocalDateTime.of(2021, 2, 1, 9, 0));
+        CreateRecurringTransactionDto dto = new CreateRecurringTransactionDto(
+                null, 0.123456789, 1L, 1L, "@monthly", startDate);
+
+        RecurringTransaction result =
+                recurringTransactionService.createRecurringTransaction(dto, 1L);
+
+        assertNull(result.getDescription());
+        assertEquals(0.12345678, result.getAmount());
+        assertEquals(toDate(LocalDateTime.of(2021, 3, 1, 0, 0)), result.getNextOccurrence());
+
+        dto = new CreateRecurringTransactionDto(null, 1.0, 1L, 1L, "0 0 9 1 * *", startDate);
+        result = recurringTransactionService.createRecurringTransaction(dto, 1L);
+
+        assertEquals(startDate, result.getNextOccurrence());
+    }
+
+    @Test
+    void createRecurringTransaction_tooFrequentSchedule_BadFieldException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        for (String cron : List.of("0 */5 * * * *", "* 0 * * * *", "not a cron")) {
+            CreateRecurringTransactionDto dto =
+                    new CreateRecurringTransactionDto(null, 1.0, 1L, 1L, cron, null);
+
+            BadFieldException e = assertThrows(
+                    BadFieldException.class,
+                    () -> recurringTransactionService.createRecurringTransaction(dto, 1L));
+
+            assertEquals("validation.recurring.cron.invalid", e.getMessageCode());
+            assertEquals("cron", e.getField());
+        }
+        verify(recurringTransactionDao, never()).save(any());
+    }
+
+    @Test
+    void createRecurringTransaction_categoryNotFound_BadFieldException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        CreateRecurringTransactionDto dto =
+                new CreateRecurringTransactionDto(null, 1.0, 3L, 1L, "@daily", null);
+
+        BadFieldException e = assertThrows(
+                BadFieldException.class,
+                () -> recurringTransactionService.createRecurringTransaction(dto, 1L));
+
+        assertEquals("validation.category.notFound", e.getMessageCode());
+    }
+
+    @Test
+    void createRecurringTransaction_userNotWalletOwner_ActionDeniedException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(false);
+        when(walletService.existsWallet(1L)).thenReturn(true);
+
+        CreateRecurringTransactionDto dto =
+                new CreateRecurringTransactionDto(null, 1.0, 1L, 1L, "@daily", null);
+
+        assertThrows(ActionDeniedException.class,
+                     () -> recurringTransactionService.createRecurringTransaction(dto, 1L));
+
+        verify(recurringTransactionDao, never()).save(any());
+    }
+
+    @Test
+    void deleteRecurringTransaction() {
+        when(recurringTransactionDao.deleteUserRecurringTransaction(1L, 1L)).thenReturn(1);
+
+        recurringTransactionService.deleteRecurringTransaction(1L, 1L);
+
+        verify(recurringTransactionDao, never()).existsById(any());
+    }
+
+    @Test
+    void deleteRecurringTransaction_notFound_BadRequestException() {
+        when(recurringTransactionDao.deleteUserRecurringTransaction(1L, 1L)).thenReturn(0);
+        when(recurringTransactionDao.existsById(1L)).thenReturn(false);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> recurringTransactionService.deleteRecurringTransaction(1L, 1L));
+
+        assertEquals("validation.recurring.notFound", e.getMessageCode());
+    }
+
+    @Test
+    void deleteRecurringTransaction_userNotOwner_ActionDeniedException() {
+        when(recurringTransactionDao.deleteUserRecurringTransaction(1L, 1L)).thenReturn(0);
+        when(recurringTransactionDao.existsById(1L)).thenReturn(true);
+
+        assertThrows(ActionDeniedException.class,
+                     () -> recurringTransactionService.deleteRecurringTransaction(1L, 1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createDueOccurrences_catchesUpAndUpdatesEveryWalletOnce() {
+        DueRecurringTransactionDbDto salary = new DueRecurringTransactionDbDto(
+                10L, "Salary", new BigDecimal("1000.00"), 1L, 2L, "0 0 9 1 * *",
+                LocalDateTime.of(2021, 1, 1, 9, 0));
+        DueRecurringTransactionDbDto rent = new DueRecurringTransactionDbDto(
+                11L, "Rent", new BigDecimal("300.00"), 2L, 1L, "0 0 9 10 * *",
+                LocalDateTime.of(2021, 3, 10, 9, 0));
+        DueRecurringTransactionDbDto bonus = new DueRecurringTransactionDbDto(
+                12L, "Bonus", new BigDecimal("50.00"), 1L, 2L, "0 0 9 1 1 *",
+                LocalDateTime.of(2021, 1, 1, 9, 0));
+
+        when(recurringOccurrenceDao.lockDueRecurringTransactions(NOW,
+                                                                 RecurringTransactionServiceImpl
+                                                                         .CHUNK_SIZE))
+                .thenReturn(List.of(salary, rent, bonus), List.of());
+        when(recurringOccurrenceDao.insertOccurrences(anyList())).thenAnswer(invocation -> {
+            List<RecurringOccurrenceDbDto> occurrences = invocation.getArgument(0);
+            int[] result = new int[occurrences.size()];
+            Arrays.fill(result, 1);
+            result[0] = 0; // Rent is already created by a previous run
+            return result;
+        });
+
+        final int created = recurringTransactionService.createDueOccurrences(NOW);
+
+        ArgumentCaptor<List<RecurringOccurrenceDbDto>> occurrencesCaptor =
+                ArgumentCaptor.forClass(List.class);
+        verify(recurringOccurrenceDao, times(1)).insertOccurrences(occurrencesCaptor.capture());
+
+        List<RecurringOccurrenceDbDto> occurrences = occurrencesCaptor.getValue();
+        assertEquals(5, occurrences.size(), "3 salaries, 1 rent and 1 bonus expected");
+        assertEquals(1L, occurrences.get(0).walletId(), "Occurrences must be grouped by wallet");
+        assertEquals(LocalDateTime.of(2021, 3, 1, 9, 0), occurrences.get(3).date());
+        assertEquals(4, created, "Existing rent must not be counted");
+
+        ArgumentCaptor<SortedMap<Long, BigDecimal>> balanceCaptor =
+                ArgumentCaptor.forClass(SortedMap.class);
+        verify(recurringOccurrenceDao, times(1)).addWalletBalances(balanceCaptor.capture());
+        assertEquals(Map.of(2L, new BigDecimal("3050.00")), balanceCaptor.getValue());
+        verify(recurringOccurrenceDao, never()).appendWalletDeltas(any());
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService, times(1)).addBalanceChanges(changesCaptor.capture());
+        assertEquals(Map.of(
+                new WalletMonth(2L, LocalDate.of(2021, 1, 1)), new BigDecimal("1050.00"),
+                new WalletMonth(2L, LocalDate.of(2021, 2, 1)), new BigDecimal("1000.00"),
+                new WalletMonth(2L, LocalDate.of(2021, 3, 1)), new BigDecimal("1000.00")
+        ), changesCaptor.getValue().getMonthlyChanges());
+
+        ArgumentCaptor<Map<Long, LocalDateTime>> nextCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(recurringOccurrenceDao, times(1)).updateNextOccurrences(nextCaptor.capture());
+        assertEquals(Map.of(10L, LocalDateTime.of(2021, 4, 1, 9, 0),
+                            11L, LocalDateTime.of(2021, 4, 10, 9, 0),
+                            12L, LocalDateTime.of(2022, 1, 1, 9, 0)),
+                     nextCaptor.getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createDueOccurrences_ledgerMode_deltasAppended() {
+        RecurringTransactionServiceImpl ledgerService =
+                new RecurringTransactionServiceImpl(recurringTransactionDao,
+                                                    recurringOccurrenceDao,
+                                                    walletService,
+                                                    categoryService,
+                                                    new WalletWriteTemplate(
+                                                            transactionManager,
+                                                            WalletConcurrencyMode.LEDGER,
+                                                            new SimpleMeterRegistry()));
+        DueRecurringTransactionDbDto rent = new DueRecurringTransactionDbDto(
+                11L, "Rent", new BigDecimal("300.00"), 2L, 1L, "0 0 9 10 * *",
+                LocalDateTime.of(2021, 3, 10, 9, 0));
+
+        when(recurringOccurrenceDao.lockDueRecurringTransactions(any(), anyInt()))
+                .thenReturn(List.of(rent), List.of());
+        when(recurringOccurrenceDao.insertOccurrences(anyList())).thenReturn(new int[]{1});
+
+        assertEquals(1, ledgerService.createDueOccurrences(NOW));
+
+        ArgumentCaptor<SortedMap<Long, BigDecimal>> balanceCaptor =
+                ArgumentCaptor.forClass(SortedMap.class);
+        verify(recurringOccurrenceDao, times(1)).appendWalletDeltas(balanceCaptor.capture());
+        assertEquals(Map.of(1L, new BigDecimal("-300.00")), balanceCaptor.getValue());
+        verify(recurringOccurrenceDao, never()).addWalletBalances(any());
+    }
+
+    @Test
+    void createDueOccurrences_nothingDue_nothingWritten() {
+        when(recurringOccurrenceDao.lockDueRecurringTransactions(any(), anyInt()))
+                .thenReturn(List.of());
+
+        assertEquals(0, recurringTransactionService.createDueOccurrences(NOW));
+
+        verify(recurringOccurrenceDao, never()).insertOccurrences(anyList());
+        verify(recurringOccurrenceDao, never()).addWalletBalances(any());
+        verify(recurringOccurrenceDao, never()).updateNextOccurrences(any());
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+}
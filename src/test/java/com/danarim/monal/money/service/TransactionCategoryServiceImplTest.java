@@ -1,5 +1,6 @@
 package com.danarim.monal.money.service;
 
+import com.danarim.monal.exceptions.InternalServerException;
 import com.danarim.monal.money.persistence.dao.TransactionCategoryDao;
 import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.TransactionType;
@@ -12,7 +13,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,6 +55,59 @@ class TransactionCategoryServiceImplTest {
         assertEquals("Ind 2", categories.get(3).getName());
     }
 
+    @Test
+    void getCategoryType_loadedOnce() {
+        TransactionCategory income =
+                new TransactionCategory("Income", TransactionType.INCOME, null);
+        TransactionCategory outcome =
+                new TransactionCategory("Outcome", TransactionType.OUTCOME, null);
+        income.setId(1);
+        outcome.setId(2);
+
+        when(categoryDao.findAll()).thenReturn(List.of(income, outcome));
+
+        categoryService.loadCategoryTypes();
+
+        assertEquals(TransactionType.INCOME, categoryService.getCategoryType(1L));
+        assertEquals(TransactionType.OUTCOME, categoryService.getCategoryType(2L));
+        assertNull(categoryService.getCategoryType(3L));
+        assertEquals(2, categoryService.getCategoryTypes().size());
+
+        verify(categoryDao, times(1)).findAll();
+    }
+
+    @Test
+    void getTransferCategoryId_loadedOnce() {
+        TransactionCategory incomeTransfer = new TransactionCategory(
+                TransactionCategoryServiceImpl.TRANSFER_CATEGORY_NAME, TransactionType.INCOME,
+                null);
+        TransactionCategory outcomeTransfer = new TransactionCategory(
+                TransactionCategoryServiceImpl.TRANSFER_CATEGORY_NAME, TransactionType.OUTCOME,
+                null);
+        TransactionCategory other = new TransactionCategory("Other", TransactionType.INCOME, null);
+        incomeTransfer.setId(1);
+        outcomeTransfer.setId(2);
+        other.setId(3);
+
+        when(categoryDao.findAll()).thenReturn(List.of(incomeTransfer, outcomeTransfer, other));
+
+        assertEquals(1L, categoryService.getTransferCategoryId(TransactionType.INCOME));
+        assertEquals(2L, categoryService.getTransferCategoryId(TransactionType.OUTCOME));
+
+        verify(categoryDao, times(1)).findAll();
+    }
+
+    @Test
+    void getTransferCategoryId_missing_InternalServerException() {
+        TransactionCategory other = new TransactionCategory("Other", TransactionType.INCOME, null);
+        other.setId(1);
+
+        when(categoryDao.findAll()).thenReturn(List.of(other));
+
+        assertThrows(InternalServerException.class,
+                     () -> categoryService.getTransferCategoryId(TransactionType.INCOME));
+    }
+
     private static void setupDaoCategories() {
         TransactionCategory parent1
                 = new TransactionCategory("Parent 1", TransactionType.OUTCOME, null);
@@ -0,0 +1,126 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dao.TransactionExportDao;
+import com.danarim.monal.money.persistence.model.ExportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionExportServiceImplTest {
+
+    private final WalletService walletService = mock(WalletService.class);
+    private final TransactionExportDao transactionExportDao = mock(TransactionExportDao.class);
+    private final PlatformTransactionManager transactionManager =
+            mock(PlatformTransactionManager.class);
+
+    private final TransactionExportServiceImpl exportService = new TransactionExportServiceImpl(
+            walletService, transactionExportDao, transactionManager
+    );
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        ResultSet firstRow = mockRow(1L, LocalDateTime.of(2021, 1, 1, 10, 5),
+                                     new BigDecimal("12.50000000"), 3L, "Coffee");
+        ResultSet secondRow = mockRow(2L, LocalDateTime.of(2021, 1, 2, 0, 0),
+                                      new BigDecimal("100.00000000"), 4L, "Rent, \"flat\"");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(firstRow);
+            handler.processRow(secondRow);
+            return null;
+        }).when(transactionExportDao).streamWalletTransactions(eq(1L), any());
+    }
+
+    @Test
+    void exportWalletTransactions_ndjson() throws IOException {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        String result = export(ExportFormat.NDJSON);
+
+        assertEquals("""
+                     {"id":1,"date":"2021-01-01 10:05","amount":12.5,"categoryId":3,\
+                     "walletId":1,"description":"Coffee"}
+                     {"id":2,"date":"2021-01-02 00:00","amount":100,"categoryId":4,\
+                     "walletId":1,"description":"Rent, \\"flat\\""}
+                     """, result);
+    }
+
+    @Test
+    void exportWalletTransactions_csv() throws IOException {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        String result = export(ExportFormat.CSV);
+
+        assertEquals("""
+                     id,date,amount,categoryId,walletId,description
+                     1,2021-01-01 10:05,12.5,3,1,Coffee
+                     2,2021-01-02 00:00,100,4,1,"Rent, ""flat\"""
+                     """, result);
+    }
+
+    @Test
+    void exportWalletTransactions_userNotWalletOwner_AccessDeniedException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(false);
+
+        assertThrows(AccessDeniedException.class,
+                     () -> exportService.exportWalletTransactions(1L, ExportFormat.CSV, 1L));
+
+        verify(transactionExportDao, never()).streamWalletTransactions(anyLong(), any());
+    }
+
+    @Test
+    void exportWalletTransactions_nothingReadBeforeWrite() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        exportService.exportWalletTransactions(1L, ExportFormat.NDJSON, 1L);
+
+        verify(transactionExportDao, never()).streamWalletTransactions(anyLong(), any());
+    }
+
+    private String export(ExportFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportWalletTransactions(1L, format, 1L).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ResultSet mockRow(long id,
+                                     LocalDateTime date,
+                                     BigDecimal amount,
+                                     long categoryId,
+                                     String description
+    ) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong(1)).thenReturn(id);
+        when(resultSet.getObject(2, LocalDateTime.class)).thenReturn(date);
+        when(resultSet.getBigDecimal(3)).thenReturn(amount);
+        when(resultSet.getLong(4)).thenReturn(categoryId);
+        when(resultSet.getLong(5)).thenReturn(1L);
+        when(resultSet.getString(6)).thenReturn(description);
+        return resultSet;
+    }
+
+}
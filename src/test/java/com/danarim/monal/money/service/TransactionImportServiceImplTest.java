@@ -0,0 +1,357 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.TransactionImportDao;
+import com.danarim.monal.money.persistence.dto.ImportTransactionDbDto;
+import com.danarim.monal.money.persistence.dto.WalletMonth;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.web.dto.ImportTransactionDto;
+import com.danarim.monal.money.web.dto.ImportTransactionsResultDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionImportServiceImplTest {
+
+    private final TransactionCategoryService categoryService =
+            mock(TransactionCategoryService.class);
+    private final WalletService walletService = mock(WalletService.class);
+    private final TransactionImportDao transactionImportDao = mock(TransactionImportDao.class);
+    private final PlatformTransactionManager transactionManager =
+            mock(PlatformTransactionManager.class);
+
+    private final TransactionImportServiceImpl importService = new TransactionImportServiceImpl(
+            categoryService,
+            walletService,
+            transactionImportDao,
+            new WalletWriteTemplate(transactionManager,
+                                    WalletConcurrencyMode.PESSIMISTIC,
+                                    new SimpleMeterRegistry())
+    );
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+        when(walletService.getWalletCurrency(1L)).thenReturn(Currency.USD);
+        when(walletService.existsWallet(1L)).thenReturn(true);
+        when(walletService.addWalletBalance(eq(1L), anyLong(), eq(CurrencyType.BASIC)))
+                .thenReturn(true);
+        when(categoryService.getCategoryTypes()).thenReturn(Map.of(
+                1L, TransactionType.INCOME,
+                2L, TransactionType.OUTCOME
+        ));
+    }
+
+    @Test
+    void importTransactions_oneBalanceUpdatePerBatch() {
+        int rowsCount = TransactionImportDao.IMPORT_BATCH_SIZE + 1;
+        List<ImportTransactionDto> transactions = new ArrayList<>(rowsCount);
+        for (int i = 0; i < rowsCount; i++) {
+            transactions.add(new ImportTransactionDto("Row " + i, new Date(i), 1.0, 1L));
+        }
+        when(transactionImportDao.insertTransactions(eq(1L), anyList()))
+                .thenAnswer(invocation -> insertedCounts(invocation.getArgument(1)));
+
+        ImportTransactionsResultDto result =
+                importService.importTransactions(1L, transactions, 1L);
+
+        assertEquals(rowsCount, result.imported());
+        assertEquals(0, result.skipped());
+
+        verify(categoryService).getCategoryTypes();
+        verify(transactionImportDao, times(2)).insertTransactions(eq(1L), anyList());
+        verify(walletService).addWalletBalance(
+                1L, TransactionImportDao.IMPORT_BATCH_SIZE * 100L, CurrencyType.BASIC);
+        verify(walletService).addWalletBalance(1L, 100L, CurrencyType.BASIC);
+    }
+
+    @Test
+    void importTransactions_duplicatesSkippedAndNotCountedInBalance() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 10.0, 1L),
+                new ImportTransactionDto(null, new Date(2), 3.0, 2L),
+                new ImportTransactionDto(null, new Date(3), 5.0, 2L)
+        );
+        when(transactionImportDao.insertTransactions(eq(1L), anyList()))
+                .thenReturn(new int[]{1, 0, 1});
+
+        ImportTransactionsResultDto result =
+                importService.importTransactions(1L, transactions, 1L);
+
+        assertEquals(2, result.imported());
+        assertEquals(1, result.skipped());
+
+        verify(walletService).addWalletBalance(1L, 500L, CurrencyType.BASIC);
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService).addBalanceChanges(changesCaptor.capture());
+        assertEquals(Map.of(
+                new WalletMonth(1L, LocalDate.of(1970, 1, 1)), new BigDecimal("5.00")
+        ), changesCaptor.getValue().getMonthlyChanges());
+    }
+
+    @Test
+    void importTransactions_allDuplicates_balanceNotUpdated() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 10.0, 1L)
+        );
+        when(transactionImportDao.insertTransactions(eq(1L), anyList()))
+                .thenReturn(new int[]{0});
+
+        ImportTransactionsResultDto result =
+                importService.importTransactions(1L, transactions, 1L);
+
+        assertEquals(0, result.imported());
+        assertEquals(1, result.skipped());
+
+        verify(walletService, never()).addWalletBalance(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importTransactions_rowsNormalized() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto("  Coffee   and\tcake ", new Date(1), 10.129, 1L),
+                new ImportTransactionDto("Coffee and cake", new Date(1), 10.12, 1L)
+        );
+        when(transactionImportDao.insertTransactions(eq(1L), anyList()))
+                .thenReturn(new int[]{1, 0});
+
+        importService.importTransactions(1L, transactions, 1L);
+
+        ArgumentCaptor<List<ImportTransactionDbDto>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionImportDao).insertTransactions(eq(1L), captor.capture());
+
+        ImportTransactionDbDto first = captor.getValue().get(0);
+
+        assertEquals("Coffee and cake", first.description());
+        assertEquals(new BigDecimal("10.12"), first.amount());
+        assertEquals(64, first.fingerprint().length());
+        // Same data after normalization is the same transaction
+        assertEquals(first.fingerprint(), captor.getValue().get(1).fingerprint());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importTransactions_differentRows_differentFingerprints() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 1.0, 1L),
+                new ImportTransactionDto(null, new Date(1), 1.0, 2L)
+        );
+        when(transactionImportDao.insertTransactions(eq(1L), anyList()))
+                .thenReturn(new int[]{1, 1});
+
+        importService.importTransactions(1L, transactions, 1L);
+
+        ArgumentCaptor<List<ImportTransactionDbDto>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionImportDao).insertTransactions(eq(1L), captor.capture());
+
+        assertNotEquals(captor.getValue().get(0).fingerprint(),
+                        captor.getValue().get(1).fingerprint());
+    }
+
+    @Test
+    void importTransactions_userNotWalletOwner_ActionDeniedException() {
+        when(walletService.isUserWalletOwner(1L, 2L)).thenReturn(false);
+
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 1.0, 1L)
+        );
+
+        assertThrows(ActionDeniedException.class,
+                     () -> importService.importTransactions(1L, transactions, 2L));
+
+        verify(transactionImportDao, never()).insertTransactions(anyLong(), anyList());
+    }
+
+    @Test
+    void importTransactions_categoryNotFound_BadRequestException() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 1.0, 1L),
+                new ImportTransactionDto(null, new Date(1), 1.0, 3L)
+        );
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactions(1L, transactions, 1L)
+        );
+        assertEquals("validation.transaction.import.category.notFound", e.getMessageCode());
+        assertEquals(2, e.getMessageArgs()[0]);
+
+        verify(transactionImportDao, never()).insertTransactions(anyLong(), anyList());
+    }
+
+    @Test
+    void importTransactions_amountRoundedToZero_BadRequestException() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 0.001, 1L)
+        );
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactions(1L, transactions, 1L)
+        );
+        assertEquals("validation.transaction.import.amount.positive", e.getMessageCode());
+    }
+
+    @Test
+    void importTransactions_amountOutOfRange_BadRequestException() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 1.0, 1L),
+                new ImportTransactionDto(null, new Date(1), 1e17, 1L)
+        );
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactions(1L, transactions, 1L)
+        );
+        assertEquals("validation.transaction.import.amount.max", e.getMessageCode());
+        assertEquals(2, e.getMessageArgs()[0]);
+    }
+
+    @Test
+    void importTransactions_missingDate_BadRequestException() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, null, 1.0, 1L)
+        );
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactions(1L, transactions, 1L)
+        );
+        assertEquals("validation.transaction.import.date.notnull", e.getMessageCode());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importTransactionsCsv() throws IOException {
+        String csv = """
+                     id,date,amount,categoryId,walletId,description
+                     1,2021-01-01 10:05,12.5,1,1,Coffee
+                     2,2021-01-02 00:00,100,2,1,"Rent, ""flat\"""
+                     
+                     3,2021-01-03 00:00,1,2,1,
+                     """;
+        when(transactionImportDao.insertTransactions(eq(1L), anyList()))
+                .thenReturn(new int[]{1, 1, 1});
+
+        ImportTransactionsResultDto result =
+                importService.importTransactionsCsv(1L, new StringReader(csv), 1L);
+
+        assertEquals(3, result.imported());
+
+        ArgumentCaptor<List<ImportTransactionDbDto>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionImportDao).insertTransactions(eq(1L), captor.capture());
+        List<ImportTransactionDbDto> rows = captor.getValue();
+
+        assertEquals("Coffee", rows.get(0).description());
+        assertEquals(1609495500000L, rows.get(0).date().getTime());
+        assertEquals(new BigDecimal("12.50"), rows.get(0).amount());
+        assertEquals("Rent, \"flat\"", rows.get(1).description());
+        assertEquals(2L, rows.get(1).categoryId());
+        assertNull(rows.get(2).description());
+
+        verify(walletService).addWalletBalance(1L, -8850L, CurrencyType.BASIC);
+    }
+
+    @Test
+    void importTransactionsCsv_missingColumn_BadRequestException() {
+        String csv = """
+                     date,amount
+                     2021-01-01 10:05,12.5
+                     """;
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactionsCsv(1L, new StringReader(csv), 1L)
+        );
+        assertEquals("validation.transaction.import.csv.column.missing", e.getMessageCode());
+        assertEquals("categoryId", e.getMessageArgs()[0]);
+    }
+
+    @Test
+    void importTransactionsCsv_invalidValue_BadRequestException() {
+        String csv = """
+                     date,amount,categoryId
+                     2021-01-01 10:05,12.5,1
+                     2021-01-01 10:05,abc,1
+                     """;
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactionsCsv(1L, new StringReader(csv), 1L)
+        );
+        assertEquals("validation.transaction.import.csv.value.invalid", e.getMessageCode());
+        assertEquals(2, e.getMessageArgs()[0]);
+        assertEquals("amount", e.getMessageArgs()[1]);
+    }
+
+    @Test
+    void importTransactionsCsv_unclosedQuote_BadRequestException() {
+        String csv = """
+                     date,amount,categoryId,description
+                     2021-01-01 10:05,12.5,1,"Coffee
+                     """;
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactionsCsv(1L, new StringReader(csv), 1L)
+        );
+        assertEquals("validation.transaction.import.csv.malformed", e.getMessageCode());
+    }
+
+    @Test
+    void importTransactions_walletDeleted_BadRequestException() {
+        List<ImportTransactionDto> transactions = List.of(
+                new ImportTransactionDto(null, new Date(1), 10.0, 1L)
+        );
+        when(walletService.existsWallet(1L)).thenReturn(false);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> importService.importTransactions(1L, transactions, 1L)
+        );
+
+        assertEquals("validation.wallet.notFound", e.getMessageCode());
+        verify(transactionImportDao, never()).insertTransactions(anyLong(), anyList());
+    }
+
+    private static int[] insertedCounts(List<?> rows) {
+        int[] counts = new int[rows.size()];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+
+}
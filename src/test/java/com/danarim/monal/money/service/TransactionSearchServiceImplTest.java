@@ -0,0 +1,66 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.money.persistence.dao.TransactionSearchDao;
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionSearchDbDto;
+import com.danarim.monal.money.persistence.model.TransactionSearchOrder;
+import com.danarim.monal.money.web.dto.TransactionSearchCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionSearchServiceImplTest {
+
+    private final TransactionSearchDao transactionSearchDao = mock(TransactionSearchDao.class);
+
+    private final TransactionSearchServiceImpl searchService =
+            new TransactionSearchServiceImpl(transactionSearchDao);
+
+    @Test
+    void searchTransactions_firstPage_requestsOneExtraRow() {
+        List<TransactionSearchDbDto> found = List.of(prepareFound(1L));
+        when(transactionSearchDao.searchUserTransactions(2L, "coffee",
+                                                         TransactionSearchOrder.RELEVANCE, 11))
+                .thenReturn(found);
+
+        List<TransactionSearchDbDto> result = searchService.searchTransactions(
+                "coffee", TransactionSearchOrder.RELEVANCE, null, 10, 2L);
+
+        assertEquals(found, result);
+    }
+
+    @Test
+    void searchTransactions_nextPage_startsAfterCursor() {
+        Date date = new Date(1000L);
+        List<TransactionSearchDbDto> found = List.of(prepareFound(1L));
+        when(transactionSearchDao.searchUserTransactionsAfter(2L, "coffee",
+                                                              TransactionSearchOrder.DATE,
+                                                              0.5f, date, 3L, 11))
+                .thenReturn(found);
+
+        List<TransactionSearchDbDto> result = searchService.searchTransactions(
+                "coffee", TransactionSearchOrder.DATE, new TransactionSearchCursor(0.5f, date, 3L),
+                10, 2L);
+
+        assertEquals(found, result);
+    }
+
+    @Test
+    void searchCursor_encodeDecode() {
+        TransactionSearchCursor cursor =
+                new TransactionSearchCursor(0.0607927f, new Date(1234L), 5L);
+
+        assertEquals(cursor, TransactionSearchCursor.decode(cursor.encode()));
+    }
+
+    private static TransactionSearchDbDto prepareFound(long id) {
+        return new TransactionSearchDbDto(
+                new TransactionDbDto(id, "Coffee", 1000L, 2.5, 1L, 1L), 0.5f);
+    }
+
+}
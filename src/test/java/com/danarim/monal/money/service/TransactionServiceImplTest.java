@@ -4,23 +4,46 @@ import com.danarim.monal.exceptions.ActionDeniedException;
 import com.danarim.monal.exceptions.BadFieldException;
 import com.danarim.monal.exceptions.BadRequestException;
 import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.TransferDao;
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.TransactionBalanceDbDto;
+import com.danarim.monal.money.persistence.dto.TransactionFilter;
+import com.danarim.monal.money.persistence.dto.TransactionWalletDbDto;
+import com.danarim.monal.money.persistence.dto.UpdatedTransactionDbDto;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
+import com.danarim.monal.money.persistence.dto.WalletMonth;
 import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
 import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionBatchOperationType;
 import com.danarim.monal.money.persistence.model.TransactionCategory;
 import com.danarim.monal.money.persistence.model.TransactionType;
 import com.danarim.monal.money.persistence.model.Wallet;
 import com.danarim.monal.money.web.dto.CreateTransactionDto;
+import com.danarim.monal.money.web.dto.TransactionBatchOperationDto;
+import com.danarim.monal.money.web.dto.TransactionPageCursor;
 import com.danarim.monal.money.web.dto.UpdateTransactionDto;
 import com.danarim.monal.user.persistence.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -29,7 +52,11 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -39,10 +66,17 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class TransactionServiceImplTest {
 
+    /**
+     * 2021-03-15 in UTC. Month of the checkpoint is 2021-03.
+     */
+    private static final Date CHECKPOINT_DATE = new Date(1615766400000L);
+
     private final TransactionCategoryService categoryService =
             mock(TransactionCategoryService.class);
     private final WalletService walletService = mock(WalletService.class);
     private final TransactionDao transactionDao = mock(TransactionDao.class);
+    private final TransferDao transferDao = mock(TransferDao.class);
+    private final WalletWriteTemplate walletWriteTemplate = mock(WalletWriteTemplate.class);
 
     @InjectMocks
     private TransactionServiceImpl transactionService;
@@ -58,19 +92,28 @@ class TransactionServiceImplTest {
         CreateTransactionDto transactionDto = new CreateTransactionDto(
                 "test", new Date(), 1.0, 1L, 1L
         );
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
-                .thenReturn(Optional.of(wallet));
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.00"), new BigDecimal("1.00000000")))
+                .thenReturn(Optional.of(Currency.USD));
 
-        transactionService.createTransaction(transactionDto, 1L);
+        Transaction result = transactionService.createTransaction(transactionDto, 1L);
+
+        assertEquals(1L, result.getWallet().getId());
+        assertEquals(1L, result.getCategory().getId());
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, times(1)).addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.00"), new BigDecimal("1.00000000"));
+        verify(walletService, never()).getWalletsForUpdate(any());
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService, times(1)).addBalanceChanges(changesCaptor.capture());
+        assertEquals(Map.of(
+                WalletMonth.of(1L, transactionDto.date()), new BigDecimal("1.00")
+        ), changesCaptor.getValue().getMonthlyChanges());
         verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, times(1)).updateWalletBalance(wallet, 1.0);
     }
 
     @Test
@@ -78,19 +121,18 @@ class TransactionServiceImplTest {
         CreateTransactionDto transactionDto = new CreateTransactionDto(
                 null, new Date(), 1.0, 1L, 1L
         );
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
-                .thenReturn(Optional.of(wallet));
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("-1.00"), new BigDecimal("-1.00000000")))
+                .thenReturn(Optional.of(Currency.USD));
 
         transactionService.createTransaction(transactionDto, 1L);
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, times(1)).addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("-1.00"), new BigDecimal("-1.00000000"));
         verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, times(1)).updateWalletBalance(wallet, -1.0);
     }
 
     @Test
@@ -98,21 +140,20 @@ class TransactionServiceImplTest {
         CreateTransactionDto transactionDto = new CreateTransactionDto(
                 "test", new Date(), 1.1234, 1L, 1L
         );
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
-                .thenReturn(Optional.of(wallet));
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.12"), new BigDecimal("1.12340000")))
+                .thenReturn(Optional.of(Currency.USD));
 
         Transaction result = transactionService.createTransaction(transactionDto, 1L);
 
         assertEquals(1.12, result.getAmount());
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, times(1)).addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.12"), new BigDecimal("1.12340000"));
         verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, times(1)).updateWalletBalance(wallet, 1.12);
     }
 
     @Test
@@ -120,21 +161,58 @@ class TransactionServiceImplTest {
         CreateTransactionDto transactionDto = new CreateTransactionDto(
                 "test", new Date(), 1.1234567890, 1L, 1L
         );
-        Wallet wallet = new Wallet("test", 0.0, Currency.BTC, new User(1L));
-
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
-                .thenReturn(Optional.of(wallet));
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.12"), new BigDecimal("1.12345678")))
+                .thenReturn(Optional.of(Currency.BTC));
 
         Transaction result = transactionService.createTransaction(transactionDto, 1L);
 
         assertEquals(1.12345678, result.getAmount());
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, times(1)).addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.12"), new BigDecimal("1.12345678"));
+        verify(transactionDao, times(1)).save(any(Transaction.class));
+    }
+
+    @Test
+    void createTransaction_basicCurrency_amountOutOfCryptoRange_created() {
+        CreateTransactionDto transactionDto = new CreateTransactionDto(
+                "test", new Date(), 1e12, 1L, 1L
+        );
+        when(categoryService.getCategoryType(transactionDto.categoryId()))
+                .thenReturn(TransactionType.INCOME);
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1000000000000.00"),
+                new BigDecimal("1000000000000.00000000")))
+                .thenReturn(Optional.of(Currency.USD));
+
+        Transaction result = transactionService.createTransaction(transactionDto, 1L);
+
+        assertEquals(1e12, result.getAmount());
         verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, times(1)).updateWalletBalance(wallet, 1.12345678);
+    }
+
+    @Test
+    void createTransaction_cryptoCurrency_amountOutOfRange_BadFieldException() {
+        CreateTransactionDto transactionDto = new CreateTransactionDto(
+                "test", new Date(), 1e12, 1L, 1L
+        );
+        when(categoryService.getCategoryType(transactionDto.categoryId()))
+                .thenReturn(TransactionType.INCOME);
+        when(walletService.addOwnedWalletBalance(eq(1L), eq(1L), any(), any()))
+                .thenReturn(Optional.of(Currency.BTC));
+
+        BadFieldException e = assertThrows(
+                BadFieldException.class,
+                () -> transactionService.createTransaction(transactionDto, 1L));
+
+        assertEquals("amount", e.getField());
+        assertEquals("validation.transaction.amount.max-for-currency", e.getMessageCode());
+        verify(walletService, never()).addBalanceChanges(any());
+        verify(transactionDao, never()).save(any(Transaction.class));
     }
 
     @Test
@@ -142,12 +220,8 @@ class TransactionServiceImplTest {
         CreateTransactionDto transactionDto = new CreateTransactionDto(
                 "test", new Date(), 1.0, 1L, 1L
         );
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(null);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
-                .thenReturn(Optional.of(wallet));
 
         BadFieldException e = assertThrows(
                 BadFieldException.class,
@@ -155,12 +229,11 @@ class TransactionServiceImplTest {
 
         assertEquals("category", e.getField());
         assertEquals("validation.category.notFound", e.getMessageCode());
-        assertEquals(0.0, wallet.getBalance());
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, never())
+                .addOwnedWalletBalance(anyLong(), anyLong(), any(), any());
         verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(wallet, 1.0);
     }
 
     @Test
@@ -170,8 +243,10 @@ class TransactionServiceImplTest {
         );
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.00"), new BigDecimal("1.00000000")))
                 .thenReturn(Optional.empty());
+        when(walletService.existsWallet(1L)).thenReturn(false);
 
         BadRequestException e = assertThrows(
                 BadRequestException.class,
@@ -180,9 +255,10 @@ class TransactionServiceImplTest {
         assertEquals("validation.wallet.notFound", e.getMessageCode());
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, times(1)).addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.00"), new BigDecimal("1.00000000"));
+        verify(walletService, times(1)).existsWallet(1L);
         verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
     }
 
     @Test
@@ -190,12 +266,12 @@ class TransactionServiceImplTest {
         CreateTransactionDto transactionDto = new CreateTransactionDto(
                 "test", new Date(), 1.0, 1L, 1L
         );
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(2L));
-
         when(categoryService.getCategoryType(transactionDto.categoryId()))
                 .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(transactionDto.walletId()))
-                .thenReturn(Optional.of(wallet));
+        when(walletService.addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.00"), new BigDecimal("1.00000000")))
+                .thenReturn(Optional.empty());
+        when(walletService.existsWallet(1L)).thenReturn(true);
 
         ActionDeniedException e = assertThrows(
                 ActionDeniedException.class,
@@ -204,9 +280,10 @@ class TransactionServiceImplTest {
         assertNotNull(e.getMessage());
 
         verify(categoryService, times(1)).getCategoryType(transactionDto.categoryId());
-        verify(walletService, times(1)).getWalletForUpdate(transactionDto.walletId());
+        verify(walletService, times(1)).addOwnedWalletBalance(
+                1L, 1L, new BigDecimal("1.00"), new BigDecimal("1.00000000"));
+        verify(walletService, times(1)).existsWallet(1L);
         verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
     }
 
     @Test
@@ -214,8 +291,13 @@ class TransactionServiceImplTest {
         when(walletService.isUserWalletOwner(anyLong(), anyLong()))
                 .thenReturn(true);
 
+        Date from = new Date(1L);
+        Date to = new Date();
+
         assertDoesNotThrow(() -> transactionService.getTransactionsBetweenDates(
-                new Date(1L), new Date(), 1L, 1L));
+                from, to, 1L, 1L));
+
+        verify(transactionDao, times(1)).getTransactionsBetweenDates(1L, from, to);
     }
 
     @Test
@@ -249,64 +331,173 @@ class TransactionServiceImplTest {
         assertEquals("validation.transaction.date-from-after-date-to", e.getMessageCode());
     }
 
+    @Test
+    void getTransactionsPageBetweenDates_firstPage() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        Date from = new Date(1L);
+        Date to = new Date();
+
+        transactionService.getTransactionsPageBetweenDates(from, to, 1L, null, 10, 1L);
+
+        verify(transactionDao, times(1))
+                .getTransactionsPage(1L, from, to, PageRequest.of(0, 11));
+        verify(transactionDao, never()).getTransactionsPageAfter(anyLong(), any(), any(), any(),
+                                                                 anyLong(), any());
+    }
+
+    @Test
+    void getTransactionsPageBetweenDates_nextPage() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        Date from = new Date(1L);
+        Date to = new Date();
+        TransactionPageCursor cursor = new TransactionPageCursor(new Date(100L), 5L);
+
+        transactionService.getTransactionsPageBetweenDates(from, to, 1L, cursor, 10, 1L);
+
+        verify(transactionDao, times(1)).getTransactionsPageAfter(
+                1L, from, to, cursor.date(), 5L, PageRequest.of(0, 11));
+        verify(transactionDao, never()).getTransactionsPage(anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void getTransactionsPageBetweenDates_UserNotWalletOwner_AccessDeniedException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(false);
+
+        Date from = new Date(1L);
+        Date to = new Date();
+
+        assertThrows(AccessDeniedException.class,
+                     () -> transactionService.getTransactionsPageBetweenDates(
+                             from, to, 1L, null, 10, 1L));
+
+        verify(transactionDao, never()).getTransactionsPage(anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void getTransactionsPageBetweenDates_DateFromAfterDateTo_BadRequestException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        Date from = new Date();
+        Date to = new Date(1L);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.getTransactionsPageBetweenDates(
+                        from, to, 1L, null, 10, 1L));
+
+        assertEquals("validation.transaction.date-from-after-date-to", e.getMessageCode());
+    }
+
+    @Test
+    void filterTransactions_firstPage() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        TransactionFilter filter = new TransactionFilter(
+                1L, new Date(1L), new Date(), Set.of(2L), 1.0, 5.0, "cof");
+
+        transactionService.filterTransactions(filter, null, 10, 1L);
+
+        verify(transactionDao, times(1)).filterTransactions(filter, 11);
+        verify(transactionDao, never()).filterTransactionsAfter(any(), any(), anyLong(),
+                                                                anyInt());
+    }
+
+    @Test
+    void filterTransactions_nextPage() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        TransactionFilter filter = new TransactionFilter(
+                1L, new Date(1L), new Date(), null, null, null, null);
+        TransactionPageCursor cursor = new TransactionPageCursor(new Date(100L), 5L);
+
+        transactionService.filterTransactions(filter, cursor, 10, 1L);
+
+        verify(transactionDao, times(1)).filterTransactionsAfter(filter, cursor.date(), 5L, 11);
+        verify(transactionDao, never()).filterTransactions(any(), anyInt());
+    }
+
+    @Test
+    void filterTransactions_UserNotWalletOwner_AccessDeniedException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(false);
+
+        TransactionFilter filter = new TransactionFilter(
+                1L, new Date(1L), new Date(), null, null, null, null);
+
+        assertThrows(AccessDeniedException.class,
+                     () -> transactionService.filterTransactions(filter, null, 10, 1L));
+
+        verify(transactionDao, never()).filterTransactions(any(), anyInt());
+    }
+
+    @Test
+    void filterTransactions_MinAmountAfterMax_BadRequestException() {
+        when(walletService.isUserWalletOwner(1L, 1L)).thenReturn(true);
+
+        TransactionFilter filter = new TransactionFilter(
+                1L, new Date(1L), new Date(), null, 5.0, 1.0, null);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.filterTransactions(filter, null, 10, 1L));
+
+        assertEquals("validation.transaction.filter.min-amount-after-max", e.getMessageCode());
+        verify(transactionDao, never()).filterTransactions(any(), anyInt());
+    }
+
     @Test
     void deleteTransaction_IncomeCategory() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        Transaction transaction = new Transaction(
-                "test", new Date(), 1.0, category, wallet
-        );
-        when(transactionDao.existsById(1L)).thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
+        TransactionBalanceDbDto deleted = prepareDeletedState(1.0, TransactionType.INCOME, 1L);
+        prepareWriteTemplate();
+        prepareTransactionWallet(1L, 1L);
+
+        when(transactionDao.deleteUserTransaction(1L, 1L)).thenReturn(Optional.of(deleted));
+        when(walletService.addWalletBalance(1L, -100L, CurrencyType.BASIC))
                 .thenReturn(true);
-        when(transactionDao.getById(1L)).thenReturn(transaction);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
 
         assertDoesNotThrow(() -> transactionService.deleteTransaction(1L, 1L));
 
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(transactionDao, times(1)).getById(1L);
-        verify(transactionDao, times(1)).deleteById(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(walletService, times(1)).updateWalletBalance(wallet, -1.0);
+        verify(transactionDao, times(1)).deleteUserTransaction(1L, 1L);
+        verify(transactionDao, never()).existsById(1L);
+        verify(walletService, times(1)).addWalletBalance(1L, -100L, CurrencyType.BASIC);
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService, times(1)).addBalanceChanges(changesCaptor.capture());
+        assertEquals(Map.of(
+                new WalletMonth(1L, LocalDate.of(2021, 3, 1)), new BigDecimal("-1.00")
+        ), changesCaptor.getValue().getMonthlyChanges());
+        assertEquals(Map.of(
+                new WalletDayCategory(1L, LocalDate.of(2021, 3, 15), 2L),
+                new AnalyticsRollupChange(new BigDecimal("-1.00"), -1L)
+        ), changesCaptor.getValue().getDailyChanges());
+
+        // The wallet is locked before the transaction
+        InOrder inOrder = inOrder(walletService, transactionDao);
+        inOrder.verify(walletService).getWalletsForUpdate(Set.of(1L));
+        inOrder.verify(transactionDao).deleteUserTransaction(1L, 1L);
     }
 
     @Test
     void deleteTransaction_OutcomeCategory() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        Transaction transaction = new Transaction(
-                "test", new Date(), 1.0, category, wallet
-        );
-        when(transactionDao.existsById(1L)).thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
+        prepareWriteTemplate();
+        TransactionBalanceDbDto deleted = prepareDeletedState(1.0, TransactionType.OUTCOME, 1L);
+
+        when(transactionDao.deleteUserTransaction(1L, 1L)).thenReturn(Optional.of(deleted));
+        when(walletService.addWalletBalance(1L, 100L, CurrencyType.BASIC))
                 .thenReturn(true);
-        when(transactionDao.getById(1L)).thenReturn(transaction);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
 
         assertDoesNotThrow(() -> transactionService.deleteTransaction(1L, 1L));
 
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(transactionDao, times(1)).getById(1L);
-        verify(transactionDao, times(1)).deleteById(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(walletService, times(1)).updateWalletBalance(wallet, -1.0);
+        verify(transactionDao, times(1)).deleteUserTransaction(1L, 1L);
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
     }
 
     @Test
     void deleteTransaction_transactionNotFound_BadRequestException() {
-        when(transactionDao.existsById(1L))
-                .thenReturn(false);
+        prepareWriteTemplate();
+        when(transactionDao.deleteUserTransaction(1L, 1L)).thenReturn(Optional.empty());
+        when(transactionDao.existsById(1L)).thenReturn(false);
 
         BadRequestException e = assertThrows(
                 BadRequestException.class,
@@ -315,1054 +506,856 @@ class TransactionServiceImplTest {
         assertEquals("validation.transaction.notFound", e.getMessageCode());
 
         verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, never()).isUserTransactionOwner(1L, 1L);
-        verify(transactionDao, never()).deleteById(1L);
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void deleteTransaction_userNotTransactionOwner_ActionDeniedException() {
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(false);
+        prepareWriteTemplate();
+        when(transactionDao.deleteUserTransaction(1L, 1L)).thenReturn(Optional.empty());
+        when(transactionDao.existsById(1L)).thenReturn(true);
 
         assertThrows(ActionDeniedException.class,
                      () -> transactionService.deleteTransaction(1L, 1L));
 
         verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(transactionDao, never()).deleteById(1L);
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
-    void updateTransaction_updateDescription_removeUnnecessarySpaces() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "old", transactionDate, 1.0, category, wallet
-        );
-        oldState.setId(1L);
+    void deleteTransaction_transferLeg_BadRequestException() {
+        prepareWriteTemplate();
+        when(transactionDao.deleteUserTransaction(1L, 1L)).thenReturn(Optional.empty());
+        when(transactionDao.isUserTransactionOwner(1L, 1L)).thenReturn(true);
+        when(transferDao.isTransferLeg(1L)).thenReturn(true);
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.deleteTransaction(1L, 1L));
+
+        assertEquals("validation.transaction.transfer-leg", e.getMessageCode());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
+    }
 
+    @Test
+    void updateTransaction_updateDescription_removeUnnecessarySpaces() {
+        Date transactionDate = new Date();
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
                 1L, "ne  w  ", transactionDate, 1.0, 1L, 1L
         );
+        prepareUpdate(transactionDto, "ne w", 1.0, 1.0, TransactionType.INCOME,
+                      prepareOldState(1.0, TransactionType.INCOME, 1L, 1.0));
+
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
+        assertEquals(1L, result.getId());
         assertEquals("ne w", result.getDescription());
         assertEquals(1.0, result.getAmount());
         assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
+        assertEquals(1L, result.getCategory().getId());
+        assertEquals(1L, result.getWallet().getId());
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(transactionDao, never()).save(any(Transaction.class));
+        verify(transactionDao, never()).existsById(anyLong());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void updateTransaction_updateDescriptionToNull() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "old", transactionDate, 1.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, null, transactionDate, 1.0, 1L, 1L
+                1L, null, new Date(), 1.0, 1L, 1L
         );
+        prepareUpdate(transactionDto, null, 1.0, 1.0, TransactionType.INCOME,
+                      prepareOldState(1.0, TransactionType.INCOME, 1L, 1.0));
+
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
         assertNull(result.getDescription());
-        assertEquals(1.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void updateTransaction_updateDate() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Transaction oldState = new Transaction(
-                "test", new Date(), 1.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         Date newDate = new Date();
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
                 1L, "test", newDate, 1.0, 1L, 1L
         );
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.INCOME,
+                      prepareOldState(1.0, TransactionType.INCOME, 1L, 1.0));
+
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
-        assertEquals("test", result.getDescription());
-        assertEquals(1.0, result.getAmount());
         assertEquals(newDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void updateTransaction_incomeTrUpdateAmountUp() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 1L
+                1L, "test", new Date(), 2.0, 1L, 1L
         );
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME,
+                      prepareOldState(1.0, TransactionType.INCOME, 1L, 2.0));
+
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
-        assertEquals("test", result.getDescription());
         assertEquals(2.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Income 1.0, new: Income 2.0. Old balance: 0.0, new balance: 2.0 - 1.0 = 1.0
-        verify(walletService, times(1)).updateWalletBalance(wallet, 1.0);
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_incomeTrUpdateAmountDown() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.0, 1L, 1L
+                1L, "test", new Date(), 1.0, 1L, 1L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
-
-        assertEquals("test", result.getDescription());
-        assertEquals(1.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.INCOME,
+                      prepareOldState(2.0, TransactionType.INCOME, 1L, 1.0));
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Income 2.0, new: Income 1.0. Old balance: 0.0, new balance: 1.0 - 2.0 = -1.0
-        verify(walletService, times(1)).updateWalletBalance(wallet, -1.0);
+        verify(walletService, times(1)).addWalletBalance(1L, -100L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_outcomeTrUpdateAmountUp() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 1L
+                1L, "test", new Date(), 2.0, 1L, 1L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.OUTCOME,
+                      prepareOldState(1.0, TransactionType.OUTCOME, 1L, 2.0));
 
-        assertEquals("test", result.getDescription());
-        assertEquals(2.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Outcome 1.0, new: Outcome 2.0. Old balance: 0.0, new balance: -2.0 - -1.0 = -1.0
-        verify(walletService, times(1)).updateWalletBalance(wallet, -1.0);
+        verify(walletService, times(1)).addWalletBalance(1L, -100L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_outcomeTrUpdateAmountDown() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.0, 1L, 1L
+                1L, "test", new Date(), 1.0, 1L, 1L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.OUTCOME,
+                      prepareOldState(2.0, TransactionType.OUTCOME, 1L, 1.0));
 
-        assertEquals("test", result.getDescription());
-        assertEquals(1.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Outcome 2.0, new: Outcome 1.0. Old balance: 0.0, new balance: -1.0 - -2.0 = 1.0
-        verify(walletService, times(1)).updateWalletBalance(wallet, 1.0);
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_outcomeTrUpdateAmountRoundBasicPrecision() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.12345, 1L, 1L
+                1L, "test", new Date(), 1.1234, 1L, 1L
         );
+        prepareUpdate(transactionDto, "test", 1.12, 1.1234, TransactionType.OUTCOME,
+                      prepareOldState(2.0, TransactionType.OUTCOME, 1L, 1.12));
+
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
-        assertEquals("test", result.getDescription());
         assertEquals(1.12, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
-
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Outcome 2.0, new: Outcome 1.12. Old balance: 0.0, new balance: -1.12 - -2.0 = 0.88
-        verify(walletService, times(1)).updateWalletBalance(wallet, 0.88);
+        verify(walletService, times(1)).addWalletBalance(1L, 88L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_outcomeTrUpdateAmountRoundCryptoPrecision() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.BTC, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.12345678, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.BTC);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.1234567788, 1L, 1L
+                1L, "test", new Date(), 1.1234567788, 1L, 1L
         );
+        UpdatedTransactionDbDto oldState =
+                prepareOldState(2.12345678, TransactionType.OUTCOME, 1L, 1.12345677);
+        when(oldState.getCurrency()).thenReturn(Currency.BTC);
+        prepareUpdate(transactionDto, "test", 1.12, 1.12345677, TransactionType.OUTCOME, oldState);
+
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
-        assertEquals("test", result.getDescription());
         assertEquals(1.12345677, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Outcome 2.12345678, new: Outcome 1.12345677.
         // Old balance: 0.0, new balance: -1.12345677 - -2.12345678 = 1.00000001
-        verify(walletService, times(1)).updateWalletBalance(wallet, 1.00000001);
+        verify(walletService, times(1)).addWalletBalance(1L, 100_000_001L, CurrencyType.CRYPTO);
     }
 
     @Test
     void updateTransaction_updateCategorySameType() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.0, category, wallet
+        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
+                1L, "test", new Date(), 2.0, 2L, 1L
         );
-        oldState.setId(1L);
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME,
+                      prepareOldState(2.0, TransactionType.INCOME, 1L, 2.0));
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
-        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 1L
-        );
         Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
-        assertEquals("test", result.getDescription());
-        assertEquals(2.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-        assertEquals(0.0, wallet.getBalance());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
+        assertEquals(2L, result.getCategory().getId());
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void updateTransaction_updateCategoryIncomeToOutcome() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.0, 1L, 1L
+                1L, "test", new Date(), 1.0, 1L, 1L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.OUTCOME,
+                      prepareOldState(2.0, TransactionType.INCOME, 1L, 1.0));
 
-        assertEquals("test", result.getDescription());
-        assertEquals(1.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
-
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Income 2.0, new: Outcome 1.0. Old balance: 0.0, new balance: -1.0 - 2.0 = -3.0
-        verify(walletService, times(1)).updateWalletBalance(wallet, -3.0);
+        verify(walletService, times(1)).addWalletBalance(1L, -300L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_updateCategoryOutcomeToIncome() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 2.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.0, 1L, 1L
+                1L, "test", new Date(), 1.0, 1L, 1L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.INCOME,
+                      prepareOldState(2.0, TransactionType.OUTCOME, 1L, 1.0));
 
-        assertEquals("test", result.getDescription());
-        assertEquals(1.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(wallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(1L);
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Outcome 2.0, new: Income 1.0. Old balance: 0.0, new balance: 1.0 - -2.0 = 3.0
-        verify(walletService, times(1)).updateWalletBalance(wallet, 3.0);
+        verify(walletService, times(1)).addWalletBalance(1L, 300L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_updateWallet() {
-        Wallet oldWallet = new Wallet("test1", 0.0, Currency.USD, new User(1L));
-        oldWallet.setId(1L);
-        Wallet newWallet = new Wallet("test2", 0.0, Currency.USD, new User(1L));
-        newWallet.setId(2L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, oldWallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(oldWallet));
-        when(walletService.getWalletForUpdate(2L))
-                .thenReturn(Optional.of(newWallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(2L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 1.0, 1L, 2L
+                1L, "test", new Date(), 1.0, 1L, 2L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
-
-        assertEquals("test", result.getDescription());
-        assertEquals(1.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(newWallet, result.getWallet());
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.OUTCOME,
+                      prepareOldState(1.0, TransactionType.OUTCOME, 1L, 1.0));
+        prepareTransactionWallet(1L, 1L);
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(walletService, times(1)).getWalletForUpdate(2L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(2L);
+        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
+        assertEquals(2L, result.getWallet().getId());
         // Old: Outcome 1.0, Old balance: 0.0, new balance: 0.0 - -1.0 = 1.0
-        verify(walletService, times(1)).updateWalletBalance(oldWallet, 1.0);
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
         // New: Outcome 1.0, Old balance: 0.0, new balance: 0.0 + -1.0 = -1.0
-        verify(walletService, times(1)).updateWalletBalance(newWallet, -1.0);
+        verify(walletService, times(1)).addWalletBalance(2L, -100L, CurrencyType.BASIC);
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService, times(1)).addBalanceChanges(changesCaptor.capture());
+        assertEquals(Map.of(
+                new WalletMonth(1L, LocalDate.of(2021, 3, 1)), new BigDecimal("1.00"),
+                WalletMonth.of(2L, transactionDto.date()), new BigDecimal("-1.00")
+        ), changesCaptor.getValue().getMonthlyChanges());
+
+        // Both wallets are locked in the order of ID before the transaction
+        InOrder inOrder = inOrder(walletService, transactionDao);
+        inOrder.verify(walletService).getWalletsForUpdate(Set.of(1L, 2L));
+        inOrder.verify(transactionDao).updateUserTransaction(anyLong(), anyLong(), any(), any(),
+                                                             any(), any(), anyLong(), anyLong(),
+                                                             any());
     }
 
     @Test
-    void updateTransaction_updateWalletAndCategoryTypeOutcomeToIncomeAndAmount() {
-        Wallet oldWallet = new Wallet("test1", 0.0, Currency.USD, new User(1L));
-        oldWallet.setId(1L);
-        Wallet newWallet = new Wallet("test2", 0.0, Currency.USD, new User(1L));
-        newWallet.setId(2L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.OUTCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, oldWallet
+    void updateTransaction_optimisticMode_walletsNotLocked() {
+        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
+                1L, "test", new Date(), 1.0, 1L, 2L
         );
-        oldState.setId(1L);
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.OUTCOME,
+                      prepareOldState(1.0, TransactionType.OUTCOME, 1L, 1.0));
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.OPTIMISTIC);
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(oldWallet));
-        when(walletService.getWalletForUpdate(2L))
-                .thenReturn(Optional.of(newWallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(2L))
-                .thenReturn(Currency.USD);
+        transactionService.updateTransaction(transactionDto, 1L);
+
+        verify(walletService, never()).getWalletsForUpdate(any());
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
+    }
 
+    @Test
+    void updateTransaction_ledgerMode_walletsNotLocked() {
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 2L
+                1L, "test", new Date(), 1.0, 1L, 2L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
+        prepareUpdate(transactionDto, "test", 1.0, 1.0, TransactionType.OUTCOME,
+                      prepareOldState(1.0, TransactionType.OUTCOME, 1L, 1.0));
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
 
-        assertEquals("test", result.getDescription());
-        assertEquals(2.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(newWallet, result.getWallet());
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(walletService, times(1)).getWalletForUpdate(2L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(2L);
-        verify(transactionDao, times(1)).save(any(Transaction.class));
-        // Old: Outcome 1.0, Old balance: 0.0, new balance: 0.0 - -1.0 = 1.0
-        verify(walletService, times(1)).updateWalletBalance(oldWallet, 1.0);
-        // New: Income 2.0, Old balance: 0.0, new balance: 0.0 + 2.0 = 1.0
-        verify(walletService, times(1)).updateWalletBalance(newWallet, 2.0);
+        verify(walletService, never()).getWalletsForUpdate(any());
+        verify(transactionDao, never()).getTransactionWallets(any());
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
     }
 
     @Test
-    void updateTransaction_updateWalletAndCategoryTypeIncomeToOutcomeAndAmount() {
-        Wallet oldWallet = new Wallet("test1", 0.0, Currency.USD, new User(1L));
-        oldWallet.setId(1L);
-        Wallet newWallet = new Wallet("test2", 0.0, Currency.USD, new User(1L));
-        newWallet.setId(2L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, oldWallet
+    void updateTransaction_updateWalletAndCategoryTypeOutcomeToIncomeAndAmount() {
+        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
+                1L, "test", new Date(), 2.0, 1L, 2L
         );
-        oldState.setId(1L);
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME,
+                      prepareOldState(1.0, TransactionType.OUTCOME, 1L, 2.0));
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.OUTCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(oldWallet));
-        when(walletService.getWalletForUpdate(2L))
-                .thenReturn(Optional.of(newWallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(2L))
-                .thenReturn(Currency.USD);
+        transactionService.updateTransaction(transactionDto, 1L);
 
+        // Old: Outcome 1.0, Old balance: 0.0, new balance: 0.0 - -1.0 = 1.0
+        verify(walletService, times(1)).addWalletBalance(1L, 100L, CurrencyType.BASIC);
+        // New: Income 2.0, Old balance: 0.0, new balance: 0.0 + 2.0 = 2.0
+        verify(walletService, times(1)).addWalletBalance(2L, 200L, CurrencyType.BASIC);
+    }
+
+    @Test
+    void updateTransaction_updateWalletAndCategoryTypeIncomeToOutcomeAndAmount() {
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 2L
+                1L, "test", new Date(), 2.0, 1L, 2L
         );
-        Transaction result = transactionService.updateTransaction(transactionDto, 1L);
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.OUTCOME,
+                      prepareOldState(1.0, TransactionType.INCOME, 1L, 2.0));
 
-        assertEquals("test", result.getDescription());
-        assertEquals(2.0, result.getAmount());
-        assertEquals(transactionDate, result.getDate());
-        assertEquals(category.getId(), result.getCategory().getId());
-        assertEquals(newWallet, result.getWallet());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(walletService, times(1)).getWalletForUpdate(2L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).findById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
-        verify(walletService, times(1)).getWalletCurrency(2L);
+        transactionService.updateTransaction(transactionDto, 1L);
 
-        verify(transactionDao, times(1)).save(any(Transaction.class));
         // Old: Income 1.0, Old balance: 0.0, new balance: 0.0 - 1.0 = -1.0
-        verify(walletService, times(1)).updateWalletBalance(oldWallet, -1.0);
+        verify(walletService, times(1)).addWalletBalance(1L, -100L, CurrencyType.BASIC);
         // New: Outcome 2.0, Old balance: 0.0, new balance: 0.0 + -2.0 = -2.0
-        verify(walletService, times(1)).updateWalletBalance(newWallet, -2.0);
+        verify(walletService, times(1)).addWalletBalance(2L, -200L, CurrencyType.BASIC);
     }
 
     @Test
     void updateTransaction_notFound_BadRequestException() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(false);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 1L
+                1L, "test", new Date(), 2.0, 1L, 1L
         );
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME, null);
+        when(transactionDao.existsById(1L)).thenReturn(false);
+
         BadRequestException exception = assertThrows(BadRequestException.class, () -> {
             transactionService.updateTransaction(transactionDto, 1L);
         });
         assertEquals("validation.transaction.notFound", exception.getMessageCode());
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-
-        verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void updateTransaction_UserNotTransactionOwner_ActionDeniedException() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, wallet
-        );
-        oldState.setId(1L);
-
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(false);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
-
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 1L
+                1L, "test", new Date(), 2.0, 1L, 1L
         );
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME, null);
+        when(transactionDao.existsById(1L)).thenReturn(true);
+        when(transactionDao.isUserTransactionOwner(1L, 1L)).thenReturn(false);
+
         assertThrows(ActionDeniedException.class, () -> {
             transactionService.updateTransaction(transactionDto, 1L);
         });
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
         verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
+    }
 
-        verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+    @Test
+    void updateTransaction_transferLeg_BadRequestException() {
+        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
+                1L, "test", new Date(), 2.0, 1L, 1L
+        );
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME, null);
+        when(transactionDao.isUserTransactionOwner(1L, 1L)).thenReturn(true);
+        when(transferDao.isTransferLeg(1L)).thenReturn(true);
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.updateTransaction(transactionDto, 1L));
+
+        assertEquals("validation.transaction.transfer-leg", e.getMessageCode());
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
     void updateTransaction_CategoryNotFound_BadFieldException() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, wallet
+        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
+                1L, "test", new Date(), 2.0, 1L, 1L
         );
-        oldState.setId(1L);
+        when(categoryService.getCategoryType(1L)).thenReturn(null);
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(null);
-        when(walletService.getWalletForUpdate(1L))
-                .thenReturn(Optional.of(wallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
+        BadFieldException exception = assertThrows(BadFieldException.class, () -> {
+            transactionService.updateTransaction(transactionDto, 1L);
+        });
+        assertEquals("validation.category.notFound", exception.getMessageCode());
+        assertEquals("category", exception.getField());
+
+        verify(transactionDao, never()).updateUserTransaction(anyLong(), anyLong(), any(),
+                                                              any(), any(), any(), anyLong(),
+                                                              anyLong(), any());
+    }
 
+    @Test
+    void updateTransaction_NewWalletNotFound_BadRequestException() {
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 1L
+                1L, "test", new Date(), 2.0, 1L, 2L
         );
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME, null);
+        when(transactionDao.isUserTransactionOwner(1L, 1L)).thenReturn(true);
+        when(walletService.existsWallet(2L)).thenReturn(false);
+
         BadRequestException exception = assertThrows(BadRequestException.class, () -> {
             transactionService.updateTransaction(transactionDto, 1L);
         });
-        assertEquals("validation.category.notFound", exception.getMessageCode());
-
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(1L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
+        assertEquals("validation.wallet.notFound", exception.getMessageCode());
 
-        verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(walletService, times(1)).existsWallet(2L);
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
     }
 
     @Test
-    void updateTransaction_NewWalletNotFound_BadFieldException() {
-        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        wallet.setId(1L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
-        );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, wallet
+    void updateTransaction_UserNotNewWalletOwner_ActionDeniedException() {
+        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
+                1L, "test", new Date(), 2.0, 1L, 2L
         );
-        oldState.setId(1L);
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME, null);
+        when(transactionDao.isUserTransactionOwner(1L, 1L)).thenReturn(true);
+        when(walletService.existsWallet(2L)).thenReturn(true);
+        when(walletService.isUserWalletOwner(2L, 1L)).thenReturn(false);
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(2L))
-                .thenReturn(Optional.empty());
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
+        assertThrows(ActionDeniedException.class, () -> {
+            transactionService.updateTransaction(transactionDto, 1L);
+        });
+
+        verify(walletService, times(1)).isUserWalletOwner(2L, 1L);
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
+    }
 
+    @Test
+    void updateTransaction_NewWalletHasDifferentCurrency_BadRequestException() {
         UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 2L
+                1L, "test", new Date(), 2.0, 1L, 2L
         );
+        prepareUpdate(transactionDto, "test", 2.0, 2.0, TransactionType.INCOME, null);
+        when(transactionDao.isUserTransactionOwner(1L, 1L)).thenReturn(true);
+        when(walletService.isUserWalletOwner(2L, 1L)).thenReturn(true);
+
         BadRequestException exception = assertThrows(BadRequestException.class, () -> {
             transactionService.updateTransaction(transactionDto, 1L);
         });
-        assertEquals("validation.wallet.notFound", exception.getMessageCode());
+        assertEquals("validation.transaction.wallet-has-different-currency",
+                     exception.getMessageCode());
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(2L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
+        verify(walletService, never())
+                .addWalletBalance(anyLong(), anyLong(), any());
+    }
 
-        verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+    @Test
+    void applyTransactionBatch_netDeltaOncePerWallet() {
+        Wallet wallet1 = prepareWallet(1L, 1L, Currency.USD);
+        Wallet wallet2 = prepareWallet(2L, 1L, Currency.USD);
+        Transaction incomeTransaction = prepareTransaction(10L, wallet1, TransactionType.INCOME,
+                                                           5.0);
+        Transaction outcomeTransaction = prepareTransaction(11L, wallet2, TransactionType.OUTCOME,
+                                                            3.0);
+        prepareBatchMocks(List.of(wallet1, wallet2),
+                          List.of(incomeTransaction, outcomeTransaction));
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 " a  b ", new Date(), 10.0, 1L, 1L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, new Date(), 2.005, 2L, 1L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.UPDATE, 10L,
+                                                 null, new Date(), 7.0, 1L, 2L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 11L,
+                                                 null, null, null, null, null)
+        );
+        List<Transaction> result = transactionService.applyTransactionBatch(operations, 1L);
+
+        assertEquals(4, result.size());
+        assertEquals("a b", result.get(0).getDescription());
+        assertEquals(2.0, result.get(1).getAmount());
+        assertEquals(wallet2, result.get(2).getWallet());
+        assertEquals(7.0, result.get(2).getAmount());
+        assertEquals(outcomeTransaction, result.get(3));
+
+        verify(walletService, times(1)).getWalletsForUpdate(Set.of(1L, 2L));
+        verify(categoryService, times(1)).getCategoryTypes();
+        verify(transactionDao, times(2)).save(any(Transaction.class));
+        verify(transactionDao, times(1)).deleteAllInBatch(List.of(outcomeTransaction));
+        // wallet 1: +10 - 2 - 5, wallet 2: +7 + 3
+        verify(walletService, times(1)).updateWalletBalance(wallet1, 300L);
+        verify(walletService, times(1)).updateWalletBalance(wallet2, 1000L);
+        verify(walletService, times(2)).updateWalletBalance(any(), anyLong());
     }
 
     @Test
-    void updateTransaction_UserNotNewWalletOwner_ActionDeniedException() {
-        Wallet oldWallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        oldWallet.setId(1L);
-        Wallet newWallet = new Wallet("test", 0.0, Currency.USD, new User(2L));
-        newWallet.setId(2L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
+    void applyTransactionBatch_ledgerMode_transactionsLockedBeforeRead() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.USD);
+        Transaction transaction = prepareTransaction(10L, wallet, TransactionType.INCOME, 5.0);
+        prepareBatchMocks(List.of(wallet), List.of(transaction));
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 10L,
+                                                 null, null, null, null, null)
+        );
+        transactionService.applyTransactionBatch(operations, 1L);
+
+        InOrder inOrder = inOrder(transactionDao);
+        inOrder.verify(transactionDao).lockTransactions(Set.of(10L));
+        inOrder.verify(transactionDao).getTransactionWallets(Set.of(10L));
+        inOrder.verify(transactionDao).findAllById(Set.of(10L));
+        verify(walletService, times(1)).updateWalletBalance(wallet, -500L);
+    }
+
+    @Test
+    void applyTransactionBatch_pessimisticMode_transactionsNotLocked() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.USD);
+        Transaction transaction = prepareTransaction(10L, wallet, TransactionType.INCOME, 5.0);
+        prepareBatchMocks(List.of(wallet), List.of(transaction));
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 10L,
+                                                 null, null, null, null, null)
         );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, oldWallet
+        transactionService.applyTransactionBatch(operations, 1L);
+
+        verify(transactionDao, never()).lockTransactions(any());
+        verify(walletService, times(1)).getWalletsForUpdate(Set.of(1L));
+    }
+
+    @Test
+    void applyTransactionBatch_balanceChangesPerWalletAndMonth() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.USD);
+        Transaction transaction = prepareTransaction(10L, wallet, TransactionType.INCOME, 5.0);
+        transaction.setDate(CHECKPOINT_DATE);
+        prepareBatchMocks(List.of(wallet), List.of(transaction));
+
+        Date january10 = Date.from(Instant.parse("2021-01-10T10:00:00Z"));
+        Date january20 = Date.from(Instant.parse("2021-01-20T10:00:00Z"));
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, january10, 10.0, 1L, 1L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.UPDATE, 10L,
+                                                 null, january20, 7.0, 1L, 1L)
+        );
+        transactionService.applyTransactionBatch(operations, 1L);
+
+        // Transaction moved from March to January
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService, times(1)).addBalanceChanges(changesCaptor.capture());
+        assertEquals(Map.of(
+                new WalletMonth(1L, LocalDate.of(2021, 1, 1)), new BigDecimal("17.00"),
+                new WalletMonth(1L, LocalDate.of(2021, 3, 1)), new BigDecimal("-5.00")
+        ), changesCaptor.getValue().getMonthlyChanges());
+        assertEquals(Map.of(1L, LocalDate.of(2021, 1, 10)),
+                     changesCaptor.getValue().getFirstChangedDays());
+    }
+
+    @Test
+    void applyTransactionBatch_zeroNetDelta_zeroDeltaPassed() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.USD);
+        Transaction transaction = prepareTransaction(10L, wallet, TransactionType.INCOME, 5.0);
+        prepareBatchMocks(List.of(wallet), List.of(transaction));
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.UPDATE, 10L,
+                                                 "new", new Date(), 5.0, 1L, 1L)
         );
-        oldState.setId(1L);
+        transactionService.applyTransactionBatch(operations, 1L);
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(2L))
-                .thenReturn(Optional.of(newWallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.USD);
+        assertEquals("new", transaction.getDescription());
+        verify(walletService, times(1)).updateWalletBalance(wallet, 0L);
+        verify(transactionDao, never()).deleteAllInBatch(anyList());
+    }
 
-        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 2L
+    @Test
+    void applyTransactionBatch_incompleteOperation_BadRequestException() {
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 10L,
+                                                 null, null, null, null, null),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.UPDATE, null,
+                                                 null, new Date(), 5.0, 1L, 1L)
         );
-        assertThrows(ActionDeniedException.class, () -> {
-            transactionService.updateTransaction(transactionDto, 1L);
-        });
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.incomplete", e.getMessageCode());
+        assertEquals(1, e.getMessageArgs()[0]);
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(2L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
+        verify(walletService, never()).getWalletsForUpdate(any());
+    }
 
-        verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+    @Test
+    void applyTransactionBatch_transactionChangedTwice_BadRequestException() {
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.UPDATE, 10L,
+                                                 null, new Date(), 5.0, 1L, 1L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 10L,
+                                                 null, null, null, null, null)
+        );
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.duplicate", e.getMessageCode());
+        assertEquals(1, e.getMessageArgs()[0]);
     }
 
     @Test
-    void updateTransaction_NewWalletHasDifferentCurrency_BadRequestException() {
-        Wallet oldWallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
-        oldWallet.setId(1L);
-        Wallet newWallet = new Wallet("test", 0.0, Currency.UAH, new User(1L));
-        newWallet.setId(2L);
-        TransactionCategory category = new TransactionCategory(
-                "test", TransactionType.INCOME, null
+    void applyTransactionBatch_transactionNotFound_BadRequestException() {
+        prepareBatchMocks(List.of(), List.of());
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 10L,
+                                                 null, null, null, null, null)
         );
-        category.setId(1L);
-        Date transactionDate = new Date();
-        Transaction oldState = new Transaction(
-                "test", transactionDate, 1.0, category, oldWallet
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
         );
-        oldState.setId(1L);
+        assertEquals("validation.transaction.batch.notFound", e.getMessageCode());
 
-        when(categoryService.getCategoryType(1L))
-                .thenReturn(TransactionType.INCOME);
-        when(walletService.getWalletForUpdate(2L))
-                .thenReturn(Optional.of(newWallet));
-        when(transactionDao.findById(1L))
-                .thenReturn(Optional.of(oldState));
-        when(transactionDao.existsById(1L))
-                .thenReturn(true);
-        when(transactionDao.isUserTransactionOwner(1L, 1L))
-                .thenReturn(true);
-        when(walletService.getWalletCurrency(1L))
-                .thenReturn(Currency.UAH);
+        verify(walletService, never()).getWalletsForUpdate(any());
+    }
 
-        UpdateTransactionDto transactionDto = new UpdateTransactionDto(
-                1L, "test", transactionDate, 2.0, 1L, 2L
+    @Test
+    void applyTransactionBatch_walletNotFound_BadRequestException() {
+        prepareBatchMocks(List.of(), List.of());
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, new Date(), 5.0, 1L, 1L)
         );
-        BadRequestException exception = assertThrows(BadRequestException.class, () -> {
-            transactionService.updateTransaction(transactionDto, 1L);
-        });
-        assertEquals("validation.transaction.wallet-has-different-currency",
-                     exception.getMessageCode());
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.wallet.notFound", e.getMessageCode());
 
-        verify(categoryService, times(1)).getCategoryType(1L);
-        verify(walletService, times(1)).getWalletForUpdate(2L);
-        verify(transactionDao, times(1)).existsById(1L);
-        verify(transactionDao, times(1)).isUserTransactionOwner(1L, 1L);
+        verify(transactionDao, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void applyTransactionBatch_userNotWalletOwner_ActionDeniedException() {
+        Wallet ownWallet = prepareWallet(1L, 1L, Currency.USD);
+        Wallet foreignWallet = prepareWallet(2L, 2L, Currency.USD);
+        prepareBatchMocks(List.of(ownWallet, foreignWallet), List.of());
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, new Date(), 5.0, 1L, 1L),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, new Date(), 5.0, 1L, 2L)
+        );
+        assertThrows(ActionDeniedException.class,
+                     () -> transactionService.applyTransactionBatch(operations, 1L));
 
         verify(transactionDao, never()).save(any(Transaction.class));
-        verify(walletService, never()).updateWalletBalance(any(Wallet.class), anyDouble());
+        verify(walletService, never()).updateWalletBalance(any(), anyLong());
+    }
+
+    @Test
+    void applyTransactionBatch_categoryNotFound_BadRequestException() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.USD);
+        prepareBatchMocks(List.of(wallet), List.of());
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, new Date(), 5.0, 3L, 1L)
+        );
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.category.notFound", e.getMessageCode());
+    }
+
+    @Test
+    void applyTransactionBatch_amountOutOfCryptoRange_BadRequestException() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.BTC);
+        prepareBatchMocks(List.of(wallet), List.of());
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.CREATE, null,
+                                                 null, new Date(), 1e12, 1L, 1L)
+        );
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.amount.max", e.getMessageCode());
+        verify(transactionDao, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void applyTransactionBatch_transferLeg_BadRequestException() {
+        Wallet wallet = prepareWallet(1L, 1L, Currency.USD);
+        Transaction transaction = prepareTransaction(10L, wallet, TransactionType.INCOME, 5.0);
+        Transaction transferLeg = prepareTransaction(11L, wallet, TransactionType.INCOME, 5.0);
+        prepareBatchMocks(List.of(wallet), List.of(transaction, transferLeg));
+        when(transferDao.getTransferLegIds(Set.of(10L, 11L))).thenReturn(List.of(11L));
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 10L,
+                                                 null, null, null, null, null),
+                new TransactionBatchOperationDto(TransactionBatchOperationType.DELETE, 11L,
+                                                 null, null, null, null, null)
+        );
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.transfer-leg", e.getMessageCode());
+        assertEquals(1, e.getMessageArgs()[0]);
+        verify(transactionDao, never()).deleteAllInBatch(any());
+        verify(walletService, never()).updateWalletBalance(any(), anyLong());
+    }
+
+    @Test
+    void applyTransactionBatch_newWalletHasDifferentCurrency_BadRequestException() {
+        Wallet usdWallet = prepareWallet(1L, 1L, Currency.USD);
+        Wallet uahWallet = prepareWallet(2L, 1L, Currency.UAH);
+        Transaction transaction = prepareTransaction(10L, usdWallet, TransactionType.INCOME, 5.0);
+        prepareBatchMocks(List.of(usdWallet, uahWallet), List.of(transaction));
+
+        List<TransactionBatchOperationDto> operations = List.of(
+                new TransactionBatchOperationDto(TransactionBatchOperationType.UPDATE, 10L,
+                                                 null, new Date(), 5.0, 1L, 2L)
+        );
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transactionService.applyTransactionBatch(operations, 1L)
+        );
+        assertEquals("validation.transaction.batch.wallet-has-different-currency",
+                     e.getMessageCode());
+    }
+
+    private static Wallet prepareWallet(long id, long ownerId, Currency currency) {
+        Wallet wallet = new Wallet("test" + id, 0.0, currency, new User(ownerId));
+        wallet.setId(id);
+        return wallet;
+    }
+
+    private static Transaction prepareTransaction(long id,
+                                                  Wallet wallet,
+                                                  TransactionType type,
+                                                  double amount
+    ) {
+        TransactionCategory category = new TransactionCategory("test", type, null);
+        category.setId(type == TransactionType.INCOME ? 1L : 2L);
+
+        Transaction transaction = new Transaction("test", new Date(), amount, category, wallet);
+        transaction.setId(id);
+        return transaction;
+    }
+
+    private void prepareBatchMocks(List<Wallet> wallets, List<Transaction> transactions) {
+        List<TransactionWalletDbDto> transactionWallets = transactions.stream()
+                .map(transaction -> (TransactionWalletDbDto) new TransactionWalletDbDto() {
+                    @Override
+                    public long getId() {
+                        return transaction.getId();
+                    }
+
+                    @Override
+                    public long getWalletId() {
+                        return transaction.getWallet().getId();
+                    }
+                })
+                .toList();
+
+        prepareWriteTemplate();
+        when(transactionDao.getTransactionWallets(any())).thenReturn(transactionWallets);
+        when(walletService.getWalletsForUpdate(any())).thenReturn(wallets);
+        when(transactionDao.findAllById(any())).thenReturn(transactions);
+        when(categoryService.getCategoryTypes()).thenReturn(Map.of(
+                1L, TransactionType.INCOME,
+                2L, TransactionType.OUTCOME
+        ));
+    }
+
+    private void prepareUpdate(UpdateTransactionDto transactionDto,
+                               String description,
+                               double basicAmount,
+                               double cryptoAmount,
+                               TransactionType newCategoryType,
+                               UpdatedTransactionDbDto oldState
+    ) {
+        when(categoryService.getCategoryType(transactionDto.categoryId()))
+                .thenReturn(newCategoryType);
+        when(transactionDao.updateUserTransaction(transactionDto.id(),
+                                                  1L,
+                                                  description,
+                                                  transactionDto.date(),
+                                                  BigDecimal.valueOf(basicAmount).setScale(2),
+                                                  BigDecimal.valueOf(cryptoAmount).setScale(8),
+                                                  transactionDto.categoryId(),
+                                                  transactionDto.walletId(),
+                                                  Currency.getNames(CurrencyType.CRYPTO)))
+                .thenReturn(Optional.ofNullable(oldState));
+        when(walletService.addWalletBalance(anyLong(), anyLong(), any()))
+                .thenReturn(true);
+        prepareWriteTemplate();
+    }
+
+    private void prepareWriteTemplate() {
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.PESSIMISTIC);
+        when(walletWriteTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus()));
+    }
+
+    private void prepareTransactionWallet(long transactionId, long walletId) {
+        when(transactionDao.getTransactionWallets(Set.of(transactionId)))
+                .thenReturn(List.of(new TransactionWalletDbDto() {
+                    @Override
+                    public long getId() {
+                        return transactionId;
+                    }
+
+                    @Override
+                    public long getWalletId() {
+                        return walletId;
+                    }
+                }));
+    }
+
+    private static UpdatedTransactionDbDto prepareOldState(double amount,
+                                                           TransactionType categoryType,
+                                                           long walletId,
+                                                           double newAmount
+    ) {
+        UpdatedTransactionDbDto oldState = mock(UpdatedTransactionDbDto.class);
+        when(oldState.getAmount()).thenReturn(amount);
+        when(oldState.getDate()).thenReturn(CHECKPOINT_DATE);
+        when(oldState.getCategoryType()).thenReturn(categoryType);
+        when(oldState.getWalletId()).thenReturn(walletId);
+        when(oldState.getCurrency()).thenReturn(Currency.USD);
+        when(oldState.getNewAmount()).thenReturn(newAmount);
+        return oldState;
+    }
+
+    private static TransactionBalanceDbDto prepareDeletedState(double amount,
+                                                               TransactionType categoryType,
+                                                               long walletId
+    ) {
+        TransactionBalanceDbDto deleted = mock(TransactionBalanceDbDto.class);
+        when(deleted.getAmount()).thenReturn(amount);
+        when(deleted.getDate()).thenReturn(CHECKPOINT_DATE);
+        when(deleted.getCategoryId()).thenReturn(2L);
+        when(deleted.getCategoryType()).thenReturn(categoryType);
+        when(deleted.getWalletId()).thenReturn(walletId);
+        when(deleted.getCurrency()).thenReturn(Currency.USD);
+        return deleted;
     }
 
 }
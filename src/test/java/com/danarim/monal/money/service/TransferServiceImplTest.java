@@ -0,0 +1,177 @@
+package com.danarim.monal.money.service;
+
+import com.danarim.monal.exceptions.ActionDeniedException;
+import com.danarim.monal.exceptions.BadFieldException;
+import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.TransactionDao;
+import com.danarim.monal.money.persistence.dao.TransferDao;
+import com.danarim.monal.money.persistence.dto.WalletMonth;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.CreateTransferDto;
+import com.danarim.monal.user.persistence.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransferServiceImplTest {
+
+    private static final Date DATE = Date.from(Instant.parse("2021-03-15T10:00:00Z"));
+
+    private final TransactionDao transactionDao = mock(TransactionDao.class);
+    private final TransferDao transferDao = mock(TransferDao.class);
+    private final TransactionCategoryService categoryService =
+            mock(TransactionCategoryService.class);
+    private final WalletService walletService = mock(WalletService.class);
+    private final WalletWriteTemplate walletWriteTemplate = mock(WalletWriteTemplate.class);
+
+    @InjectMocks
+    private TransferServiceImpl transferService;
+
+    @Test
+    void createTransfer_bothLegsWrittenInLockOrder() {
+        Wallet wallet1 = prepareWallet(1L, 1L, Currency.USD);
+        Wallet wallet2 = prepareWallet(2L, 1L, Currency.USD);
+        prepareMocks(List.of(wallet1, wallet2));
+        when(categoryService.getTransferCategoryId(TransactionType.OUTCOME)).thenReturn(10L);
+        when(categoryService.getTransferCategoryId(TransactionType.INCOME)).thenReturn(20L);
+        when(transactionDao.save(any(Transaction.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(transferDao.save(any(Transfer.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // From the wallet with the greater ID, the locks are still taken in the order of ID
+        Transfer result = transferService.createTransfer(
+                new CreateTransferDto("  Rent   share ", DATE, 12.345, 2L, 1L), 1L);
+
+        assertEquals(wallet2, result.getOutcome().getWallet());
+        assertEquals(10L, result.getOutcome().getCategory().getId());
+        assertEquals(12.34, result.getOutcome().getAmount());
+        assertEquals("Rent share", result.getOutcome().getDescription());
+        assertEquals(wallet1, result.getIncome().getWallet());
+        assertEquals(20L, result.getIncome().getCategory().getId());
+        assertEquals(12.34, result.getIncome().getAmount());
+
+        InOrder inOrder = inOrder(walletService);
+        inOrder.verify(walletService).getWalletsForUpdate(Set.of(1L, 2L));
+        inOrder.verify(walletService).updateWalletBalance(wallet1, 1234L);
+        inOrder.verify(walletService).updateWalletBalance(wallet2, -1234L);
+
+        ArgumentCaptor<WalletBalanceChanges> changesCaptor =
+                ArgumentCaptor.forClass(WalletBalanceChanges.class);
+        verify(walletService).addBalanceChanges(changesCaptor.capture());
+        LocalDate month = LocalDate.of(2021, 3, 1);
+        assertEquals(Map.of(
+                new WalletMonth(1L, month), new BigDecimal("12.34"),
+                new WalletMonth(2L, month), new BigDecimal("-12.34")
+        ), changesCaptor.getValue().getMonthlyChanges());
+    }
+
+    @Test
+    void createTransfer_sameWallet_BadRequestException() {
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transferService.createTransfer(
+                        new CreateTransferDto(null, DATE, 1.0, 1L, 1L), 1L)
+        );
+
+        assertEquals("validation.transfer.same-wallet", e.getMessageCode());
+        verify(walletWriteTemplate, never()).execute(any());
+    }
+
+    @Test
+    void createTransfer_walletNotFound_BadRequestException() {
+        prepareMocks(List.of(prepareWallet(1L, 1L, Currency.USD)));
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transferService.createTransfer(
+                        new CreateTransferDto(null, DATE, 1.0, 1L, 2L), 1L)
+        );
+
+        assertEquals("validation.wallet.notFound", e.getMessageCode());
+        verify(transactionDao, never()).save(any());
+    }
+
+    @Test
+    void createTransfer_foreignWallet_ActionDeniedException() {
+        prepareMocks(List.of(prepareWallet(1L, 1L, Currency.USD),
+                             prepareWallet(2L, 2L, Currency.USD)));
+
+        assertThrows(ActionDeniedException.class,
+                     () -> transferService.createTransfer(
+                             new CreateTransferDto(null, DATE, 1.0, 1L, 2L), 1L));
+        verify(walletService, never()).updateWalletBalance(any(), anyLong());
+    }
+
+    @Test
+    void createTransfer_differentCurrencies_BadRequestException() {
+        prepareMocks(List.of(prepareWallet(1L, 1L, Currency.USD),
+                             prepareWallet(2L, 1L, Currency.UAH)));
+
+        BadRequestException e = assertThrows(
+                BadRequestException.class,
+                () -> transferService.createTransfer(
+                        new CreateTransferDto(null, DATE, 1.0, 1L, 2L), 1L)
+        );
+
+        assertEquals("validation.transfer.wallet-has-different-currency", e.getMessageCode());
+        verify(transactionDao, never()).save(any());
+    }
+
+    @Test
+    void createTransfer_amountOutOfCryptoRange_BadFieldException() {
+        prepareMocks(List.of(prepareWallet(1L, 1L, Currency.BTC),
+                             prepareWallet(2L, 1L, Currency.BTC)));
+
+        BadFieldException e = assertThrows(
+                BadFieldException.class,
+                () -> transferService.createTransfer(
+                        new CreateTransferDto(null, DATE, 1e12, 1L, 2L), 1L)
+        );
+
+        assertEquals("amount", e.getField());
+        verify(walletService, never()).updateWalletBalance(any(), anyLong());
+    }
+
+    private void prepareMocks(List<Wallet> wallets) {
+        when(walletWriteTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus()));
+        when(walletService.getWalletsForUpdate(any())).thenReturn(wallets);
+    }
+
+    private static Wallet prepareWallet(long id, long ownerId, Currency currency) {
+        Wallet wallet = new Wallet("test" + id, 0.0, currency, new User(ownerId));
+        wallet.setId(id);
+        return wallet;
+    }
+
+}
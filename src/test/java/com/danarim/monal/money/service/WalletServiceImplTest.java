@@ -3,8 +3,16 @@ package com.danarim.monal.money.service;
 import com.danarim.monal.exceptions.ActionDeniedException;
 import com.danarim.monal.exceptions.BadFieldException;
 import com.danarim.monal.exceptions.BadRequestException;
+import com.danarim.monal.money.persistence.dao.AnalyticsRollupDao;
+import com.danarim.monal.money.persistence.dao.WalletBalanceCheckpointDao;
+import com.danarim.monal.money.persistence.dao.WalletBalanceDeltaDao;
 import com.danarim.monal.money.persistence.dao.WalletDao;
+import com.danarim.monal.money.persistence.dto.AnalyticsRollupChange;
+import com.danarim.monal.money.persistence.dto.WalletBalanceDbDto;
+import com.danarim.monal.money.persistence.dto.WalletDayCategory;
 import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.CurrencyType;
+import com.danarim.monal.money.persistence.model.TransactionType;
 import com.danarim.monal.money.persistence.model.Wallet;
 import com.danarim.monal.money.web.dto.CreateWalletDto;
 import com.danarim.monal.user.persistence.model.User;
@@ -12,10 +20,30 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -26,6 +54,13 @@ import static org.mockito.Mockito.when;
 class WalletServiceImplTest {
 
     private final WalletDao walletDao = mock(WalletDao.class);
+    private final WalletBalanceDeltaDao walletBalanceDeltaDao = mock(WalletBalanceDeltaDao.class);
+    private final WalletBalanceCheckpointDao walletBalanceCheckpointDao =
+            mock(WalletBalanceCheckpointDao.class);
+    private final AnalyticsRollupDao analyticsRollupDao = mock(AnalyticsRollupDao.class);
+    private final WalletWriteTemplate walletWriteTemplate = mock(WalletWriteTemplate.class);
+    private final BalanceHistoryCache balanceHistoryCache = mock(BalanceHistoryCache.class);
+    private final AnalyticsCache analyticsCache = mock(AnalyticsCache.class);
 
     @InjectMocks
     private WalletServiceImpl walletService;
@@ -95,14 +130,319 @@ class WalletServiceImplTest {
     // Update wallet balance
 
     @Test
-    void updateWalletBalance_cryptoCurrency() {
+    void updateWalletBalance_pessimisticMode_atomicUpdate() {
         Wallet wallet = new Wallet("test", 0.00000001, Currency.BTC, new User(1L));
 
-        walletService.updateWalletBalance(wallet, 0.00000007);
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.PESSIMISTIC);
 
-        assertEquals(0.00000008, wallet.getBalance());
+        walletService.updateWalletBalance(wallet, 7L);
 
-        verify(walletDao, times(1)).save(wallet);
+        verify(walletDao).addWalletBalance(wallet.getId(), new BigDecimal("0.00000007"));
+        verify(walletDao, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    void updateWalletBalance_pessimisticModeZeroDelta_walletNotUpdated() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.PESSIMISTIC);
+
+        walletService.updateWalletBalance(wallet, 0L);
+
+        verify(walletDao, never()).addWalletBalance(anyLong(), any());
+    }
+
+    @Test
+    void updateWalletBalance_optimisticModeZeroDelta_versionChecked() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.OPTIMISTIC);
+        BigDecimal zero = new BigDecimal("0.00");
+
+        when(walletDao.addWalletBalanceIfVersion(wallet.getId(), 0L, zero))
+                .thenReturn(Optional.of(BigDecimal.ONE));
+
+        walletService.updateWalletBalance(wallet, 0L);
+
+        verify(walletDao).addWalletBalanceIfVersion(wallet.getId(), 0L, zero);
+    }
+
+    @Test
+    void updateWalletBalance_optimisticModeWalletChanged_exception() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.OPTIMISTIC);
+        when(walletDao.addWalletBalanceIfVersion(wallet.getId(), 0L, new BigDecimal("10.00")))
+                .thenReturn(Optional.empty());
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                     () -> walletService.updateWalletBalance(wallet, 1000L));
+    }
+
+    @Test
+    void updateWalletBalance_ledgerMode_deltaAppended() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+
+        walletService.updateWalletBalance(wallet, -150L);
+
+        verify(walletBalanceDeltaDao).appendWalletDelta(wallet.getId(), new BigDecimal("-1.50"));
+        verify(walletDao, never()).addWalletBalance(anyLong(), any());
+    }
+
+    @Test
+    void addWalletBalance() {
+        when(walletDao.addWalletBalance(1L, new BigDecimal("0.01")))
+                .thenReturn(Optional.of(new BigDecimal("10.01")));
+
+        assertTrue(walletService.addWalletBalance(1L, 1L, CurrencyType.BASIC));
+    }
+
+    @Test
+    void addWalletBalance_walletNotFound_false() {
+        when(walletDao.addWalletBalance(1L, new BigDecimal("0.01"))).thenReturn(Optional.empty());
+
+        assertFalse(walletService.addWalletBalance(1L, 1L, CurrencyType.BASIC));
+    }
+
+    @Test
+    void addWalletBalance_ledgerMode_deltaAppended() {
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+        when(walletBalanceDeltaDao.appendWalletDelta(1L, new BigDecimal("0.01"))).thenReturn(1);
+
+        assertTrue(walletService.addWalletBalance(1L, 1L, CurrencyType.BASIC));
+        verify(walletDao, never()).addWalletBalance(anyLong(), any());
+    }
+
+    @Test
+    void addOwnedWalletBalance_ledgerMode_deltaAppended() {
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+        when(walletBalanceDeltaDao.appendOwnedWalletDelta(eq(1L),
+                                                          eq(2L),
+                                                          eq(new BigDecimal("1.12")),
+                                                          eq(new BigDecimal("1.12345678")),
+                                                          any()))
+                .thenReturn(Optional.of("USD"));
+
+        Optional<Currency> result = walletService.addOwnedWalletBalance(
+                1L, 2L, new BigDecimal("1.12"), new BigDecimal("1.12345678"));
+
+        assertEquals(Optional.of(Currency.USD), result);
+        verify(walletDao, never()).addOwnedWalletBalance(anyLong(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void addOwnedWalletBalance() {
+        when(walletDao.addOwnedWalletBalance(eq(1L),
+                                             eq(2L),
+                                             eq(new BigDecimal("1.12")),
+                                             eq(new BigDecimal("1.12345678")),
+                                             argThat(names -> names.contains("BTC")
+                                                     && !names.contains("USD"))))
+                .thenReturn(Optional.of("BTC"));
+
+        Optional<Currency> result = walletService.addOwnedWalletBalance(
+                1L, 2L, new BigDecimal("1.12"), new BigDecimal("1.12345678"));
+
+        assertEquals(Optional.of(Currency.BTC), result);
+    }
+
+    // Get user wallets
+
+    @Test
+    void getUserWallets_ledgerMode_pendingDeltasAdded() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+        wallet.setId(3L);
+        WalletBalanceDbDto balance = mock(WalletBalanceDbDto.class);
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+        when(walletDao.findAllByOwnerId(1L)).thenReturn(List.of(wallet));
+        when(balance.getWalletId()).thenReturn(3L);
+        when(balance.getBalance()).thenReturn(new BigDecimal("2.50"));
+        when(walletBalanceDeltaDao.getOwnerWalletBalances(1L)).thenReturn(List.of(balance));
+
+        List<Wallet> result = walletService.getUserWallets(1L);
+
+        assertEquals(1, result.size());
+        assertNotSame(wallet, result.get(0));
+        assertEquals(3L, result.get(0).getId());
+        assertEquals(2.5, result.get(0).getBalance());
+        assertEquals(1.0, wallet.getBalance());
+    }
+
+    @Test
+    void getUserWallets_pessimisticMode_deltasNotRead() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.PESSIMISTIC);
+        when(walletDao.findAllByOwnerId(1L)).thenReturn(List.of(wallet));
+
+        assertEquals(List.of(wallet), walletService.getUserWallets(1L));
+        verify(walletBalanceDeltaDao, never()).getOwnerWalletBalances(anyLong());
+    }
+
+    // Balance checkpoints
+
+    @Test
+    void addBalanceChanges_zeroChangeSkipped() {
+        WalletBalanceChanges changes = new WalletBalanceChanges();
+        changes.addTransaction(1L, LocalDateTime.of(2021, 1, 20, 10, 0), 5L,
+                               TransactionType.INCOME, new BigDecimal("1.50"));
+        changes.addTransaction(1L, LocalDateTime.of(2021, 2, 10, 10, 0), 5L,
+                               TransactionType.INCOME, new BigDecimal("2.00"));
+        changes.addTransaction(1L, LocalDateTime.of(2021, 2, 15, 10, 0), 6L,
+                               TransactionType.OUTCOME, new BigDecimal("2.00"));
+
+        walletService.addBalanceChanges(changes);
+
+        verify(walletBalanceCheckpointDao).addMonthlyChange(1L, LocalDate.of(2021, 1, 1),
+                                                            new BigDecimal("1.50"));
+        verify(walletBalanceCheckpointDao, times(1)).addMonthlyChange(anyLong(), any(), any());
+        verify(analyticsRollupDao).addDailyChanges(new TreeMap<>(Map.of(
+                new WalletDayCategory(1L, LocalDate.of(2021, 1, 20), 5L),
+                new AnalyticsRollupChange(new BigDecimal("1.50"), 1L),
+                new WalletDayCategory(1L, LocalDate.of(2021, 2, 10), 5L),
+                new AnalyticsRollupChange(new BigDecimal("2.00"), 1L),
+                new WalletDayCategory(1L, LocalDate.of(2021, 2, 15), 6L),
+                new AnalyticsRollupChange(new BigDecimal("2.00"), 1L)
+        )));
+        verify(balanceHistoryCache).invalidateAfterCommit(Map.of(1L, LocalDate.of(2021, 1, 20)));
+    }
+
+    @Test
+    void addBalanceChanges_historyInvalidatedFromFirstChangedDay() {
+        WalletBalanceChanges changes = new WalletBalanceChanges();
+        // Moved inside February, the checkpoint doesn't change but the daily balances do
+        changes.removeTransaction(2L, Date.from(Instant.parse("2021-02-20T10:00:00Z")), 5L,
+                                  TransactionType.OUTCOME, new BigDecimal("3.00"));
+        changes.addTransaction(2L, LocalDateTime.of(2021, 2, 5, 10, 0), 5L,
+                               TransactionType.OUTCOME, new BigDecimal("3.00"));
+
+        walletService.addBalanceChanges(changes);
+
+        verify(walletBalanceCheckpointDao, never()).addMonthlyChange(anyLong(), any(), any());
+        verify(analyticsRollupDao).addDailyChanges(new TreeMap<>(Map.of(
+                new WalletDayCategory(2L, LocalDate.of(2021, 2, 5), 5L),
+                new AnalyticsRollupChange(new BigDecimal("3.00"), 1L),
+                new WalletDayCategory(2L, LocalDate.of(2021, 2, 20), 5L),
+                new AnalyticsRollupChange(new BigDecimal("-3.00"), -1L)
+        )));
+        verify(balanceHistoryCache).invalidateAfterCommit(Map.of(2L, LocalDate.of(2021, 2, 5)));
+        // Both the old and the new day
+        verify(analyticsCache).invalidateAfterCommit(Set.of(
+                new WalletDayCategory(2L, LocalDate.of(2021, 2, 5), 5L),
+                new WalletDayCategory(2L, LocalDate.of(2021, 2, 20), 5L)
+        ));
+    }
+
+    @Test
+    void addBalanceChanges_sameDayAndCategory_rollupNotChanged() {
+        WalletBalanceChanges changes = new WalletBalanceChanges();
+        // Only the description is changed
+        changes.removeTransaction(3L, Date.from(Instant.parse("2021-02-20T10:00:00Z")), 5L,
+                                  TransactionType.OUTCOME, new BigDecimal("3.00"));
+        changes.addTransaction(3L, LocalDateTime.of(2021, 2, 20, 10, 0), 5L,
+                               TransactionType.OUTCOME, new BigDecimal("3.00"));
+
+        walletService.addBalanceChanges(changes);
+
+        verify(analyticsRollupDao, never()).addDailyChanges(any());
+        verify(balanceHistoryCache).invalidateAfterCommit(Map.of(3L, LocalDate.of(2021, 2, 20)));
+        verify(analyticsCache).invalidateAfterCommit(Set.of());
+    }
+
+    @Test
+    void getWalletBalanceAt() {
+        Date date = new Date();
+
+        when(walletBalanceCheckpointDao.getOwnedWalletBalanceAt(1L, 2L, date))
+                .thenReturn(Optional.of(new BigDecimal("12.50")));
+
+        assertEquals(12.5, walletService.getWalletBalanceAt(1L, date, 2L));
+        verify(walletDao, never()).existsById(anyLong());
+    }
+
+    @Test
+    void getWalletBalanceAt_walletNotFound_BadRequestException() {
+        Date date = new Date();
+
+        when(walletBalanceCheckpointDao.getOwnedWalletBalanceAt(1L, 2L, date))
+                .thenReturn(Optional.empty());
+        when(walletDao.existsById(1L)).thenReturn(false);
+
+        BadRequestException e = assertThrows(BadRequestException.class,
+                                             () -> walletService.getWalletBalanceAt(1L, date, 2L));
+
+        assertEquals("validation.wallet.notFound", e.getMessageCode());
+    }
+
+    @Test
+    void getWalletBalanceAt_userNotOwner_ActionDeniedException() {
+        Date date = new Date();
+
+        when(walletBalanceCheckpointDao.getOwnedWalletBalanceAt(1L, 2L, date))
+                .thenReturn(Optional.empty());
+        when(walletDao.existsById(1L)).thenReturn(true);
+
+        assertThrows(ActionDeniedException.class,
+                     () -> walletService.getWalletBalanceAt(1L, date, 2L));
+    }
+
+    // Compact balance deltas
+
+    @Test
+    void compactBalanceDeltasTask_compactsUntilNoDeltas() {
+        when(walletBalanceDeltaDao.compactDeltas(anyInt())).thenReturn(5, 2, 0);
+
+        walletService.compactBalanceDeltasTask();
+
+        verify(walletBalanceDeltaDao, times(3)).compactDeltas(anyInt());
+    }
+
+    @Test
+    void compactBalanceDeltasTask_exception_notThrown() {
+        when(walletBalanceDeltaDao.compactDeltas(anyInt()))
+                .thenThrow(new RuntimeException("test"));
+
+        walletService.compactBalanceDeltasTask();
+
+        verify(walletBalanceDeltaDao, times(1)).compactDeltas(anyInt());
+    }
+
+    // Get wallets for update
+
+    @Test
+    void getWalletsForUpdate_pessimisticMode_walletsLocked() {
+        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.PESSIMISTIC);
+        when(walletDao.findAllByIdInOrderByIdAsc(List.of(1L))).thenReturn(List.of(wallet));
+
+        assertEquals(List.of(wallet), walletService.getWalletsForUpdate(List.of(1L)));
+        verify(walletDao, never()).readAllByIdInOrderByIdAsc(any());
+    }
+
+    @Test
+    void getWalletsForUpdate_optimisticMode_walletsReadWithoutLock() {
+        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.OPTIMISTIC);
+        when(walletDao.readAllByIdInOrderByIdAsc(List.of(1L))).thenReturn(List.of(wallet));
+
+        assertEquals(List.of(wallet), walletService.getWalletsForUpdate(List.of(1L)));
+        verify(walletDao, never()).findAllByIdInOrderByIdAsc(any());
+    }
+
+    @Test
+    void getWalletsForUpdate_ledgerMode_walletsReadWithoutLock() {
+        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+        when(walletDao.readAllByIdInOrderByIdAsc(List.of(1L))).thenReturn(List.of(wallet));
+
+        assertEquals(List.of(wallet), walletService.getWalletsForUpdate(List.of(1L)));
+        verify(walletDao, never()).findAllByIdInOrderByIdAsc(any());
     }
 
     // Update wallet name
@@ -127,6 +467,49 @@ class WalletServiceImplTest {
         verify(walletDao, times(1)).save(any(Wallet.class));
     }
 
+    @Test
+    void updateWalletName_ledgerMode_pendingDeltasAdded() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+        wallet.setId(3L);
+        WalletBalanceDbDto otherBalance = mock(WalletBalanceDbDto.class);
+        WalletBalanceDbDto balance = mock(WalletBalanceDbDto.class);
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.LEDGER);
+        when(walletDao.existsById(3L)).thenReturn(true);
+        when(walletDao.isUserWalletOwner(3L, 1L)).thenReturn(true);
+        when(walletDao.getById(3L)).thenReturn(wallet);
+        when(walletDao.save(any(Wallet.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(otherBalance.getWalletId()).thenReturn(4L);
+        when(balance.getWalletId()).thenReturn(3L);
+        when(balance.getBalance()).thenReturn(new BigDecimal("2.50"));
+        when(walletBalanceDeltaDao.getOwnerWalletBalances(1L))
+                .thenReturn(List.of(otherBalance, balance));
+
+        Wallet result = walletService.updateWalletName(3L, "test 2", 1L);
+
+        assertNotSame(wallet, result);
+        assertEquals(3L, result.getId());
+        assertEquals("test 2", result.getName());
+        assertEquals(2.5, result.getBalance());
+        assertEquals(1.0, wallet.getBalance());
+    }
+
+    @Test
+    void updateWalletName_pessimisticMode_deltasNotRead() {
+        Wallet wallet = new Wallet("test", 1.0, Currency.USD, new User(1L));
+
+        when(walletWriteTemplate.getMode()).thenReturn(WalletConcurrencyMode.PESSIMISTIC);
+        when(walletDao.existsById(1L)).thenReturn(true);
+        when(walletDao.isUserWalletOwner(1L, 1L)).thenReturn(true);
+        when(walletDao.getById(1L)).thenReturn(wallet);
+        when(walletDao.save(any(Wallet.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertSame(wallet, walletService.updateWalletName(1L, "test", 1L));
+        verify(walletBalanceDeltaDao, never()).getOwnerWalletBalances(anyLong());
+    }
+
     @Test
     void updateWalletName_walletNotFound_BadRequestException() {
         when(walletDao.existsById(1L)).thenReturn(false);
@@ -171,6 +554,7 @@ class WalletServiceImplTest {
         verify(walletDao, times(1)).isUserWalletOwner(1L, 1L);
         verify(walletDao, times(1)).countWalletTransactions(1L);
         verify(walletDao, times(1)).deleteById(1L);
+        verify(balanceHistoryCache, times(1)).invalidateAfterCommit(Map.of(1L, LocalDate.MIN));
     }
 
     @Test
@@ -0,0 +1,164 @@
+package com.danarim.monal.money.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.jpa.JpaSystemException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.PersistenceException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WalletWriteTemplateTest {
+
+    private final PlatformTransactionManager transactionManager =
+            mock(PlatformTransactionManager.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void execute_pessimisticMode_conflictNotRetried() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.PESSIMISTIC);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                     () -> template.execute(status -> failTimes(1)));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void execute_optimisticMode_retriedUntilSuccess() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.OPTIMISTIC);
+
+        int result = template.execute(status -> failTimes(2));
+
+        assertEquals(3, result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void execute_optimisticMode_maxAttemptsExceeded_conflictThrown() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.OPTIMISTIC);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                     () -> template.execute(status -> failTimes(WalletWriteTemplate.MAX_ATTEMPTS)));
+        assertEquals(WalletWriteTemplate.MAX_ATTEMPTS, attempts.get());
+    }
+
+    @Test
+    void execute_optimisticModeInsideTransaction_conflictNotRetried() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.OPTIMISTIC);
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(OptimisticLockingFailureException.class,
+                         () -> template.execute(status -> failTimes(1)));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void execute_pessimisticMode_deadlockRetried() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.PESSIMISTIC);
+
+        int result = template.execute(status -> deadlockTimes(2));
+
+        assertEquals(3, result);
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, getCount(WalletWriteTemplate.RETRIES_METRIC, "deadlock"));
+    }
+
+    @Test
+    void execute_serializationFailureSqlState_retried() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.PESSIMISTIC);
+
+        // Not translated to a specific exception, recognized by the SQL state
+        int result = template.execute(status -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new JpaSystemException(new PersistenceException(
+                        new SQLException("could not serialize access", "40001")));
+            }
+            return attempts.get();
+        });
+
+        assertEquals(2, result);
+        assertEquals(1.0, getCount(WalletWriteTemplate.RETRIES_METRIC, "serialization"));
+    }
+
+    @Test
+    void execute_otherDataAccessFailure_notRetried() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.PESSIMISTIC);
+
+        assertThrows(DataIntegrityViolationException.class, () -> template.execute(status -> {
+            attempts.incrementAndGet();
+            throw new DataIntegrityViolationException("Duplicate key");
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void execute_ledgerMode_maxAttemptsExceeded_deadlockThrown() {
+        WalletWriteTemplate template = createTemplate(WalletConcurrencyMode.LEDGER);
+
+        int failures = WalletWriteTemplate.MAX_ATTEMPTS;
+
+        assertThrows(DeadlockLoserDataAccessException.class,
+                     () -> template.execute(status -> deadlockTimes(failures)));
+        assertEquals(WalletWriteTemplate.MAX_ATTEMPTS, attempts.get());
+        assertEquals(WalletWriteTemplate.MAX_ATTEMPTS - 1,
+                     getCount(WalletWriteTemplate.RETRIES_METRIC, "deadlock"));
+        assertEquals(1.0, getCount(WalletWriteTemplate.FAILURES_METRIC, "deadlock"));
+    }
+
+    private WalletWriteTemplate createTemplate(WalletConcurrencyMode mode) {
+        return new WalletWriteTemplate(transactionManager, mode, meterRegistry);
+    }
+
+    private double getCount(String metric, String cause) {
+        return meterRegistry.get(metric).tag("cause", cause).counter().count();
+    }
+
+    /**
+     * Fails with a conflict the given number of times, then returns the number of the attempt.
+     */
+    private int failTimes(int failures) {
+        int attempt = attempts.incrementAndGet();
+        if (attempt <= failures) {
+            throw new OptimisticLockingFailureException("Wallet is changed concurrently");
+        }
+        return attempt;
+    }
+
+    /**
+     * Fails as a deadlock victim the given number of times, then returns the number of the
+     * attempt.
+     */
+    private int deadlockTimes(int failures) {
+        int attempt = attempts.incrementAndGet();
+        if (attempt <= failures) {
+            throw new DeadlockLoserDataAccessException("Deadlock detected", null);
+        }
+        return attempt;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.RecurringTransaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.ViewRecurringTransactionDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecurringTransactionMapperTest {
+
+    @Test
+    void toViewDto() {
+        RecurringTransaction recurringTransaction = new RecurringTransaction(
+                "Rent", 300.0, new TransactionCategory(3L), new Wallet(4L), "@monthly",
+                new Date(1000L));
+
+        ViewRecurringTransactionDto result =
+                RecurringTransactionMapper.toViewDto(recurringTransaction);
+
+        assertEquals("Rent", result.description());
+        assertEquals(300.0, result.amount());
+        assertEquals(3L, result.categoryId());
+        assertEquals(4L, result.walletId());
+        assertEquals("@monthly", result.cron());
+        assertEquals(new Date(1000L), result.nextOccurrence());
+    }
+
+    @Test
+    void toViewDtos_noMoreOccurrences() {
+        List<ViewRecurringTransactionDto> result = RecurringTransactionMapper.toViewDtos(List.of(
+                new RecurringTransaction(null, 1.0, new TransactionCategory(3L), new Wallet(4L),
+                                         "0 0 0 30 2 *", null)
+        ));
+
+        assertEquals(1, result.size());
+        assertNull(result.get(0).description());
+        assertNull(result.get(0).nextOccurrence());
+    }
+
+}
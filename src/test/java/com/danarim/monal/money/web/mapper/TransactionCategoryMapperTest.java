@@ -0,0 +1,43 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.TransactionType;
+import com.danarim.monal.money.web.dto.ViewTransactionCategoryDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionCategoryMapperTest {
+
+    @Test
+    void toViewDtos_withSubCategories() {
+        TransactionCategory parent = new TransactionCategory("Parent", TransactionType.OUTCOME,
+                                                             null);
+        parent.setId(1L);
+        TransactionCategory sub = new TransactionCategory("Sub", TransactionType.OUTCOME, parent);
+        sub.setId(2L);
+        parent.setSubCategories(List.of(sub));
+
+        TransactionCategory independent = new TransactionCategory("Ind", TransactionType.INCOME,
+                                                                  null);
+        independent.setId(3L);
+
+        List<ViewTransactionCategoryDto> result =
+                TransactionCategoryMapper.toViewDtos(List.of(parent, independent));
+
+        assertEquals(2, result.size());
+        assertEquals(1L, result.get(0).getId());
+        assertEquals("Parent", result.get(0).getName());
+        assertEquals(TransactionType.OUTCOME, result.get(0).getType());
+        assertEquals(1, result.get(0).getSubCategories().size());
+        assertEquals(2L, result.get(0).getSubCategories().get(0).getId());
+        assertEquals("Sub", result.get(0).getSubCategories().get(0).getName());
+        assertTrue(result.get(0).getSubCategories().get(0).getSubCategories().isEmpty());
+        assertEquals(TransactionType.INCOME, result.get(1).getType());
+        assertTrue(result.get(1).getSubCategories().isEmpty());
+    }
+
+}
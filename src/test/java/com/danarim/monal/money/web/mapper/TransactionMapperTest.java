@@ -0,0 +1,60 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.dto.TransactionDbDto;
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.ViewTransactionDto;
+import com.danarim.monal.user.persistence.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionMapperTest {
+
+    @Test
+    void toViewDto() {
+        Transaction transaction = prepareTransaction(1L, new Date(1000L));
+
+        ViewTransactionDto result = TransactionMapper.toViewDto(transaction);
+
+        assertEquals(1L, result.getId());
+        assertEquals("test", result.getDescription());
+        assertEquals(new Date(1000L), result.getDate());
+        assertEquals(2.5, result.getAmount());
+        assertEquals(3L, result.getCategoryId());
+        assertEquals(4L, result.getWalletId());
+    }
+
+    @Test
+    void toViewDtos_orderKept() {
+        List<ViewTransactionDto> result = TransactionMapper.toViewDtos(List.of(
+                new TransactionDbDto(1L, "first", new Date(2000L), 2.5, 3L, 4L),
+                new TransactionDbDto(2L, null, new Date(1000L), 1.0, 3L, 4L)
+        ));
+
+        assertEquals(2, result.size());
+        assertEquals(1L, result.get(0).getId());
+        assertEquals("first", result.get(0).getDescription());
+        assertEquals(new Date(2000L), result.get(0).getDate());
+        assertEquals(2.5, result.get(0).getAmount());
+        assertEquals(3L, result.get(0).getCategoryId());
+        assertEquals(4L, result.get(0).getWalletId());
+        assertEquals(2L, result.get(1).getId());
+    }
+
+    private static Transaction prepareTransaction(long id, Date date) {
+        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
+        wallet.setId(4L);
+
+        Transaction transaction =
+                new Transaction("test", date, 2.5, new TransactionCategory(3L), wallet);
+        transaction.setId(id);
+        return transaction;
+    }
+
+}
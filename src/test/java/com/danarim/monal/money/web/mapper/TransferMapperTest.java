@@ -0,0 +1,44 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Transaction;
+import com.danarim.monal.money.persistence.model.TransactionCategory;
+import com.danarim.monal.money.persistence.model.Transfer;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.ViewTransferDto;
+import com.danarim.monal.user.persistence.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransferMapperTest {
+
+    @Test
+    void toViewDto() {
+        Transfer transfer = new Transfer(prepareTransaction(1L, 3L, 10L),
+                                         prepareTransaction(2L, 4L, 20L));
+
+        ViewTransferDto result = TransferMapper.toViewDto(transfer);
+
+        assertEquals(1L, result.outcome().getId());
+        assertEquals(3L, result.outcome().getCategoryId());
+        assertEquals(10L, result.outcome().getWalletId());
+        assertEquals(2L, result.income().getId());
+        assertEquals(4L, result.income().getCategoryId());
+        assertEquals(20L, result.income().getWalletId());
+        assertEquals(2.5, result.income().getAmount());
+    }
+
+    private static Transaction prepareTransaction(long id, long categoryId, long walletId) {
+        Wallet wallet = new Wallet("test", 0.0, Currency.USD, new User(1L));
+        wallet.setId(walletId);
+
+        Transaction transaction = new Transaction("Transfer", new Date(1000L), 2.5,
+                                                  new TransactionCategory(categoryId), wallet);
+        transaction.setId(id);
+        return transaction;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.danarim.monal.money.web.mapper;
+
+import com.danarim.monal.money.persistence.model.Currency;
+import com.danarim.monal.money.persistence.model.Wallet;
+import com.danarim.monal.money.web.dto.ViewWalletDto;
+import com.danarim.monal.user.persistence.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WalletMapperTest {
+
+    @Test
+    void toViewDto() {
+        Wallet wallet = new Wallet("test", 10.5, Currency.UAH, new User(1L));
+        wallet.setId(2L);
+
+        ViewWalletDto result = WalletMapper.toViewDto(wallet);
+
+        assertEquals(2L, result.getId());
+        assertEquals("test", result.getName());
+        assertEquals(10.5, result.getBalance());
+        assertEquals("UAH", result.getCurrency());
+    }
+
+    @Test
+    void toViewDtos_emptyList() {
+        assertEquals(List.of(), WalletMapper.toViewDtos(List.of()));
+    }
+
+}